@@ -0,0 +1,302 @@
+package nisran;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nisran.cache.LRUCache;
+import nisran.discovery.StaticDiscoveryProvider;
+import nisran.router.CacheRouter;
+import nisran.router.ZonePlacement;
+import nisran.transport.Frame;
+import nisran.transport.FrameCodec;
+import nisran.transport.TransportClient;
+import nisran.transport.TransportServer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A cluster node running inside an application's JVM, without Spring or HTTP.
+ *
+ * The node is assembled from the cache, the router and the inter-node transport, and forms a
+ * cluster with the other embedded nodes in its fixed member list; it does not join a cluster of
+ * standalone nodes, whose quorum, lease, failure detection and asynchronous replication
+ * machinery it does not run. Replicas are placed by the router exactly as on standalone nodes,
+ * zones included. Keys this node is a replica of are read in place, and written in place when
+ * it is their primary, without a network hop or serialization, so values are shared with the
+ * cache and must not be modified once set. Other keys are read from their replicas, falling
+ * over to the next one that answers, and written through their primary, which writes every
+ * replica synchronously over the transport. Requests from peers other than pings are served on
+ * a bounded worker pool, never on the transport's event loop.
+ */
+public final class EmbeddedCacheNode implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedCacheNode.class);
+
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("service.discovery.local-host", "127.0.0.1"),
+            Map.entry("service.transport.port", "7070"),
+            Map.entry("service.discovery.static.members", ""),
+            Map.entry("cache.capacity", "100"),
+            Map.entry("server.virtual-nodes", "1"),
+            Map.entry("service.replication.factor", "2"),
+            Map.entry("service.zone.name", ""),
+            Map.entry("service.zone.aware-placement", "false"),
+            Map.entry("service.zone.prefer-local-reads", "false"),
+            Map.entry("service.transport.connect-timeout-ms", "1000"),
+            Map.entry("service.transport.request-timeout-ms", "2000"),
+            Map.entry("service.transport.worker-threads", "16"),
+            Map.entry("service.transport.worker-queue-capacity", "1024"));
+
+    private final ServerInstance localInstance;
+    private final int replicationFactor;
+    private final boolean zoneAwarePlacement;
+    private final boolean preferLocalReads;
+    private final long requestTimeoutMillis;
+    private final LRUCache<String, Object> cache;
+    private final CacheRouter cacheRouter;
+    private final TransportServer server;
+    private final TransportClient client;
+    private final ExecutorService workers;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private EmbeddedCacheNode(Map<String, String> settings) {
+        String host = settings.get("service.discovery.local-host");
+        int port = Integer.parseInt(settings.get("service.transport.port"));
+        String zone = settings.get("service.zone.name").isBlank() ? null : settings.get("service.zone.name");
+        this.localInstance = new ServerInstance(host + ":" + port, host, port, zone);
+        List<ServerInstance> members = StaticDiscoveryProvider.parseMembers(
+                Arrays.asList(settings.get("service.discovery.static.members").split(",")));
+        if (members.isEmpty()) {
+            members = List.of(localInstance);
+        }
+        this.replicationFactor = Integer.parseInt(settings.get("service.replication.factor"));
+        this.zoneAwarePlacement = Boolean.parseBoolean(settings.get("service.zone.aware-placement"));
+        this.preferLocalReads = Boolean.parseBoolean(settings.get("service.zone.prefer-local-reads"));
+        this.requestTimeoutMillis = Long.parseLong(settings.get("service.transport.request-timeout-ms"));
+        this.cache = new LRUCache<>(Integer.parseInt(settings.get("cache.capacity")));
+        // Membership is fixed, so the ring is built once and discovery is never polled
+        this.cacheRouter = new CacheRouter(new StaticDiscoveryProvider(localInstance, members),
+                Integer.parseInt(settings.get("server.virtual-nodes")), 0);
+        this.cacheRouter.refreshMembership();
+        this.server = new TransportServer(port, this::handle);
+        this.client = new TransportClient(Integer.parseInt(settings.get("service.transport.connect-timeout-ms")));
+        int threads = Integer.parseInt(settings.get("service.transport.worker-threads"));
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Integer.parseInt(settings.get("service.transport.worker-queue-capacity"))), r -> {
+            Thread t = new Thread(r, "Embedded-Worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts a node listening for its peers on its transport port.
+     * @param properties Configuration, keyed as in application-cluster.yml:
+     *                   {@code service.discovery.local-host}, {@code service.transport.port},
+     *                   {@code service.discovery.static.members} (the {@code host:port} transport
+     *                   addresses of all nodes, this one included), {@code cache.capacity},
+     *                   {@code server.virtual-nodes}, {@code service.replication.factor},
+     *                   {@code service.zone.name}, {@code service.zone.aware-placement},
+     *                   {@code service.zone.prefer-local-reads} (zones of the members are given
+     *                   as {@code host:port@zone}), {@code service.transport.connect-timeout-ms},
+     *                   {@code service.transport.request-timeout-ms},
+     *                   {@code service.transport.worker-threads} and
+     *                   {@code service.transport.worker-queue-capacity}.
+     * @throws IllegalArgumentException if a property is not one of these.
+     */
+    public static EmbeddedCacheNode start(Map<String, ?> properties) throws IOException {
+        Set<String> unknown = properties.keySet().stream().filter(key -> !DEFAULTS.containsKey(key)).collect(Collectors.toSet());
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Unsupported properties for an embedded node: " + unknown);
+        }
+        Map<String, String> settings = new LinkedHashMap<>(DEFAULTS);
+        properties.forEach((key, value) -> settings.put(key, String.valueOf(value)));
+        EmbeddedCacheNode node = new EmbeddedCacheNode(settings);
+        try {
+            node.server.start();
+        } catch (IOException e) {
+            node.close();
+            throw e;
+        }
+        logger.info("Embedded cache node {} started with ring of {} members.", node.localInstance.getNodeIdentifier(),
+                node.cacheRouter.getActiveServerCount());
+        return node;
+    }
+
+    /**
+     * @return The value, or null if the key is not cached.
+     */
+    public Object get(String key) {
+        return Futures.await(getAsync(key));
+    }
+
+    public CompletableFuture<Object> getAsync(String key) {
+        List<ServerInstance> replicas = replicasOf(key);
+        if (replicas.contains(localInstance)) {
+            return CompletableFuture.completedFuture(cache.get(key));
+        }
+        return readFrom(preferLocalReads ? ZonePlacement.preferZone(replicas, localInstance.getZone()) : replicas, 0, key);
+    }
+
+    /**
+     * @return The response of each replica written.
+     */
+    public List<String> set(String key, Object value) {
+        return Futures.await(setAsync(key, value));
+    }
+
+    public CompletableFuture<List<String>> setAsync(String key, Object value) {
+        List<ServerInstance> replicas = replicasOf(key);
+        if (replicas.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No nodes in the ring to write key " + key));
+        }
+        ServerInstance primary = replicas.get(0);
+        if (!primary.equals(localInstance)) {
+            // The primary answers with the response of each replica it wrote
+            return send(primary, Frame.OP_FORWARD_SET, key, encode(value)).handle((reply, error) -> error == null && reply.isOk()
+                    ? ((List<?>) decode(reply.getValue())).stream().map(String::valueOf).collect(Collectors.toList())
+                    : List.of(String.format("Response to server{%s} is {%d}", primary.getNodeIdentifier(),
+                            error != null ? -1 : reply.toHttpStatus())));
+        }
+        cache.set(key, value);
+        List<CompletableFuture<String>> writes = new ArrayList<>();
+        writes.add(CompletableFuture.completedFuture(String.format("Success: Wrote to primary %s (local)", primary.getNodeIdentifier())));
+        ByteBuffer encoded = replicas.size() > 1 ? encode(value) : null;
+        for (ServerInstance replica : replicas.subList(1, replicas.size())) {
+            writes.add(send(replica, Frame.OP_SET, key, encoded.duplicate()).handle((reply, error) ->
+                    String.format("Response to server{%s} is {%d}", replica.getNodeIdentifier(),
+                            error != null ? -1 : reply.toHttpStatus())));
+        }
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> writes.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
+    /**
+     * @return true if this node is the primary for the key, so that its reads and writes stay
+     *         in process.
+     */
+    public boolean owns(String key) {
+        List<ServerInstance> replicas = replicasOf(key);
+        return !replicas.isEmpty() && replicas.get(0).equals(localInstance);
+    }
+
+    /**
+     * Stops the node. Its keys are not handed over: they are lost unless replicated.
+     */
+    @Override
+    public void close() {
+        server.stop();
+        client.close();
+        workers.shutdownNow();
+    }
+
+    /**
+     * @return The nodes storing the key, primary first, placed as on standalone nodes.
+     */
+    private List<ServerInstance> replicasOf(String key) {
+        ServerInstance primary = cacheRouter.getServerInstanceForKey(key);
+        if (primary == null) {
+            return List.of();
+        }
+        return cacheRouter.getReplicaInstances(primary, replicationFactor, zoneAwarePlacement);
+    }
+
+    /**
+     * Reads the key from the given replica, or from the next one if it does not answer.
+     */
+    private CompletableFuture<Object> readFrom(List<ServerInstance> replicas, int index, String key) {
+        if (index == replicas.size()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No replica of key " + key + " answered"));
+        }
+        return send(replicas.get(index), Frame.OP_GET, key, null).handle((reply, error) -> {
+            if (error == null && reply.getStatus() == Frame.STATUS_NOT_FOUND) {
+                return CompletableFuture.completedFuture((Object) null);
+            }
+            if (error == null && reply.isOk()) {
+                return CompletableFuture.completedFuture(decode(reply.getValue()));
+            }
+            return readFrom(replicas, index + 1, key);
+        }).thenCompose(read -> read);
+    }
+
+    private CompletableFuture<Frame> send(ServerInstance peer, byte opcode, String key, ByteBuffer value) {
+        return client.send(peer.getIpAddress(), peer.getPort(), opcode, key, value, requestTimeoutMillis);
+    }
+
+    private CompletableFuture<Frame> handle(Frame request) {
+        if (request.getOpcode() == Frame.OP_PING) {
+            return CompletableFuture.completedFuture(request.reply(Frame.STATUS_OK, null));
+        }
+        // Served on a worker, so that neither the cache lock nor the replica writes hold up the event loop
+        try {
+            return CompletableFuture.supplyAsync(() -> serve(request), workers).thenCompose(reply -> reply);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(request.reply(Frame.STATUS_UNAVAILABLE, null));
+        }
+    }
+
+    private CompletableFuture<Frame> serve(Frame request) {
+        switch (request.getOpcode()) {
+            case Frame.OP_GET: {
+                Object value = cache.get(request.getKey());
+                return CompletableFuture.completedFuture(value == null
+                        ? request.reply(Frame.STATUS_NOT_FOUND, null) : request.reply(Frame.STATUS_OK, encode(value)));
+            }
+            case Frame.OP_SET:
+                cache.set(request.getKey(), decode(request.getValue()));
+                return CompletableFuture.completedFuture(request.reply(Frame.STATUS_OK, null));
+            case Frame.OP_BATCH_SET:
+                FrameCodec.decodeEntries(request.getValue()).forEach((key, value) -> cache.set(key, decode(value)));
+                return CompletableFuture.completedFuture(request.reply(Frame.STATUS_OK, null));
+            case Frame.OP_FORWARD_SET: {
+                CompletableFuture<List<String>> write;
+                try {
+                    write = setAsync(request.getKey(), decode(request.getValue()));
+                } catch (RuntimeException e) {
+                    write = CompletableFuture.failedFuture(e);
+                }
+                return write.handle((responses, error) -> error != null
+                        ? request.error(String.valueOf(error.getMessage()))
+                        : request.reply(Frame.STATUS_OK, encode(responses)));
+            }
+            default:
+                return CompletableFuture.completedFuture(request.error("Opcode " + request.getOpcode() + " is not supported by embedded nodes"));
+        }
+    }
+
+    private ByteBuffer encode(Object value) {
+        try {
+            return ByteBuffer.wrap(objectMapper.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Value cannot be serialised for inter-node transfer", e);
+        }
+    }
+
+    private Object decode(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        try {
+            return objectMapper.readValue(bytes, Object.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Value received from a peer cannot be decoded", e);
+        }
+    }
+}
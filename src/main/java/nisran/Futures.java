@@ -0,0 +1,42 @@
+package nisran;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Blocking access to the futures of the asynchronous request paths, for their synchronous
+ * variants.
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Waits for the future, rethrowing a runtime exception it failed with as is.
+     * @throws CompletionException if it failed with a checked exception.
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        return await(future, CompletionException::new);
+    }
+
+    /**
+     * Waits for the future, rethrowing a runtime exception it failed with as is.
+     * @param checked Wraps a checked exception the future failed with.
+     */
+    public static <T> T await(CompletableFuture<T> future, Function<Throwable, RuntimeException> checked) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw checked.apply(cause == null ? e : cause);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package nisran;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * The hash that places keys and virtual nodes on the consistent hash ring. It is shared by the
+ * router and by clients that route requests themselves, which must place keys identically.
+ */
+public final class RingHash {
+
+    private static final String HASH_ALGORITHM = "MD5";
+
+    // MessageDigest is not thread-safe
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " algorithm not found", e);
+        }
+    });
+
+    private RingHash() {
+    }
+
+    /**
+     * @return The first 4 bytes of the MD5 digest of the input, as a big-endian int.
+     */
+    public static int of(String input) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
+        return ((hashBytes[0] & 0xFF) << 24) |
+               ((hashBytes[1] & 0xFF) << 16) |
+               ((hashBytes[2] & 0xFF) << 8)  |
+               ((hashBytes[3] & 0xFF));
+    }
+
+    /**
+     * The name hashed to place a node's i-th virtual node on the ring.
+     */
+    public static String virtualNodeName(String nodeIdentifier, int i) {
+        return nodeIdentifier + "-VN" + i;
+    }
+
+    /**
+     * Returns a 64-bit FNV-1a hash of the ring's tokens and their owners. Unlike the ring epoch,
+     * which counts the changes seen by one node, it is the same on every node with the same ring,
+     * so clients can compare it across the nodes they talk to.
+     */
+    public static long fingerprint(SortedMap<Integer, ServerInstance> ring) {
+        long hash = 0xcbf29ce484222325L;
+        for (Map.Entry<Integer, ServerInstance> entry : ring.entrySet()) {
+            hash = mix(hash, entry.getKey());
+            for (byte b : entry.getValue().getNodeIdentifier().getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            hash = (hash ^ ((value >>> shift) & 0xFF)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
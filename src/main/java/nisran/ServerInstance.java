@@ -12,15 +12,24 @@ package nisran;
 
 public class ServerInstance {
 
+    /** Service discovery attribute holding the instance's availability zone. */
+    public static final String ZONE_ATTRIBUTE = "AVAILABILITY_ZONE";
+
     //TODO: Change this field to instance id
     private  String serviceId;
     private  String ipAddress;
     private  int port;
+    private  String zone; // null if unknown; not part of the instance's identity
 
     public ServerInstance(String serviceId, String ipAddress, int port) {
+        this(serviceId, ipAddress, port, null);
+    }
+
+    public ServerInstance(String serviceId, String ipAddress, int port, String zone) {
         this.serviceId = serviceId;
         this.ipAddress = ipAddress;
         this.port = port;
+        this.zone = zone;
     }
 
     public String getServiceId() {
@@ -35,6 +44,13 @@ public class ServerInstance {
         return port;
     }
 
+    /**
+     * @return The availability zone the instance runs in, or null if it is not known.
+     */
+    public String getZone() {
+        return zone;
+    }
+
     /**
      * Provides a unique identifier for the node on the hash ring, typically "ip:port".
      * @return String representation of the node (e.g., "192.168.1.10:8080").
@@ -55,8 +71,16 @@ public class ServerInstance {
         return ipAddress.equals(that.ipAddress);
     }
 
+    @Override
+    public int hashCode() {
+        int result = serviceId.hashCode();
+        result = 31 * result + ipAddress.hashCode();
+        result = 31 * result + port;
+        return result;
+    }
+
     @Override
     public String toString() {
-        return "ServerInstance{" + "serviceId='" + serviceId + '\'' + ", ipAddress='" + ipAddress + '\'' + ", port=" + port + '}';
+        return "ServerInstance{" + "serviceId='" + serviceId + '\'' + ", ipAddress='" + ipAddress + '\'' + ", port=" + port + ", zone='" + zone + '\'' + '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package nisran.cache;
+
+/**
+ * Callback interface for observing mutations of an {@link LRUCache}.
+ * Callbacks are invoked while the cache holds its lock, so implementations
+ * must be cheap and must not call back into the cache.
+ */
+public interface CacheListener<K, V> {
+
+    /**
+     * Called after a key that was not present has been written.
+     */
+    default void onInsert(K key, V value) {}
+
+    /**
+     * Called after a key that was not present has been restored as the least recently used entry,
+     * e.g. from a snapshot. Treated as an insert unless overridden.
+     */
+    default void onRestore(K key, V value) {
+        onInsert(key, value);
+    }
+
+    /**
+     * Called after the value of a key that was already present has been replaced.
+     */
+    default void onUpdate(K key, V oldValue, V newValue) {}
+
+    /**
+     * Called after a key has been explicitly removed from the cache.
+     */
+    default void onRemove(K key, V value) {}
+
+    /**
+     * Called after a key that was not in memory has been removed, e.g. to drop it from a tier
+     * that may hold it elsewhere.
+     */
+    default void onRemoveAbsent(K key) {}
+
+    /**
+     * Called after the least recently used key has been evicted to make room.
+     */
+    default void onEvict(K key, V value) {}
+}
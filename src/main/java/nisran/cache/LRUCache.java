@@ -1,43 +1,423 @@
 package nisran.cache;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class LRUCache<K, V> {
+
+    // Entries copied by a snapshot per acquisition of the lock
+    private static final int SNAPSHOT_CHUNK = 1024;
+
     private final int capacity;
-    protected final LinkedList<K> list;
-    protected final HashMap<K, V> dict;
+    private final HashMap<K, Entry<K, V>> dict;
+    private Entry<K, V> head; // Most recently used
+    private Entry<K, V> tail; // Least recently used
+    private final List<CacheListener<K, V>> listeners;
+    private final List<Function<K, V>> missLoaders;
+    private final HashMap<K, Load<V>> loads; // Misses being loaded without the lock
+
+    private final ReentrantLock snapshotLock = new ReentrantLock(); // One snapshot at a time
+    private long snapshotEpoch; // Incremented for every snapshot
+    private SnapshotCopy<K, V> activeSnapshot; // The snapshot being copied, if any
+
+    private static final class Entry<K, V> {
+        private final K key;
+        private V value;
+        private Entry<K, V> prev;
+        private Entry<K, V> next;
+        private long copiedIn; // Epoch of the last snapshot that holds this entry, or created during
+
+        private Entry(K key, V value, long copiedIn) {
+            this.key = key;
+            this.value = value;
+            this.copiedIn = copiedIn;
+        }
+    }
+
+    private static final class SnapshotCopy<K, V> {
+        private final List<Map.Entry<K, V>> entries;
+        private Entry<K, V> cursor; // Next entry to copy, in recency order
+
+        private SnapshotCopy(int expectedSize, Entry<K, V> cursor) {
+            this.entries = new ArrayList<>(expectedSize);
+            this.cursor = cursor;
+        }
+    }
+
+    private static final class Load<V> {
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private boolean stale; // The key was written or removed while it was loaded
+    }
 
     public LRUCache(int capacity) {
         this.capacity = capacity;
-        this.list = new LinkedList<>();
         this.dict = new HashMap<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.missLoaders = new CopyOnWriteArrayList<>();
+        this.loads = new HashMap<>();
     }
 
     public V get(K key) {
-        if (!dict.containsKey(key)) {
-            return null;
+        Load<V> load;
+        boolean loading;
+        synchronized (this) {
+            Entry<K, V> entry = dict.get(key);
+            if (entry != null) {
+                touch(entry);
+                return entry.value;
+            }
+            if (missLoaders.isEmpty()) {
+                return null;
+            }
+            // Concurrent misses of a key share one load
+            load = loads.get(key);
+            loading = load == null;
+            if (loading) {
+                load = new Load<>();
+                loads.put(key, load);
+            }
         }
-        
-        // Move the key to the front of the list (most recently used)
-        list.remove(key);
-        list.addFirst(key);
-        
-        return dict.get(key);
+        return loading ? load(key, load) : load.result.join();
     }
 
-    public void set(K key, V value) {
-        if (dict.containsKey(key)) {
+    public synchronized void set(K key, V value) {
+        markLoadStale(key);
+        Entry<K, V> entry = dict.get(key);
+        if (entry != null) {
             // Update existing key
-            list.remove(key);
-        } else if (dict.size() >= capacity) {
+            copyBeforeChange(entry);
+            unlink(entry);
+            V oldValue = entry.value;
+            entry.value = value;
+            linkFirst(entry);
+            for (CacheListener<K, V> listener : listeners) {
+                listener.onUpdate(key, oldValue, value);
+            }
+            return;
+        }
+        if (dict.size() >= capacity) {
             // Remove least recently used element
-            K lruKey = list.removeLast();
-            dict.remove(lruKey);
+            Entry<K, V> lru = tail;
+            copyBeforeChange(lru);
+            unlink(lru);
+            dict.remove(lru.key);
+            for (CacheListener<K, V> listener : listeners) {
+                listener.onEvict(lru.key, lru.value);
+            }
+        }
+
+        // Add new key-value pair; a snapshot being copied was taken before it existed
+        entry = new Entry<>(key, value, snapshotEpoch);
+        linkFirst(entry);
+        dict.put(key, entry);
+        for (CacheListener<K, V> listener : listeners) {
+            listener.onInsert(key, value);
+        }
+    }
+
+    /**
+     * Sets a value only if the key is not present, without touching the recency of an existing key.
+     * A key the miss loaders find counts as present, and is loaded.
+     * @return true if the value was set.
+     */
+    public boolean setIfAbsent(K key, V value) {
+        synchronized (this) {
+            if (dict.containsKey(key)) {
+                return false;
+            }
+            if (missLoaders.isEmpty()) {
+                set(key, value);
+                return true;
+            }
+        }
+        if (get(key) != null) {
+            return false;
+        }
+        synchronized (this) {
+            if (dict.containsKey(key)) {
+                return false;
+            }
+            set(key, value);
+            return true;
+        }
+    }
+
+    /**
+     * Inserts a batch of entries, in order, each as the least recently used entry, under a single
+     * acquisition of the lock. An entry is inserted only if its key is absent and {@code admit}
+     * accepts it; the batch stops once the cache is full. Batches restored from the most to the
+     * least recently used thus keep their order without displacing anything written since.
+     * @param admit Called under the lock for each absent key, e.g. to claim it from its source.
+     * @return The number of entries inserted, or -1 if the cache filled up.
+     */
+    public synchronized int restoreAll(Map<K, V> entries, Predicate<K> admit) {
+        int inserted = 0;
+        for (Map.Entry<K, V> restored : entries.entrySet()) {
+            K key = restored.getKey();
+            if (dict.size() >= capacity) {
+                return -1;
+            }
+            if (dict.containsKey(key) || !admit.test(key)) {
+                continue;
+            }
+            Entry<K, V> entry = new Entry<>(key, restored.getValue(), snapshotEpoch);
+            linkLast(entry);
+            dict.put(key, entry);
+            for (CacheListener<K, V> listener : listeners) {
+                listener.onRestore(key, entry.value);
+            }
+            inserted++;
+        }
+        return inserted;
+    }
+
+    /**
+     * Adds a function consulted when a key is absent, e.g. to load from a snapshot that is still
+     * being restored; the first non-null result is cached as if it had been set. Called without
+     * the cache lock: a value loaded for a key that is written or removed in the meantime is
+     * discarded.
+     */
+    public void addMissLoader(Function<K, V> missLoader) {
+        missLoaders.add(missLoader);
+    }
+
+    public void removeMissLoader(Function<K, V> missLoader) {
+        missLoaders.remove(missLoader);
+    }
+
+    /**
+     * Runs the miss loaders without the lock and caches what they found, unless the key was
+     * written or removed in the meantime.
+     * @return The value of the key once loaded.
+     */
+    private V load(K key, Load<V> load) {
+        V loaded = null;
+        try {
+            for (Function<K, V> loader : missLoaders) {
+                loaded = loader.apply(key);
+                if (loaded != null) {
+                    break;
+                }
+            }
+        } finally {
+            V result;
+            synchronized (this) {
+                loads.remove(key, load);
+                Entry<K, V> entry = dict.get(key);
+                if (entry == null && loaded != null && !load.stale) {
+                    set(key, loaded);
+                    result = loaded;
+                } else {
+                    result = entry == null ? null : entry.value;
+                }
+            }
+            load.result.complete(result);
+        }
+        return load.result.join();
+    }
+
+    private void markLoadStale(K key) {
+        Load<V> load = loads.get(key);
+        if (load != null) {
+            load.stale = true;
+        }
+    }
+
+    /**
+     * Removes a key from the cache. A key that is not in memory is not loaded: the listeners are
+     * told of its removal, so that a tier holding it drops it.
+     * @return The removed value, or null if the key was not in memory.
+     */
+    public synchronized V remove(K key) {
+        markLoadStale(key);
+        if (!dict.containsKey(key)) {
+            for (CacheListener<K, V> listener : listeners) {
+                listener.onRemoveAbsent(key);
+            }
+            return null;
+        }
+        Entry<K, V> entry = dict.remove(key);
+        copyBeforeChange(entry);
+        unlink(entry);
+        for (CacheListener<K, V> listener : listeners) {
+            listener.onRemove(key, entry.value);
+        }
+        return entry.value;
+    }
+
+    /**
+     * Removes a key only if it is in memory and still holds the given value, e.g. one found in a
+     * snapshot, so that a write made since is kept.
+     * @return Whether the key was removed.
+     */
+    public synchronized boolean remove(K key, V expected) {
+        Entry<K, V> entry = dict.get(key);
+        if (entry == null || entry.value != expected) {
+            return false;
+        }
+        remove(key);
+        return true;
+    }
+
+    /**
+     * Returns the values of those keys that are in memory, without touching recency or loading
+     * the others.
+     */
+    public synchronized Map<K, V> peek(Collection<K> keys) {
+        Map<K, V> values = new LinkedHashMap<>();
+        for (K key : keys) {
+            Entry<K, V> entry = dict.get(key);
+            if (entry != null) {
+                values.put(key, entry.value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Runs the action while no entry can change and no listener is being called, e.g. to swap
+     * state that the listeners maintain.
+     */
+    public synchronized void exclusively(Runnable action) {
+        action.run();
+    }
+
+    public synchronized int size() {
+        return dict.size();
+    }
+
+    /**
+     * Returns a point-in-time copy of the cache contents without touching recency.
+     * @return The entries ordered from most recently used to least recently used.
+     * @see #snapshot(Runnable)
+     */
+    public Map<K, V> snapshot() {
+        return snapshot(() -> { });
+    }
+
+    /**
+     * Returns a copy of the cache contents as they were when the copy started, without touching
+     * recency, and without holding the lock for more than {@value #SNAPSHOT_CHUNK} entries at a
+     * time: the entries are copied in recency order in chunks, and an entry not yet copied that
+     * is used, updated, removed or evicted in between is copied first, as it was. Such entries
+     * come earlier in the copy than they were in the cache. Snapshots are taken one at a time.
+     * @param atStart Run while the cache is locked, at the instant the copy is of.
+     * @return The entries ordered from most recently used to least recently used.
+     */
+    public Map<K, V> snapshot(Runnable atStart) {
+        snapshotLock.lock();
+        try {
+            SnapshotCopy<K, V> copy;
+            synchronized (this) {
+                snapshotEpoch++;
+                copy = new SnapshotCopy<>(Math.min(capacity, dict.size() + SNAPSHOT_CHUNK), head);
+                activeSnapshot = copy;
+                atStart.run();
+            }
+            boolean copied = false;
+            while (!copied) {
+                synchronized (this) {
+                    Entry<K, V> entry = copy.cursor;
+                    for (int i = 0; entry != null && i < SNAPSHOT_CHUNK; i++, entry = entry.next) {
+                        copyBeforeChange(entry);
+                    }
+                    copy.cursor = entry;
+                    copied = entry == null;
+                }
+            }
+            Map<K, V> contents = new LinkedHashMap<>(copy.entries.size() * 2);
+            for (Map.Entry<K, V> entry : copy.entries) {
+                contents.put(entry.getKey(), entry.getValue());
+            }
+            return contents;
+        } finally {
+            synchronized (this) {
+                activeSnapshot = null;
+            }
+            snapshotLock.unlock();
+        }
+    }
+
+    public void addListener(CacheListener<K, V> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(CacheListener<K, V> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Moves the entry to the front of the list (most recently used).
+     */
+    private void touch(Entry<K, V> entry) {
+        if (entry != head) {
+            copyBeforeChange(entry);
+            unlink(entry);
+            linkFirst(entry);
+        }
+    }
+
+    /**
+     * Adds the entry, as it is now, to the snapshot being copied if it is not in it yet.
+     */
+    private void copyBeforeChange(Entry<K, V> entry) {
+        SnapshotCopy<K, V> copy = activeSnapshot;
+        if (copy != null && entry.copiedIn != snapshotEpoch) {
+            copy.entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.key, entry.value));
+            entry.copiedIn = snapshotEpoch;
+        }
+    }
+
+    private void linkFirst(Entry<K, V> entry) {
+        entry.prev = null;
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        }
+        head = entry;
+        if (tail == null) {
+            tail = entry;
+        }
+    }
+
+    private void linkLast(Entry<K, V> entry) {
+        entry.next = null;
+        entry.prev = tail;
+        if (tail != null) {
+            tail.next = entry;
+        }
+        tail = entry;
+        if (head == null) {
+            head = entry;
+        }
+    }
+
+    private void unlink(Entry<K, V> entry) {
+        SnapshotCopy<K, V> copy = activeSnapshot;
+        if (copy != null && copy.cursor == entry) {
+            copy.cursor = entry.next; // The snapshot resumes after the entry, which it has copied
+        }
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            head = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        } else {
+            tail = entry.prev;
         }
-        
-        // Add new key-value pair
-        list.addFirst(key);
-        dict.put(key, value);
+        entry.prev = null;
+        entry.next = null;
     }
-} 
\ No newline at end of file
+}
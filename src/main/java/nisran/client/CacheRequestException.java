@@ -0,0 +1,28 @@
+package nisran.client;
+
+/**
+ * A cache request that the cluster did not answer, or answered with an error.
+ */
+public class CacheRequestException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public CacheRequestException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public CacheRequestException(String message, Throwable cause) {
+        super(message, cause);
+        this.statusCode = 0;
+    }
+
+    /**
+     * @return The HTTP status of the answer, or 0 if no node answered.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,330 @@
+package nisran.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nisran.Futures;
+import nisran.router.Deadline;
+import nisran.router.Topology;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache client that sends each request straight to the node owning the key, saving the hop
+ * through a coordinating node that a request to an arbitrary node takes.
+ *
+ * The client fetches the ring from {@code /api/cluster/topology} of a seed node and places keys
+ * with the router's hash. Connections to each node are kept alive and reused. Every cache
+ * response names the ring of the node that answered in the {@link Topology#RING_HEADER} header;
+ * when it differs from the client's, the topology is fetched again in the background, once
+ * however many responses report it. When the owner cannot be reached or answers 503, the client
+ * fetches the topology and retries once, at the new owner or, if ownership has not moved, at
+ * another node, which forwards the request.
+ */
+public class SmartClient implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmartClient.class);
+    private static final TypeReference<List<String>> RESPONSES = new TypeReference<>() {};
+
+    private final List<String> seeds; // host:port
+    private final Duration timeout;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile Topology topology;
+    private final AtomicReference<CompletableFuture<Topology>> refreshing = new AtomicReference<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    public SmartClient(List<String> seeds) {
+        this(seeds, Duration.ofSeconds(2));
+    }
+
+    /**
+     * @param seeds Nodes to fetch the topology from, as {@code host:port}.
+     * @param timeout Bounds each attempt of a request, and is passed on as its deadline.
+     */
+    public SmartClient(List<String> seeds, Duration timeout) {
+        if (seeds.isEmpty()) {
+            throw new IllegalArgumentException("At least one seed node is required");
+        }
+        this.seeds = List.copyOf(seeds);
+        this.timeout = timeout;
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "SmartClient-Worker");
+            t.setDaemon(true);
+            return t;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1) // Kept-alive connections, pooled per node
+                .connectTimeout(timeout)
+                .executor(executor)
+                .build();
+    }
+
+    // ---- Cache operations ----
+
+    /**
+     * @return The value, or null if the key is not cached.
+     */
+    public Object get(String key) {
+        return Futures.await(getAsync(key), SmartClient::failed);
+    }
+
+    public CompletableFuture<Object> getAsync(String key) {
+        return call(key, uri -> request(uri).GET().build(), response -> {
+            if (response.statusCode() == 404) {
+                return null;
+            }
+            return objectMapper.readValue(response.body(), Object.class);
+        });
+    }
+
+    /**
+     * @return The response of each replica, as answered by the HTTP API.
+     */
+    public List<String> set(String key, Object value) {
+        return Futures.await(setAsync(key, value), SmartClient::failed);
+    }
+
+    public CompletableFuture<List<String>> setAsync(String key, Object value) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new CacheRequestException("Value cannot be encoded: " + e.getMessage(), e));
+        }
+        return call(key, uri -> request(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build(), response -> objectMapper.readValue(response.body(), RESPONSES));
+    }
+
+    // ---- Routing ----
+
+    private interface ResponseReader<T> {
+        T read(HttpResponse<byte[]> response) throws IOException;
+    }
+
+    private <T> CompletableFuture<T> call(String key, Function<URI, HttpRequest> request, ResponseReader<T> reader) {
+        requests.increment();
+        return currentTopology().thenCompose(routedWith -> {
+            String target = addressOf(routedWith.ownerOf(key));
+            return send(target, key, request).handle((response, error) -> {
+                if (error == null && response.statusCode() != 503) {
+                    return CompletableFuture.completedFuture(answer(target, response, routedWith, reader));
+                }
+                // The owner is down, starting or overloaded, or no longer the owner
+                logger.debug("Retrying {} after failure at {}: {}", key, target,
+                        error != null ? error.getMessage() : "HTTP 503");
+                retries.increment();
+                return refresh(null).thenCompose(fresh -> {
+                    String owner = addressOf(fresh.ownerOf(key));
+                    String retryTarget = owner.equals(target) ? anotherNode(fresh, target) : owner;
+                    return send(retryTarget, key, request)
+                            .thenApply(retried -> answer(retryTarget, retried, fresh, reader));
+                });
+            }).thenCompose(Function.identity());
+        });
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> send(String address, String key, Function<URI, HttpRequest> request) {
+        URI uri = URI.create("http://" + address + "/api/cache/"
+                + URLEncoder.encode(key, StandardCharsets.UTF_8).replace("+", "%20"));
+        return httpClient.sendAsync(request.apply(uri), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private HttpRequest.Builder request(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header(Deadline.HEADER, Long.toString(timeout.toMillis()));
+    }
+
+    private <T> T answer(String address, HttpResponse<byte[]> response, Topology routedWith, ResponseReader<T> reader) {
+        String ring = response.headers().firstValue(Topology.RING_HEADER).orElse(null);
+        if (ring != null && !ring.equals(Long.toString(routedWith.getFingerprint()))) {
+            refresh(address);
+        }
+        int status = response.statusCode();
+        if (status != 200 && status != 404) {
+            throw new CacheRequestException("HTTP " + status + " from " + address + ": "
+                    + new String(response.body(), StandardCharsets.UTF_8), status);
+        }
+        try {
+            return reader.read(response);
+        } catch (IOException e) {
+            throw new CacheRequestException("Unreadable response from " + address + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String addressOf(Topology.Node node) {
+        // With an empty ring any node can take the request, and fails it as the router would
+        return node != null ? node.getHost() + ":" + node.getPort() : seeds.get(0);
+    }
+
+    private String anotherNode(Topology current, String address) {
+        for (String candidate : candidates(current, null)) {
+            if (!candidate.equals(address)) {
+                return candidate;
+            }
+        }
+        return address;
+    }
+
+    // ---- Topology ----
+
+    /**
+     * @return The topology requests are routed with, fetched first if there is none yet.
+     */
+    public Topology getTopology() {
+        return Futures.await(currentTopology(), SmartClient::failed);
+    }
+
+    private CompletableFuture<Topology> currentTopology() {
+        Topology current = topology;
+        return current != null ? CompletableFuture.completedFuture(current) : refresh(null);
+    }
+
+    /**
+     * Fetches the topology, from the given node first if not null, then from the known nodes and
+     * the seeds. Concurrent callers share one fetch.
+     */
+    private CompletableFuture<Topology> refresh(String preferred) {
+        CompletableFuture<Topology> fetch = new CompletableFuture<>();
+        while (!refreshing.compareAndSet(null, fetch)) {
+            CompletableFuture<Topology> inFlight = refreshing.get();
+            if (inFlight != null) {
+                return inFlight;
+            }
+        }
+        refreshes.increment();
+        fetchFrom(candidates(topology, preferred).iterator(), null).whenComplete((fetched, error) -> {
+            if (fetched != null) {
+                topology = fetched;
+                logger.debug("Routing with ring {} of {} nodes.", fetched.getFingerprint(), fetched.getNodes().size());
+            }
+            // Cleared before completing, so a change seen by a waiter starts a new fetch
+            refreshing.set(null);
+            if (error != null) {
+                fetch.completeExceptionally(error);
+            } else {
+                fetch.complete(fetched);
+            }
+        });
+        return fetch;
+    }
+
+    private CompletableFuture<Topology> fetchFrom(Iterator<String> candidates, Throwable lastError) {
+        if (!candidates.hasNext()) {
+            return CompletableFuture.failedFuture(new CacheRequestException("No node served the topology", lastError));
+        }
+        String address = candidates.next();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://" + address + "/api/cluster/topology"))
+                .timeout(timeout)
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new CacheRequestException("HTTP " + response.statusCode() + " for the topology from " + address,
+                        response.statusCode());
+            }
+            try {
+                return objectMapper.readValue(response.body(), Topology.class);
+            } catch (IOException e) {
+                throw new CacheRequestException("Unreadable topology from " + address + ": " + e.getMessage(), e);
+            }
+        }).handle((fetched, error) -> fetched != null
+                ? CompletableFuture.completedFuture(fetched)
+                : fetchFrom(candidates, error)).thenCompose(Function.identity());
+    }
+
+    private Set<String> candidates(Topology current, String preferred) {
+        Set<String> candidates = new LinkedHashSet<>();
+        if (preferred != null) {
+            candidates.add(preferred);
+        }
+        if (current != null) {
+            current.getNodes().forEach(node -> candidates.add(addressOf(node)));
+        }
+        candidates.addAll(seeds);
+        return candidates;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Topology current = topology;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("requests", requests.sum());
+        metrics.put("retries", retries.sum());
+        metrics.put("refreshes", refreshes.sum());
+        metrics.put("nodes", current != null ? current.getNodes().size() : 0);
+        metrics.put("ringFingerprint", current != null ? current.getFingerprint() : null);
+        return metrics;
+    }
+
+    private static RuntimeException failed(Throwable cause) {
+        return new CacheRequestException("Request failed: " + cause.getMessage(), cause);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Usage: {@code SmartClient host:port[,host:port...] get <key> | set <key> <json> | topology}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SmartClient host:port[,host:port...] get <key> | set <key> <json> | topology");
+            System.exit(2);
+        }
+        ObjectMapper json = new ObjectMapper();
+        try (SmartClient client = new SmartClient(Arrays.asList(args[0].split(",")))) {
+            switch (args[1]) {
+                case "get":
+                    System.out.println(json.writeValueAsString(client.get(args[2])));
+                    break;
+                case "set":
+                    System.out.println(client.set(args[2], json.readValue(args[3], Object.class)));
+                    break;
+                case "topology":
+                    Topology current = client.getTopology();
+                    List<String> nodes = new ArrayList<>();
+                    current.getNodes().forEach(node -> nodes.add(node.getId() + " (" + node.getTokens().size() + " tokens)"));
+                    System.out.println("Ring " + current.getFingerprint() + ": " + nodes);
+                    break;
+                default:
+                    System.err.println("Unknown command " + args[1]);
+                    System.exit(2);
+            }
+            System.out.println(client.getMetrics());
+        }
+    }
+}
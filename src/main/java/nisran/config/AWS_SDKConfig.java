@@ -48,6 +48,410 @@ public class AWS_SDKConfig {
     @Getter 
     private int quorumWrite;
 
+    @Value("${service.anti-entropy.enabled:true}")
+    @Getter
+    private boolean antiEntropyEnabled;
+
+    @Value("${service.anti-entropy.interval:300}") // Seconds between anti-entropy rounds
+    @Getter
+    private int antiEntropyIntervalSeconds;
+
+    @Value("${service.anti-entropy.tree-depth:10}") // 2^depth leaves per token range, must match across the cluster
+    @Getter
+    private int antiEntropyTreeDepth;
+
+    @Value("${service.replication.async.enabled:false}") // Ack after the local write and replicate in the background
+    @Getter
+    private boolean asyncReplicationEnabled;
+
+    @Value("${service.replication.async.queue-capacity:10000}") // Distinct keys pending per peer
+    @Getter
+    private int replicationQueueCapacity;
+
+    @Value("${service.replication.async.batch-size:256}")
+    @Getter
+    private int replicationBatchSize;
+
+    @Value("${service.replication.async.flush-interval-ms:20}")
+    @Getter
+    private int replicationFlushIntervalMillis;
+
+    @Value("${service.replication.async.offer-timeout-ms:50}") // How long a writer waits on a full queue
+    @Getter
+    private int replicationOfferTimeoutMillis;
+
+    @Value("${service.transport.enabled:false}") // Binary inter-node protocol instead of JSON over HTTP
+    @Getter
+    private boolean transportEnabled;
+
+    @Value("${service.transport.port:7070}") // Must be at the same offset from server.port on every node
+    @Getter
+    private int transportPort;
+
+    @Value("${service.transport.connect-timeout-ms:1000}")
+    @Getter
+    private int transportConnectTimeoutMillis;
+
+    @Value("${service.transport.request-timeout-ms:2000}")
+    @Getter
+    private int transportRequestTimeoutMillis;
+
+    @Value("${service.transport.worker-threads:16}") // Threads serving inter-node requests off the event loop
+    @Getter
+    private int transportWorkerThreads;
+
+    @Value("${service.transport.worker-queue-capacity:1024}") // Requests waiting for a worker before peers are told to back off
+    @Getter
+    private int transportWorkerQueueCapacity;
+
+    @Value("${service.lease.enabled:false}") // Linearizable reads served by the lease holder of a token range
+    @Getter
+    private boolean leaseEnabled;
+
+    @Value("${service.lease.duration-ms:3000}")
+    @Getter
+    private long leaseDurationMillis;
+
+    @Value("${service.lease.drift-margin-ms:200}") // Subtracted from the holder's view of the lease
+    @Getter
+    private long leaseDriftMarginMillis;
+
+    @Value("${service.read.timeout-ms:2000}") // Upper bound on a single peer read
+    @Getter
+    private int readTimeoutMillis;
+
+    @Value("${service.read.coalesce:true}") // Concurrent reads of a key share one remote read
+    @Getter
+    private boolean readCoalescingEnabled;
+
+    @Value("${service.hedge.enabled:false}") // Send a second read to the next replica when the first is slow
+    @Getter
+    private boolean hedgeEnabled;
+
+    @Value("${service.hedge.delay-ms:50}") // Used until enough latency samples exist for the percentile
+    @Getter
+    private long hedgeDelayMillis;
+
+    @Value("${service.hedge.delay-percentile:95}") // 0 disables the dynamic delay
+    @Getter
+    private double hedgeDelayPercentile;
+
+    @Value("${service.hedge.budget-percent:10}") // Extra reads hedging may add, relative to all reads
+    @Getter
+    private double hedgeBudgetPercent;
+
+    @Value("${service.replica-selection.enabled:false}") // Rank replicas by latency and load for reads
+    @Getter
+    private boolean replicaSelectionEnabled;
+
+    @Value("${service.replica-selection.ewma-alpha:0.2}") // Weight of the newest latency sample
+    @Getter
+    private double replicaSelectionAlpha;
+
+    @Value("${service.replica-selection.badness-threshold:0.2}") // How much worse the primary must score before it is bypassed
+    @Getter
+    private double replicaSelectionBadnessThreshold;
+
+    @Value("${service.replica-selection.reset-interval:600}") // Seconds between clearing latency averages
+    @Getter
+    private int replicaSelectionResetIntervalSeconds;
+
+    @Value("${service.failure-detector.enabled:true}") // Suspect unresponsive peers before service discovery does
+    @Getter
+    private boolean failureDetectorEnabled;
+
+    @Value("${service.failure-detector.ping-interval-ms:1000}") // Quiet peers are pinged this often
+    @Getter
+    private int failureDetectorPingIntervalMillis;
+
+    @Value("${service.failure-detector.phi-threshold:8}")
+    @Getter
+    private double failureDetectorPhiThreshold;
+
+    @Value("${service.failure-detector.min-std-deviation-ms:200}")
+    @Getter
+    private double failureDetectorMinStdDeviationMillis;
+
+    @Value("${service.failure-detector.acceptable-pause-ms:1000}") // Tolerated silence on top of the usual interval
+    @Getter
+    private long failureDetectorAcceptablePauseMillis;
+
+    @Value("${service.failure-detector.ring-exclusion-ms:10000}") // Suspicion needed before a peer leaves the ring
+    @Getter
+    private long failureDetectorRingExclusionMillis;
+
+    @Value("${service.circuit-breaker.failure-threshold:5}") // Consecutive failures that open a peer's breaker
+    @Getter
+    private int circuitBreakerFailureThreshold;
+
+    @Value("${service.circuit-breaker.open-ms:5000}") // Time before a probe is let through an open breaker
+    @Getter
+    private long circuitBreakerOpenMillis;
+
+    @Value("${service.deadline.default-ms:5000}") // Deadline of requests that arrive without one
+    @Getter
+    private long defaultDeadlineMillis;
+
+    @Value("${service.deadline.max-ms:30000}") // Upper bound on a deadline asked for by a caller
+    @Getter
+    private long maxDeadlineMillis;
+
+    @Value("${service.write.timeout-ms:2000}") // Upper bound on a single replica write
+    @Getter
+    private int writeTimeoutMillis;
+
+    @Value("${service.http.connect-timeout-ms:1000}")
+    @Getter
+    private int httpConnectTimeoutMillis;
+
+    @Value("${service.http.client-threads:8}") // Run completions of async peer requests; they must never block
+    @Getter
+    private int httpClientThreads;
+
+    @Value("${service.limiter.enabled:false}") // Shed cache requests beyond an adaptive concurrency limit
+    @Getter
+    private boolean limiterEnabled;
+
+    @Value("${service.limiter.initial-limit:20}")
+    @Getter
+    private int limiterInitialLimit;
+
+    @Value("${service.limiter.min-limit:4}")
+    @Getter
+    private int limiterMinLimit;
+
+    @Value("${service.limiter.max-limit:150}") // Client requests in flight at most
+    @Getter
+    private int limiterMaxLimit;
+
+    @Value("${service.limiter.internal-max-limit:50}") // Requests from other routers, limited separately
+    @Getter
+    private int limiterInternalMaxLimit;
+
+    @Value("${service.limiter.retry-after-seconds:1}")
+    @Getter
+    private int limiterRetryAfterSeconds;
+
+    @Value("${service.hot-keys.enabled:false}") // Replicate keys read above the threshold to every node
+    @Getter
+    private boolean hotKeysEnabled;
+
+    @Value("${service.hot-keys.window-seconds:10}")
+    @Getter
+    private int hotKeysWindowSeconds;
+
+    @Value("${service.hot-keys.threshold-per-second:100}") // Cluster-wide reads per second
+    @Getter
+    private double hotKeysThresholdPerSecond;
+
+    @Value("${service.hot-keys.max-keys:16}") // Per primary
+    @Getter
+    private int hotKeysMaxKeys;
+
+    @Value("${service.hot-keys.sketch-capacity:256}") // Keys counted per node
+    @Getter
+    private int hotKeysSketchCapacity;
+
+    @Value("${service.near-cache.enabled:false}") // Cache values of non-owned keys read through this node
+    @Getter
+    private boolean nearCacheEnabled;
+
+    @Value("${service.near-cache.max-entries:1024}")
+    @Getter
+    private int nearCacheMaxEntries;
+
+    @Value("${service.near-cache.max-staleness-ms:500}") // Upper bound on how old a served value can be
+    @Getter
+    private int nearCacheMaxStalenessMillis;
+
+    @Value("${service.near-cache.invalidation-interval-ms:20}") // Batching of owner invalidation broadcasts
+    @Getter
+    private int nearCacheInvalidationIntervalMillis;
+
+    @Value("${service.bloom.enabled:false}") // Keep and gossip filters of the keys each node stores
+    @Getter
+    private boolean bloomEnabled;
+
+    @Value("${service.bloom.answer-misses:false}") // Answer reads the filters rule out as misses; may miss others' recent writes
+    @Getter
+    private boolean bloomAnswerMisses;
+
+    @Value("${service.bloom.expected-keys:100000}") // Filter size; keep close to the cache capacity
+    @Getter
+    private long bloomExpectedKeys;
+
+    @Value("${service.bloom.false-positive-rate:0.01}") // At the expected number of keys
+    @Getter
+    private double bloomFalsePositiveRate;
+
+    @Value("${service.bloom.gossip-interval-ms:1000}")
+    @Getter
+    private int bloomGossipIntervalMillis;
+
+    @Value("${service.bloom.max-age-ms:5000}") // Older peer filters are not trusted
+    @Getter
+    private int bloomMaxAgeMillis;
+
+    @Value("${service.zone.name:}") // Overrides the availability zone from ECS task metadata
+    @Getter
+    private String zoneName;
+
+    @Value("${service.zone.aware-placement:false}") // Spread each key's replicas across zones; same on all nodes
+    @Getter
+    private boolean zoneAwarePlacement;
+
+    @Value("${service.zone.prefer-local-reads:false}") // Read from a replica in this node's zone first
+    @Getter
+    private boolean zonePreferLocalReads;
+
+    @Value("${service.gossip.enabled:false}") // SWIM membership instead of polling Cloud Map
+    @Getter
+    private boolean gossipEnabled;
+
+    @Value("${service.gossip.seeds:}") // Comma-separated host[:port]; empty to seed from Cloud Map
+    @Getter
+    private String gossipSeeds;
+
+    @Value("${service.gossip.interval-ms:500}") // Protocol period
+    @Getter
+    private int gossipIntervalMillis;
+
+    @Value("${service.gossip.ack-timeout-ms:200}")
+    @Getter
+    private int gossipAckTimeoutMillis;
+
+    @Value("${service.gossip.indirect-probes:3}") // Members asked to ping a target that did not ack
+    @Getter
+    private int gossipIndirectProbes;
+
+    @Value("${service.gossip.suspect-timeout-ms:3000}") // Time a suspect has to refute before it is dead
+    @Getter
+    private int gossipSuspectTimeoutMillis;
+
+    @Value("${service.gossip.max-piggyback:8}") // Membership updates per message
+    @Getter
+    private int gossipMaxPiggyback;
+
+    @Value("${service.gossip.sync-interval-seconds:30}") // Full member list exchange
+    @Getter
+    private int gossipSyncIntervalSeconds;
+
+    @Value("${service.discovery.provider:cloud-map}") // cloud-map, static or file
+    @Getter
+    private String discoveryProvider;
+
+    @Value("${service.discovery.static.members:}") // Comma-separated host:port[@zone], this node included
+    @Getter
+    private String discoveryStaticMembers;
+
+    @Value("${service.discovery.file.path:members.txt}") // One host:port[@zone] per line, watched for changes
+    @Getter
+    private String discoveryFilePath;
+
+    @Value("${service.discovery.local-host:127.0.0.1}") // Address of this node for the static and file providers
+    @Getter
+    private String discoveryLocalHost;
+
+    @Value("${service.readiness.warm-up:false}") // Pull replicated ranges from their primaries before becoming ready
+    @Getter
+    private boolean readinessWarmUp;
+
+    @Value("${service.readiness.warm-up-timeout-seconds:60}") // Become ready anyway after this long
+    @Getter
+    private int readinessWarmUpTimeoutSeconds;
+
+    @Value("${service.readiness.check-interval-ms:250}") // How often startup progress is checked
+    @Getter
+    private int readinessCheckIntervalMillis;
+
+    @Value("${service.drain.enabled:false}") // Hand owned keys to their next owners on shutdown
+    @Getter
+    private boolean drainEnabled;
+
+    @Value("${service.drain.timeout-seconds:20}") // Keep below the ECS stop timeout, 30 s by default
+    @Getter
+    private int drainTimeoutSeconds;
+
+    @Value("${service.drain.batch-size:500}") // Entries per handoff request
+    @Getter
+    private int drainBatchSize;
+
+    @Value("${service.persistence.enabled:false}") // Log cache mutations to disk and replay them on startup
+    @Getter
+    private boolean persistenceEnabled;
+
+    @Value("${service.persistence.dir:data}") // Directory of the mutation log
+    @Getter
+    private String persistenceDir;
+
+    @Value("${service.persistence.fsync:interval}") // always, interval or never
+    @Getter
+    private String persistenceFsync;
+
+    @Value("${service.persistence.fsync-interval-ms:1000}") // Between fsyncs with the interval policy
+    @Getter
+    private int persistenceFsyncIntervalMillis;
+
+    @Value("${service.persistence.max-log-bytes:268435456}") // Rewrite the log from the cache beyond this size
+    @Getter
+    private long persistenceMaxLogBytes;
+
+    @Value("${service.persistence.queue-capacity:65536}") // Mutations waiting for the writer before writers block
+    @Getter
+    private int persistenceQueueCapacity;
+
+    @Value("${service.persistence.snapshot.enabled:false}") // Snapshot the cache to disk and restore it on startup
+    @Getter
+    private boolean persistenceSnapshotEnabled;
+
+    @Value("${service.persistence.snapshot.interval-seconds:300}") // Between snapshots
+    @Getter
+    private int persistenceSnapshotIntervalSeconds;
+
+    @Value("${service.disk-tier.enabled:false}") // Keep entries evicted from memory on local disk
+    @Getter
+    private boolean diskTierEnabled;
+
+    @Value("${service.disk-tier.dir:l2}") // Directory of the segment files, wiped on startup
+    @Getter
+    private String diskTierDir;
+
+    @Value("${service.disk-tier.max-bytes:4294967296}") // Disk space of all segments
+    @Getter
+    private long diskTierMaxBytes;
+
+    @Value("${service.disk-tier.segment-bytes:67108864}") // Size of one segment, and of the largest entry
+    @Getter
+    private int diskTierSegmentBytes;
+
+    @Value("${service.disk-tier.compaction-threshold:0.5}") // Compact segments less live than this fraction
+    @Getter
+    private double diskTierCompactionThreshold;
+
+    @Value("${service.disk-tier.queue-capacity:65536}") // Evicted entries waiting for the writer; more are dropped
+    @Getter
+    private int diskTierQueueCapacity;
+
+    @Value("${service.resp.enabled:false}") // Serve Redis protocol clients alongside HTTP
+    @Getter
+    private boolean respEnabled;
+
+    @Value("${service.resp.port:6379}")
+    @Getter
+    private int respPort;
+
+    @Value("${service.resp.max-request-bytes:67108864}") // Largest command a client may send
+    @Getter
+    private int respMaxRequestBytes;
+
+    @Value("${service.resp.max-pipeline:1024}") // Outstanding replies per connection before it is no longer read
+    @Getter
+    private int respMaxPipeline;
+
+    @Value("${service.resp.reclaim-after:1800}") // Seconds an expired or deleted value is kept, so that replicas agree on it
+    @Getter
+    private int respReclaimAfterSeconds;
+
     public String getServiceName() {
         return serviceName;
     }
@@ -1,7 +1,11 @@
 package nisran.config;
 
 import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -26,6 +30,7 @@ public class ServiceDiscoveryConfig {
     }
 
     @Bean
+    @ConditionalOnProperty(name = "service.discovery.provider", havingValue = "cloud-map", matchIfMissing = true)
     public ServiceDiscoveryClient serviceDiscoveryClient() {
         ServiceDiscoveryClientBuilder builder = ServiceDiscoveryClient.builder();
         return builder
@@ -35,6 +40,7 @@ public class ServiceDiscoveryConfig {
     }
 
     @Bean
+    @ConditionalOnProperty(name = "service.discovery.provider", havingValue = "cloud-map", matchIfMissing = true)
     public EcsClient ecsClient() {
         EcsClientBuilder builder = EcsClient.builder();
         return builder
@@ -55,6 +61,16 @@ public class ServiceDiscoveryConfig {
 
     @Bean
     public HttpClient httpClient() {
-        return HttpClient.newHttpClient();
-    }   
+        // Without a connect timeout a dead peer holds a request until the OS gives up on the SYN
+        // Peer requests are asynchronous, so a few threads serve any number of them in flight
+        AtomicInteger threadCount = new AtomicInteger();
+        return HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(awsSdkConfig.getHttpConnectTimeoutMillis()))
+            .executor(Executors.newFixedThreadPool(awsSdkConfig.getHttpClientThreads(), r -> {
+                Thread t = new Thread(r, "HttpClient-Worker-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }))
+            .build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package nisran.controller;
+
+import nisran.router.AntiEntropyService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Peer-facing endpoints used by {@link AntiEntropyService} to compare Merkle trees between replicas.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster/sync")
+public class AntiEntropyController {
+
+    private final AntiEntropyService antiEntropyService;
+
+    @Autowired
+    public AntiEntropyController(AntiEntropyService antiEntropyService) {
+        this.antiEntropyService = antiEntropyService;
+    }
+
+    @PostMapping("/roots")
+    public ResponseEntity<Map<Integer, Long>> roots(@RequestBody List<Integer> tokens) {
+        return ResponseEntity.ok(antiEntropyService.getRoots(tokens));
+    }
+
+    @PostMapping("/{token}/nodes")
+    public ResponseEntity<List<Long>> nodes(@PathVariable int token, @RequestBody List<Integer> indices) {
+        return ResponseEntity.ok(antiEntropyService.getNodes(token, indices));
+    }
+
+    @PostMapping("/{token}/leaves")
+    public ResponseEntity<Map<String, Object>> leaves(@PathVariable int token, @RequestBody List<Integer> leafOffsets) {
+        return ResponseEntity.ok(antiEntropyService.getLeafEntries(token, leafOffsets));
+    }
+}
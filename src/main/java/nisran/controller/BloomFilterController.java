@@ -0,0 +1,41 @@
+package nisran.controller;
+
+import nisran.router.BloomFilterManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Reports Bloom filter statistics and receives peers' filters for {@link BloomFilterManager}.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class BloomFilterController {
+
+    private final BloomFilterManager bloomFilterManager;
+
+    @Autowired
+    public BloomFilterController(BloomFilterManager bloomFilterManager) {
+        this.bloomFilterManager = bloomFilterManager;
+    }
+
+    @GetMapping("/bloom")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(bloomFilterManager.getMetrics());
+    }
+
+    @PostMapping(value = "/bloom", consumes = "application/octet-stream")
+    public ResponseEntity<Void> receive(@RequestParam String source, @RequestBody byte[] filter) {
+        try {
+            bloomFilterManager.receiveFilter(source, filter);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok().build();
+    }
+}
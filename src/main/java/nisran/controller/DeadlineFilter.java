@@ -0,0 +1,67 @@
+package nisran.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import nisran.config.AWS_SDKConfig;
+import nisran.router.Deadline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Sets the deadline of every request from the {@link Deadline#HEADER} header sent by the
+ * caller, or from the configured default, for the duration of the request.
+ */
+@Component
+@Profile("cluster")
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineFilter.class);
+
+    private final AWS_SDKConfig awsConfig;
+
+    @Autowired
+    public DeadlineFilter(AWS_SDKConfig awsConfig) {
+        this.awsConfig = awsConfig;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long timeoutMillis = awsConfig.getDefaultDeadlineMillis();
+        String header = request.getHeader(Deadline.HEADER);
+        if (header != null) {
+            try {
+                timeoutMillis = Math.min(Long.parseLong(header.trim()), awsConfig.getMaxDeadlineMillis());
+            } catch (NumberFormatException e) {
+                response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid " + Deadline.HEADER + " header: " + header);
+                return;
+            }
+        }
+        if (timeoutMillis <= 0) {
+            // The caller has already given up; do not start any work
+            logger.debug("Rejecting {} {}: deadline already exceeded", request.getMethod(), request.getRequestURI());
+            response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(), "Deadline exceeded");
+            return;
+        }
+
+        Deadline.setCurrent(Deadline.after(timeoutMillis));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Deadline.clearCurrent();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package nisran.controller;
+
+import nisran.persistence.DiskTierService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Reports the state of the local disk tier.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class DiskTierController {
+
+    private final DiskTierService diskTierService;
+
+    @Autowired
+    public DiskTierController(DiskTierService diskTierService) {
+        this.diskTierService = diskTierService;
+    }
+
+    @GetMapping("/disk-tier")
+    public ResponseEntity<Map<String, Object>> diskTier() {
+        return ResponseEntity.ok(diskTierService.getMetrics());
+    }
+}
@@ -0,0 +1,42 @@
+package nisran.controller;
+
+import nisran.router.DrainService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Receives departures and key handoffs from draining nodes.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class DrainController {
+
+    private final DrainService drainService;
+
+    @Autowired
+    public DrainController(DrainService drainService) {
+        this.drainService = drainService;
+    }
+
+    @PostMapping("/drain/leaving")
+    public ResponseEntity<Void> leaving(@RequestParam("id") String id) {
+        return drainService.receiveDeparture(id) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping("/drain/handoff")
+    public ResponseEntity<Void> handoff(@RequestBody Map<String, Object> entries) {
+        drainService.receiveHandoff(entries);
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/drain")
+    public ResponseEntity<Map<String, Object>> metrics() {
+        return ResponseEntity.ok(drainService.getMetrics());
+    }
+}
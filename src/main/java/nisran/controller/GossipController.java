@@ -0,0 +1,42 @@
+package nisran.controller;
+
+import nisran.discovery.GossipMember;
+import nisran.discovery.GossipMembershipService;
+import nisran.discovery.GossipMessage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Receives gossip protocol messages and lists the members known to {@link GossipMembershipService}.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class GossipController {
+
+    private final GossipMembershipService gossipMembership;
+
+    @Autowired
+    public GossipController(GossipMembershipService gossipMembership) {
+        this.gossipMembership = gossipMembership;
+    }
+
+    @PostMapping("/gossip")
+    public CompletableFuture<ResponseEntity<GossipMessage>> gossip(@RequestBody GossipMessage message) {
+        if (!gossipMembership.isEnabled()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(503).build());
+        }
+        return gossipMembership.handle(message).thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping("/gossip/members")
+    public ResponseEntity<Collection<GossipMember>> members() {
+        return ResponseEntity.ok(gossipMembership.getMembers());
+    }
+}
@@ -0,0 +1,44 @@
+package nisran.controller;
+
+import nisran.router.HotKeyManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Lists hot keys, and receives read reports and hot key copies from peers for {@link HotKeyManager}.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class HotKeyController {
+
+    private final HotKeyManager hotKeyManager;
+
+    @Autowired
+    public HotKeyController(HotKeyManager hotKeyManager) {
+        this.hotKeyManager = hotKeyManager;
+    }
+
+    @GetMapping("/hot-keys")
+    public ResponseEntity<Map<String, Object>> hotKeys() {
+        return ResponseEntity.ok(hotKeyManager.getHotKeys());
+    }
+
+    @PostMapping("/hot-keys/report")
+    public ResponseEntity<Void> report(@RequestBody Map<String, Long> counts) {
+        hotKeyManager.receiveReport(counts);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/hot-keys/replicate")
+    public ResponseEntity<Void> replicate(@RequestParam String source, @RequestParam boolean full,
+                                          @RequestBody Map<String, Object> entries) {
+        hotKeyManager.receiveCopies(source, entries, full);
+        return ResponseEntity.ok().build();
+    }
+}
@@ -0,0 +1,46 @@
+package nisran.controller;
+
+import nisran.router.LeaseManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Peer-facing endpoints used by {@link LeaseManager} to grant and release partition leases.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class LeaseController {
+
+    private final LeaseManager leaseManager;
+
+    @Autowired
+    public LeaseController(LeaseManager leaseManager) {
+        this.leaseManager = leaseManager;
+    }
+
+    @PostMapping("/lease/{token}/grant")
+    public ResponseEntity<Void> grant(@PathVariable int token, @RequestParam String holder, @RequestParam long durationMillis) {
+        if (leaseManager.grant(token, holder, durationMillis)) {
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    @PostMapping("/lease/{token}/release")
+    public ResponseEntity<Void> release(@PathVariable int token, @RequestParam String holder) {
+        leaseManager.release(token, holder);
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/leases")
+    public ResponseEntity<Map<String, Object>> leases() {
+        return ResponseEntity.ok(leaseManager.getLeases());
+    }
+}
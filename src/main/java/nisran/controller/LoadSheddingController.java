@@ -0,0 +1,31 @@
+package nisran.controller;
+
+import nisran.router.LoadShedder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Reports the concurrency limits of this node and how many requests they shed.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class LoadSheddingController {
+
+    private final LoadShedder loadShedder;
+
+    @Autowired
+    public LoadSheddingController(LoadShedder loadShedder) {
+        this.loadShedder = loadShedder;
+    }
+
+    @GetMapping("/limits")
+    public ResponseEntity<Map<String, Object>> limits() {
+        return ResponseEntity.ok(loadShedder.getMetrics());
+    }
+}
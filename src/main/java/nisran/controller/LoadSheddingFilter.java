@@ -0,0 +1,123 @@
+package nisran.controller;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import nisran.router.AdaptiveConcurrencyLimiter;
+import nisran.router.AsyncReplicator;
+import nisran.router.LoadShedder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Admits cache requests through the {@link LoadShedder} and answers those beyond the limit
+ * with 503 and Retry-After. Requests from peers are told apart by the {@link LoadShedder#PEER_HEADER}
+ * header or by their replica-only path.
+ */
+@Component
+@Profile("cluster")
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadSheddingFilter.class);
+
+    private final LoadShedder loadShedder;
+
+    @Autowired
+    public LoadSheddingFilter(LoadShedder loadShedder) {
+        this.loadShedder = loadShedder;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !loadShedder.isEnabled()
+                || !(path.startsWith("/api/cache/") || path.equals(AsyncReplicator.REPLICATE_PATH));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean internal = isInternal(request);
+        AdaptiveConcurrencyLimiter.Permit permit = loadShedder.tryAcquire(internal);
+        if (permit == null) {
+            logger.debug("Shedding {} {} {}", internal ? "internal" : "client", request.getMethod(), request.getRequestURI());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(loadShedder.getRetryAfterSeconds()));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Overloaded");
+            return;
+        }
+
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                // The response is written by a later async dispatch; hold the permit until then
+                request.getAsyncContext().addListener(new PermitReleasingListener(permit));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                release(permit, response.getStatus(), false);
+            }
+        }
+    }
+
+    private static void release(AdaptiveConcurrencyLimiter.Permit permit, int status, boolean timedOut) {
+        // A request that ran out of its deadline is an overload signal, other errors are not
+        if (timedOut || status == HttpStatus.GATEWAY_TIMEOUT.value()) {
+            permit.releaseDropped();
+        } else {
+            permit.release();
+        }
+    }
+
+    private static final class PermitReleasingListener implements AsyncListener {
+        private final AdaptiveConcurrencyLimiter.Permit permit;
+        private volatile boolean timedOut;
+
+        PermitReleasingListener(AdaptiveConcurrencyLimiter.Permit permit) {
+            this.permit = permit;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            // Also called after a timeout or an error, so this is the one place the permit is released
+            release(permit, ((HttpServletResponse) event.getSuppliedResponse()).getStatus(), timedOut);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            timedOut = true;
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    static boolean isInternal(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return request.getHeader(LoadShedder.PEER_HEADER) != null
+                || path.startsWith("/api/cache/local/")
+                || path.startsWith("/api/cache/leased/")
+                || path.equals(AsyncReplicator.REPLICATE_PATH);
+    }
+}
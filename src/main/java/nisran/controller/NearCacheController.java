@@ -0,0 +1,38 @@
+package nisran.controller;
+
+import nisran.router.NearCacheManager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports near cache statistics and receives invalidations from primaries for {@link NearCacheManager}.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class NearCacheController {
+
+    private final NearCacheManager nearCacheManager;
+
+    @Autowired
+    public NearCacheController(NearCacheManager nearCacheManager) {
+        this.nearCacheManager = nearCacheManager;
+    }
+
+    @GetMapping("/near-cache")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(nearCacheManager.getMetrics());
+    }
+
+    @PostMapping("/near-cache/invalidate")
+    public ResponseEntity<Void> invalidate(@RequestBody List<String> keys) {
+        nearCacheManager.receiveInvalidations(keys);
+        return ResponseEntity.ok().build();
+    }
+}
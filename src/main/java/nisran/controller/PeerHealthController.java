@@ -0,0 +1,36 @@
+package nisran.controller;
+
+import nisran.discovery.PeerHealthMonitor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Liveness ping answered to peers, and this node's view of its peers' health.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class PeerHealthController {
+
+    private final PeerHealthMonitor peerHealthMonitor;
+
+    @Autowired
+    public PeerHealthController(PeerHealthMonitor peerHealthMonitor) {
+        this.peerHealthMonitor = peerHealthMonitor;
+    }
+
+    @GetMapping("/ping")
+    public ResponseEntity<Void> ping() {
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/peers")
+    public ResponseEntity<Map<String, Map<String, Object>>> peers() {
+        return ResponseEntity.ok(peerHealthMonitor.getPeerHealth());
+    }
+}
@@ -0,0 +1,31 @@
+package nisran.controller;
+
+import nisran.persistence.PersistenceService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Reports the state of the local mutation log.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class PersistenceController {
+
+    private final PersistenceService persistenceService;
+
+    @Autowired
+    public PersistenceController(PersistenceService persistenceService) {
+        this.persistenceService = persistenceService;
+    }
+
+    @GetMapping("/persistence")
+    public ResponseEntity<Map<String, Object>> persistence() {
+        return ResponseEntity.ok(persistenceService.getMetrics());
+    }
+}
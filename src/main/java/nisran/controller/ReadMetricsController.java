@@ -0,0 +1,43 @@
+package nisran.controller;
+
+import nisran.router.HedgedReader;
+import nisran.router.QuorumReaderWriter;
+import nisran.router.ReplicaSelector;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reports read path statistics of this node.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class ReadMetricsController {
+
+    private final HedgedReader hedgedReader;
+    private final ReplicaSelector replicaSelector;
+    private final QuorumReaderWriter quorumReaderWriter;
+
+    @Autowired
+    public ReadMetricsController(HedgedReader hedgedReader, ReplicaSelector replicaSelector,
+                                 QuorumReaderWriter quorumReaderWriter) {
+        this.hedgedReader = hedgedReader;
+        this.replicaSelector = replicaSelector;
+        this.quorumReaderWriter = quorumReaderWriter;
+    }
+
+    @GetMapping("/reads")
+    public ResponseEntity<Map<String, Object>> readMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("hedging", hedgedReader.getMetrics());
+        metrics.put("replicas", replicaSelector.getMetrics());
+        metrics.put("coalescing", quorumReaderWriter.getReadCoalescingMetrics());
+        return ResponseEntity.ok(metrics);
+    }
+}
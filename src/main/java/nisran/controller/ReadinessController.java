@@ -0,0 +1,33 @@
+package nisran.controller;
+
+import nisran.discovery.ReadinessService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Readiness probe for load balancers and ECS: 200 once the node serves clients, 503 before.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class ReadinessController {
+
+    private final ReadinessService readinessService;
+
+    @Autowired
+    public ReadinessController(ReadinessService readinessService) {
+        this.readinessService = readinessService;
+    }
+
+    @GetMapping("/ready")
+    public ResponseEntity<Map<String, Object>> ready() {
+        HttpStatus status = readinessService.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).body(readinessService.getStatus());
+    }
+}
@@ -0,0 +1,52 @@
+package nisran.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import nisran.discovery.ReadinessService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Answers client cache requests with 503 until the node is ready. Requests from peers are
+ * admitted while starting, so that replica writes reach the node as soon as it is in the ring.
+ */
+@Component
+@Profile("cluster")
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class ReadinessFilter extends OncePerRequestFilter {
+
+    private final ReadinessService readinessService;
+
+    @Autowired
+    public ReadinessFilter(ReadinessService readinessService) {
+        this.readinessService = readinessService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/cache/") || LoadSheddingFilter.isInternal(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!readinessService.isStarted()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Starting");
+            return;
+        }
+        readinessService.onRequest();
+        chain.doFilter(request, response);
+    }
+}
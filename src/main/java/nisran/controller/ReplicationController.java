@@ -0,0 +1,45 @@
+package nisran.controller;
+
+import nisran.router.AsyncReplicator;
+import nisran.router.QuorumReaderWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Receives batched replica mutations from primaries and reports replication queue metrics.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class ReplicationController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationController.class);
+
+    private final QuorumReaderWriter quorumReaderWriter;
+    private final AsyncReplicator asyncReplicator;
+
+    @Autowired
+    public ReplicationController(QuorumReaderWriter quorumReaderWriter, AsyncReplicator asyncReplicator) {
+        this.quorumReaderWriter = quorumReaderWriter;
+        this.asyncReplicator = asyncReplicator;
+    }
+
+    @PostMapping("/replicate")
+    public ResponseEntity<Void> replicate(@RequestBody Map<String, Object> entries) {
+        logger.debug("Called replicate() with {} keys", entries.size());
+        quorumReaderWriter.localWriteBatch(entries);
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping("/replication")
+    public ResponseEntity<Map<String, Map<String, Long>>> replicationMetrics() {
+        return ResponseEntity.ok(asyncReplicator.getMetrics());
+    }
+}
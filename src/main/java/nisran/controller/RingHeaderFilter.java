@@ -0,0 +1,47 @@
+package nisran.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import nisran.router.CacheRouter;
+import nisran.router.Topology;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Tells clients which ring answered a cache request, so that a client routing with an older
+ * ring notices and fetches the topology again.
+ */
+@Component
+@Profile("cluster")
+@Order(Ordered.HIGHEST_PRECEDENCE + 3)
+public class RingHeaderFilter extends OncePerRequestFilter {
+
+    private final CacheRouter cacheRouter;
+
+    @Autowired
+    public RingHeaderFilter(CacheRouter cacheRouter) {
+        this.cacheRouter = cacheRouter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/cache/") || LoadSheddingFilter.isInternal(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // Set before the response is committed
+        response.setHeader(Topology.RING_HEADER, Long.toString(cacheRouter.getRingFingerprint()));
+        chain.doFilter(request, response);
+    }
+}
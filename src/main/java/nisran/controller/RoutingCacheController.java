@@ -1,5 +1,8 @@
 package nisran.controller;
 
+import nisran.router.DeadlineExceededException;
+import nisran.router.ExpiringValue;
+import nisran.router.LeaseUnavailableException;
 import nisran.router.QuorumRWService;
 import nisran.router.QuorumReaderWriter;
 
@@ -7,10 +10,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 @RestController
@@ -28,12 +33,14 @@ public class RoutingCacheController {
     }
 
     @GetMapping("/{key}")
-    public ResponseEntity<Object> get(@PathVariable String key) {
-        Object value = quorumRWService.quorumRead(key);
-        if (value == null) {
-            return ResponseEntity.notFound().build();
-        }
-        return ResponseEntity.ok(value);
+    public CompletableFuture<ResponseEntity<Object>> get(@PathVariable String key) {
+        // The servlet thread is released while replicas are contacted
+        return quorumRWService.quorumReadAsync(key).thenApply(value -> {
+            if (value == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(value);
+        });
     }
 
     @GetMapping("/local/{key}")
@@ -45,18 +52,45 @@ public class RoutingCacheController {
         return ResponseEntity.ok(value);
     }
 
+    @GetMapping("/leased/{key}")
+    public CompletableFuture<ResponseEntity<Object>> getLeased(@PathVariable String key) {
+        return ((QuorumReaderWriter)quorumRWService).leasedLocalRead(key).thenApply(value -> {
+            if (value == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(value);
+        });
+    }
+
     @PostMapping("/{key}")
-    public ResponseEntity<List<String>> set(@PathVariable String key, @RequestBody Object value) {
+    public CompletableFuture<ResponseEntity<List<String>>> set(@PathVariable String key, @RequestBody Object value) {
         logger.debug("Called Set() key: {}, value: {}", key, value);
-        List<String> response = quorumRWService.quorumWrite(key, value);
-        return ResponseEntity.ok(response);
+        if (ExpiringValue.isReserved(value)) {
+            // Would be read back as an expiry or a deletion written over RESP
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        return quorumRWService.quorumWriteAsync(key, value).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/local/{key}")
     public ResponseEntity<Void> setLocal(@PathVariable String key, @RequestBody Object value) {
         logger.debug("Called SetLocal() key: {}, value: {}", key, value);
+        if (ExpiringValue.isReserved(value)) {
+            return ResponseEntity.badRequest().build();
+        }
         ((QuorumReaderWriter)quorumRWService).localWrite(key, value);
         return ResponseEntity.ok().build();
     }
-    
+
+    @ExceptionHandler(LeaseUnavailableException.class)
+    public ResponseEntity<String> leaseUnavailable(LeaseUnavailableException e) {
+        logger.debug("Lease unavailable: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+    }
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<String> deadlineExceeded(DeadlineExceededException e) {
+        logger.debug("Deadline exceeded: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(e.getMessage());
+    }
 }
\ No newline at end of file
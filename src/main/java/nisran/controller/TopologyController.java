@@ -0,0 +1,31 @@
+package nisran.controller;
+
+import nisran.router.CacheRouter;
+import nisran.router.Topology;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Serves the hash ring to clients that route requests to the owning node themselves.
+ */
+@RestController
+@Profile("cluster")
+@RequestMapping("/api/cluster")
+public class TopologyController {
+
+    private final CacheRouter cacheRouter;
+
+    @Autowired
+    public TopologyController(CacheRouter cacheRouter) {
+        this.cacheRouter = cacheRouter;
+    }
+
+    @GetMapping("/topology")
+    public Topology getTopology() {
+        return cacheRouter.getTopology();
+    }
+}
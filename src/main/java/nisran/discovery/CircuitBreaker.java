@@ -0,0 +1,81 @@
+package nisran.discovery;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Per-peer circuit breaker.
+ *
+ * CLOSED lets every request through and counts consecutive failures. Once the count reaches the
+ * threshold, or the failure detector suspects the peer, the breaker OPENs and requests fail
+ * fast. After the open interval one probe is let through (HALF_OPEN); its outcome closes or
+ * re-opens the breaker.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    public CircuitBreaker(int failureThreshold, long openMillis, LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns whether a request may be sent now. In HALF_OPEN only the first caller gets through.
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+            case HALF_OPEN:
+                // In HALF_OPEN a probe is in flight; allow another only if it never reported back
+                if (clock.getAsLong() - openedAt >= openMillis) {
+                    state = State.HALF_OPEN;
+                    openedAt = clock.getAsLong();
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * Opens the breaker regardless of the failure count, e.g. because the peer is suspected.
+     */
+    public synchronized void trip() {
+        if (state == State.CLOSED) {
+            open();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+    }
+}
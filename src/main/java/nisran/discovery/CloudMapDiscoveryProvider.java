@@ -0,0 +1,234 @@
+package nisran.discovery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import software.amazon.awssdk.services.servicediscovery.ServiceDiscoveryClient;
+import software.amazon.awssdk.services.servicediscovery.model.CustomHealthStatus;
+import software.amazon.awssdk.services.servicediscovery.model.DeregisterInstanceRequest;
+import software.amazon.awssdk.services.servicediscovery.model.DiscoverInstancesRequest;
+import software.amazon.awssdk.services.servicediscovery.model.DiscoverInstancesResponse;
+import software.amazon.awssdk.services.servicediscovery.model.HealthStatusFilter;
+import software.amazon.awssdk.services.servicediscovery.model.InstanceNotFoundException;
+import software.amazon.awssdk.services.servicediscovery.model.ServiceNotFoundException;
+import software.amazon.awssdk.services.servicediscovery.model.UpdateInstanceCustomHealthStatusRequest;
+
+import nisran.ServerInstance;
+import nisran.config.AWS_SDKConfig;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/**
+ * Discovery through AWS Cloud Map, for nodes running as ECS tasks.
+ *
+ * The node's task ARN, IP address and availability zone come from the ECS task metadata; it is
+ * registered as a Cloud Map instance named after its task id, and healthy instances are
+ * discovered through the Cloud Map API.
+ */
+@Component
+@Profile("cluster")
+@ConditionalOnProperty(name = "service.discovery.provider", havingValue = "cloud-map", matchIfMissing = true)
+public class CloudMapDiscoveryProvider implements DiscoveryProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(CloudMapDiscoveryProvider.class);
+
+    @Autowired
+    private EcsMetadataService ecsMetadataService;
+
+    @Autowired
+    private EcsMetadata ecsMetadata;
+
+    @Autowired
+    private CloudMapManager cloudMapManager;
+
+    private final ServiceDiscoveryClient serviceDiscoveryClient;
+    private final AWS_SDKConfig awsConfig;
+
+    public CloudMapDiscoveryProvider(ServiceDiscoveryClient serviceDiscoveryClient, AWS_SDKConfig awsConfig) {
+        this.serviceDiscoveryClient = serviceDiscoveryClient;
+        this.awsConfig = awsConfig;
+    }
+
+    private void fetchEcsMetadata() {
+        // Getting Task ARN and Cluster ARN from environment variables
+        String taskArn = System.getenv("ECS_TASK_ARN");
+        String clusterArn = System.getenv("ECS_CLUSTER");
+
+        if (taskArn == null || clusterArn == null) {
+            logger.debug("ECS_TASK_ARN or ECS_CLUSTER environment variables are not set. " +
+                        "Attempting to retrieve from metadata endpoint.");
+            
+            try {
+                EcsMetadata metadata = ecsMetadataService.fetchMetadata().orElseThrow(() ->
+                    new IllegalStateException("Failed to retrieve ECS task metadata."));
+                
+                ecsMetadata.setTaskArn(metadata.getTaskArn());
+                ecsMetadata.setClusterArn(metadata.getClusterArn());
+                ecsMetadata.setIpAddress(metadata.getIpAddress());
+                ecsMetadata.setAvailabilityZone(metadata.getAvailabilityZone());
+                
+                logger.info("Fetched task metadata - Task ARN: {}, Cluster ARN: {}, Task ID: {}",
+                            ecsMetadata.getTaskArn(), ecsMetadata.getClusterArn(), ecsMetadata.getTaskId());
+            } catch (Exception e) {
+                logger.error("Failed to fetch task metadata", e);
+                throw new RuntimeException("Failed to fetch task metadata", e);
+            }
+        } else {
+            ecsMetadata.setTaskArn(taskArn);
+            ecsMetadata.setClusterArn(clusterArn);
+            logger.debug("Found taskId {} from Task ARN {}", ecsMetadata.getTaskId(), taskArn);
+        }
+    }
+
+    @Override
+    public ServerInstance register() {
+        // Set basic configuration
+        ecsMetadata.setNamespaceName(awsConfig.getNamespaceName());
+        ecsMetadata.setServiceName(awsConfig.getServiceName());
+        ecsMetadata.setPort(awsConfig.getPort());
+
+        // The task metadata and the Cloud Map namespace and service do not depend on each other
+        CompletableFuture<Void> metadata = CompletableFuture.runAsync(this::fetchEcsMetadata, r -> {
+            Thread t = new Thread(r, "Discovery-MetadataThread");
+            t.setDaemon(true);
+            t.start();
+        });
+
+        try {
+            logger.info("Starting service registration for service: {}", ecsMetadata.getServiceName());
+            
+            ecsMetadata.setNamespaceId(cloudMapManager.findOrCreateNamespace(ecsMetadata.getNamespaceName()));
+            ecsMetadata.setServiceId(cloudMapManager.findOrCreateService(ecsMetadata.getServiceName(), ecsMetadata.getNamespaceId()));
+
+            metadata.join();
+            if (!awsConfig.getZoneName().isBlank()) {
+                ecsMetadata.setAvailabilityZone(awsConfig.getZoneName());
+            }
+
+            cloudMapManager.findOrCreateInstance(
+                ecsMetadata.getServiceId(),
+                ecsMetadata.getTaskId(),
+                ecsMetadata.getIpAddress(),
+                ecsMetadata.getPort(),
+                ecsMetadata.getTaskArn(),
+                ecsMetadata.getAvailabilityZone()
+            );
+            
+            logger.info("Service registration completed successfully.");
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        } catch (Exception e) {
+            logger.error("Failed to register service", e);
+            throw new RuntimeException("Failed to register service", e);
+        }
+        return new ServerInstance(ecsMetadata.getTaskId(), ecsMetadata.getIpAddress(), ecsMetadata.getPort(),
+                ecsMetadata.getAvailabilityZone());
+    }
+
+    @Override
+    public void deregister() {
+        if (ecsMetadata.getTaskId() != null && ecsMetadata.getServiceId() != null) {
+            logger.info("Deregistering service instance: {} in service: {}", 
+                       ecsMetadata.getTaskId(), ecsMetadata.getServiceId());
+            try {
+                DeregisterInstanceRequest request = DeregisterInstanceRequest.builder()
+                        .serviceId(ecsMetadata.getServiceId())
+                        .instanceId(ecsMetadata.getTaskId())
+                        .build();
+                serviceDiscoveryClient.deregisterInstance(request);
+                logger.info("Successfully deregistered service instance: {}", ecsMetadata.getServiceId());
+            } catch (Exception e) {
+                logger.error("Failed to deregister service instance: {}", ecsMetadata.getServiceId(), e);
+            }
+        } else {
+            logger.warn("Cannot deregister service instance: taskId or serviceId is null");
+        }
+    }
+
+    @Override
+    public boolean heartbeat() {
+        String instanceId = ecsMetadata.getTaskId();
+        String serviceId = ecsMetadata.getServiceId();
+
+        if (instanceId == null || serviceId == null) {
+            logger.warn("Cannot send heartbeat because instanceId or serviceId is null. This may be temporary during startup.");
+            return true;
+        }
+
+        try {
+            logger.debug("Sending heartbeat for instance: {} in service: {}", instanceId, serviceId);
+            UpdateInstanceCustomHealthStatusRequest request = UpdateInstanceCustomHealthStatusRequest.builder()
+                    .serviceId(serviceId)
+                    .instanceId(instanceId)
+                    .status(CustomHealthStatus.HEALTHY)
+                    .build();
+
+            serviceDiscoveryClient.updateInstanceCustomHealthStatus(request);
+            logger.debug("Heartbeat sent successfully for instance: {}", instanceId);
+        } catch (InstanceNotFoundException | ServiceNotFoundException e) {
+            logger.warn("Instance or Service not found during heartbeat for instanceId: {}. It might have been deregistered. Stopping heartbeats.", instanceId, e);
+            return false;
+        } catch (Exception e) {
+            logger.error("Failed to send heartbeat for instance: {}", instanceId, e);
+        }
+        return true;
+    }
+
+    @Override
+    public List<ServerInstance> discoverInstances() {
+
+        String serviceName = awsConfig.getServiceName();
+        String namespaceName = awsConfig.getNamespaceName();
+
+        logger.debug("Discovering instances for service: {} in namespace: {}", serviceName, namespaceName);
+        try {
+            DiscoverInstancesRequest request = DiscoverInstancesRequest.builder()
+                    .namespaceName(namespaceName)
+                    .serviceName(serviceName)
+                    .maxResults(100) // Adjust as needed
+                    .healthStatus(HealthStatusFilter.HEALTHY) // Discover only healthy instances
+                    .build();
+
+            DiscoverInstancesResponse response = serviceDiscoveryClient.discoverInstances(request);
+            return response.instances().stream()
+                    .map(httpInstanceSummary -> {
+                        Map<String, String> attributes = httpInstanceSummary.attributes();
+                        String ip = attributes.get("AWS_INSTANCE_IPV4");
+                        String portStr = attributes.get("AWS_INSTANCE_PORT");
+                        String zone = attributes.get(ServerInstance.ZONE_ATTRIBUTE);
+                        // Prefer ECS_TASK_ARN as serviceId if available, otherwise use CloudMap's instanceId
+                        String awsTaskARN = attributes.getOrDefault("ECS_TASK_ARN", httpInstanceSummary.instanceId());
+
+                        String instanceId = awsTaskARN.substring(awsTaskARN.lastIndexOf("/") + 1);
+                        //TODO: Add logic to convert task ARN to a serviceId if needed
+                        if (ip != null && portStr != null && instanceId != null) {
+                            try {
+                                int discoveredPort = Integer.parseInt(portStr);
+                                return new ServerInstance(instanceId, ip, discoveredPort, zone);
+                            } catch (NumberFormatException e) {
+                                logger.warn("Failed to parse port for instance {}: {}. Attributes: {}", instanceId, portStr, attributes, e);
+                                return null;
+                            }
+                        }
+                        logger.warn("Instance {} (CloudMap ID: {}) missing required attributes (IP, Port, or determined serviceId). Attributes: {}",
+                                instanceId, httpInstanceSummary.instanceId(), attributes);
+                        return null;
+                    })
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            logger.error("Failed to discover instances for service {} in namespace {}", serviceName, namespaceName, e);
+            return Collections.emptyList(); // Return empty list on error
+        }
+    }
+}
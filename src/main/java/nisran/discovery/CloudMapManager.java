@@ -3,11 +3,13 @@ package nisran.discovery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.springframework.context.annotation.Profile;
 import software.amazon.awssdk.services.servicediscovery.ServiceDiscoveryClient;
 import software.amazon.awssdk.services.servicediscovery.model.*;
 import software.amazon.awssdk.services.servicediscovery.model.OperationStatus;
+import nisran.ServerInstance;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -16,12 +18,15 @@ import java.util.concurrent.TimeUnit;
 
 @Component
 @Profile("cluster")
+@ConditionalOnProperty(name = "service.discovery.provider", havingValue = "cloud-map", matchIfMissing = true)
 public class CloudMapManager {
     private static final Logger logger = LoggerFactory.getLogger(CloudMapManager.class);
 
     private final ServiceDiscoveryClient serviceDiscoveryClient;
     private static final int MAX_RETRIES = 10;
-    private static final int RETRY_DELAY_SECONDS = 100;
+    // Cloud Map operations usually finish within seconds, so polling starts fast and backs off
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 500;
+    private static final long MAX_RETRY_DELAY_MILLIS = 10_000;
 
     @Value("${cache.service.discovery.ip-version}")
     private String ipVersion;
@@ -49,7 +54,7 @@ public class CloudMapManager {
             while (retryCount < MAX_RETRIES) {
                 logger.info("Waiting for namespace creation to complete... (Attempt {}/{})", retryCount + 1, MAX_RETRIES);
                 try {
-                    TimeUnit.SECONDS.sleep(RETRY_DELAY_SECONDS);
+                    TimeUnit.MILLISECONDS.sleep(retryDelayMillis(retryCount));
                     namespaceId = findNamespace(namespaceName);
                     if (namespaceId != null) {
                         logger.info("Namespace '{}' successfully created with ID: {}", namespaceName, namespaceId);
@@ -94,7 +99,7 @@ public class CloudMapManager {
             while (retryCount < MAX_RETRIES) {
                 logger.info("Waiting for service creation to complete... (Attempt {}/{})", retryCount + 1, MAX_RETRIES);
                 try {
-                    TimeUnit.SECONDS.sleep(RETRY_DELAY_SECONDS);
+                    TimeUnit.MILLISECONDS.sleep(retryDelayMillis(retryCount));
                     serviceId = findService(serviceName, namespaceId);
                     if (serviceId != null) {
                         logger.info("Service '{}' successfully created with ID: {}", serviceName, serviceId);
@@ -117,7 +122,7 @@ public class CloudMapManager {
         return serviceId;
     }
 
-    public String findOrCreateInstance(String serviceId, String awsTaskId, String ip, int port, String awsTaskARN) {
+    public String findOrCreateInstance(String serviceId, String awsTaskId, String ip, int port, String awsTaskARN, String zone) {
         logger.debug("Finding or creating instance with instanceId: {} in service: {}", awsTaskId, serviceId);
 
         // Validate required parameters
@@ -133,14 +138,14 @@ public class CloudMapManager {
         if (instanceId == null) {
             logger.info("Instance '{}' not found in service '{}'. Creating new instance...", awsTaskId, serviceId);
             // Create instance only once
-            instanceId = createInstance(serviceId, awsTaskId, ip, port, awsTaskARN);
+            instanceId = createInstance(serviceId, awsTaskId, ip, port, awsTaskARN, zone);
 
             // Retry finding the instance until it's available
             int retryCount = 0;
             while (retryCount < MAX_RETRIES) {
                 logger.info("Waiting for instance creation to complete... (Attempt {}/{})", retryCount + 1, MAX_RETRIES);
                 try {
-                    TimeUnit.SECONDS.sleep(RETRY_DELAY_SECONDS);
+                    TimeUnit.MILLISECONDS.sleep(retryDelayMillis(retryCount));
                     instanceId = findInstance(serviceId, awsTaskId);
                     if (instanceId != null) {
                         logger.info("Instance '{}' successfully created", awsTaskId);
@@ -163,6 +168,13 @@ public class CloudMapManager {
         return instanceId;
     }
 
+    /**
+     * Returns the delay before the given (zero-based) retry: 0.5 s, doubling up to 10 s.
+     */
+    static long retryDelayMillis(int retryCount) {
+        return Math.min(MAX_RETRY_DELAY_MILLIS, INITIAL_RETRY_DELAY_MILLIS << Math.min(retryCount, 16));
+    }
+
     private String findNamespace(String namespaceName) {
         String namespaceId = null;
         try {
@@ -304,7 +316,7 @@ public class CloudMapManager {
         return instanceId;
     }
 
-    private String createInstance(String serviceId, String awsTaskId, String ip, int port, String awsTaskARN) {
+    private String createInstance(String serviceId, String awsTaskId, String ip, int port, String awsTaskARN, String zone) {
         logger.info("Creating new instance with instanceId: {} in service: {}", awsTaskId, serviceId);
 
         String ipAttributeKey = "ipv6".equalsIgnoreCase(ipVersion) ? "AWS_INSTANCE_IPV6" : "AWS_INSTANCE_IPV4";
@@ -315,6 +327,9 @@ public class CloudMapManager {
             attributes.put("AWS_INSTANCE_PORT", String.valueOf(port));
             attributes.put("ECS_TASK_ARN", awsTaskARN != null ? awsTaskARN : "");
             attributes.put("ECS_TASK_ID", awsTaskId);
+            if (zone != null && !zone.isBlank()) {
+                attributes.put(ServerInstance.ZONE_ATTRIBUTE, zone);
+            }
 
             RegisterInstanceRequest registerRequest = RegisterInstanceRequest.builder()
                     .serviceId(serviceId)
@@ -356,7 +371,7 @@ public class CloudMapManager {
                 }
 
                 try {
-                    TimeUnit.SECONDS.sleep(RETRY_DELAY_SECONDS);
+                    TimeUnit.MILLISECONDS.sleep(retryDelayMillis(retryCount));
                 } catch (InterruptedException e) {
                     logger.warn("Operation monitoring interrupted - OperationId: {}", operationId);
                     Thread.currentThread().interrupt();
@@ -0,0 +1,44 @@
+package nisran.discovery;
+
+import java.util.List;
+
+import nisran.ServerInstance;
+
+/**
+ * Backend through which cache nodes register themselves and find each other.
+ *
+ * Exactly one provider is active, chosen by {@code service.discovery.provider}: {@code cloud-map}
+ * (the default, for ECS), {@code static} or {@code file}. The last two need no AWS and let a
+ * cluster run on a single machine.
+ */
+public interface DiscoveryProvider {
+
+    /**
+     * Registers this node with the backend.
+     * @return The identity of this node as other nodes will discover it.
+     */
+    ServerInstance register();
+
+    /**
+     * Returns the instances currently registered, this node included.
+     * Implementations return an empty list rather than throw when the backend is unavailable.
+     */
+    List<ServerInstance> discoverInstances();
+
+    /**
+     * Tells the backend that this node is still alive.
+     * @return false if the registration is gone and heartbeats should stop.
+     */
+    default boolean heartbeat() {
+        return true;
+    }
+
+    default void deregister() {
+    }
+
+    /**
+     * Registers a callback for providers that learn about changes without being polled.
+     */
+    default void onChange(Runnable listener) {
+    }
+}
@@ -21,6 +21,7 @@ public class EcsMetadata {
     private String namespaceId;
     private String namespaceName;
     private String serviceName;
+    private String availabilityZone;
     private int port;
 
     // Default constructor for Spring
@@ -44,6 +45,7 @@ public class EcsMetadata {
     public String getNamespaceId() { return namespaceId; }
     public String getNamespaceName() { return namespaceName; }
     public String getServiceName() { return serviceName; }
+    public String getAvailabilityZone() { return availabilityZone; }
     public int getPort() { return port; }
 
     // Setters for updating metadata as it becomes available
@@ -59,6 +61,7 @@ public class EcsMetadata {
     public void setNamespaceId(String namespaceId) { this.namespaceId = namespaceId; }
     public void setNamespaceName(String namespaceName) { this.namespaceName = namespaceName; }
     public void setServiceName(String serviceName) { this.serviceName = serviceName; }
+    public void setAvailabilityZone(String availabilityZone) { this.availabilityZone = availabilityZone; }
     public void setPort(int port) { this.port = port; }
 
     public boolean isComplete() {
@@ -77,6 +80,7 @@ public class EcsMetadata {
                 ", namespaceId='" + namespaceId + '\'' +
                 ", namespaceName='" + namespaceName + '\'' +
                 ", serviceName='" + serviceName + '\'' +
+                ", availabilityZone='" + availabilityZone + '\'' +
                 ", port=" + port +
                 '}';
     }
@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
@@ -19,6 +20,7 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
@@ -29,6 +31,7 @@ import java.util.concurrent.TimeUnit;
 @Service
 @DependsOn("otherServices")
 @Profile("cluster")
+@ConditionalOnProperty(name = "service.discovery.provider", havingValue = "cloud-map", matchIfMissing = true)
 public class EcsMetadataService {
 
     private static final Logger logger = LoggerFactory.getLogger(EcsMetadataService.class);
@@ -53,7 +56,8 @@ public class EcsMetadataService {
     /**
      * Fetches the complete ECS task metadata, including ARNs and the private IP address.
      * It first calls the ECS metadata endpoint and then uses the returned ARNs to describe
-     * the task and find its private IP. Both steps include retry logic.
+     * the task and find its private IP. Both steps include retry logic. The availability zone
+     * is taken from the task metadata when present.
      *
      * @return An Optional containing the EcsMetadata if all information is successfully retrieved, otherwise an empty Optional.
      */
@@ -62,7 +66,11 @@ public class EcsMetadataService {
             String taskArn = arns.get("taskArn");
             String clusterArn = arns.get("clusterArn");
             return getPrivateIp(taskArn, clusterArn, ipVersion)
-                    .map(ip -> new EcsMetadata(taskArn, clusterArn, ip));
+                    .map(ip -> {
+                        EcsMetadata metadata = new EcsMetadata(taskArn, clusterArn, ip);
+                        metadata.setAvailabilityZone(arns.get("availabilityZone"));
+                        return metadata;
+                    });
         });
     }
 
@@ -86,9 +94,15 @@ public class EcsMetadataService {
                     JsonNode root = objectMapper.readTree(response.body());
                     String taskArn = root.path("TaskARN").asText(null);
                     String clusterArn = root.path("Cluster").asText(null);
+                    String availabilityZone = root.path("AvailabilityZone").asText(null);
                     if (taskArn != null && clusterArn != null) {
-                        logger.info("Successfully fetched Task ARN {} and Cluster ARN {}", taskArn, clusterArn);
-                        return Optional.of(Map.of("taskArn", taskArn, "clusterArn", clusterArn));
+                        logger.info("Successfully fetched Task ARN {}, Cluster ARN {} and availability zone {}",
+                                taskArn, clusterArn, availabilityZone);
+                        Map<String, String> result = new HashMap<>();
+                        result.put("taskArn", taskArn);
+                        result.put("clusterArn", clusterArn);
+                        result.put("availabilityZone", availabilityZone);
+                        return Optional.of(result);
                     }
                 }
             } catch (IOException | InterruptedException e) {
@@ -0,0 +1,127 @@
+package nisran.discovery;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import nisran.ServerInstance;
+import nisran.config.AWS_SDKConfig;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Discovery from a members file named by {@code service.discovery.file.path}, one member per line
+ * in the format of {@link StaticDiscoveryProvider}; lines starting with {@code #} are ignored.
+ *
+ * The file is watched, and the ring is rebuilt as soon as it changes, so a benchmark can add or
+ * remove nodes by rewriting it. Write it atomically (write a new file, then rename it over the
+ * old one) so that a half-written file is never read.
+ */
+@Component
+@Profile("cluster")
+@ConditionalOnProperty(name = "service.discovery.provider", havingValue = "file")
+public class FileDiscoveryProvider implements DiscoveryProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileDiscoveryProvider.class);
+
+    private final ServerInstance localInstance;
+    private final Path path;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile List<ServerInstance> lastRead = List.of();
+    private WatchService watchService;
+    private Thread watchThread;
+
+    @Autowired
+    public FileDiscoveryProvider(AWS_SDKConfig awsConfig) {
+        this(StaticDiscoveryProvider.localInstance(awsConfig), Path.of(awsConfig.getDiscoveryFilePath()));
+    }
+
+    FileDiscoveryProvider(ServerInstance localInstance, Path path) {
+        this.localInstance = localInstance;
+        this.path = path.toAbsolutePath();
+    }
+
+    @PostConstruct
+    private void startWatching() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        watchThread = new Thread(this::watch, "Discovery-FileWatchThread");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        logger.info("Discovering members from {}.", path);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || path.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    logger.info("Members file {} changed.", path);
+                    listeners.forEach(Runnable::run);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    @Override
+    public ServerInstance register() {
+        return localInstance;
+    }
+
+    /**
+     * Reads the file on every call; if it is missing or malformed, the members last read are kept.
+     */
+    @Override
+    public List<ServerInstance> discoverInstances() {
+        try {
+            List<String> lines = Files.readAllLines(path).stream()
+                    .filter(line -> !line.trim().startsWith("#"))
+                    .collect(Collectors.toList());
+            lastRead = StaticDiscoveryProvider.parseMembers(lines);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Could not read members file {}: {}. Keeping {} members last read.", path, e.getMessage(), lastRead.size());
+        }
+        return lastRead;
+    }
+
+    @Override
+    public void onChange(Runnable listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,71 @@
+package nisran.discovery;
+
+import nisran.ServerInstance;
+
+/**
+ * A cluster member as seen by {@link SwimMembership}: its address, its state and the
+ * incarnation that state was announced with. Instances are not modified once shared;
+ * state changes create a copy.
+ */
+public class GossipMember {
+
+    public enum State { ALIVE, SUSPECT, DEAD }
+
+    private String id; // the ECS task id; null for a seed that has not answered yet
+    private String host;
+    private int port;
+    private String zone;
+    private State state = State.ALIVE;
+    private long incarnation;
+
+    // For JSON
+    public GossipMember() {}
+
+    public GossipMember(String id, String host, int port, String zone, State state, long incarnation) {
+        this.id = id;
+        this.host = host;
+        this.port = port;
+        this.zone = zone;
+        this.state = state;
+        this.incarnation = incarnation;
+    }
+
+    public static GossipMember seed(String host, int port) {
+        return new GossipMember(null, host, port, null, State.ALIVE, 0);
+    }
+
+    public static GossipMember of(ServerInstance instance) {
+        return new GossipMember(instance.getServiceId(), instance.getIpAddress(), instance.getPort(), instance.getZone(), State.ALIVE, 0);
+    }
+
+    public GossipMember with(State state, long incarnation) {
+        return new GossipMember(id, host, port, zone, state, incarnation);
+    }
+
+    public ServerInstance toServerInstance() {
+        return new ServerInstance(id, host, port, zone);
+    }
+
+    public String getAddress() {
+        return host + ":" + port;
+    }
+
+    public String getId() { return id; }
+    public String getHost() { return host; }
+    public int getPort() { return port; }
+    public String getZone() { return zone; }
+    public State getState() { return state; }
+    public long getIncarnation() { return incarnation; }
+
+    public void setId(String id) { this.id = id; }
+    public void setHost(String host) { this.host = host; }
+    public void setPort(int port) { this.port = port; }
+    public void setZone(String zone) { this.zone = zone; }
+    public void setState(State state) { this.state = state; }
+    public void setIncarnation(long incarnation) { this.incarnation = incarnation; }
+
+    @Override
+    public String toString() {
+        return "GossipMember{" + "id='" + id + '\'' + ", address=" + getAddress() + ", state=" + state + ", incarnation=" + incarnation + '}';
+    }
+}
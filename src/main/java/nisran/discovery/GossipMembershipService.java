@@ -0,0 +1,206 @@
+package nisran.discovery;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.ServerInstance;
+import nisran.config.AWS_SDKConfig;
+import nisran.router.CacheRouter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Runs {@link SwimMembership} among the cache nodes and feeds its live members to the hash ring.
+ *
+ * Nodes find each other through seeds: the static list in {@code service.gossip.seeds} if set,
+ * which needs no AWS and suits local testing, otherwise the instances registered in Cloud Map.
+ * Seeds are only used to join and to heal partitions; after that, joins and failures spread by
+ * gossip within a few protocol periods, rather than waiting for the next Cloud Map poll, and the
+ * cluster size is no longer bounded by one discovery page.
+ */
+@Service("gossipMembership")
+@Profile("cluster")
+@DependsOn("cacheRouter")
+public class GossipMembershipService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GossipMembershipService.class);
+    public static final String GOSSIP_PATH = "/api/cluster/gossip";
+
+    private final CacheRouter cacheRouter;
+    private final ServiceRegistration svcRegistration;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final AWS_SDKConfig awsConfig;
+
+    private final ScheduledExecutorService gossipScheduler;
+    private volatile SwimMembership membership;
+
+    public GossipMembershipService(CacheRouter cacheRouter, ServiceRegistration svcRegistration, HttpClient httpClient,
+                                   ObjectMapper objectMapper, AWS_SDKConfig awsConfig) {
+        this.cacheRouter = cacheRouter;
+        this.svcRegistration = svcRegistration;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.awsConfig = awsConfig;
+        this.gossipScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Gossip-ProtocolThread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    private void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        svcRegistration.getRegistration().thenAcceptAsync(this::join, gossipScheduler);
+    }
+
+    private void join(ServerInstance local) {
+        // The wall clock keeps incarnations growing across restarts of a node with the same id
+        GossipMember self = new GossipMember(local.getServiceId(), local.getIpAddress(), local.getPort(),
+                local.getZone(), GossipMember.State.ALIVE, System.currentTimeMillis());
+        membership = new SwimMembership(self, this::send, live -> gossipScheduler.execute(cacheRouter::refreshMembership),
+                () -> System.nanoTime() / 1_000_000, awsConfig.getGossipAckTimeoutMillis(), awsConfig.getGossipSuspectTimeoutMillis(),
+                awsConfig.getGossipIndirectProbes(), awsConfig.getGossipMaxPiggyback(), new Random());
+        cacheRouter.setMembershipSource(this::liveInstances);
+
+        joinSeeds();
+        int interval = awsConfig.getGossipIntervalMillis();
+        gossipScheduler.scheduleWithFixedDelay(this::probe, interval, interval, TimeUnit.MILLISECONDS);
+        int syncInterval = awsConfig.getGossipSyncIntervalSeconds();
+        gossipScheduler.scheduleWithFixedDelay(this::syncRound, syncInterval, syncInterval, TimeUnit.SECONDS);
+        logger.info("Gossip membership enabled: protocol period {} ms, suspect timeout {} ms, seeds {}.",
+                interval, awsConfig.getGossipSuspectTimeoutMillis(), staticSeeds().isEmpty() ? "from Cloud Map" : staticSeeds());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        gossipScheduler.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return awsConfig.isGossipEnabled();
+    }
+
+    /**
+     * Handles a protocol message from another node.
+     */
+    public CompletableFuture<GossipMessage> handle(GossipMessage message) {
+        SwimMembership current = membership;
+        if (current == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Gossip membership is not enabled"));
+        }
+        return current.handle(message);
+    }
+
+    public Collection<GossipMember> getMembers() {
+        SwimMembership current = membership;
+        return current == null ? List.of() : current.getMembers();
+    }
+
+    private List<ServerInstance> liveInstances() {
+        return membership.getLiveMembers().stream().map(GossipMember::toServerInstance).collect(Collectors.toList());
+    }
+
+    private void probe() {
+        try {
+            membership.probe();
+        } catch (Exception e) {
+            logger.warn("Gossip protocol period failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Exchanges member lists with a random member, and with any seed not yet a member, which
+     * merges partitions and lets nodes that started alone find the cluster.
+     */
+    private void syncRound() {
+        try {
+            membership.sync(null);
+            joinSeeds();
+        } catch (Exception e) {
+            logger.warn("Gossip sync failed: {}", e.getMessage());
+        }
+    }
+
+    private void joinSeeds() {
+        Set<String> known = membership.getLiveMembers().stream().map(GossipMember::getAddress).collect(Collectors.toSet());
+        for (GossipMember seed : seeds()) {
+            if (!known.contains(seed.getAddress())) {
+                membership.sync(seed);
+            }
+        }
+    }
+
+    private List<GossipMember> seeds() {
+        List<GossipMember> seeds = staticSeeds();
+        if (!seeds.isEmpty()) {
+            return seeds;
+        }
+        return cacheRouter.discoverInstances().stream().map(GossipMember::of).collect(Collectors.toList());
+    }
+
+    private List<GossipMember> staticSeeds() {
+        List<GossipMember> seeds = new ArrayList<>();
+        for (String seed : awsConfig.getGossipSeeds().split(",")) {
+            seed = seed.trim();
+            if (seed.isEmpty()) {
+                continue;
+            }
+            int colon = seed.lastIndexOf(':');
+            if (colon < 0) {
+                seeds.add(GossipMember.seed(seed, awsConfig.getPort()));
+            } else {
+                seeds.add(GossipMember.seed(seed.substring(0, colon), Integer.parseInt(seed.substring(colon + 1))));
+            }
+        }
+        return seeds;
+    }
+
+    private CompletableFuture<GossipMessage> send(GossipMember target, GossipMessage message, long timeoutMillis) {
+        try {
+            String url = String.format("http://%s:%d%s", target.getHost(), target.getPort(), GOSSIP_PATH);
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofMillis(timeoutMillis))
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(message)))
+                    .build();
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("Gossip to " + target.getAddress() + " returned status " + response.statusCode());
+                }
+                try {
+                    return objectMapper.readValue(response.body(), GossipMessage.class);
+                } catch (Exception e) {
+                    throw new IllegalStateException("Malformed gossip answer from " + target.getAddress(), e);
+                }
+            });
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
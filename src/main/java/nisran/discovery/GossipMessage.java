@@ -0,0 +1,44 @@
+package nisran.discovery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message of the {@link SwimMembership} protocol. Every message carries its sender and a
+ * few piggybacked membership updates.
+ */
+public class GossipMessage {
+
+    public enum Type {
+        PING,     // answered with ACK
+        PING_REQ, // asks the receiver to ping the target; answered with ACK or NACK
+        ACK,
+        NACK,
+        SYNC      // carries the sender's full member list; answered with the receiver's
+    }
+
+    private Type type;
+    private GossipMember sender;
+    private GossipMember target; // PING_REQ only
+    private List<GossipMember> updates = new ArrayList<>();
+
+    // For JSON
+    public GossipMessage() {}
+
+    public GossipMessage(Type type, GossipMember sender, GossipMember target, List<GossipMember> updates) {
+        this.type = type;
+        this.sender = sender;
+        this.target = target;
+        this.updates = updates;
+    }
+
+    public Type getType() { return type; }
+    public GossipMember getSender() { return sender; }
+    public GossipMember getTarget() { return target; }
+    public List<GossipMember> getUpdates() { return updates; }
+
+    public void setType(Type type) { this.type = type; }
+    public void setSender(GossipMember sender) { this.sender = sender; }
+    public void setTarget(GossipMember target) { this.target = target; }
+    public void setUpdates(List<GossipMember> updates) { this.updates = updates; }
+}
@@ -2,7 +2,6 @@ package nisran.discovery;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.context.annotation.DependsOn;
@@ -10,12 +9,6 @@ import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.support.PeriodicTrigger;
 import org.springframework.stereotype.Service;
 
-import software.amazon.awssdk.services.servicediscovery.ServiceDiscoveryClient;
-import software.amazon.awssdk.services.servicediscovery.model.CustomHealthStatus;
-import software.amazon.awssdk.services.servicediscovery.model.InstanceNotFoundException;
-import software.amazon.awssdk.services.servicediscovery.model.ServiceNotFoundException;
-import software.amazon.awssdk.services.servicediscovery.model.UpdateInstanceCustomHealthStatusRequest;
-
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 
@@ -23,7 +16,7 @@ import java.time.Duration;
 import java.util.concurrent.ScheduledFuture;
 
 /**
- * Manages sending heartbeats to Cloud Map for service instances.
+ * Manages sending heartbeats to the discovery backend for service instances.
  * This service depends on ServiceRegistration to complete initialization first.
  */
 @Service
@@ -33,19 +26,16 @@ public class HeartbeatService {
 
     private static final Logger logger = LoggerFactory.getLogger(HeartbeatService.class);
 
-    private final ServiceDiscoveryClient serviceDiscoveryClient;
+    private final DiscoveryProvider discoveryProvider;
     private final TaskScheduler taskScheduler;
     private ScheduledFuture<?> heartbeatTask;
 
-    @Autowired
-    private EcsMetadata ecsMetadata;
-
     @Value("${cache.service.discovery.heartbeat-interval}")
     private String heartbeatInterval;
 
-    public HeartbeatService(ServiceDiscoveryClient serviceDiscoveryClient,
+    public HeartbeatService(DiscoveryProvider discoveryProvider,
                             TaskScheduler taskScheduler) {
-        this.serviceDiscoveryClient = serviceDiscoveryClient;
+        this.discoveryProvider = discoveryProvider;
         this.taskScheduler = taskScheduler;
     }
 
@@ -82,32 +72,11 @@ public class HeartbeatService {
     }
 
     /**
-     * Sends a single heartbeat to Cloud Map.
+     * Sends a single heartbeat, and stops if the registration is gone.
      */
     private void sendHeartbeat() {
-        String instanceId = ecsMetadata.getTaskId();
-        String serviceId = ecsMetadata.getServiceId();
-
-        if (instanceId == null || serviceId == null) {
-            logger.warn("Cannot send heartbeat because instanceId or serviceId is null. This may be temporary during startup.");
-            return;
-        }
-
-        try {
-            logger.debug("Sending heartbeat for instance: {} in service: {}", instanceId, serviceId);
-            UpdateInstanceCustomHealthStatusRequest request = UpdateInstanceCustomHealthStatusRequest.builder()
-                    .serviceId(serviceId)
-                    .instanceId(instanceId)
-                    .status(CustomHealthStatus.HEALTHY)
-                    .build();
-
-            serviceDiscoveryClient.updateInstanceCustomHealthStatus(request);
-            logger.debug("Heartbeat sent successfully for instance: {}", instanceId);
-        } catch (InstanceNotFoundException | ServiceNotFoundException e) {
-            logger.warn("Instance or Service not found during heartbeat for instanceId: {}. It might have been deregistered. Stopping heartbeats.", instanceId, e);
+        if (!discoveryProvider.heartbeat()) {
             stop();
-        } catch (Exception e) {
-            logger.error("Failed to send heartbeat for instance: {}", instanceId, e);
         }
     }
-}
\ No newline at end of file
+}
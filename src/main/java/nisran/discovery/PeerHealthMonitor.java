@@ -0,0 +1,252 @@
+package nisran.discovery;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.ServerInstance;
+import nisran.config.AWS_SDKConfig;
+import nisran.router.CacheRouter;
+import nisran.transport.Frame;
+import nisran.transport.InterNodeClient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process failure detection between discovery refreshes.
+ *
+ * Cloud Map only marks a node unhealthy after several missed heartbeats, which can take
+ * minutes. This monitor keeps a {@link PhiAccrualFailureDetector} and a {@link CircuitBreaker}
+ * per peer. Detectors are fed by successful inter-node responses and by lightweight pings sent
+ * to peers that have been quiet for a ping interval. A peer is suspected while its phi is above
+ * the threshold or its breaker is open, and requests to it fail fast instead of waiting for
+ * connect timeouts. Only a peer suspected for the whole ring exclusion period is taken out of
+ * the hash ring, until it answers again: moving keys is costly, so a peer whose suspicion
+ * comes and goes does not rebuild the ring every time.
+ */
+@Service("peerHealthMonitor")
+@Profile("cluster")
+@DependsOn("cacheRouter")
+public class PeerHealthMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PeerHealthMonitor.class);
+    public static final String PING_PATH = "/api/cluster/ping";
+
+    private static final int DETECTOR_WINDOW_SIZE = 100;
+
+    private final CacheRouter cacheRouter;
+    private final ServiceRegistration svcRegistration;
+    private final HttpClient httpClient;
+    private final InterNodeClient interNodeClient;
+    private final AWS_SDKConfig awsConfig;
+
+    private final LongSupplier clock = () -> System.nanoTime() / 1_000_000;
+    private final Map<ServerInstance, PhiAccrualFailureDetector> detectors;
+    private final Map<ServerInstance, CircuitBreaker> breakers;
+    private final ScheduledExecutorService pingScheduler;
+    private volatile Set<ServerInstance> suspected = Set.of();
+    private final Map<ServerInstance, Long> suspectedSince = new HashMap<>(); // Used by the ping thread only
+    private volatile Set<ServerInstance> excluded = Set.of(); // Taken out of the ring
+
+    public PeerHealthMonitor(CacheRouter cacheRouter, ServiceRegistration svcRegistration, HttpClient httpClient,
+                             InterNodeClient interNodeClient, AWS_SDKConfig awsConfig) {
+        this.cacheRouter = cacheRouter;
+        this.svcRegistration = svcRegistration;
+        this.httpClient = httpClient;
+        this.interNodeClient = interNodeClient;
+        this.awsConfig = awsConfig;
+        this.detectors = new ConcurrentHashMap<>();
+        this.breakers = new ConcurrentHashMap<>();
+        this.pingScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "PeerHealth-PingThread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    private void start() {
+        if (!isEnabled()) {
+            logger.info("Peer failure detection disabled; relying on service discovery health checks.");
+            return;
+        }
+        int interval = awsConfig.getFailureDetectorPingIntervalMillis();
+        pingScheduler.scheduleWithFixedDelay(this::pingRound, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("Peer failure detection enabled: ping interval {} ms, phi threshold {}.",
+                interval, awsConfig.getFailureDetectorPhiThreshold());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pingScheduler.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return awsConfig.isFailureDetectorEnabled();
+    }
+
+    /**
+     * Returns whether a request to the peer may be sent, or should fail fast.
+     */
+    public boolean allowRequest(ServerInstance peer) {
+        return !isEnabled() || breaker(peer).allowRequest();
+    }
+
+    /**
+     * Records a successful response from the peer, which doubles as a heartbeat.
+     */
+    public void recordSuccess(ServerInstance peer) {
+        if (!isEnabled()) {
+            return;
+        }
+        detector(peer).heartbeat();
+        breaker(peer).onSuccess();
+    }
+
+    public void recordFailure(ServerInstance peer) {
+        if (!isEnabled()) {
+            return;
+        }
+        breaker(peer).onFailure();
+    }
+
+    public boolean isSuspected(ServerInstance peer) {
+        return suspected.contains(peer);
+    }
+
+    private void pingRound() {
+        try {
+            for (ServerInstance peer : cacheRouter.getDiscoveredServerInstances()) {
+                if (isLocal(peer)) {
+                    continue;
+                }
+                long quiet = detector(peer).millisSinceLastHeartbeat();
+                if (quiet < 0 || quiet >= awsConfig.getFailureDetectorPingIntervalMillis()) {
+                    ping(peer);
+                }
+            }
+            updateSuspects();
+        } catch (Exception e) {
+            logger.error("Error during peer health round", e);
+        }
+    }
+
+    private void ping(ServerInstance peer) {
+        CompletableFuture<Boolean> reply;
+        if (interNodeClient.isEnabled()) {
+            reply = interNodeClient.ping(peer).thenApply(Frame::isOk);
+        } else {
+            String url = String.format("http://%s:%d%s", peer.getIpAddress(), peer.getPort(), PING_PATH);
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .timeout(Duration.ofMillis(awsConfig.getFailureDetectorPingIntervalMillis()))
+                    .GET()
+                    .build();
+            reply = httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenApply(response -> response.statusCode() == 200);
+        }
+        reply.whenComplete((ok, error) -> {
+            if (error == null && ok) {
+                recordSuccess(peer);
+            } else {
+                recordFailure(peer);
+            }
+        });
+    }
+
+    /**
+     * Re-evaluates which peers are suspected, and tells the router when the set of peers
+     * suspected for the ring exclusion period changes.
+     */
+    void updateSuspects() {
+        double threshold = awsConfig.getFailureDetectorPhiThreshold();
+        Set<ServerInstance> current = new HashSet<>();
+        for (ServerInstance peer : cacheRouter.getDiscoveredServerInstances()) {
+            if (isLocal(peer)) {
+                continue;
+            }
+            CircuitBreaker breaker = breaker(peer);
+            if (detector(peer).phi() > threshold) {
+                breaker.trip();
+            }
+            if (breaker.getState() != CircuitBreaker.State.CLOSED) {
+                current.add(peer);
+            }
+        }
+        if (!current.equals(suspected)) {
+            logger.warn("Suspected peers changed from {} to {}", suspected, current);
+            suspected = Set.copyOf(current);
+        }
+
+        long now = clock.getAsLong();
+        suspectedSince.keySet().retainAll(current);
+        Set<ServerInstance> confirmed = new HashSet<>();
+        for (ServerInstance peer : current) {
+            long since = suspectedSince.computeIfAbsent(peer, p -> now);
+            if (now - since >= awsConfig.getFailureDetectorRingExclusionMillis()) {
+                confirmed.add(peer);
+            }
+        }
+        if (!confirmed.equals(excluded)) {
+            logger.warn("Peers excluded from the ring changed from {} to {}", excluded, confirmed);
+            excluded = Set.copyOf(confirmed);
+            cacheRouter.setSuspectedInstances(excluded);
+        }
+    }
+
+    private PhiAccrualFailureDetector detector(ServerInstance peer) {
+        // Traffic closer together than half a ping interval carries no extra information
+        return detectors.computeIfAbsent(peer, p -> new PhiAccrualFailureDetector(DETECTOR_WINDOW_SIZE,
+                awsConfig.getFailureDetectorPingIntervalMillis() / 2, awsConfig.getFailureDetectorMinStdDeviationMillis(),
+                awsConfig.getFailureDetectorAcceptablePauseMillis(), clock));
+    }
+
+    private CircuitBreaker breaker(ServerInstance peer) {
+        return breakers.computeIfAbsent(peer, p -> new CircuitBreaker(awsConfig.getCircuitBreakerFailureThreshold(),
+                awsConfig.getCircuitBreakerOpenMillis(), clock));
+    }
+
+    private boolean isLocal(ServerInstance instance) {
+        return instance.getServiceId().equalsIgnoreCase(svcRegistration.getAwsTaskId())
+                && instance.getIpAddress().equalsIgnoreCase(svcRegistration.getIp());
+    }
+
+    /**
+     * Returns phi, breaker state, suspicion and ring exclusion per peer, keyed by node identifier.
+     */
+    public Map<String, Map<String, Object>> getPeerHealth() {
+        Map<String, Map<String, Object>> health = new LinkedHashMap<>();
+        for (ServerInstance peer : cacheRouter.getDiscoveredServerInstances()) {
+            if (isLocal(peer)) {
+                continue;
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("phi", detector(peer).phi());
+            entry.put("millisSinceLastHeartbeat", detector(peer).millisSinceLastHeartbeat());
+            entry.put("breaker", breaker(peer).getState());
+            entry.put("suspected", isSuspected(peer));
+            entry.put("excludedFromRing", excluded.contains(peer));
+            health.put(peer.getNodeIdentifier(), entry);
+        }
+        return health;
+    }
+}
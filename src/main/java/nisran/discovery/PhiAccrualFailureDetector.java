@@ -0,0 +1,94 @@
+package nisran.discovery;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Phi accrual failure detector (Hayashibara et al.) for a single peer.
+ *
+ * Instead of a binary alive/dead verdict it reports phi, the suspicion level derived from how
+ * unlikely the current silence is given the distribution of recent heartbeat intervals. A phi
+ * of 1 means roughly a 10% chance of a false suspicion, 2 means 1%, 3 means 0.1% and so on.
+ * The normal CDF is approximated with a logistic function, as in Akka and Cassandra.
+ */
+public class PhiAccrualFailureDetector {
+
+    private final LongSupplier clock;
+    private final long minIntervalMillis;
+    private final double minStdDeviationMillis;
+    private final long acceptablePauseMillis;
+
+    private final long[] intervals;
+    private int next;
+    private int count;
+    private double sum;
+    private double squaredSum;
+    private long lastHeartbeat = -1;
+
+    /**
+     * @param windowSize Number of recent intervals the distribution is estimated from.
+     * @param minIntervalMillis Arrivals closer than this to the previous one are ignored, so that
+     *                          bursts of traffic do not skew the interval distribution.
+     * @param minStdDeviationMillis Lower bound on the standard deviation, for very regular heartbeats.
+     * @param acceptablePauseMillis Added to the mean to tolerate GC pauses and network hiccups.
+     * @param clock A monotonic clock in milliseconds.
+     */
+    public PhiAccrualFailureDetector(int windowSize, long minIntervalMillis, double minStdDeviationMillis,
+                                     long acceptablePauseMillis, LongSupplier clock) {
+        this.intervals = new long[windowSize];
+        this.minIntervalMillis = minIntervalMillis;
+        this.minStdDeviationMillis = minStdDeviationMillis;
+        this.acceptablePauseMillis = acceptablePauseMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Records a sign of life from the peer: a ping reply or any successful inter-node response.
+     */
+    public synchronized void heartbeat() {
+        long now = clock.getAsLong();
+        if (lastHeartbeat < 0) {
+            lastHeartbeat = now;
+            return;
+        }
+        long interval = now - lastHeartbeat;
+        if (interval < minIntervalMillis) {
+            return;
+        }
+        if (count == intervals.length) {
+            long evicted = intervals[next];
+            sum -= evicted;
+            squaredSum -= (double) evicted * evicted;
+        } else {
+            count++;
+        }
+        intervals[next] = interval;
+        next = (next + 1) % intervals.length;
+        sum += interval;
+        squaredSum += (double) interval * interval;
+        lastHeartbeat = now;
+    }
+
+    /**
+     * Returns the current suspicion level; 0 until at least one interval has been observed.
+     */
+    public synchronized double phi() {
+        if (count == 0) {
+            return 0.0;
+        }
+        long timeSinceLast = clock.getAsLong() - lastHeartbeat;
+        double mean = sum / count + acceptablePauseMillis;
+        double variance = Math.max(0, squaredSum / count - (sum / count) * (sum / count));
+        double stdDeviation = Math.max(Math.sqrt(variance), minStdDeviationMillis);
+
+        double y = (timeSinceLast - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (timeSinceLast > mean) {
+            return -Math.log10(e / (1.0 + e));
+        }
+        return -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+
+    public synchronized long millisSinceLastHeartbeat() {
+        return lastHeartbeat < 0 ? -1 : clock.getAsLong() - lastHeartbeat;
+    }
+}
@@ -0,0 +1,194 @@
+package nisran.discovery;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.ServerInstance;
+import nisran.config.AWS_SDKConfig;
+import nisran.router.AntiEntropyService;
+import nisran.router.CacheRouter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when this node is ready to serve clients, and logs how long it took to get there.
+ *
+ * A node is ready once it is registered and has a non-empty hash ring, and, with
+ * {@code service.readiness.warm-up}, once it has pulled the ranges it replicates from their
+ * primaries or the warm-up timeout has passed. Registration, the first discovery and the
+ * warm-up all run in the background; this service only polls their progress. All times are
+ * logged in milliseconds since the JVM started, up to the first client request admitted.
+ */
+@Service("readinessService")
+@Profile("cluster")
+@DependsOn("cacheRouter")
+public class ReadinessService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadinessService.class);
+
+    private final ServiceRegistration svcRegistration;
+    private final CacheRouter cacheRouter;
+    private final AntiEntropyService antiEntropyService;
+    private final AWS_SDKConfig awsConfig;
+
+    private final ScheduledExecutorService readinessScheduler;
+    private final long jvmStartMillis;
+    private ScheduledFuture<?> checkTask;
+    private CompletableFuture<Void> warmUp;
+    private long warmUpStartedAt;
+
+    private volatile boolean ready;
+    private volatile boolean draining;
+    private volatile long registeredAt = -1;
+    private volatile long ringBuiltAt = -1;
+    private volatile long warmedAt = -1;
+    private volatile long readyAt = -1;
+    private final AtomicLong firstRequestAt = new AtomicLong(-1);
+
+    public ReadinessService(ServiceRegistration svcRegistration, CacheRouter cacheRouter,
+                            AntiEntropyService antiEntropyService, AWS_SDKConfig awsConfig) {
+        this.svcRegistration = svcRegistration;
+        this.cacheRouter = cacheRouter;
+        this.antiEntropyService = antiEntropyService;
+        this.awsConfig = awsConfig;
+        this.jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        this.readinessScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Readiness-CheckThread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    private void start() {
+        svcRegistration.getRegistration().whenCompleteAsync(this::onRegistration, readinessScheduler);
+        int interval = awsConfig.getReadinessCheckIntervalMillis();
+        checkTask = readinessScheduler.scheduleWithFixedDelay(this::check, 0, interval, TimeUnit.MILLISECONDS);
+        logger.info("Startup in progress {} ms after JVM start; waiting for registration{}.",
+                sinceStart(), awsConfig.isReadinessWarmUp() ? ", hash ring and warm-up" : " and hash ring");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        readinessScheduler.shutdownNow();
+    }
+
+    /**
+     * Returns true once startup has completed and until the node starts draining.
+     */
+    public boolean isReady() {
+        return ready && !draining;
+    }
+
+    /**
+     * Returns true once startup has completed. A draining node keeps serving the requests that
+     * still reach it, routing them to the new owners of its keys.
+     */
+    public boolean isStarted() {
+        return ready;
+    }
+
+    /**
+     * Reports the node as not ready from now on, so load balancers stop sending it clients.
+     */
+    public void markDraining() {
+        draining = true;
+        logger.info("Draining {} ms after JVM start.", sinceStart());
+    }
+
+    /**
+     * Records a client request admitted while ready; the first one is logged as time-to-first-request.
+     */
+    public void onRequest() {
+        if (firstRequestAt.get() < 0 && firstRequestAt.compareAndSet(-1, sinceStart())) {
+            logger.info("First client request admitted {} ms after JVM start.", firstRequestAt.get());
+        }
+    }
+
+    private void onRegistration(ServerInstance instance, Throwable error) {
+        if (error != null) {
+            return; // Shut down before registering; the node stays unready
+        }
+        registeredAt = sinceStart();
+        logger.info("Registered {} ms after JVM start.", registeredAt);
+        // Discovery may have run before this node was registered
+        cacheRouter.refreshMembership();
+        check();
+    }
+
+    private void check() {
+        if (ready) {
+            return;
+        }
+        try {
+            if (!svcRegistration.isRegistered()) {
+                return;
+            }
+            if (ringBuiltAt < 0) {
+                if (cacheRouter.getConsistentHashRing().isEmpty()) {
+                    // Retry sooner than the discovery interval while starting
+                    cacheRouter.refreshMembership();
+                    if (cacheRouter.getConsistentHashRing().isEmpty()) {
+                        return;
+                    }
+                }
+                ringBuiltAt = sinceStart();
+                logger.info("Hash ring with {} instances built {} ms after JVM start.",
+                        cacheRouter.getActiveServerCount(), ringBuiltAt);
+            }
+            if (awsConfig.isReadinessWarmUp() && warmedAt < 0) {
+                if (warmUp == null) {
+                    warmUpStartedAt = sinceStart();
+                    warmUp = antiEntropyService.warmUp();
+                }
+                boolean timedOut = sinceStart() - warmUpStartedAt > TimeUnit.SECONDS.toMillis(awsConfig.getReadinessWarmUpTimeoutSeconds());
+                if (!warmUp.isDone() && !timedOut) {
+                    return;
+                }
+                warmedAt = sinceStart();
+                if (timedOut && !warmUp.isDone()) {
+                    logger.warn("Warm-up did not finish within {} s; becoming ready without it.", awsConfig.getReadinessWarmUpTimeoutSeconds());
+                } else {
+                    logger.info("Warm-up finished {} ms after JVM start.", warmedAt);
+                }
+            }
+            readyAt = sinceStart();
+            ready = true;
+            checkTask.cancel(false);
+            logger.info("Ready to serve {} ms after JVM start.", readyAt);
+        } catch (Exception e) {
+            logger.warn("Readiness check failed: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("ready", isReady());
+        status.put("draining", draining);
+        status.put("registrationFailures", svcRegistration.getFailedAttempts());
+        status.put("registeredAtMillis", registeredAt);
+        status.put("ringBuiltAtMillis", ringBuiltAt);
+        status.put("warmUp", awsConfig.isReadinessWarmUp());
+        status.put("warmedAtMillis", warmedAt);
+        status.put("readyAtMillis", readyAt);
+        status.put("firstRequestAtMillis", firstRequestAt.get());
+        return status;
+    }
+
+    private long sinceStart() {
+        return System.currentTimeMillis() - jvmStartMillis;
+    }
+}
@@ -2,18 +2,27 @@ package nisran.discovery;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.stereotype.Component;
 
-import software.amazon.awssdk.services.servicediscovery.ServiceDiscoveryClient;
-import software.amazon.awssdk.services.servicediscovery.model.DeregisterInstanceRequest;
-
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-import nisran.config.AWS_SDKConfig;
-
+import nisran.ServerInstance;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registers this node with the active {@link DiscoveryProvider} and holds its identity.
+ *
+ * Registration runs in the background so that it does not hold up the rest of startup; until
+ * it completes, the getters return null and this node is not ready to serve. Beans that need
+ * the identity of this node to start wait on {@link #getRegistration()}. A failed attempt is
+ * retried after a delay that doubles from one second up to thirty, until registration succeeds
+ * or the node shuts down.
+ */
 @Component("serviceRegistration")
 @EnableScheduling
 @Profile("cluster")
@@ -21,120 +30,116 @@ public class ServiceRegistration {
 
     private static final Logger logger = LoggerFactory.getLogger(ServiceRegistration.class);
 
-    @Autowired
-    private EcsMetadataService ecsMetadataService;
-    
-    @Autowired
-    private EcsMetadata ecsMetadata;
+    private final DiscoveryProvider discoveryProvider;
+    private volatile ServerInstance localInstance;
+    private final CompletableFuture<ServerInstance> registration = new CompletableFuture<>();
+    private final AtomicBoolean deregistered = new AtomicBoolean();
+    private final AtomicInteger failedAttempts = new AtomicInteger();
+    private Thread registrationThread;
 
-    @Autowired
-    private CloudMapManager cloudMapManager;
+    private static final long MIN_RETRY_MILLIS = 1000;
+    private static final long MAX_RETRY_MILLIS = 30_000;
 
-    private final ServiceDiscoveryClient serviceDiscoveryClient;
-    private final AWS_SDKConfig awsConfig;
-
-    public ServiceRegistration(ServiceDiscoveryClient serviceDiscoveryClient, 
-                             AWS_SDKConfig awsConfig) {
-        this.serviceDiscoveryClient = serviceDiscoveryClient;
-        this.awsConfig = awsConfig;
+    public ServiceRegistration(DiscoveryProvider discoveryProvider) {
+        this.discoveryProvider = discoveryProvider;
     }
 
-    private void fetchEcsMetadata() {
-        // Getting Task ARN and Cluster ARN from environment variables
-        String taskArn = System.getenv("ECS_TASK_ARN");
-        String clusterArn = System.getenv("ECS_CLUSTER");
+    @PostConstruct
+    public synchronized void registerService() {
+        logger.debug("ServiceRegistration registerService() called.");
+        registrationThread = new Thread(this::registerUntilDone, "Discovery-RegistrationThread");
+        registrationThread.setDaemon(true);
+        registrationThread.start();
+    }
 
-        if (taskArn == null || clusterArn == null) {
-            logger.debug("ECS_TASK_ARN or ECS_CLUSTER environment variables are not set. " +
-                        "Attempting to retrieve from metadata endpoint.");
-            
+    private void registerUntilDone() {
+        String provider = discoveryProvider.getClass().getSimpleName();
+        long delayMillis = MIN_RETRY_MILLIS;
+        while (!deregistered.get()) {
             try {
-                EcsMetadata metadata = ecsMetadataService.fetchMetadata().orElseThrow(() ->
-                    new IllegalStateException("Failed to retrieve ECS task metadata."));
-                
-                ecsMetadata.setTaskArn(metadata.getTaskArn());
-                ecsMetadata.setClusterArn(metadata.getClusterArn());
-                ecsMetadata.setIpAddress(metadata.getIpAddress());
-                
-                logger.info("Fetched task metadata - Task ARN: {}, Cluster ARN: {}, Task ID: {}",
-                            ecsMetadata.getTaskArn(), ecsMetadata.getClusterArn(), ecsMetadata.getTaskId());
+                ServerInstance instance = discoveryProvider.register();
+                synchronized (this) {
+                    localInstance = instance;
+                    if (deregistered.get()) {
+                        // Shut down while registering: undo it, since shutdown found nothing to undo
+                        discoveryProvider.deregister();
+                        break;
+                    }
+                }
+                logger.info("Registered this node as {} using {}.", instance, provider);
+                registration.complete(instance);
+                return;
             } catch (Exception e) {
-                logger.error("Failed to fetch task metadata", e);
-                throw new RuntimeException("Failed to fetch task metadata", e);
+                logger.error("Registration with {} failed after {} attempts; retrying in {} ms.",
+                        provider, failedAttempts.incrementAndGet(), delayMillis, e);
             }
-        } else {
-            ecsMetadata.setTaskArn(taskArn);
-            ecsMetadata.setClusterArn(clusterArn);
-            logger.debug("Found taskId {} from Task ARN {}", ecsMetadata.getTaskId(), taskArn);
-        }
-    }
-
-    @PostConstruct
-    public void registerService() {
-
-        logger.debug("ServiceRegistration registerService() called.");
-        
-        // Set basic configuration
-        ecsMetadata.setNamespaceName(awsConfig.getNamespaceName());
-        ecsMetadata.setServiceName(awsConfig.getServiceName());
-        ecsMetadata.setPort(awsConfig.getPort());
-
-        fetchEcsMetadata();
-
-        
-        try {
-            logger.info("Starting service registration for service: {}", ecsMetadata.getServiceName());
-            
-            ecsMetadata.setNamespaceId(cloudMapManager.findOrCreateNamespace(ecsMetadata.getNamespaceName()));
-            ecsMetadata.setServiceId(cloudMapManager.findOrCreateService(ecsMetadata.getServiceName(), ecsMetadata.getNamespaceId()));
-            
-            cloudMapManager.findOrCreateInstance(
-                ecsMetadata.getServiceId(),
-                ecsMetadata.getTaskId(),
-                ecsMetadata.getIpAddress(),
-                ecsMetadata.getPort(),
-                ecsMetadata.getTaskArn()
-            );
-            
-            // Start heartbeat service after successful registration
-            // heartbeatService.start();
-            logger.info("Service registration completed successfully.");
-        } catch (Exception e) {
-            logger.error("Failed to register service", e);
-            throw new RuntimeException("Failed to register service", e);
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                break;
+            }
+            delayMillis = Math.min(MAX_RETRY_MILLIS, delayMillis * 2);
         }
+        registration.completeExceptionally(new IllegalStateException("Shut down before registering with " + provider));
     }
 
+    /**
+     * Removes this node from discovery; only the first call has an effect, so a drain can
+     * deregister early and shutdown does not repeat it. Stops a registration still being retried.
+     */
     @PreDestroy
-    public void unregisterService() {
-        if (ecsMetadata.getTaskId() != null && ecsMetadata.getServiceId() != null) {
-            logger.info("Deregistering service instance: {} in service: {}", 
-                       ecsMetadata.getTaskId(), ecsMetadata.getServiceId());
-            try {
-                DeregisterInstanceRequest request = DeregisterInstanceRequest.builder()
-                        .serviceId(ecsMetadata.getServiceId())
-                        .instanceId(ecsMetadata.getTaskId())
-                        .build();
-                serviceDiscoveryClient.deregisterInstance(request);
-                logger.info("Successfully deregistered service instance: {}", ecsMetadata.getServiceId());
-            } catch (Exception e) {
-                logger.error("Failed to deregister service instance: {}", ecsMetadata.getServiceId(), e);
+    public synchronized void unregisterService() {
+        if (deregistered.compareAndSet(false, true)) {
+            if (registrationThread != null) {
+                registrationThread.interrupt();
+            }
+            if (localInstance != null) {
+                discoveryProvider.deregister();
             }
-        } else {
-            logger.warn("Cannot deregister service instance: taskId or serviceId is null");
         }
     }
 
-    // Getters for backward compatibility
-    public String getServiceId() {
-        return ecsMetadata.getServiceId();
+    /**
+     * Returns the number of registration attempts that failed so far.
+     */
+    public int getFailedAttempts() {
+        return failedAttempts.get();
     }
 
+    /**
+     * Returns a future completed with this node's identity once it is registered.
+     */
+    public CompletableFuture<ServerInstance> getRegistration() {
+        return registration;
+    }
+
+    public boolean isRegistered() {
+        return localInstance != null;
+    }
+
+    /**
+     * Returns this node as other nodes discover it, or null before registration.
+     */
+    public ServerInstance getLocalInstance() {
+        return localInstance;
+    }
+
+    // Getters for backward compatibility
     public String getAwsTaskId() {
-        return ecsMetadata.getTaskId();
+        ServerInstance instance = localInstance;
+        return instance == null ? null : instance.getServiceId();
     }
 
     public String getIp() {
-        return ecsMetadata.getIpAddress();
+        ServerInstance instance = localInstance;
+        return instance == null ? null : instance.getIpAddress();
+    }
+
+    /**
+     * Returns the availability zone of this node, or null if it is not known.
+     */
+    public String getAvailabilityZone() {
+        ServerInstance instance = localInstance;
+        return instance == null ? null : instance.getZone();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,100 @@
+package nisran.discovery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import nisran.ServerInstance;
+import nisran.config.AWS_SDKConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Discovery from a fixed list of members in {@code service.discovery.static.members}, for running
+ * a cluster on one machine or in CI without AWS.
+ *
+ * Members are written {@code host:port} or {@code host:port@zone}; a member's id is its
+ * {@code host:port}. This node is {@code service.discovery.local-host} at {@code server.port}.
+ */
+@Component
+@Profile("cluster")
+@ConditionalOnProperty(name = "service.discovery.provider", havingValue = "static")
+public class StaticDiscoveryProvider implements DiscoveryProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticDiscoveryProvider.class);
+
+    private final ServerInstance localInstance;
+    private final List<ServerInstance> members;
+
+    @Autowired
+    public StaticDiscoveryProvider(AWS_SDKConfig awsConfig) {
+        this(localInstance(awsConfig), parseMembers(Arrays.asList(awsConfig.getDiscoveryStaticMembers().split(","))));
+    }
+
+    public StaticDiscoveryProvider(ServerInstance localInstance, List<ServerInstance> members) {
+        this.localInstance = localInstance;
+        this.members = List.copyOf(members);
+    }
+
+    @Override
+    public ServerInstance register() {
+        if (members.stream().noneMatch(member -> member.getServiceId().equals(localInstance.getServiceId()))) {
+            logger.warn("This node {} is not in the static member list {}; it will not own any keys.",
+                    localInstance.getNodeIdentifier(), members);
+        }
+        return localInstance;
+    }
+
+    @Override
+    public List<ServerInstance> discoverInstances() {
+        return members;
+    }
+
+    /**
+     * Returns this node's identity for the providers that do not use AWS.
+     */
+    static ServerInstance localInstance(AWS_SDKConfig awsConfig) {
+        String host = awsConfig.getDiscoveryLocalHost();
+        String zone = awsConfig.getZoneName().isBlank() ? null : awsConfig.getZoneName();
+        return new ServerInstance(host + ":" + awsConfig.getPort(), host, awsConfig.getPort(), zone);
+    }
+
+    /**
+     * Parses member entries of the form {@code host:port[@zone]}, skipping blank ones.
+     * @throws IllegalArgumentException if an entry has no valid port.
+     */
+    public static List<ServerInstance> parseMembers(Collection<String> entries) {
+        List<ServerInstance> members = new ArrayList<>();
+        for (String entry : entries) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            String zone = null;
+            int at = entry.indexOf('@');
+            if (at >= 0) {
+                zone = entry.substring(at + 1).trim();
+                entry = entry.substring(0, at).trim();
+            }
+            int colon = entry.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Member '" + entry + "' must be host:port");
+            }
+            String host = entry.substring(0, colon);
+            int port;
+            try {
+                port = Integer.parseInt(entry.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Member '" + entry + "' has an invalid port", e);
+            }
+            members.add(new ServerInstance(host + ":" + port, host, port, zone == null || zone.isEmpty() ? null : zone));
+        }
+        return members;
+    }
+}
@@ -0,0 +1,406 @@
+package nisran.discovery;
+
+import nisran.discovery.GossipMember.State;
+import nisran.discovery.GossipMessage.Type;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Gossip membership and failure detection after SWIM (Das, Gupta and Motivala).
+ *
+ * Every protocol period a member pings one other member, in a shuffled round-robin order. If
+ * no ack arrives within the ack timeout, it asks a few other members to ping the target on its
+ * behalf; if none of them gets an ack either, the target becomes suspect. A suspect that does
+ * not refute the suspicion within the suspect timeout is declared dead. A member that hears it
+ * is suspected or dead refutes by announcing itself alive with a higher incarnation.
+ *
+ * State changes are disseminated by piggybacking them on protocol messages, each change a
+ * small multiple of log(n) times, so they reach all members in O(log n) periods. Members
+ * join by exchanging full member lists with seeds, and repeat such an exchange with a random
+ * member periodically, which heals partitions and catches missed updates.
+ *
+ * This class does no scheduling and no I/O of its own; the owner calls {@link #probe()} every
+ * protocol period and {@link #sync(GossipMember)} now and then, and supplies the transport.
+ */
+public class SwimMembership {
+
+    private static final Logger logger = LoggerFactory.getLogger(SwimMembership.class);
+
+    private static final int RETRANSMIT_MULTIPLIER = 3;
+
+    /**
+     * Sends a message to a member and completes with its answer.
+     */
+    public interface Transport {
+        CompletableFuture<GossipMessage> send(GossipMember target, GossipMessage message, long timeoutMillis);
+    }
+
+    private final Transport transport;
+    private final Consumer<List<GossipMember>> listener;
+    private final LongSupplier clock;
+    private final long ackTimeoutMillis;
+    private final long suspectTimeoutMillis;
+    private final int indirectProbes;
+    private final int maxPiggyback;
+    private final Random random;
+
+    private GossipMember self;
+    private final Map<String, GossipMember> members = new HashMap<>(); // id -> latest state, without self
+    private final Map<String, Long> changedAt = new HashMap<>();       // id -> time of the last state change
+    private final Map<String, Integer> pending = new HashMap<>();      // id -> retransmissions left
+    private final List<String> probeOrder = new ArrayList<>();
+    private int probeIndex;
+    private List<GossipMember> lastLive = List.of();
+
+    /**
+     * @param self This member. Its incarnation should grow across restarts, e.g. start from the wall clock.
+     * @param listener Called with the live members, self included and sorted by id, whenever they change.
+     * @param clock A monotonic clock in milliseconds.
+     */
+    public SwimMembership(GossipMember self, Transport transport, Consumer<List<GossipMember>> listener, LongSupplier clock,
+                          long ackTimeoutMillis, long suspectTimeoutMillis, int indirectProbes, int maxPiggyback, Random random) {
+        this.self = self;
+        this.transport = transport;
+        this.listener = listener;
+        this.clock = clock;
+        this.ackTimeoutMillis = ackTimeoutMillis;
+        this.suspectTimeoutMillis = suspectTimeoutMillis;
+        this.indirectProbes = indirectProbes;
+        this.maxPiggyback = maxPiggyback;
+        this.random = random;
+    }
+
+    /**
+     * Runs one protocol period: expires suspicions, then probes the next member.
+     */
+    public CompletableFuture<Void> probe() {
+        GossipMember target;
+        synchronized (this) {
+            expireSuspects();
+            target = nextProbeTarget();
+        }
+        notifyIfChanged();
+        if (target == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return ping(target, ackTimeoutMillis).thenCompose(acked -> {
+            if (acked) {
+                return CompletableFuture.completedFuture(true);
+            }
+            return indirectPing(target);
+        }).thenAccept(acked -> {
+            if (!acked) {
+                suspect(target);
+            }
+        });
+    }
+
+    /**
+     * Exchanges full member lists with the given member, or with a random live one if null.
+     */
+    public CompletableFuture<Void> sync(GossipMember target) {
+        GossipMessage message;
+        synchronized (this) {
+            if (target == null) {
+                List<GossipMember> live = others(State.ALIVE);
+                if (live.isEmpty()) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                target = live.get(random.nextInt(live.size()));
+            }
+            message = new GossipMessage(Type.SYNC, self, null, fullState());
+        }
+        String address = target.getAddress();
+        return transport.send(target, message, ackTimeoutMillis).handle((reply, error) -> {
+            if (error != null) {
+                logger.debug("Gossip sync with {} failed: {}", address, error.getMessage());
+            } else {
+                receive(reply);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Handles a message from another member and completes with the answer.
+     */
+    public CompletableFuture<GossipMessage> handle(GossipMessage message) {
+        receive(message);
+        switch (message.getType()) {
+            case PING:
+                return CompletableFuture.completedFuture(reply(Type.ACK));
+            case PING_REQ:
+                return ping(message.getTarget(), ackTimeoutMillis).thenApply(acked -> reply(acked ? Type.ACK : Type.NACK));
+            case SYNC:
+                synchronized (this) {
+                    return CompletableFuture.completedFuture(new GossipMessage(Type.SYNC, self, null, fullState()));
+                }
+            default:
+                throw new IllegalArgumentException("Unexpected gossip message " + message.getType());
+        }
+    }
+
+    private CompletableFuture<Boolean> ping(GossipMember target, long timeoutMillis) {
+        return transport.send(target, reply(Type.PING), timeoutMillis)
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((ack, error) -> {
+                    if (error != null || ack == null) {
+                        return false;
+                    }
+                    receive(ack);
+                    return ack.getType() == Type.ACK;
+                });
+    }
+
+    private CompletableFuture<Boolean> indirectPing(GossipMember target) {
+        List<GossipMember> helpers;
+        synchronized (this) {
+            helpers = others(State.ALIVE);
+            helpers.removeIf(member -> member.getId().equals(target.getId()));
+            Collections.shuffle(helpers, random);
+            helpers = helpers.subList(0, Math.min(indirectProbes, helpers.size()));
+        }
+        if (helpers.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        List<CompletableFuture<Boolean>> attempts = new ArrayList<>();
+        for (GossipMember helper : helpers) {
+            GossipMessage request;
+            synchronized (this) {
+                request = new GossipMessage(Type.PING_REQ, self, target, piggyback());
+            }
+            // The helper waits one ack timeout for the target, so allow for two
+            CompletableFuture<Boolean> attempt = transport.send(helper, request, 2 * ackTimeoutMillis)
+                    .orTimeout(2 * ackTimeoutMillis, TimeUnit.MILLISECONDS)
+                    .handle((answer, error) -> {
+                        if (error != null || answer == null) {
+                            return false;
+                        }
+                        receive(answer);
+                        return answer.getType() == Type.ACK;
+                    });
+            attempt.thenAccept(acked -> {
+                if (acked) {
+                    result.complete(true);
+                }
+            });
+            attempts.add(attempt);
+        }
+        CompletableFuture.allOf(attempts.toArray(new CompletableFuture<?>[0])).thenRun(() -> result.complete(false));
+        return result;
+    }
+
+    private void receive(GossipMessage message) {
+        synchronized (this) {
+            GossipMember sender = message.getSender();
+            if (sender != null && sender.getId() != null) {
+                merge(sender.with(State.ALIVE, sender.getIncarnation()));
+            }
+            if (message.getUpdates() != null) {
+                message.getUpdates().forEach(this::merge);
+            }
+        }
+        notifyIfChanged();
+    }
+
+    private void suspect(GossipMember target) {
+        synchronized (this) {
+            GossipMember current = members.get(target.getId());
+            if (current != null && current.getState() == State.ALIVE && current.getIncarnation() == target.getIncarnation()) {
+                logger.info("Gossip member {} did not answer and is suspected.", current.getAddress());
+                apply(current.with(State.SUSPECT, current.getIncarnation()));
+            }
+        }
+        notifyIfChanged();
+    }
+
+    private void expireSuspects() {
+        long now = clock.getAsLong();
+        for (GossipMember member : new ArrayList<>(members.values())) {
+            long since = now - changedAt.getOrDefault(member.getId(), now);
+            if (member.getState() == State.SUSPECT && since >= suspectTimeoutMillis) {
+                logger.warn("Gossip member {} did not refute suspicion and is declared dead.", member.getAddress());
+                apply(member.with(State.DEAD, member.getIncarnation()));
+            } else if (member.getState() == State.DEAD && since >= 10 * suspectTimeoutMillis) {
+                // Long enough for the news to have spread; stale updates about it are harmless by now
+                members.remove(member.getId());
+                changedAt.remove(member.getId());
+                pending.remove(member.getId());
+            }
+        }
+    }
+
+    /**
+     * Applies an update if it supersedes what is known about the member.
+     */
+    private void merge(GossipMember update) {
+        if (update == null || update.getId() == null) {
+            return;
+        }
+        if (update.getId().equals(self.getId())) {
+            if (update.getState() != State.ALIVE && update.getIncarnation() >= self.getIncarnation()) {
+                // Refute: announce ourselves alive with a higher incarnation
+                self = self.with(State.ALIVE, update.getIncarnation() + 1);
+                enqueue(self.getId());
+                logger.info("Refuted {} state with incarnation {}.", update.getState(), self.getIncarnation());
+            }
+            return;
+        }
+        GossipMember current = members.get(update.getId());
+        if (current == null) {
+            if (update.getState() != State.DEAD) {
+                apply(update);
+            }
+            return;
+        }
+        if (supersedes(update, current)) {
+            apply(update);
+        }
+    }
+
+    static boolean supersedes(GossipMember update, GossipMember current) {
+        long incoming = update.getIncarnation();
+        long known = current.getIncarnation();
+        switch (update.getState()) {
+            case ALIVE:
+                return incoming > known;
+            case SUSPECT:
+                return current.getState() == State.ALIVE ? incoming >= known : incoming > known;
+            case DEAD:
+                return current.getState() != State.DEAD && incoming >= known;
+            default:
+                return false;
+        }
+    }
+
+    private void apply(GossipMember member) {
+        GossipMember previous = members.put(member.getId(), member);
+        if (previous == null || previous.getState() != member.getState()) {
+            changedAt.put(member.getId(), clock.getAsLong());
+        }
+        enqueue(member.getId());
+    }
+
+    private void enqueue(String id) {
+        int n = members.size() + 1;
+        int transmissions = RETRANSMIT_MULTIPLIER * (int) Math.ceil(Math.log(n + 1) / Math.log(2));
+        pending.put(id, transmissions);
+    }
+
+    /**
+     * Takes the updates to piggyback on the next message, those sent least often first.
+     */
+    private List<GossipMember> piggyback() {
+        List<String> ids = pending.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(maxPiggyback)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        List<GossipMember> updates = new ArrayList<>();
+        for (String id : ids) {
+            GossipMember member = id.equals(self.getId()) ? self : members.get(id);
+            if (member != null) {
+                updates.add(member);
+            }
+            pending.computeIfPresent(id, (key, left) -> left > 1 ? left - 1 : null);
+        }
+        return updates;
+    }
+
+    private synchronized GossipMessage reply(Type type) {
+        return new GossipMessage(type, self, null, piggyback());
+    }
+
+    private List<GossipMember> fullState() {
+        List<GossipMember> state = new ArrayList<>(members.values());
+        state.add(self);
+        return state;
+    }
+
+    private GossipMember nextProbeTarget() {
+        if (probeIndex >= probeOrder.size()) {
+            probeOrder.clear();
+            probeOrder.addAll(members.keySet());
+            Collections.shuffle(probeOrder, random);
+            probeIndex = 0;
+        }
+        while (probeIndex < probeOrder.size()) {
+            GossipMember member = members.get(probeOrder.get(probeIndex++));
+            if (member != null && member.getState() != State.DEAD) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    private List<GossipMember> others(State state) {
+        return members.values().stream().filter(member -> member.getState() == state).collect(Collectors.toList());
+    }
+
+    /**
+     * Calls the listener if the live members changed. Must be called without holding the lock,
+     * as the listener may call back into this class from other threads.
+     */
+    private void notifyIfChanged() {
+        List<GossipMember> live;
+        synchronized (this) {
+            live = getLiveMembers();
+            if (sameMembers(live, lastLive)) {
+                return;
+            }
+            lastLive = live;
+        }
+        listener.accept(live);
+    }
+
+    private static boolean sameMembers(List<GossipMember> a, List<GossipMember> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.get(i).getId().equals(b.get(i).getId()) || !a.get(i).getAddress().equals(b.get(i).getAddress())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the members that are not dead, self included, sorted by id.
+     */
+    public synchronized List<GossipMember> getLiveMembers() {
+        List<GossipMember> live = members.values().stream()
+                .filter(member -> member.getState() != State.DEAD)
+                .collect(Collectors.toList());
+        live.add(self);
+        live.sort(Comparator.comparing(GossipMember::getId));
+        return live;
+    }
+
+    /**
+     * Returns every known member, dead ones included, and self.
+     */
+    public synchronized Collection<GossipMember> getMembers() {
+        return fullState();
+    }
+
+    public synchronized GossipMember getSelf() {
+        return self;
+    }
+}
@@ -0,0 +1,317 @@
+package nisran.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.cache.CacheListener;
+import nisran.cache.LRUCache;
+import nisran.config.AWS_SDKConfig;
+import nisran.router.BloomFilterManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Second cache tier on local disk for entries evicted from memory.
+ *
+ * An evicted entry is queued, and a single writer thread encodes it and appends it to a
+ * {@link SegmentStore}; until then it is served from the queue. A miss in memory looks the key
+ * up in the tier, without the cache lock, and if found moves it back into memory, which may in
+ * turn evict another entry to the tier. An entry is in at most one tier: writing or removing a
+ * key that is on disk drops it from there; the keys on disk are tracked in a concurrent set, so
+ * that writes of other keys cost nothing. The drop is queued to the writer behind any demotion
+ * of the key, or, if the queue is full, left in a set the writer empties before its next
+ * demotion, so that the cache lock never waits for the store. Until the drop is done the key is
+ * a miss on disk. The writer also compacts the segment with the least live data whenever it is idle, and
+ * every thousand or so entries while it is not, and when the disk is full the oldest segment is
+ * dropped. Evicted entries stay in this node's Bloom filter for as long as they are on disk.
+ * The tier is a cache, not storage: it starts empty.
+ */
+@Service("diskTierService")
+@Profile("cluster")
+public class DiskTierService implements CacheListener<String, Object> {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskTierService.class);
+    private static final int COMPACTION_EVERY = 1024;
+
+    private static final class Demotion {
+        final String key;
+        final Object value;
+        final boolean discard; // Drop the key from disk instead of writing it
+
+        Demotion(String key, Object value, boolean discard) {
+            this.key = key;
+            this.value = value;
+            this.discard = discard;
+        }
+    }
+
+    private final LRUCache<String, Object> localCache;
+    private final BloomFilterManager bloomFilterManager;
+    private final ObjectMapper objectMapper;
+    private final AWS_SDKConfig awsConfig;
+
+    private final Map<String, Object> pending = new ConcurrentHashMap<>(); // Evicted, not yet on disk
+    private final Map<String, Integer> discarding = new ConcurrentHashMap<>(); // Queued drops per key
+    private final Set<String> overflowDiscards = ConcurrentHashMap.newKeySet(); // Drops that did not fit in the queue
+    private final Set<String> onDisk = ConcurrentHashMap.newKeySet(); // Keys with a record in the store
+    private final BlockingQueue<Demotion> queue;
+    private final Function<String, Object> promoter = this::promote;
+    private SegmentStore store;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder hitNanos = new LongAdder();
+    private final LongAdder demotions = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public DiskTierService(LRUCache<String, Object> localCache, BloomFilterManager bloomFilterManager,
+                           ObjectMapper objectMapper, AWS_SDKConfig awsConfig) {
+        this.localCache = localCache;
+        this.bloomFilterManager = bloomFilterManager;
+        this.objectMapper = objectMapper;
+        this.awsConfig = awsConfig;
+        this.queue = new ArrayBlockingQueue<>(awsConfig.getDiskTierQueueCapacity());
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        store = new SegmentStore(Path.of(awsConfig.getDiskTierDir()), awsConfig.getDiskTierMaxBytes(),
+                awsConfig.getDiskTierSegmentBytes(), key -> {
+            onDisk.remove(key);
+            bloomFilterManager.removeStored(key);
+        });
+        running = true;
+        writerThread = new Thread(this::writeLoop, "DiskTier-WriterThread");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        localCache.addListener(this);
+        localCache.addMissLoader(promoter);
+        logger.info("Disk tier enabled: {} bytes in {} byte segments under {}.", awsConfig.getDiskTierMaxBytes(),
+                awsConfig.getDiskTierSegmentBytes(), awsConfig.getDiskTierDir());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (store == null) {
+            return;
+        }
+        localCache.removeMissLoader(promoter);
+        localCache.removeListener(this);
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        store.close();
+    }
+
+    public boolean isEnabled() {
+        return awsConfig.isDiskTierEnabled();
+    }
+
+    // ---- Cache events, called while the cache is locked ----
+
+    @Override
+    public void onEvict(String key, Object value) {
+        pending.put(key, value);
+        if (queue.offer(new Demotion(key, value, false))) {
+            // The demotion replaces any record of the key, and is skipped only if the key is
+            // promoted, which takes the record, or written again, which queues another drop
+            overflowDiscards.remove(key);
+            bloomFilterManager.addStored(key);
+        } else {
+            pending.remove(key, value);
+            rejected.increment();
+        }
+    }
+
+    @Override
+    public void onInsert(String key, Object value) {
+        discard(key);
+    }
+
+    @Override
+    public void onUpdate(String key, Object oldValue, Object newValue) {
+        discard(key);
+    }
+
+    @Override
+    public void onRemove(String key, Object value) {
+        discard(key);
+    }
+
+    @Override
+    public void onRemoveAbsent(String key) {
+        discard(key);
+    }
+
+    private void discard(String key) {
+        if (pending.remove(key) != null) {
+            bloomFilterManager.removeStored(key);
+        }
+        if (!onDisk.contains(key)) {
+            return;
+        }
+        discarding.merge(key, 1, Integer::sum);
+        if (!queue.offer(new Demotion(key, null, true))) {
+            overflowDiscards.add(key);
+            uncount(key);
+        }
+    }
+
+    private void discarded(String key) {
+        drop(key);
+        uncount(key);
+    }
+
+    private void drop(String key) {
+        if (store.remove(key)) {
+            bloomFilterManager.removeStored(key);
+        }
+        onDisk.remove(key);
+    }
+
+    private void uncount(String key) {
+        discarding.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Called by the cache, without its lock, on a miss.
+     */
+    private Object promote(String key) {
+        long startedAt = System.nanoTime();
+        Object value = pending.remove(key);
+        if (value == null && (discarding.containsKey(key) || overflowDiscards.contains(key))) {
+            // What is on disk was written or removed since; the writer drops it
+            misses.increment();
+            return null;
+        }
+        boolean held = value != null;
+        try {
+            byte[] bytes;
+            synchronized (store) {
+                onDisk.remove(key);
+                bytes = store.take(key);
+            }
+            held |= bytes != null;
+            if (value == null && bytes != null) {
+                value = objectMapper.readValue(bytes, Object.class);
+            }
+        } catch (IOException e) {
+            held = true;
+            logger.warn("Dropping {} from the disk tier: {}", key, e.getMessage());
+        }
+        if (held) {
+            bloomFilterManager.removeStored(key);
+        }
+        if (value == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        hitNanos.add(System.nanoTime() - startedAt);
+        return value;
+    }
+
+    // ---- Writer ----
+
+    private void writeLoop() {
+        int written = 0;
+        while (running) {
+            try {
+                for (String key : overflowDiscards) {
+                    overflowDiscards.remove(key);
+                    drop(key);
+                }
+                Demotion demotion = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (demotion != null && demotion.discard) {
+                    discarded(demotion.key);
+                } else if (demotion != null) {
+                    write(demotion);
+                }
+                if (demotion == null || ++written % COMPACTION_EVERY == 0) {
+                    store.compact(awsConfig.getDiskTierCompactionThreshold());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Disk tier writer failed.", e);
+            }
+        }
+    }
+
+    private void write(Demotion demotion) {
+        byte[] bytes;
+        try {
+            bytes = objectMapper.writeValueAsBytes(demotion.value);
+        } catch (IOException e) {
+            logger.warn("Could not encode {} for the disk tier: {}", demotion.key, e.getMessage());
+            bytes = null;
+        }
+        if (bytes != null) {
+            store.ensureRoom(SegmentStore.recordBytes(demotion.key, bytes));
+        }
+        // Moved from the queue to disk atomically with respect to promote, which takes the
+        // pending entry first and then the store lock: an entry promoted or discarded since it
+        // was queued is no longer pending and is not written. The key counts as on disk before
+        // it leaves the pending map, so that a write of it in between queues a drop.
+        synchronized (store) {
+            onDisk.add(demotion.key);
+            if (!pending.remove(demotion.key, demotion.value)) {
+                if (!store.contains(demotion.key)) {
+                    onDisk.remove(demotion.key);
+                }
+                return;
+            }
+            if (bytes != null && store.put(demotion.key, bytes)) {
+                demotions.increment();
+            } else {
+                // An older record of the key must not outlive the newer value that was not written
+                rejected.increment();
+                bloomFilterManager.removeStored(demotion.key);
+                drop(demotion.key);
+            }
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", isEnabled());
+        if (store == null) {
+            return metrics;
+        }
+        long hitCount = hits.sum();
+        metrics.put("hits", hitCount);
+        metrics.put("misses", misses.sum());
+        metrics.put("averageHitMicros", hitCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(hitNanos.sum() / hitCount));
+        metrics.put("demotions", demotions.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("queued", queue.size());
+        metrics.putAll(store.getMetrics());
+        return metrics;
+    }
+}
@@ -0,0 +1,476 @@
+package nisran.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of cache mutations, written by a single thread.
+ *
+ * Callers only enqueue, and never wait: they append while the cache is locked. When the queue
+ * is full a mutation is dropped and the log is rewritten from the cache, which records the
+ * dropped mutation's effect; the queue is emptied at the instant the cache is copied, since the
+ * copy already holds everything queued, so the queue has room again once the rewrite is done.
+ * Such rewrites are at least {@value #MIN_FORCED_REWRITE_MILLIS} ms apart, so that a writer
+ * that cannot keep up does not rewrite the log back to back. The writer thread takes everything queued at once, writes it with one
+ * system call and, depending on the {@link FsyncPolicy}, forces it to disk (group commit), so the
+ * cost of a write and an fsync is shared by all mutations of a group. Values are encoded on the
+ * writer thread as well. Each record is {@code length, crc32, type, keyLength, key, value}; a torn
+ * or corrupt tail, as left by a crash, is cut off when the log is replayed.
+ *
+ * Once the log outgrows its limit it is rewritten from the current contents of the cache,
+ * least recently used first, so that replaying it also restores recency. When snapshots are
+ * taken, a marker is logged with each one, and once the snapshot is on disk the records up to
+ * the marker are dropped.
+ */
+public class MutationLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MutationLog.class);
+
+    public enum FsyncPolicy {
+        ALWAYS,   // After every group, at most one group is lost in a power failure
+        INTERVAL, // At most every fsync interval
+        NEVER     // Left to the operating system; a process crash loses nothing, a power failure may
+    }
+
+    /**
+     * Receives the mutations of a log in the order they were appended.
+     */
+    public interface Replayer {
+        void set(String key, byte[] value);
+
+        void remove(String key);
+    }
+
+    private static final byte SET = 1;
+    private static final byte REMOVE = 2;
+    private static final byte MARKER = 3;   // A snapshot was taken here
+    private static final byte TRUNCATE = 4; // Not a record: drop everything up to a marker
+    private static final int HEADER_BYTES = 8; // length, crc32
+    private static final int MAX_GROUP = 4096;
+    private static final long MIN_FORCED_REWRITE_MILLIS = 10_000;
+
+    private static final class Mutation {
+        final byte type;
+        final String key;
+        final Object value;
+
+        Mutation(byte type, String key, Object value) {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final Path path;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final long maxBytes;
+    private final Function<Object, byte[]> encoder;
+    private final BlockingQueue<Mutation> queue;
+
+    private FileChannel channel;
+    private Function<Runnable, Map<String, Object>> rewriteSource;
+    private Thread writerThread;
+    private volatile boolean running;
+    private long lastFsyncAt;
+    private volatile long bytes; // Size of the log, kept here since the channel is replaced by rewrites
+    private volatile boolean rewriteNeeded; // A mutation was dropped, so the log no longer matches the cache
+    private long rewriteAt; // At least twice the size after the last rewrite, so a large cache is not rewritten over and over
+    private long lastForcedRewriteAt; // System.nanoTime() of the last rewrite after dropped mutations
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong fsyncs = new AtomicLong();
+    private final AtomicLong rewrites = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param maxBytes Size beyond which the log is rewritten from the cache.
+     * @param encoder Serialises values; called on the writer thread.
+     */
+    public MutationLog(Path path, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, long maxBytes,
+                       int queueCapacity, Function<Object, byte[]> encoder) throws IOException {
+        this.path = path;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.maxBytes = maxBytes;
+        this.rewriteAt = maxBytes;
+        this.encoder = encoder;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Replays the whole log, and cuts off anything after the last intact record. Call before {@link #start}.
+     * @return The number of records replayed.
+     */
+    public long replay(Replayer replayer) throws IOException {
+        return replay(replayer, -1);
+    }
+
+    /**
+     * Replays the mutations after the marker with the given id, or the whole log if it has no
+     * such marker, and cuts off anything after the last intact record. Call before {@link #start}.
+     * @param afterMarker The id of the snapshot the cache was restored from, or -1.
+     * @return The number of records replayed.
+     */
+    public long replay(Replayer replayer, long afterMarker) throws IOException {
+        long from = afterMarker < 0 ? 0 : Math.max(0, findMarker(afterMarker));
+        long size = channel.size();
+        long[] records = {0};
+        long position = scan(from, (type, key, value, end) -> {
+            if (type == SET) {
+                replayer.set(key, value);
+            } else if (type == REMOVE) {
+                replayer.remove(key);
+            }
+            records[0]++;
+        });
+        if (position < size) {
+            logger.warn("Mutation log {} has {} bytes after the last intact record; truncating.", path, size - position);
+            channel.truncate(position);
+        }
+        channel.position(position);
+        bytes = position;
+        return records[0];
+    }
+
+    private interface RecordVisitor {
+        void visit(byte type, String key, byte[] value, long end);
+    }
+
+    /**
+     * Visits the intact records from the given position on.
+     * @return The position after the last intact record.
+     */
+    private long scan(long position, RecordVisitor visitor) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (length < 5 || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, position + HEADER_BYTES);
+            if (crc32(payload.array()) != crc) {
+                break;
+            }
+            payload.flip();
+            byte type = payload.get();
+            int keyLength = payload.getInt();
+            if (keyLength < 0 || keyLength > payload.remaining() || type < SET || type > MARKER) {
+                break;
+            }
+            String key = new String(payload.array(), payload.position(), keyLength, StandardCharsets.UTF_8);
+            payload.position(payload.position() + keyLength);
+            byte[] value = new byte[payload.remaining()];
+            payload.get(value);
+            position += HEADER_BYTES + length;
+            visitor.visit(type, key, value, position);
+        }
+        return position;
+    }
+
+    /**
+     * @return The position after the marker with the given id, or -1 if there is none.
+     */
+    private long findMarker(long id) throws IOException {
+        long[] found = {-1};
+        scan(0, (type, key, value, end) -> {
+            if (type == MARKER && ByteBuffer.wrap(value).getLong() == id) {
+                found[0] = end;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Starts the writer thread.
+     * @param rewriteSource Returns the current cache contents, most recently used first, having
+     *                      run the given action while the cache is locked at the instant the
+     *                      contents are of; or returns null, without running it, if the cache
+     *                      cannot be rewritten from yet.
+     */
+    public void start(Function<Runnable, Map<String, Object>> rewriteSource) {
+        this.rewriteSource = rewriteSource;
+        this.running = true;
+        this.lastFsyncAt = System.nanoTime();
+        this.lastForcedRewriteAt = lastFsyncAt - TimeUnit.MILLISECONDS.toNanos(MIN_FORCED_REWRITE_MILLIS);
+        writerThread = new Thread(this::writeLoop, "MutationLog-WriterThread");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues a write without blocking; if the queue is full the log is rewritten instead.
+     */
+    public void appendSet(String key, Object value) {
+        enqueue(new Mutation(SET, key, value));
+    }
+
+    public void appendRemove(String key) {
+        enqueue(new Mutation(REMOVE, key, null));
+    }
+
+    /**
+     * Records that a snapshot with the given id holds every mutation appended before this call.
+     * Must be called while the cache is locked, in the same critical section that copies it.
+     * @return false if the queue was full; the log must then not be truncated for this snapshot.
+     */
+    public boolean appendMarker(long id) {
+        return queue.offer(new Mutation(MARKER, "", id));
+    }
+
+    /**
+     * Drops the records up to the marker with the given id, once that snapshot is durable.
+     * Must not be called while the cache is locked, as it waits for room in the queue.
+     */
+    public void truncateThrough(long id) {
+        try {
+            queue.put(new Mutation(TRUNCATE, null, id));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(Mutation mutation) {
+        if (!queue.offer(mutation)) {
+            dropped.incrementAndGet();
+            rewriteNeeded = true;
+        }
+    }
+
+    private void writeLoop() {
+        List<Mutation> group = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Mutation first = queue.poll(Math.max(1, fsyncIntervalMillis), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    group.add(first);
+                    queue.drainTo(group, MAX_GROUP - 1);
+                    int from = 0;
+                    for (int i = 0; i < group.size(); i++) {
+                        if (group.get(i).type == TRUNCATE) {
+                            write(group.subList(from, i));
+                            truncate((Long) group.get(i).value);
+                            from = i + 1;
+                        }
+                    }
+                    write(group.subList(from, group.size()));
+                    group.clear();
+                }
+                if (fsyncPolicy == FsyncPolicy.INTERVAL
+                        && System.nanoTime() - lastFsyncAt >= TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis)) {
+                    force();
+                }
+                // Producers never wait on the queue, so the writer may lock the cache to rewrite
+                if (bytes > rewriteAt || (rewriteNeeded && System.nanoTime() - lastForcedRewriteAt
+                        >= TimeUnit.MILLISECONDS.toNanos(MIN_FORCED_REWRITE_MILLIS))) {
+                    rewrite();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                group.clear();
+                logger.error("Mutation log write failed; mutations of this group are not durable.", e);
+            }
+        }
+        // A rewrite held back by the rate limit is still done before the log is closed
+        if (rewriteNeeded) {
+            try {
+                rewrite();
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                logger.error("Mutation log rewrite failed; dropped mutations are not durable.", e);
+            }
+        }
+    }
+
+    private void write(List<Mutation> group) throws IOException {
+        if (group.isEmpty()) {
+            return;
+        }
+        List<byte[]> records = new ArrayList<>(group.size());
+        int total = 0;
+        for (Mutation mutation : group) {
+            byte[] value;
+            if (mutation.type == SET) {
+                value = encoder.apply(mutation.value);
+            } else if (mutation.type == MARKER) {
+                value = ByteBuffer.allocate(8).putLong((Long) mutation.value).array();
+            } else {
+                value = new byte[0];
+            }
+            byte[] record = encode(mutation.type, mutation.key, value);
+            records.add(record);
+            total += record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        records.forEach(buffer::put);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        bytes += total;
+        appended.addAndGet(group.size());
+        groups.incrementAndGet();
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            force();
+        }
+    }
+
+    private void force() throws IOException {
+        channel.force(false);
+        fsyncs.incrementAndGet();
+        lastFsyncAt = System.nanoTime();
+    }
+
+    /**
+     * Replaces the log with one record per cached entry. Everything queued when the contents are
+     * taken is already in them, so it is discarded along with any marker, whose snapshot the
+     * rewritten log then no longer truncates; what is queued afterwards is appended afterwards.
+     */
+    private void rewrite() throws IOException {
+        boolean forced = rewriteNeeded;
+        Map<String, Object> contents = rewriteSource.apply(() -> {
+            queue.clear();
+            rewriteNeeded = false;
+        });
+        if (contents == null) {
+            return; // The cache does not hold everything yet
+        }
+        if (forced) {
+            lastForcedRewriteAt = System.nanoTime();
+        }
+        long before = bytes;
+        List<Map.Entry<String, Object>> entries = new ArrayList<>(contents.entrySet());
+        Path rewritten = path.resolveSibling(path.getFileName() + ".rewrite");
+        try (FileChannel out = FileChannel.open(rewritten, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                Map.Entry<String, Object> entry = entries.get(i);
+                ByteBuffer buffer = ByteBuffer.wrap(encode(SET, entry.getKey(), encoder.apply(entry.getValue())));
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            out.force(true);
+        }
+        replaceWith(rewritten);
+        rewrites.incrementAndGet();
+        logger.info("Rewrote mutation log {} from {} to {} bytes with {} entries.", path, before, bytes, entries.size());
+    }
+
+    /**
+     * Keeps only the records after the marker with the given id.
+     */
+    private void truncate(long markerId) throws IOException {
+        long from = findMarker(markerId);
+        if (from < 0) {
+            logger.warn("Mutation log {} has no marker {}; not truncated.", path, markerId);
+            return;
+        }
+        long before = bytes;
+        Path rewritten = path.resolveSibling(path.getFileName() + ".rewrite");
+        try (FileChannel out = FileChannel.open(rewritten, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = from;
+            while (position < before) {
+                position += channel.transferTo(position, before - position, out);
+            }
+            out.force(true);
+        }
+        replaceWith(rewritten);
+        logger.info("Truncated mutation log {} from {} to {} bytes after snapshot {}.", path, before, bytes, markerId);
+    }
+
+    private void replaceWith(Path rewritten) throws IOException {
+        channel.close();
+        Files.move(rewritten, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        bytes = channel.size();
+        channel.position(bytes);
+        rewriteAt = Math.max(maxBytes, 2 * bytes);
+    }
+
+    private static byte[] encode(byte type, String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 4 + keyBytes.length + value.length;
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        payload.put(type).putInt(keyBytes.length).put(keyBytes).put(value);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+        record.putInt(length).putInt(crc32(payload.array())).put(payload.array());
+        return record.array();
+    }
+
+    private static int crc32(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes what is queued, forces it to disk and closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (fsyncPolicy != FsyncPolicy.NEVER && channel.isOpen()) {
+            force();
+        }
+        channel.close();
+    }
+
+    public long size() {
+        return bytes;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("bytes", bytes);
+        metrics.put("appended", appended.get());
+        metrics.put("groups", groups.get());
+        metrics.put("fsyncs", fsyncs.get());
+        metrics.put("rewrites", rewrites.get());
+        metrics.put("failures", failures.get());
+        metrics.put("dropped", dropped.get());
+        metrics.put("queued", queue.size());
+        return metrics;
+    }
+}
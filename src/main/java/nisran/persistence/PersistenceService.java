@@ -0,0 +1,372 @@
+package nisran.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.cache.CacheListener;
+import nisran.cache.LRUCache;
+import nisran.config.AWS_SDKConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps the local cache across restarts, from a snapshot plus a log of the mutations since.
+ *
+ * On startup, before this node serves anything, the last {@link SnapshotFile} in
+ * {@code service.persistence.dir} is mapped, and the {@link MutationLog} records after its marker
+ * are replayed into the cache. Snapshot values are then restored in the background, hottest
+ * first, while a miss on a key still in the snapshot loads it on the spot, so the node serves
+ * hits within moments of starting. From then on every set and removal is appended to the log,
+ * and a new snapshot is taken periodically, after which the log is cut back to its marker.
+ * Evictions and reads are not logged, so a replay restores the entries that were set last,
+ * up to the capacity of the cache, but not their recency; a snapshot restores both.
+ */
+@Service("persistenceService")
+@Profile("cluster")
+public class PersistenceService implements CacheListener<String, Object> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistenceService.class);
+    static final String LOG_FILE = "mutations.log";
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final int RESTORE_BATCH = 256; // Snapshot entries restored per acquisition of the cache lock
+
+    private final LRUCache<String, Object> localCache;
+    private final ObjectMapper objectMapper;
+    private final AWS_SDKConfig awsConfig;
+    private final ScheduledExecutorService snapshotScheduler;
+
+    private MutationLog mutationLog;
+    private long replayed;
+
+    private volatile SnapshotFile restoring; // Until every value of the snapshot is restored or dropped
+    private long restored;
+    private volatile long lastSnapshotId = -1;
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong snapshotFailures = new AtomicLong();
+    private volatile long lastSnapshotCopyMicros;
+    private volatile long lastSnapshotMillis;
+
+    /**
+     * Drops snapshot entries written or removed since the snapshot was taken.
+     */
+    private final CacheListener<String, Object> snapshotInvalidator = new CacheListener<>() {
+        @Override
+        public void onInsert(String key, Object value) {
+            drop(key);
+        }
+
+        @Override
+        public void onUpdate(String key, Object oldValue, Object newValue) {
+            drop(key);
+        }
+
+        @Override
+        public void onRemove(String key, Object value) {
+            drop(key);
+        }
+
+        @Override
+        public void onRemoveAbsent(String key) {
+            drop(key);
+        }
+
+        private void drop(String key) {
+            SnapshotFile snapshot = restoring;
+            if (snapshot != null) {
+                snapshot.drop(key);
+            }
+        }
+    };
+
+    private final Function<String, Object> snapshotLoader = this::loadFromSnapshot;
+
+    public PersistenceService(LRUCache<String, Object> localCache, ObjectMapper objectMapper, AWS_SDKConfig awsConfig) {
+        this.localCache = localCache;
+        this.objectMapper = objectMapper;
+        this.awsConfig = awsConfig;
+        this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Persistence-SnapshotThread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!isEnabled() && !isSnapshotEnabled()) {
+            return;
+        }
+        Path dir = Path.of(awsConfig.getPersistenceDir());
+        long restoredFrom = -1;
+        if (isSnapshotEnabled() && Files.exists(dir.resolve(SNAPSHOT_FILE))) {
+            restoredFrom = mapSnapshot(dir.resolve(SNAPSHOT_FILE));
+        }
+
+        if (isEnabled()) {
+            MutationLog.FsyncPolicy policy = MutationLog.FsyncPolicy.valueOf(awsConfig.getPersistenceFsync().toUpperCase(Locale.ROOT));
+            mutationLog = new MutationLog(dir.resolve(LOG_FILE), policy, awsConfig.getPersistenceFsyncIntervalMillis(),
+                    awsConfig.getPersistenceMaxLogBytes(), awsConfig.getPersistenceQueueCapacity(), this::encode);
+
+            long startedAt = System.nanoTime();
+            replayed = mutationLog.replay(new MutationLog.Replayer() {
+                @Override
+                public void set(String key, byte[] value) {
+                    localCache.set(key, decode(value));
+                }
+
+                @Override
+                public void remove(String key) {
+                    localCache.remove(key);
+                }
+            }, restoredFrom);
+            logger.info("Replayed {} mutations from {} in {} ms.", replayed, dir.resolve(LOG_FILE),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+
+            // Listening only now keeps the replay out of the log; while the snapshot is being
+            // restored the cache does not hold everything, so the log is not rewritten from it
+            mutationLog.start(atStart -> restoring == null ? localCache.snapshot(atStart) : null);
+            localCache.addListener(this);
+            logger.info("Mutation log enabled with fsync policy {}.", policy);
+        }
+
+        if (restoring != null) {
+            snapshotScheduler.execute(this::restoreSnapshot);
+        } else {
+            scheduleSnapshots();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        snapshotScheduler.shutdownNow();
+        try {
+            snapshotScheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // A fresh snapshot leaves little of the log to replay on the next start
+        if (isSnapshotEnabled() && restoring == null) {
+            takeSnapshot();
+        }
+        if (mutationLog != null) {
+            localCache.removeListener(this);
+            mutationLog.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return awsConfig.isPersistenceEnabled();
+    }
+
+    public boolean isSnapshotEnabled() {
+        return awsConfig.isPersistenceSnapshotEnabled();
+    }
+
+    /**
+     * @return The id of the mapped snapshot, or -1 if it could not be used.
+     */
+    private long mapSnapshot(Path file) {
+        long startedAt = System.nanoTime();
+        try {
+            SnapshotFile snapshot = SnapshotFile.open(file);
+            restoring = snapshot;
+            lastSnapshotId = snapshot.getId();
+            localCache.addListener(snapshotInvalidator);
+            localCache.addMissLoader(snapshotLoader);
+            logger.info("Mapped snapshot {} with {} entries in {} ms.", file, snapshot.remaining(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            return snapshot.getId();
+        } catch (IOException e) {
+            logger.warn("Ignoring snapshot {}: {}", file, e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Called by the cache, without its lock, on a miss.
+     */
+    private Object loadFromSnapshot(String key) {
+        SnapshotFile snapshot = restoring;
+        if (snapshot == null) {
+            return null;
+        }
+        try {
+            byte[] value = snapshot.take(key);
+            return value == null ? null : decode(value);
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Could not load {} from the snapshot: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Restores the snapshot from the most to the least recently used entry, each at the least
+     * recently used end of the cache, until it is done or the cache is full. Values are read and
+     * decoded in batches without the cache lock; each batch is then inserted under one
+     * acquisition of it, skipping the keys written, removed or loaded in the meantime, which the
+     * snapshot has forgotten.
+     */
+    private void restoreSnapshot() {
+        SnapshotFile snapshot = restoring;
+        long startedAt = System.nanoTime();
+        List<String> keys = snapshot.getKeys();
+        for (int from = 0; from < keys.size(); from += RESTORE_BATCH) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            Map<String, Object> batch = new LinkedHashMap<>();
+            for (String key : keys.subList(from, Math.min(from + RESTORE_BATCH, keys.size()))) {
+                try {
+                    byte[] value = snapshot.get(key);
+                    if (value != null) {
+                        batch.put(key, decode(value));
+                    }
+                } catch (IOException | UncheckedIOException e) {
+                    snapshot.drop(key);
+                    logger.warn("Could not restore {} from the snapshot: {}", key, e.getMessage());
+                }
+            }
+            int inserted = localCache.restoreAll(batch, snapshot::drop);
+            if (inserted < 0) {
+                break;
+            }
+            restored += inserted;
+        }
+        localCache.removeMissLoader(snapshotLoader);
+        localCache.removeListener(snapshotInvalidator);
+        restoring = null;
+        try {
+            snapshot.close();
+        } catch (IOException e) {
+            logger.debug("Could not close the snapshot: {}", e.getMessage());
+        }
+        logger.info("Restored {} entries from snapshot {} in {} ms.", restored, snapshot.getId(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        scheduleSnapshots();
+    }
+
+    private void scheduleSnapshots() {
+        if (!isSnapshotEnabled()) {
+            return;
+        }
+        int interval = awsConfig.getPersistenceSnapshotIntervalSeconds();
+        snapshotScheduler.scheduleWithFixedDelay(this::takeSnapshot, interval, interval, TimeUnit.SECONDS);
+        logger.info("Snapshots scheduled every {} seconds.", interval);
+    }
+
+    /**
+     * Copies the entry references without pausing the cache (see {@link LRUCache#snapshot(Runnable)}),
+     * logging a marker at the instant the copy is of, and encodes and writes them. Values are never
+     * modified in place, so the references are a consistent point-in-time copy.
+     */
+    private void takeSnapshot() {
+        try {
+            long id = Math.max(System.currentTimeMillis(), lastSnapshotId + 1);
+            long startedAt = System.nanoTime();
+            AtomicBoolean marked = new AtomicBoolean();
+            Map<String, Object> contents = localCache.snapshot(
+                    () -> marked.set(mutationLog != null && mutationLog.appendMarker(id)));
+            long copiedAt = System.nanoTime();
+
+            List<Map.Entry<String, byte[]>> entries = new ArrayList<>(contents.size());
+            contents.forEach((key, value) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(key, encode(value))));
+            // Throws, keeping the log whole, unless the new snapshot was written and reopens
+            SnapshotFile.write(Path.of(awsConfig.getPersistenceDir()).resolve(SNAPSHOT_FILE), id, entries);
+            lastSnapshotId = id;
+            if (marked.get()) {
+                mutationLog.truncateThrough(id);
+            }
+
+            snapshots.incrementAndGet();
+            lastSnapshotCopyMicros = TimeUnit.NANOSECONDS.toMicros(copiedAt - startedAt);
+            lastSnapshotMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            logger.info("Snapshot {} of {} entries written in {} ms, of which {} us copying the cache.",
+                    id, entries.size(), lastSnapshotMillis, lastSnapshotCopyMicros);
+        } catch (Exception e) {
+            snapshotFailures.incrementAndGet();
+            logger.error("Snapshot failed.", e);
+        }
+    }
+
+    @Override
+    public void onInsert(String key, Object value) {
+        mutationLog.appendSet(key, value);
+    }
+
+    @Override
+    public void onRestore(String key, Object value) {
+        // Already in the snapshot the log is replayed on top of
+    }
+
+    @Override
+    public void onUpdate(String key, Object oldValue, Object newValue) {
+        mutationLog.appendSet(key, newValue);
+    }
+
+    @Override
+    public void onRemove(String key, Object value) {
+        mutationLog.appendRemove(key);
+    }
+
+    @Override
+    public void onRemoveAbsent(String key) {
+        // The key may still be in the snapshot being restored, or on disk
+        mutationLog.appendRemove(key);
+    }
+
+    private byte[] encode(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Object decode(byte[] bytes) {
+        try {
+            return objectMapper.readValue(bytes, Object.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", isEnabled());
+        if (mutationLog != null) {
+            metrics.put("replayed", replayed);
+            metrics.putAll(mutationLog.getMetrics());
+        }
+        metrics.put("snapshotEnabled", isSnapshotEnabled());
+        SnapshotFile snapshot = restoring;
+        metrics.put("restoring", snapshot != null);
+        metrics.put("snapshotEntriesLeft", snapshot == null ? 0 : snapshot.remaining());
+        metrics.put("snapshots", snapshots.get());
+        metrics.put("snapshotFailures", snapshotFailures.get());
+        metrics.put("lastSnapshotId", lastSnapshotId);
+        metrics.put("lastSnapshotMillis", lastSnapshotMillis);
+        metrics.put("lastSnapshotCopyMicros", lastSnapshotCopyMicros);
+        return metrics;
+    }
+}
@@ -0,0 +1,360 @@
+package nisran.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Log-structured key-value store over a fixed set of memory-mapped segment files.
+ *
+ * Records are appended to the head segment as {@code crc32, keyLength, valueLength, key, value},
+ * and an in-memory index maps each key to its latest record. Taking or removing a key only drops
+ * it from the index; the record becomes dead space in its segment. {@link #compact} copies the
+ * live records of the emptiest segment to the head and frees it, and when no segment is free,
+ * {@link #ensureRoom} drops the oldest one, whose entries are reported to the drop listener.
+ * Segment files are created and mapped once, and reused, so the disk space used is fixed.
+ *
+ * The store is not durable: its files are wiped when it is opened. {@link #put},
+ * {@link #ensureRoom} and {@link #compact} must be called from a single thread; reads and
+ * removals may come from any thread.
+ */
+public class SegmentStore implements Closeable {
+
+    static final int RECORD_HEADER_BYTES = 4 + 4 + 4;
+    private static final String SUFFIX = ".seg";
+
+    private static final class Segment {
+        final int number;
+        final MappedByteBuffer buffer;
+        int used;
+        long liveBytes;
+
+        Segment(int number, MappedByteBuffer buffer) {
+            this.number = number;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class Location {
+        final Segment segment;
+        final int offset;
+        final int length;
+
+        Location(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final int segmentBytes;
+    private final Consumer<String> dropListener;
+    private final Segment[] segments;
+    private final Deque<Segment> free = new ArrayDeque<>();
+    private final Deque<Segment> sealed = new ArrayDeque<>(); // Oldest first
+    private final Map<String, Location> index = new HashMap<>();
+    private Segment head;
+
+    private long compactions;
+    private long droppedSegments;
+    private long droppedEntries;
+    private long corruptRecords;
+
+    /**
+     * @param dropListener Told, while the store is locked, of keys dropped to make room.
+     */
+    public SegmentStore(Path dir, long maxBytes, int segmentBytes, Consumer<String> dropListener) throws IOException {
+        if (segmentBytes <= RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment size must exceed " + RECORD_HEADER_BYTES + " bytes, was " + segmentBytes);
+        }
+        this.segmentBytes = segmentBytes;
+        this.dropListener = dropListener;
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path path : stale) {
+                Files.delete(path);
+            }
+        }
+        // At least the head and one segment to roll over to
+        this.segments = new Segment[(int) Math.max(2, maxBytes / segmentBytes)];
+        for (int i = 0; i < segments.length; i++) {
+            try (FileChannel channel = FileChannel.open(dir.resolve(String.format("segment-%05d%s", i, SUFFIX)),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                segments[i] = new Segment(i, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+            }
+            free.add(segments[i]);
+        }
+    }
+
+    public static int recordBytes(String key, byte[] value) {
+        return RECORD_HEADER_BYTES + key.getBytes(StandardCharsets.UTF_8).length + value.length;
+    }
+
+    /**
+     * Appends a record and points the key at it. Call {@link #ensureRoom} first.
+     * @return false if the record does not fit in the head segment or in a free one.
+     */
+    public synchronized boolean put(String key, byte[] value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_HEADER_BYTES + keyBytes.length + value.length;
+        if (!hasRoom(length, true)) {
+            return false;
+        }
+        Location location = append(keyBytes, value, length);
+        release(index.put(key, location));
+        return true;
+    }
+
+    /**
+     * Removes a key and returns its value.
+     * @return null if the key is not stored.
+     * @throws IOException if the record is corrupt; the key is removed regardless.
+     */
+    public synchronized byte[] take(String key) throws IOException {
+        Location location = index.remove(key);
+        if (location == null) {
+            return null;
+        }
+        release(location);
+        MappedByteBuffer buffer = location.segment.buffer;
+        int keyLength = buffer.getInt(location.offset + 4);
+        int valueLength = buffer.getInt(location.offset + 8);
+        byte[] record = new byte[keyLength + valueLength];
+        buffer.get(location.offset + RECORD_HEADER_BYTES, record);
+        if (crc32(record) != buffer.getInt(location.offset)
+                || !key.equals(new String(record, 0, keyLength, StandardCharsets.UTF_8))) {
+            corruptRecords++;
+            throw new IOException("Corrupt record for " + key + " in segment " + location.segment.number);
+        }
+        byte[] value = new byte[valueLength];
+        System.arraycopy(record, keyLength, value, 0, valueLength);
+        return value;
+    }
+
+    /**
+     * @return true if the key was stored.
+     */
+    public synchronized boolean remove(String key) {
+        Location location = index.remove(key);
+        release(location);
+        return location != null;
+    }
+
+    public synchronized boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Makes room in the head segment for a record, dropping the oldest segment if no segment is free.
+     */
+    public void ensureRoom(int recordBytes) {
+        Segment oldest;
+        synchronized (this) {
+            if (recordBytes > segmentBytes || hasRoom(recordBytes, false) || sealed.isEmpty()) {
+                return;
+            }
+            oldest = sealed.pollFirst();
+        }
+        // Dropped one record at a time, so readers are not held up for a whole segment
+        forEachRecord(oldest, (key, offset) -> {
+            synchronized (this) {
+                Location location = index.get(key);
+                if (location != null && location.segment == oldest && location.offset == offset) {
+                    drop(key);
+                }
+            }
+        });
+        synchronized (this) {
+            reset(oldest);
+            droppedSegments++;
+        }
+    }
+
+    /**
+     * Copies the live records of the sealed segment with the least live data to the head and frees
+     * it, if less than {@code threshold} of it is live.
+     * @return true if a segment was compacted.
+     */
+    public boolean compact(double threshold) {
+        Segment victim;
+        synchronized (this) {
+            victim = null;
+            for (Segment segment : sealed) {
+                if (victim == null || segment.liveBytes < victim.liveBytes) {
+                    victim = segment;
+                }
+            }
+            if (victim == null || victim.liveBytes >= threshold * segmentBytes) {
+                return false;
+            }
+            sealed.remove(victim);
+        }
+        Segment source = victim;
+        forEachRecord(source, (key, offset) -> {
+            int length = recordLength(source, offset);
+            // The segment being compacted is no longer sealed, so this never drops it
+            ensureRoom(length);
+            synchronized (this) {
+                Location location = index.get(key);
+                if (location == null || location.segment != source || location.offset != offset) {
+                    return;
+                }
+                if (!hasRoom(length, true)) {
+                    drop(key);
+                    return;
+                }
+                byte[] record = new byte[length];
+                source.buffer.get(offset, record);
+                index.put(key, append(record, length));
+                release(location);
+            }
+        });
+        synchronized (this) {
+            reset(source);
+            compactions++;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the head can take a record, optionally moving to a free segment.
+     */
+    private boolean hasRoom(int length, boolean roll) {
+        if (head != null && head.used + length <= segmentBytes) {
+            return true;
+        }
+        if (free.isEmpty() || length > segmentBytes) {
+            return false;
+        }
+        if (roll) {
+            if (head != null) {
+                sealed.addLast(head);
+            }
+            head = free.pollFirst();
+        }
+        return true;
+    }
+
+    private Location append(byte[] keyBytes, byte[] value, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(keyBytes);
+        crc.update(value);
+        MappedByteBuffer buffer = head.buffer;
+        int offset = head.used;
+        buffer.putInt(offset, (int) crc.getValue());
+        buffer.putInt(offset + 4, keyBytes.length);
+        buffer.putInt(offset + 8, value.length);
+        buffer.put(offset + RECORD_HEADER_BYTES, keyBytes);
+        buffer.put(offset + RECORD_HEADER_BYTES + keyBytes.length, value);
+        return commit(offset, length);
+    }
+
+    private Location append(byte[] record, int length) {
+        int offset = head.used;
+        head.buffer.put(offset, record);
+        return commit(offset, length);
+    }
+
+    private Location commit(int offset, int length) {
+        head.used += length;
+        head.liveBytes += length;
+        return new Location(head, offset, length);
+    }
+
+    private void drop(String key) {
+        index.remove(key);
+        droppedEntries++;
+        dropListener.accept(key);
+    }
+
+    private void release(Location location) {
+        if (location != null) {
+            location.segment.liveBytes -= location.length;
+        }
+    }
+
+    private void reset(Segment segment) {
+        segment.used = 0;
+        segment.liveBytes = 0;
+        free.addLast(segment);
+    }
+
+    private interface RecordVisitor {
+        void visit(String key, int offset);
+    }
+
+    /**
+     * Visits the records of a sealed segment. Its bytes do not change until it is reset, so they
+     * are read without the lock.
+     */
+    private void forEachRecord(Segment segment, RecordVisitor visitor) {
+        int end;
+        synchronized (this) {
+            end = segment.used;
+        }
+        int offset = 0;
+        while (offset + RECORD_HEADER_BYTES <= end) {
+            int keyLength = segment.buffer.getInt(offset + 4);
+            byte[] key = new byte[keyLength];
+            segment.buffer.get(offset + RECORD_HEADER_BYTES, key);
+            int length = recordLength(segment, offset);
+            visitor.visit(new String(key, StandardCharsets.UTF_8), offset);
+            offset += length;
+        }
+    }
+
+    private static int recordLength(Segment segment, int offset) {
+        return RECORD_HEADER_BYTES + segment.buffer.getInt(offset + 4) + segment.buffer.getInt(offset + 8);
+    }
+
+    private static int crc32(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    public synchronized Map<String, Object> getMetrics() {
+        long used = 0;
+        long live = 0;
+        for (Segment segment : segments) {
+            used += segment.used;
+            live += segment.liveBytes;
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", index.size());
+        metrics.put("segments", segments.length);
+        metrics.put("freeSegments", free.size());
+        metrics.put("usedBytes", used);
+        metrics.put("liveBytes", live);
+        metrics.put("compactions", compactions);
+        metrics.put("droppedSegments", droppedSegments);
+        metrics.put("droppedEntries", droppedEntries);
+        metrics.put("corruptRecords", corruptRecords);
+        return metrics;
+    }
+
+    /**
+     * Forgets every entry. The mappings are released when they are garbage collected.
+     */
+    @Override
+    public synchronized void close() {
+        index.clear();
+    }
+}
@@ -0,0 +1,267 @@
+package nisran.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Point-in-time copy of the local cache, read through a memory mapping.
+ *
+ * Layout: a fixed header, the value blocks, then the index. The header is
+ * {@code magic, version, id, entryCount, indexOffset, indexLength, indexCrc32}; each index entry
+ * is {@code keyLength, key, valueOffset, valueLength, valueCrc32}. Entries are stored from most to
+ * least recently used. Opening a snapshot reads only the index; a value is read from the
+ * mapping, and checked, when it is asked for, and is then forgotten by the index, so each value
+ * is handed out at most once. The file is mapped in regions of up to 2 GB, so a snapshot may be
+ * of any size; a value or the index may span regions.
+ */
+public class SnapshotFile implements Closeable {
+
+    private static final int MAGIC = 0x4E534E50; // "NSNP"
+    private static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 8 + 8 + 4;
+    private static final int INDEX_ENTRY_BYTES = 4 + 8 + 4 + 4; // Besides the key
+
+    private static final class Location {
+        final long offset;
+        final int length;
+        final int crc;
+
+        Location(long offset, int length, int crc) {
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final int regionBytes;
+    private final long id;
+    private final List<String> order;
+    private final Map<String, Location> index;
+
+    private SnapshotFile(FileChannel channel, MappedByteBuffer[] regions, int regionBytes, long id,
+                         List<String> order, Map<String, Location> index) {
+        this.channel = channel;
+        this.regions = regions;
+        this.regionBytes = regionBytes;
+        this.id = id;
+        this.order = order;
+        this.index = index;
+    }
+
+    /**
+     * Writes a snapshot to a temporary file, forces it to disk, checks that it opens and renames
+     * it over {@code path}, so that a crash or a failed write leaves the old snapshot in place.
+     * @param entries Encoded values, most recently used first.
+     * @throws IOException if the snapshot could not be written or does not open.
+     */
+    public static void write(Path path, long id, List<Map.Entry<String, byte[]>> entries) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long offset = HEADER_BYTES;
+            out.position(offset);
+            List<byte[]> keys = new ArrayList<>(entries.size());
+            List<long[]> locations = new ArrayList<>(entries.size());
+            for (Map.Entry<String, byte[]> entry : entries) {
+                byte[] value = entry.getValue();
+                writeFully(out, ByteBuffer.wrap(value));
+                keys.add(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                locations.add(new long[] {offset, value.length, crc32(value, 0, value.length)});
+                offset += value.length;
+            }
+
+            long indexLength = 0;
+            for (byte[] key : keys) {
+                indexLength += key.length + INDEX_ENTRY_BYTES;
+            }
+            if (indexLength > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot index of " + keys.size() + " keys is over 2 GB");
+            }
+            ByteBuffer indexBuffer = ByteBuffer.allocate((int) indexLength);
+            for (int i = 0; i < keys.size(); i++) {
+                long[] location = locations.get(i);
+                indexBuffer.putInt(keys.get(i).length).put(keys.get(i))
+                        .putLong(location[0]).putInt((int) location[1]).putInt((int) location[2]);
+            }
+            writeFully(out, indexBuffer.flip());
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putLong(id).putInt(entries.size())
+                    .putLong(offset).putLong(indexLength).putInt(crc32(indexBuffer.array(), 0, (int) indexLength));
+            out.position(0);
+            writeFully(out, header.flip());
+            out.force(true);
+        }
+        open(temporary).close();
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a snapshot and reads its index.
+     * @throws IOException if the file is not an intact snapshot.
+     */
+    public static SnapshotFile open(Path path) throws IOException {
+        return open(path, Integer.MAX_VALUE);
+    }
+
+    static SnapshotFile open(Path path, int regionBytes) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Snapshot " + path + " is truncated");
+            }
+            MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((size + regionBytes - 1) / regionBytes)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = (long) i * regionBytes;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionBytes, size - start));
+            }
+            byte[] headerBytes = new byte[HEADER_BYTES];
+            read(regions, regionBytes, 0, headerBytes);
+            ByteBuffer header = ByteBuffer.wrap(headerBytes);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Snapshot " + path + " has an unknown format");
+            }
+            long id = header.getLong();
+            int count = header.getInt();
+            long indexOffset = header.getLong();
+            long indexLength = header.getLong();
+            int indexCrc = header.getInt();
+            if (indexOffset < HEADER_BYTES || indexLength > Integer.MAX_VALUE || indexOffset + indexLength != size) {
+                throw new IOException("Snapshot " + path + " is truncated");
+            }
+            byte[] indexBytes = new byte[(int) indexLength];
+            read(regions, regionBytes, indexOffset, indexBytes);
+            if (crc32(indexBytes, 0, indexBytes.length) != indexCrc) {
+                throw new IOException("Snapshot " + path + " has a corrupt index");
+            }
+
+            ByteBuffer indexBuffer = ByteBuffer.wrap(indexBytes);
+            List<String> order = new ArrayList<>(count);
+            Map<String, Location> index = new ConcurrentHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[indexBuffer.getInt()];
+                indexBuffer.get(key);
+                long offset = indexBuffer.getLong();
+                int length = indexBuffer.getInt();
+                int crc = indexBuffer.getInt();
+                if (offset < HEADER_BYTES || offset + length > indexOffset) {
+                    throw new IOException("Snapshot " + path + " has an entry outside its value blocks");
+                }
+                String name = new String(key, StandardCharsets.UTF_8);
+                order.add(name);
+                index.put(name, new Location(offset, length, crc));
+            }
+            return new SnapshotFile(channel, regions, regionBytes, id, order, index);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns every key of the snapshot, most recently used first, including keys already taken.
+     */
+    public List<String> getKeys() {
+        return order;
+    }
+
+    /**
+     * Returns the encoded value of a key and forgets it, or null if the key is not in the
+     * snapshot, was already taken or was dropped.
+     * @throws IOException if the value is corrupt.
+     */
+    public byte[] take(String key) throws IOException {
+        return read(key, index.remove(key));
+    }
+
+    /**
+     * Returns the encoded value of a key without forgetting it, or null if the key is not in the
+     * snapshot, was already taken or was dropped.
+     * @throws IOException if the value is corrupt.
+     */
+    public byte[] get(String key) throws IOException {
+        return read(key, index.get(key));
+    }
+
+    /**
+     * Forgets a key, e.g. because it was written or removed since the snapshot was taken, or
+     * because its value was restored.
+     * @return true if the key had not been taken or dropped yet.
+     */
+    public boolean drop(String key) {
+        return index.remove(key) != null;
+    }
+
+    /**
+     * Returns the number of values not yet taken or dropped.
+     */
+    public int remaining() {
+        return index.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        index.clear();
+        channel.close();
+    }
+
+    private byte[] read(String key, Location location) throws IOException {
+        if (location == null) {
+            return null;
+        }
+        byte[] value = new byte[location.length];
+        read(regions, regionBytes, location.offset, value);
+        if (crc32(value, 0, value.length) != location.crc) {
+            throw new IOException("Snapshot value of " + key + " is corrupt");
+        }
+        return value;
+    }
+
+    /**
+     * Copies {@code target.length} bytes from {@code offset} of the file, across regions.
+     */
+    private static void read(MappedByteBuffer[] regions, int regionBytes, long offset, byte[] target) {
+        int copied = 0;
+        while (copied < target.length) {
+            long position = offset + copied;
+            MappedByteBuffer region = regions[(int) (position / regionBytes)];
+            int within = (int) (position % regionBytes);
+            int length = Math.min(target.length - copied, region.capacity() - within);
+            region.get(within, target, copied, length);
+            copied += length;
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static int crc32(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,140 @@
+package nisran.router;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrency limit that adapts to latency, after TCP Vegas.
+ *
+ * The limiter remembers the lowest latency seen (the latency without queueing) and estimates
+ * from every sample how many requests are queued: {@code limit * (1 - minLatency / latency)}.
+ * While the estimated queue is short the limit grows, when it gets long the limit shrinks, so
+ * the number of requests admitted settles just above what the node can serve without queueing.
+ * Requests that were dropped or timed out cut the limit multiplicatively.
+ *
+ * Samples taken while less than half the limit is in use say nothing about capacity and do not
+ * raise the limit. The minimum latency is forgotten periodically so that the limiter follows a
+ * node whose baseline latency went up, e.g. after its cache grew.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int PROBE_INTERVAL_SAMPLES = 1000;
+
+    /**
+     * An admitted request. Exactly one of the release methods must be called when it ends.
+     */
+    public final class Permit {
+        private final long startNanos = clock.getAsLong();
+        private final int inFlightAtStart = inFlight.get();
+
+        public void release() {
+            end(false);
+        }
+
+        /**
+         * Releases a request that was shed further down or ran out of time, which counts as overload.
+         */
+        public void releaseDropped() {
+            end(true);
+        }
+
+        private void end(boolean dropped) {
+            inFlight.decrementAndGet();
+            onSample(clock.getAsLong() - startNanos, inFlightAtStart, dropped);
+        }
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final LongSupplier clock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile double limit; // written under the lock only
+    private long minLatencyNanos; // 0 until the first sample
+    private int samplesSinceProbe;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, System::nanoTime);
+    }
+
+    /**
+     * @param clock A monotonic clock in nanoseconds.
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, LongSupplier clock) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.clock = clock;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Admits a request if fewer than the limit are in flight.
+     * @return The permit to release when the request ends, or null if the request must be shed.
+     */
+    public Permit tryAcquire() {
+        int limit = getLimit();
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.increment();
+                return new Permit();
+            }
+        }
+    }
+
+    synchronized void onSample(long latencyNanos, int inFlightAtStart, boolean dropped) {
+        if (dropped) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            return;
+        }
+        if (++samplesSinceProbe >= PROBE_INTERVAL_SAMPLES) {
+            samplesSinceProbe = 0;
+            minLatencyNanos = 0;
+        }
+        latencyNanos = Math.max(1, latencyNanos);
+        if (minLatencyNanos == 0 || latencyNanos < minLatencyNanos) {
+            minLatencyNanos = latencyNanos;
+            return;
+        }
+        if (inFlightAtStart * 2 < limit) {
+            return;
+        }
+
+        double queue = Math.ceil(limit * (1 - (double) minLatencyNanos / latencyNanos));
+        double step = Math.max(1, Math.log10(limit));
+        double alpha = 3 * step;
+        double beta = 6 * step;
+        if (queue <= step) {
+            limit += beta;
+        } else if (queue < alpha) {
+            limit += step;
+        } else if (queue > beta) {
+            limit -= step;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getAdmitted() {
+        return admitted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
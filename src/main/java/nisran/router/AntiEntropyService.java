@@ -0,0 +1,358 @@
+package nisran.router;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.ServerInstance;
+import nisran.cache.CacheListener;
+import nisran.cache.LRUCache;
+import nisran.config.AWS_SDKConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repairs divergence between replicas of a token range, including cold keys that are never read.
+ *
+ * Every node keeps one {@link MerkleTree} per token range it stores keys for, updated incrementally
+ * from cache mutations. Periodically each replica compares its trees with the primary of the range:
+ * first the roots of all shared ranges in one request, then level by level only the subtrees that
+ * differ, and finally only the entries of the differing leaves. The replica adopts the primary's
+ * entries once a difference has lasted two rounds, and never deletes a key the primary lacks; see
+ * {@link LeafRepair}. Bandwidth is therefore proportional to the divergence rather than to the size
+ * of the dataset.
+ */
+@Service("antiEntropyService")
+@Profile("cluster")
+@DependsOn("quorumReaderWriter")
+public class AntiEntropyService implements CacheListener<String, Object> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AntiEntropyService.class);
+    private static final String SYNC_PATH = "/api/cluster/sync";
+
+    private final LRUCache<String, Object> localCache;
+    private final CacheRouter cacheRouter;
+    private final QuorumReaderWriter quorumReaderWriter;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final AWS_SDKConfig awsConfig;
+
+    private final int treeDepth;
+    private final ScheduledExecutorService syncScheduler;
+
+    // token -> tree of the entries this node stores for that token range
+    private volatile Map<Integer, MerkleTree> trees;
+    private volatile Map<Integer, MerkleTree> rebuilding; // Also kept up to date while a rebuild copies the cache
+    private volatile long treesEpoch = -1;
+    private final Object rebuildLock = new Object();
+    private final LeafRepair leafRepair = new LeafRepair();
+
+    public AntiEntropyService(LRUCache<String, Object> localCache, CacheRouter cacheRouter,
+                              QuorumReaderWriter quorumReaderWriter, HttpClient httpClient,
+                              ObjectMapper objectMapper, AWS_SDKConfig awsConfig) {
+        this.localCache = localCache;
+        this.cacheRouter = cacheRouter;
+        this.quorumReaderWriter = quorumReaderWriter;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.awsConfig = awsConfig;
+        this.treeDepth = awsConfig.getAntiEntropyTreeDepth();
+        this.trees = new ConcurrentHashMap<>();
+
+        this.syncScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "AntiEntropy-SyncThread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    private void start() {
+        localCache.addListener(this);
+        rebuildTreesIfRingChanged();
+
+        if (!awsConfig.isAntiEntropyEnabled()) {
+            logger.info("Anti-entropy is disabled. Merkle trees are maintained but replicas are not synchronised.");
+            return;
+        }
+        int interval = awsConfig.getAntiEntropyIntervalSeconds();
+        syncScheduler.scheduleWithFixedDelay(this::runSyncRound, interval, interval, TimeUnit.SECONDS);
+        logger.info("Anti-entropy scheduled every {} seconds with {} leaves per token range.", interval, 1 << treeDepth);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        localCache.removeListener(this);
+        syncScheduler.shutdownNow();
+    }
+
+    /**
+     * Runs one synchronisation round now, even if periodic anti-entropy is disabled, so that a
+     * starting node can pull the ranges it replicates before it serves reads.
+     */
+    public CompletableFuture<Void> warmUp() {
+        return CompletableFuture.runAsync(this::runSyncRound, syncScheduler);
+    }
+
+    // ---- Incremental tree maintenance ----
+
+    @Override
+    public void onInsert(String key, Object value) {
+        MerkleTree tree = treeForKey(key, true);
+        if (tree != null) {
+            tree.add(key, value);
+        }
+        MerkleTree next = rebuildingTreeForKey(key);
+        if (next != null) {
+            next.add(key, value);
+        }
+    }
+
+    @Override
+    public void onUpdate(String key, Object oldValue, Object newValue) {
+        MerkleTree tree = treeForKey(key, true);
+        if (tree != null) {
+            tree.update(key, oldValue, newValue);
+        }
+        MerkleTree next = rebuildingTreeForKey(key);
+        if (next != null) {
+            next.update(key, oldValue, newValue);
+        }
+    }
+
+    @Override
+    public void onRemove(String key, Object value) {
+        MerkleTree tree = treeForKey(key, false);
+        if (tree != null) {
+            tree.remove(key, value);
+        }
+        MerkleTree next = rebuildingTreeForKey(key);
+        if (next != null) {
+            next.remove(key, value);
+        }
+    }
+
+    @Override
+    public void onEvict(String key, Object value) {
+        onRemove(key, value);
+    }
+
+    private MerkleTree treeForKey(String key, boolean create) {
+        Integer token = cacheRouter.getTokenForKey(key);
+        if (token == null) {
+            return null;
+        }
+        Map<Integer, MerkleTree> current = this.trees;
+        return create ? current.computeIfAbsent(token, t -> new MerkleTree(treeDepth)) : current.get(token);
+    }
+
+    /**
+     * A removal from the trees being rebuilt is recorded even if the key is not in them yet,
+     * since the copy of the cache may still add it: entry digests are combined by XOR, so the
+     * order in which they are added and removed does not matter.
+     */
+    private MerkleTree rebuildingTreeForKey(String key) {
+        Map<Integer, MerkleTree> next = this.rebuilding;
+        Integer token = next == null ? null : cacheRouter.getTokenForKey(key);
+        return token == null ? null : next.computeIfAbsent(token, t -> new MerkleTree(treeDepth));
+    }
+
+    /**
+     * Token ranges move when the ring changes, so the trees are rebuilt from the cache contents.
+     * The cache is copied without pausing it: mutations made while it is copied are applied to
+     * the new trees as well as the old ones, and the trees are swapped while the cache is locked,
+     * so no mutation can slip between the copy and the swap.
+     */
+    void rebuildTreesIfRingChanged() {
+        long epoch = cacheRouter.getRingEpoch();
+        if (epoch == treesEpoch) {
+            return;
+        }
+        synchronized (rebuildLock) {
+            if (epoch == treesEpoch) {
+                return;
+            }
+            Map<Integer, MerkleTree> rebuilt = new ConcurrentHashMap<>();
+            try {
+                for (Map.Entry<String, Object> entry : localCache.snapshot(() -> this.rebuilding = rebuilt).entrySet()) {
+                    Integer token = cacheRouter.getTokenForKey(entry.getKey());
+                    if (token != null) {
+                        rebuilt.computeIfAbsent(token, t -> new MerkleTree(treeDepth)).add(entry.getKey(), entry.getValue());
+                    }
+                }
+                localCache.exclusively(() -> {
+                    this.trees = rebuilt;
+                    this.treesEpoch = epoch;
+                });
+            } finally {
+                this.rebuilding = null;
+            }
+        }
+        logger.info("Rebuilt Merkle trees for {} token ranges at ring epoch {}.", trees.size(), epoch);
+    }
+
+    // ---- Queries served to peers ----
+
+    public Map<Integer, Long> getRoots(Collection<Integer> tokens) {
+        rebuildTreesIfRingChanged();
+        Map<Integer, Long> roots = new HashMap<>();
+        for (Integer token : tokens) {
+            MerkleTree tree = trees.get(token);
+            roots.put(token, tree == null ? 0L : tree.getRoot());
+        }
+        return roots;
+    }
+
+    public List<Long> getNodes(int token, List<Integer> indices) {
+        MerkleTree tree = trees.get(token);
+        List<Long> hashes = new ArrayList<>(indices.size());
+        for (Integer index : indices) {
+            hashes.add(tree == null ? 0L : tree.getNode(index));
+        }
+        return hashes;
+    }
+
+    /**
+     * Returns the entries of the given token range that fall into the given leaves.
+     * @param leafOffsets Zero-based leaf offsets.
+     */
+    public Map<String, Object> getLeafEntries(int token, Collection<Integer> leafOffsets) {
+        rebuildTreesIfRingChanged();
+        MerkleTree tree = trees.get(token);
+        if (tree == null) {
+            return Map.of();
+        }
+        // Only the keys of the requested leaves are looked up, rather than the whole cache
+        List<String> keys = new ArrayList<>();
+        for (Integer offset : new HashSet<>(leafOffsets)) {
+            keys.addAll(tree.getLeafKeys(offset));
+        }
+        return localCache.peek(keys);
+    }
+
+    // ---- Synchronisation with primaries ----
+
+    private void runSyncRound() {
+        try {
+            rebuildTreesIfRingChanged();
+
+            // Group the token ranges this node replicates (but is not primary for) by their primary
+            Map<ServerInstance, List<Integer>> tokensByPrimary = new HashMap<>();
+            SortedMap<Integer, ServerInstance> ring = cacheRouter.getConsistentHashRing();
+            for (Map.Entry<Integer, ServerInstance> slot : ring.entrySet()) {
+                ServerInstance primary = slot.getValue();
+                if (quorumReaderWriter.isLocalInstance(primary)) {
+                    continue;
+                }
+                boolean isReplica = quorumReaderWriter.getReplicaInstances(primary).stream()
+                        .anyMatch(quorumReaderWriter::isLocalInstance);
+                if (isReplica) {
+                    tokensByPrimary.computeIfAbsent(primary, p -> new ArrayList<>()).add(slot.getKey());
+                }
+            }
+
+            for (Map.Entry<ServerInstance, List<Integer>> entry : tokensByPrimary.entrySet()) {
+                syncWithPrimary(entry.getKey(), entry.getValue());
+            }
+        } catch (Exception e) {
+            logger.error("Anti-entropy round failed.", e);
+        }
+    }
+
+    private void syncWithPrimary(ServerInstance primary, List<Integer> tokens) {
+        try {
+            Map<Integer, Long> remoteRoots = post(primary, SYNC_PATH + "/roots", tokens,
+                    new TypeReference<Map<Integer, Long>>() {});
+            Map<Integer, Long> localRoots = getRoots(tokens);
+            for (Integer token : tokens) {
+                long remoteRoot = remoteRoots.getOrDefault(token, 0L);
+                if (remoteRoot != localRoots.get(token)) {
+                    logger.debug("Token range {} differs from primary {}, descending.", token, primary.getNodeIdentifier());
+                    syncRange(primary, token);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Anti-entropy with primary {} failed: {}", primary.getNodeIdentifier(), e.getMessage());
+        }
+    }
+
+    private void syncRange(ServerInstance primary, int token) throws Exception {
+        MerkleTree localTree = trees.getOrDefault(token, new MerkleTree(treeDepth));
+
+        // Walk down one level at a time, keeping only the children whose hashes differ
+        List<Integer> frontier = List.of(1);
+        while (!frontier.isEmpty() && !localTree.isLeaf(frontier.get(0))) {
+            List<Integer> children = new ArrayList<>(frontier.size() * 2);
+            for (Integer index : frontier) {
+                children.add(2 * index);
+                children.add(2 * index + 1);
+            }
+            List<Long> remoteHashes = post(primary, SYNC_PATH + "/" + token + "/nodes", children,
+                    new TypeReference<List<Long>>() {});
+            List<Integer> differing = new ArrayList<>();
+            for (int i = 0; i < children.size(); i++) {
+                if (localTree.getNode(children.get(i)) != remoteHashes.get(i)) {
+                    differing.add(children.get(i));
+                }
+            }
+            frontier = differing;
+        }
+        if (frontier.isEmpty()) {
+            return;
+        }
+
+        List<Integer> leafOffsets = new ArrayList<>(frontier.size());
+        for (Integer index : frontier) {
+            leafOffsets.add(index - localTree.getLeafCount());
+        }
+        Map<String, Object> remoteEntries = post(primary, SYNC_PATH + "/" + token + "/leaves", leafOffsets,
+                new TypeReference<Map<String, Object>>() {});
+        Map<String, Object> localEntries = getLeafEntries(token, leafOffsets);
+
+        Map<String, Object> adopted = leafRepair.toWrite(token, localEntries, remoteEntries);
+        adopted.forEach(quorumReaderWriter::localWrite);
+        logger.info("Repaired token range {} from primary {}: {} differing leaves, {} entries written, {} differences awaiting the next round.",
+                token, primary.getNodeIdentifier(), leafOffsets.size(), adopted.size(), leafRepair.pending());
+    }
+
+    private <T> T post(ServerInstance instance, String path, Object body, TypeReference<T> responseType) throws Exception {
+        String url = String.format("http://%s:%d%s", instance.getIpAddress(), instance.getPort(), path);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                // Repairs have no caller waiting; the default deadline keeps a stuck peer from stalling the round
+                .timeout(Duration.ofMillis(awsConfig.getDefaultDeadlineMillis()))
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + " from " + url);
+        }
+        return objectMapper.readValue(response.body(), responseType);
+    }
+}
@@ -0,0 +1,225 @@
+package nisran.router;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.ServerInstance;
+import nisran.config.AWS_SDKConfig;
+import nisran.discovery.PeerHealthMonitor;
+import nisran.transport.Frame;
+import nisran.transport.InterNodeClient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous replication pipeline.
+ *
+ * When enabled, the primary acknowledges a write after the local write and hands the replica
+ * mutations to a bounded {@link ReplicationQueue} per peer. A flusher sends each queue as a
+ * batched frame whenever it reaches the batch size or the flush interval elapses, so the
+ * per-request overhead is paid once per batch instead of once per key.
+ *
+ * Backpressure: a writer finding a peer's queue full waits up to the offer timeout; if the
+ * queue is still full the caller replicates synchronously, which throttles it to the rate
+ * the peer can absorb. A key replicated synchronously supersedes the entries queued or in
+ * flight for it, so that a failed batch is never retried over a newer value.
+ */
+@Service("asyncReplicator")
+@Profile("cluster")
+public class AsyncReplicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncReplicator.class);
+    public static final String REPLICATE_PATH = "/api/cluster/replicate";
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final AWS_SDKConfig awsConfig;
+    private final InterNodeClient interNodeClient;
+    private final PeerHealthMonitor peerHealthMonitor;
+
+    private final Map<ServerInstance, ReplicationQueue> queues;
+    private final ScheduledExecutorService flushScheduler;
+
+    public AsyncReplicator(HttpClient httpClient, ObjectMapper objectMapper, AWS_SDKConfig awsConfig,
+                           InterNodeClient interNodeClient, PeerHealthMonitor peerHealthMonitor) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.awsConfig = awsConfig;
+        this.interNodeClient = interNodeClient;
+        this.peerHealthMonitor = peerHealthMonitor;
+        this.queues = new ConcurrentHashMap<>();
+        this.flushScheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "AsyncReplicator-FlushThread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    private void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        int interval = awsConfig.getReplicationFlushIntervalMillis();
+        flushScheduler.scheduleWithFixedDelay(this::flushAll, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("Async replication enabled: queue capacity {}, batch size {}, flush interval {} ms.",
+                awsConfig.getReplicationQueueCapacity(), awsConfig.getReplicationBatchSize(), interval);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushScheduler.shutdownNow();
+        // Best effort: push out whatever is still queued before the node goes away
+        queues.forEach((peer, queue) -> {
+            while (queue.depth() > 0 && flush(peer, queue)) {
+                // keep draining
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return awsConfig.isAsyncReplicationEnabled();
+    }
+
+    /**
+     * Queues a replica mutation for a peer.
+     * @return true if queued (or coalesced with a pending write of the same key); false if the
+     *         peer's queue stayed full and the caller must replicate synchronously.
+     */
+    public boolean enqueue(ServerInstance peer, String key, Object value) {
+        ReplicationQueue queue = queues.computeIfAbsent(peer,
+                p -> new ReplicationQueue(awsConfig.getReplicationQueueCapacity()));
+        boolean accepted;
+        try {
+            accepted = queue.offer(key, value, awsConfig.getReplicationOfferTimeoutMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (accepted && queue.depth() >= awsConfig.getReplicationBatchSize()) {
+            flushScheduler.execute(() -> flush(peer, queue));
+        }
+        return accepted;
+    }
+
+    /**
+     * Called before a key is replicated to a peer synchronously, so that an older value queued or
+     * in flight for it cannot later overwrite the newer one.
+     */
+    public void supersede(ServerInstance peer, String key) {
+        ReplicationQueue queue = queues.get(peer);
+        if (queue != null) {
+            queue.supersede(key);
+        }
+    }
+
+    private void flushAll() {
+        queues.forEach((peer, queue) -> {
+            // Drain in batch-size frames until the queue is empty or a send fails
+            while (queue.depth() > 0 && flush(peer, queue)) {
+                // keep draining
+            }
+        });
+    }
+
+    /**
+     * Sends one batch to the peer.
+     * @return true if a batch was delivered, false if nothing was sent or the send failed.
+     */
+    private boolean flush(ServerInstance peer, ReplicationQueue queue) {
+        if (!peerHealthMonitor.allowRequest(peer)) {
+            return false; // Keep the batch queued until the peer answers again
+        }
+        if (!queue.tryBeginFlush()) {
+            return false; // Another thread is already flushing this peer
+        }
+        try {
+            Map<String, Object> batch = queue.drain(awsConfig.getReplicationBatchSize());
+            if (batch.isEmpty()) {
+                return false;
+            }
+            if (sendBatch(peer, batch)) {
+                peerHealthMonitor.recordSuccess(peer);
+                queue.acknowledge();
+                queue.recordFlushed(batch.size());
+                return true;
+            }
+            peerHealthMonitor.recordFailure(peer);
+            queue.recordFailed();
+            queue.requeue(batch);
+            return false;
+        } finally {
+            queue.endFlush();
+        }
+    }
+
+    private boolean sendBatch(ServerInstance peer, Map<String, Object> batch) {
+        if (interNodeClient.isEnabled()) {
+            return sendBatchOverTransport(peer, batch);
+        }
+        try {
+            String url = String.format("http://%s:%d%s", peer.getIpAddress(), peer.getPort(), REPLICATE_PATH);
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofMillis(awsConfig.getWriteTimeoutMillis()))
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(batch)))
+                    .build();
+
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                logger.debug("Replicated batch of {} keys to {}", batch.size(), peer.getNodeIdentifier());
+                return true;
+            }
+            logger.warn("Failed to replicate batch of {} keys to {}. Status: {}",
+                    batch.size(), peer.getNodeIdentifier(), response.statusCode());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Exception while replicating batch of {} keys to {}: {}",
+                    batch.size(), peer.getNodeIdentifier(), e.getMessage());
+        }
+        return false;
+    }
+
+    private boolean sendBatchOverTransport(ServerInstance peer, Map<String, Object> batch) {
+        try {
+            Frame reply = interNodeClient.setBatch(peer, batch).join();
+            if (reply.isOk()) {
+                logger.debug("Replicated batch of {} keys to {} over transport", batch.size(), peer.getNodeIdentifier());
+                return true;
+            }
+            logger.warn("Failed to replicate batch of {} keys to {} over transport. Status: {}",
+                    batch.size(), peer.getNodeIdentifier(), reply.getStatus());
+        } catch (Exception e) {
+            logger.warn("Exception while replicating batch of {} keys to {} over transport: {}",
+                    batch.size(), peer.getNodeIdentifier(), e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Returns per-peer queue depth and throughput counters, keyed by node identifier.
+     */
+    public Map<String, Map<String, Long>> getMetrics() {
+        Map<String, Map<String, Long>> metrics = new LinkedHashMap<>();
+        queues.forEach((peer, queue) -> metrics.put(peer.getNodeIdentifier(), queue.getMetrics()));
+        return metrics;
+    }
+}
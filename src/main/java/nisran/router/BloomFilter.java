@@ -0,0 +1,118 @@
+package nisran.router;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-size Bloom filter over string keys.
+ *
+ * A key that was added is always reported as possibly present; a key that was not is reported
+ * as possibly present with the false-positive rate the filter was sized for. Positions are
+ * derived from one 64-bit hash by double hashing (Kirsch and Mitzenmacher).
+ *
+ * Filters are serialized as the number of hash functions followed by the bit words, so that a
+ * node can decode a peer's filter even if the peer was configured with a different size.
+ */
+public class BloomFilter {
+
+    private final long[] words;
+    private final int hashCount;
+
+    BloomFilter(long[] words, int hashCount) {
+        this.words = words;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Returns the number of bits needed to hold {@code expectedKeys} keys at the given false-positive rate.
+     */
+    public static long optimalBits(long expectedKeys, double falsePositiveRate) {
+        if (expectedKeys < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Expected keys must be positive and the false-positive rate in (0, 1)");
+        }
+        long bits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        return Math.max(Long.SIZE, bits);
+    }
+
+    public static int optimalHashCount(long expectedKeys, long bits) {
+        return Math.max(1, (int) Math.round((double) bits / expectedKeys * Math.log(2)));
+    }
+
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        long bits = bitSize();
+        for (int i = 0; i < hashCount; i++) {
+            long index = position(hash, i, bits);
+            if ((words[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitSize() {
+        return (long) words.length * Long.SIZE;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Estimates the current false-positive rate from the share of bits set.
+     */
+    public double estimatedFalsePositiveRate() {
+        long set = 0;
+        for (long word : words) {
+            set += Long.bitCount(word);
+        }
+        return Math.pow((double) set / bitSize(), hashCount);
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + words.length * Long.BYTES);
+        buffer.putInt(hashCount);
+        for (long word : words) {
+            buffer.putLong(word);
+        }
+        return buffer.array();
+    }
+
+    public static BloomFilter fromBytes(byte[] bytes) {
+        if (bytes.length < Integer.BYTES + Long.BYTES || (bytes.length - Integer.BYTES) % Long.BYTES != 0) {
+            throw new IllegalArgumentException("Malformed Bloom filter of " + bytes.length + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int hashCount = buffer.getInt();
+        if (hashCount < 1) {
+            throw new IllegalArgumentException("Malformed Bloom filter with " + hashCount + " hash functions");
+        }
+        long[] words = new long[buffer.remaining() / Long.BYTES];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = buffer.getLong();
+        }
+        return new BloomFilter(words, hashCount);
+    }
+
+    static long hash(String key) {
+        // FNV-1a, finished with the SplitMix64 mixer to spread the low bits
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    static long position(long hash, int i, long bits) {
+        long h1 = hash;
+        long h2 = mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+        return Math.floorMod(h1 + i * h2, bits);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
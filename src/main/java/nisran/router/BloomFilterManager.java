@@ -0,0 +1,276 @@
+package nisran.router;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.ServerInstance;
+import nisran.cache.CacheListener;
+import nisran.cache.LRUCache;
+import nisran.config.AWS_SDKConfig;
+import nisran.discovery.ServiceRegistration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Answers reads of keys that no replica stores without a remote hop.
+ *
+ * Every node keeps a {@link CountingBloomFilter} of the keys in its cache, maintained from cache
+ * events, and pushes its plain Bloom filter to all other nodes every gossip interval while it
+ * changes. A coordinator reports a key as missing when the filters of all its replicas say so.
+ * Filters that have not been refreshed within the maximum age are not trusted.
+ *
+ * A peer's filter lags its cache by up to the gossip interval, so a key written through another
+ * node can be reported missing for that long. Keys written through this node are never reported
+ * missing for the maximum age of a filter, so clients read their own writes. As that breaks
+ * read-after-write across nodes, misses are only answered from the filters when configured to;
+ * otherwise the filters are kept and gossiped but every read goes to the replicas.
+ */
+@Service("bloomFilterManager")
+@Profile("cluster")
+@DependsOn("cacheRouter")
+public class BloomFilterManager implements CacheListener<String, Object> {
+
+    private static final Logger logger = LoggerFactory.getLogger(BloomFilterManager.class);
+    public static final String BLOOM_PATH = "/api/cluster/bloom";
+
+    private static final class PeerFilter {
+        final BloomFilter filter;
+        final long receivedAt;
+
+        PeerFilter(BloomFilter filter, long receivedAt) {
+            this.filter = filter;
+            this.receivedAt = receivedAt;
+        }
+    }
+
+    private final CacheRouter cacheRouter;
+    private final ServiceRegistration svcRegistration;
+    private final LRUCache<String, Object> localCache;
+    private final HttpClient httpClient;
+    private final AWS_SDKConfig awsConfig;
+
+    private final CountingBloomFilter localFilter;
+    private final Map<String, PeerFilter> peerFilters; // service id -> last filter received
+    private final Map<String, Long> recentWrites;      // key -> time it was written through this node
+    private final LongAdder definiteMisses = new LongAdder();
+    private final ScheduledExecutorService gossipScheduler;
+    private long lastSentVersion = -1;
+    private long lastSentAt;
+
+    public BloomFilterManager(CacheRouter cacheRouter, ServiceRegistration svcRegistration, LRUCache<String, Object> localCache,
+                              HttpClient httpClient, AWS_SDKConfig awsConfig) {
+        this.cacheRouter = cacheRouter;
+        this.svcRegistration = svcRegistration;
+        this.localCache = localCache;
+        this.httpClient = httpClient;
+        this.awsConfig = awsConfig;
+        this.localFilter = new CountingBloomFilter(awsConfig.getBloomExpectedKeys(), awsConfig.getBloomFalsePositiveRate());
+        this.peerFilters = new ConcurrentHashMap<>();
+        this.recentWrites = new ConcurrentHashMap<>();
+        this.gossipScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Bloom-GossipThread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    private void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        // Listen before seeding: a key caught by both is counted twice, which only risks a false positive
+        localCache.addListener(this);
+        localCache.snapshot().keySet().forEach(localFilter::add);
+        int interval = awsConfig.getBloomGossipIntervalMillis();
+        gossipScheduler.scheduleWithFixedDelay(this::gossip, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("Bloom filters enabled: {} bits, {} hash functions, {} bytes of counters.",
+                localFilter.bitSize(), localFilter.getHashCount(), localFilter.memoryBytes());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        gossipScheduler.shutdownNow();
+        localCache.removeListener(this);
+    }
+
+    public boolean isEnabled() {
+        return awsConfig.isBloomEnabled();
+    }
+
+    @Override
+    public void onInsert(String key, Object value) {
+        localFilter.add(key);
+    }
+
+    @Override
+    public void onRemove(String key, Object value) {
+        localFilter.remove(key);
+    }
+
+    @Override
+    public void onEvict(String key, Object value) {
+        localFilter.remove(key);
+    }
+
+    /**
+     * Counts a key this node keeps outside its cache, such as in the disk tier, as stored here.
+     */
+    public void addStored(String key) {
+        if (isEnabled()) {
+            localFilter.add(key);
+        }
+    }
+
+    /**
+     * Reverses {@link #addStored} once the key is no longer kept there.
+     */
+    public void removeStored(String key) {
+        if (isEnabled()) {
+            localFilter.remove(key);
+        }
+    }
+
+    /**
+     * Returns true if none of the replicas stores the key, as far as their filters tell, and
+     * reads may be answered as misses from the filters.
+     */
+    public boolean isDefiniteMiss(String key, Collection<ServerInstance> replicas) {
+        if (!isEnabled() || !awsConfig.isBloomAnswerMisses() || replicas.isEmpty()) {
+            return false;
+        }
+        long now = now();
+        Long writtenAt = recentWrites.get(key);
+        if (writtenAt != null && now - writtenAt <= awsConfig.getBloomMaxAgeMillis()) {
+            return false;
+        }
+        for (ServerInstance replica : replicas) {
+            if (isLocal(replica)) {
+                if (localFilter.mightContain(key)) {
+                    return false;
+                }
+                continue;
+            }
+            PeerFilter peer = peerFilters.get(replica.getServiceId());
+            if (peer == null || now - peer.receivedAt > awsConfig.getBloomMaxAgeMillis() || peer.filter.mightContain(key)) {
+                return false;
+            }
+        }
+        definiteMisses.increment();
+        return true;
+    }
+
+    /**
+     * Records a write coordinated by this node, which peers' filters may not show yet.
+     */
+    public void onWrite(String key) {
+        if (isEnabled()) {
+            recentWrites.put(key, now());
+        }
+    }
+
+    public void receiveFilter(String source, byte[] bytes) {
+        peerFilters.put(source, new PeerFilter(BloomFilter.fromBytes(bytes), now()));
+    }
+
+    private void gossip() {
+        try {
+            long now = now();
+            long maxAge = awsConfig.getBloomMaxAgeMillis();
+            recentWrites.values().removeIf(writtenAt -> now - writtenAt > maxAge);
+            List<ServerInstance> active = cacheRouter.getActiveServerInstances();
+            Set<String> activeIds = active.stream().map(ServerInstance::getServiceId).collect(Collectors.toSet());
+            peerFilters.keySet().retainAll(activeIds);
+
+            // Unchanged filters are resent at half the maximum age, so peers keep trusting them
+            long version = localFilter.version();
+            if (version == lastSentVersion && now - lastSentAt < maxAge / 2) {
+                return;
+            }
+            if (!svcRegistration.isRegistered()) {
+                return;
+            }
+            byte[] body = localFilter.toBloomFilter().toBytes();
+            String path = String.format("%s?source=%s", BLOOM_PATH, URLEncoder.encode(svcRegistration.getAwsTaskId(), StandardCharsets.UTF_8));
+            for (ServerInstance instance : active) {
+                if (!isLocal(instance)) {
+                    send(instance, path, body);
+                }
+            }
+            lastSentVersion = version;
+            lastSentAt = now;
+        } catch (Exception e) {
+            logger.warn("Bloom filter gossip failed: {}", e.getMessage());
+        }
+    }
+
+    private void send(ServerInstance instance, String path, byte[] body) {
+        String url = String.format("http://%s:%d%s", instance.getIpAddress(), instance.getPort(), path);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Content-Type", "application/octet-stream")
+                .timeout(Duration.ofMillis(awsConfig.getWriteTimeoutMillis()))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            if (error != null || response.statusCode() >= 300) {
+                logger.debug("Bloom filter to {} failed: {}", instance.getNodeIdentifier(),
+                        error != null ? error.getMessage() : "status " + response.statusCode());
+            }
+        });
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", isEnabled());
+        metrics.put("answerMisses", awsConfig.isBloomAnswerMisses());
+        metrics.put("expectedKeys", awsConfig.getBloomExpectedKeys());
+        metrics.put("targetFalsePositiveRate", awsConfig.getBloomFalsePositiveRate());
+        metrics.put("bits", localFilter.bitSize());
+        metrics.put("hashFunctions", localFilter.getHashCount());
+        metrics.put("countersBytes", localFilter.memoryBytes());
+        metrics.put("gossipBytes", localFilter.bitSize() / Byte.SIZE);
+        metrics.put("estimatedFalsePositiveRate", localFilter.toBloomFilter().estimatedFalsePositiveRate());
+        metrics.put("definiteMisses", definiteMisses.sum());
+
+        long now = now();
+        Map<String, Object> peers = new LinkedHashMap<>();
+        peerFilters.forEach((source, peer) -> peers.put(source, Map.of(
+                "ageMillis", now - peer.receivedAt,
+                "bits", peer.filter.bitSize(),
+                "estimatedFalsePositiveRate", peer.filter.estimatedFalsePositiveRate())));
+        metrics.put("peers", peers);
+        return metrics;
+    }
+
+    private boolean isLocal(ServerInstance instance) {
+        return instance.getServiceId().equalsIgnoreCase(svcRegistration.getAwsTaskId())
+                && instance.getIpAddress().equalsIgnoreCase(svcRegistration.getIp());
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+}
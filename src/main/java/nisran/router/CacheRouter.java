@@ -6,29 +6,26 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component; // Added import
 
 import jakarta.annotation.PostConstruct;
+import nisran.RingHash;
 import nisran.ServerInstance;
 import nisran.config.AWS_SDKConfig;
-import software.amazon.awssdk.services.servicediscovery.ServiceDiscoveryClient;
-import software.amazon.awssdk.services.servicediscovery.model.DiscoverInstancesRequest;
-import software.amazon.awssdk.services.servicediscovery.model.DiscoverInstancesResponse;
-import software.amazon.awssdk.services.servicediscovery.model.HealthStatusFilter;
+import nisran.discovery.DiscoveryProvider;
 
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Profile; // Added import
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Component("cacheRouter") // Make CacheRouter a Spring-managed bean
@@ -37,44 +34,60 @@ import java.util.stream.Collectors;
 public class CacheRouter implements CHRoutingService{
 
     private static final Logger logger = LoggerFactory.getLogger(CacheRouter.class);
-    private static final String HASH_ALGORITHM = "MD5";
 
-    private final ServiceDiscoveryClient awsSDKClient; // Added for AWS Service Discovery
-    private final AWS_SDKConfig awsSDKConfig; // Added for AWS SDK configuration
+    private final DiscoveryProvider discoveryProvider; // Cloud Map, static list or file
+    private final int discoveryIntervalSeconds;
 
     private  String localNodeIdentifier;
     private int virtualNodes; // Default to 1 if not specified, can be set via AWS_SDKConfig
 
     // Maintains a map of taskId to its full node identifier (ip:port)
     private final ConcurrentHashMap<String, String> svrDictionary;
-    private volatile SortedMap<Integer, ServerInstance> consistentHashRing; // hash -> nodeIdentifier (ip:port)
+    private volatile Ring ring; // Replaced as a whole, so its map, epoch and fingerprint always match
     private volatile List<ServerInstance> currentServerInstances; // Stores instances for buildConsistentHashRing
+    private volatile Set<ServerInstance> suspectedInstances = Set.of(); // Discovered but excluded from routing
+    private volatile Supplier<List<ServerInstance>> membershipSource; // Replaces service discovery polling when set
+    private final Map<ServerInstance, Long> departedInstances = new ConcurrentHashMap<>(); // Announced their departure, until the given time
 
-    private final MessageDigest md5Digest;
     private final ScheduledExecutorService discoveryScheduler;
 
-    public CacheRouter(ServiceDiscoveryClient awsClient, AWS_SDKConfig config) {  // Typically injected via @Value in Spring
+    /**
+     * A published ring: never modified, so that readers see a consistent ring, epoch and
+     * fingerprint with a single volatile read.
+     */
+    private static final class Ring {
+        private final SortedMap<Integer, ServerInstance> tokens; // hash -> server instance (ip:port)
+        private final long epoch; // Incremented every time the ring membership actually changes
+        private final long fingerprint; // Same on every node with this ring
+
+        private Ring(SortedMap<Integer, ServerInstance> tokens, long epoch) {
+            this.tokens = Collections.unmodifiableSortedMap(tokens);
+            this.epoch = epoch;
+            this.fingerprint = RingHash.fingerprint(tokens);
+        }
+    }
+
+    @Autowired
+    public CacheRouter(DiscoveryProvider discoveryProvider, AWS_SDKConfig config) {  // Typically injected via @Value in Spring
+        this(discoveryProvider, config.getVirtualNodes(), config.getDiscoveryIntervalSeconds());
+    }
+
+    /**
+     * Creates a router outside of Spring, e.g. for an {@link nisran.EmbeddedCacheNode}. Discovery is
+     * then only read when {@link #refreshMembership()} is called.
+     */
+    public CacheRouter(DiscoveryProvider discoveryProvider, int virtualNodes, int discoveryIntervalSeconds) {
         
-        this.virtualNodes = config.getVirtualNodes(); // Get virtual nodes from configuration
+        this.virtualNodes = virtualNodes;
 
-        this.awsSDKClient = awsClient; // Use AWS Service Discovery client
-        this.awsSDKConfig = config; // Use AWS SDK configuration
+        this.discoveryProvider = discoveryProvider;
+        this.discoveryIntervalSeconds = discoveryIntervalSeconds;
 
         this.svrDictionary = new ConcurrentHashMap<>();
-        this.consistentHashRing = Collections.unmodifiableSortedMap(new TreeMap<>()); // Initial empty, immutable ring
+        this.ring = new Ring(new TreeMap<>(), 0); // Initial empty, immutable ring
         this.currentServerInstances = Collections.emptyList();
 
-        try {
-            this.md5Digest = MessageDigest.getInstance(HASH_ALGORITHM);
-        } catch (NoSuchAlgorithmException e) {
-            logger.error("{} algorithm not found, which is required for hashing.", HASH_ALGORITHM, e);
-            throw new RuntimeException(HASH_ALGORITHM + " algorithm not found", e);
-        }
-
-        // Initial discovery and ring setup
-        createOrUpdateServerDictionary(currentServerInstances);
-        buildConsistentHashRing();
-
+        // The first discovery runs on the discovery thread, so that it overlaps with registration
         this.discoveryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread t = new Thread(r, "CacheRouter-DiscoveryThread");
             t.setDaemon(true); // Allow JVM to exit if this is the only thread running
@@ -83,7 +96,7 @@ public class CacheRouter implements CHRoutingService{
         
         logger.info("CacheRouter initialized."+ 
             "Server discovery scheduled every {} seconds with {} virtual nodes per server.", 
-            awsSDKConfig.getDiscoveryIntervalSeconds(), this.virtualNodes);
+            discoveryIntervalSeconds, this.virtualNodes);
     }
 
     @PostConstruct
@@ -96,9 +109,11 @@ public class CacheRouter implements CHRoutingService{
         this.discoveryScheduler.scheduleAtFixedRate(() -> {
             createOrUpdateServerDictionary(currentServerInstances);
             buildConsistentHashRing();
-        }, awsSDKConfig.getDiscoveryIntervalSeconds(), 
-            awsSDKConfig.getDiscoveryIntervalSeconds(), 
+        }, 0,
+            discoveryIntervalSeconds, 
             TimeUnit.SECONDS);
+        // Providers that notice changes themselves need not wait for the next refresh
+        discoveryProvider.onChange(this::refreshMembership);
     }
 
     /**
@@ -111,7 +126,8 @@ public class CacheRouter implements CHRoutingService{
         logger.debug("Attempting to create or update server dictionary.");
         List<ServerInstance> currentInstances;
         try {
-            currentInstances = discoverInstances();
+            Supplier<List<ServerInstance>> source = this.membershipSource;
+            currentInstances = source != null ? source.get() : discoverInstances();
         } catch (Exception e) {
             logger.error("Error during service discovery while updating dictionary. Old dictionary and instances retained.", e);
             // Do not clear currentServerInstancesForRingBuilding on discovery error,
@@ -120,6 +136,9 @@ public class CacheRouter implements CHRoutingService{
         }
 
         this.currentServerInstances = currentInstances; // Update the current server instances
+        // Forget departures once discovery has caught up with them or they have expired
+        long now = System.currentTimeMillis();
+        departedInstances.entrySet().removeIf(e -> !currentServerInstances.contains(e.getKey()) || e.getValue() < now);
 
         Map<String, String> latestTaskToServerNodeMap = currentServerInstances.stream()
                 .filter(instance -> instance.getServiceId() != null && instance.getNodeIdentifier() != null)
@@ -140,7 +159,7 @@ public class CacheRouter implements CHRoutingService{
     @Override
     public synchronized void buildConsistentHashRing() {
         logger.debug("Attempting to build consistent hash ring.");
-        List<ServerInstance> instancesToUse = this.currentServerInstances;
+        List<ServerInstance> instancesToUse = getActiveServerInstances();
 
         if (instancesToUse == null) { // Should not happen if createOrUpdateServerDictionary ran
             logger.warn("currentServerInstancesForRingBuilding is null. Using empty list for ring construction.");
@@ -149,7 +168,10 @@ public class CacheRouter implements CHRoutingService{
 
         if (instancesToUse.isEmpty()) {
             logger.warn("No server instances available for ring construction. Clearing hash ring.");
-            this.consistentHashRing = Collections.unmodifiableSortedMap(new TreeMap<>());
+            Ring current = this.ring;
+            if (!current.tokens.isEmpty()) {
+                this.ring = new Ring(new TreeMap<>(), current.epoch + 1);
+            }
             return;
         }
         doRebuildConsistentHashRing(instancesToUse);
@@ -165,18 +187,21 @@ public class CacheRouter implements CHRoutingService{
                 continue;
             }
             for (int i = 0; i < this.virtualNodes; i++) {
-                String virtualNodeName = nodeIdentifier + "-VN" + i;
+                String virtualNodeName = RingHash.virtualNodeName(nodeIdentifier, i);
                 int hash = calculateHash(virtualNodeName);
                 newRing.put(hash, instance);
                 logger.trace("Added virtual node {} with hash {} for server {}", virtualNodeName, hash, nodeIdentifier);
             }
         }
-        this.consistentHashRing = Collections.unmodifiableSortedMap(newRing); // Atomically update the ring to an immutable version
+        Ring current = this.ring;
+        if (!newRing.equals(current.tokens)) {
+            this.ring = new Ring(newRing, current.epoch + 1); // Atomically publish the ring with its epoch and fingerprint
+        }
         // Use serviceDiscovery.getActiveServerCount() for a potentially more up-to-date count if instances list could be stale
         // or if getActiveServerCount() has more complex logic. For simplicity, instances.size() is fine here.
         int activeServerCount =  currentServerInstances.size();// Example of using the new method
-        logger.info("Consistent hash ring rebuilt with {} total virtual nodes from {} physical instances (reported active: {}). Current tasks: {}", 
-            newRing.size(), instances.size(), activeServerCount, svrDictionary.keySet());
+        logger.info("Consistent hash ring rebuilt with {} total virtual nodes from {} physical instances (reported active: {}, suspected: {}), epoch {}. Current tasks: {}", 
+            newRing.size(), instances.size(), activeServerCount, suspectedInstances.size(), ring.epoch, svrDictionary.keySet());
 
         if (logger.isTraceEnabled()){
              logger.trace("Current ring state: {}", newRing);
@@ -190,7 +215,14 @@ public class CacheRouter implements CHRoutingService{
      */
     @Override
     public ServerInstance getServerInstanceForKey(String key) {
-        SortedMap<Integer, ServerInstance> currentRing = this.consistentHashRing; // Use local reference for thread safety
+        return getServerInstanceForKey(this.ring.tokens, key); // Use local reference for thread safety
+    }
+
+    /**
+     * Gets the server instance responsible for the given key on the given ring, e.g. on a ring
+     * returned by {@link #getConsistentHashRing()} before a membership change.
+     */
+    public ServerInstance getServerInstanceForKey(SortedMap<Integer, ServerInstance> currentRing, String key) {
         if (currentRing.isEmpty()) {
             logger.warn("Consistent hash ring is empty. Cannot route key: {}", key);
             return null;
@@ -213,6 +245,53 @@ public class CacheRouter implements CHRoutingService{
         return svrInstance;
     }
 
+    /**
+     * Returns the ring token (virtual node hash) that owns the given key.
+     * Keys sharing a token form one token range and are replicated as a unit.
+     * @param key The key to route.
+     * @return The owning token, or null if the ring is empty.
+     */
+    public Integer getTokenForKey(String key) {
+        SortedMap<Integer, ServerInstance> currentRing = this.ring.tokens;
+        if (currentRing.isEmpty()) {
+            return null;
+        }
+        SortedMap<Integer, ServerInstance> tailMap = currentRing.tailMap(calculateHash(key));
+        return tailMap.isEmpty() ? currentRing.firstKey() : tailMap.firstKey();
+    }
+
+    /**
+     * Returns the current consistent hash ring (token -> server instance).
+     * The returned map is immutable and is replaced, never mutated, on rebuild.
+     */
+    public SortedMap<Integer, ServerInstance> getConsistentHashRing() {
+        return this.ring.tokens;
+    }
+
+    /**
+     * Returns a counter that changes whenever the ring membership changes.
+     * Callers caching ring-derived state can compare epochs to detect staleness.
+     */
+    public long getRingEpoch() {
+        return this.ring.epoch;
+    }
+
+    /**
+     * Returns a hash of the current ring that, unlike the epoch, is the same on every node that
+     * has built the same ring.
+     */
+    public long getRingFingerprint() {
+        return this.ring.fingerprint;
+    }
+
+    /**
+     * Describes the current ring for clients, with the epoch and fingerprint of that same ring.
+     */
+    public Topology getTopology() {
+        Ring current = this.ring;
+        return new Topology(current.epoch, current.fingerprint, Topology.nodesOf(current.tokens));
+    }
+
     @Override
     public boolean isLocalServerNode(String key) {
         ServerInstance targetNodeIdentifier = getServerInstanceForKey(key);
@@ -252,16 +331,7 @@ public class CacheRouter implements CHRoutingService{
     }
 
     private int calculateHash(String input) {
-        byte[] hashBytes;
-        synchronized (md5Digest) { // MessageDigest is not thread-safe
-            md5Digest.reset();
-            hashBytes = md5Digest.digest(input.getBytes(StandardCharsets.UTF_8));
-        }
-        // Convert first 4 bytes of MD5 to an int.
-        return ((hashBytes[0] & 0xFF) << 24) |
-               ((hashBytes[1] & 0xFF) << 16) |
-               ((hashBytes[2] & 0xFF) << 8)  |
-               ((hashBytes[3] & 0xFF));
+        return RingHash.of(input);
     }
 
     public void shutdown() {
@@ -281,72 +351,112 @@ public class CacheRouter implements CHRoutingService{
         logger.info("CacheRouter discovery scheduler shut down.");
     }
 
-    // @Override // Uncomment if ServiceRegistration directly implements ServiceDiscoveryOperations
+    /**
+     * Returns the instances currently registered with the discovery backend.
+     */
     public List<ServerInstance> discoverInstances() {
-
-        String serviceName = awsSDKConfig.getServiceName();
-        String namespaceName = awsSDKConfig.getNamespaceName();
-
-        logger.debug("Discovering instances for service: {} in namespace: {}", serviceName, namespaceName);
-        try {
-            DiscoverInstancesRequest request = DiscoverInstancesRequest.builder()
-                    .namespaceName(namespaceName)
-                    .serviceName(serviceName)
-                    .maxResults(100) // Adjust as needed
-                    .healthStatus(HealthStatusFilter.HEALTHY) // Discover only healthy instances
-                    .build();
-
-            DiscoverInstancesResponse response = awsSDKClient.discoverInstances(request);
-            return response.instances().stream()
-                    .map(httpInstanceSummary -> {
-                        Map<String, String> attributes = httpInstanceSummary.attributes();
-                        String ip = attributes.get("AWS_INSTANCE_IPV4");
-                        String portStr = attributes.get("AWS_INSTANCE_PORT");
-                        // Prefer ECS_TASK_ARN as serviceId if available, otherwise use CloudMap's instanceId
-                        String awsTaskARN = attributes.getOrDefault("ECS_TASK_ARN", httpInstanceSummary.instanceId());
-
-                        String instanceId = awsTaskARN.substring(awsTaskARN.lastIndexOf("/") + 1);
-                        //TODO: Add logic to convert task ARN to a serviceId if needed
-                        if (ip != null && portStr != null && instanceId != null) {
-                            try {
-                                int discoveredPort = Integer.parseInt(portStr);
-                                return new ServerInstance(instanceId, ip, discoveredPort);
-                            } catch (NumberFormatException e) {
-                                logger.warn("Failed to parse port for instance {}: {}. Attributes: {}", instanceId, portStr, attributes, e);
-                                return null;
-                            }
-                        }
-                        logger.warn("Instance {} (CloudMap ID: {}) missing required attributes (IP, Port, or determined serviceId). Attributes: {}",
-                                instanceId, httpInstanceSummary.instanceId(), attributes);
-                        return null;
-                    })
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            logger.error("Failed to discover instances for service {} in namespace {}", serviceName, namespaceName, e);
-            return Collections.emptyList(); // Return empty list on error
-        }
+        return discoveryProvider.discoverInstances();
     }
 
     @Override
     public int getActiveServerCount(){
-        int result = 0;
+        return getActiveServerInstances().size();
+    }
 
-        if(!currentServerInstances.isEmpty()){
-            result = currentServerInstances.size();
+    /**
+     * Returns an immutable list of the currently known active server instances,
+     * excluding instances the failure detector currently suspects.
+     * @return A list of active server instances.
+     */
+    public List<ServerInstance> getActiveServerInstances() {
+        Set<ServerInstance> suspected = this.suspectedInstances;
+        if (suspected.isEmpty() && departedInstances.isEmpty()) {
+            return Collections.unmodifiableList(this.currentServerInstances);
         }
+        long now = System.currentTimeMillis();
+        return this.currentServerInstances.stream()
+                .filter(instance -> !suspected.contains(instance))
+                .filter(instance -> departedInstances.getOrDefault(instance, 0L) < now)
+                .collect(Collectors.toUnmodifiableList());
+    }
 
-        return result;
+    /**
+     * Returns the replica set of a token range: its primary followed by the next active
+     * instances, {@code count} in all, bounded by the cluster size. With zone-aware placement,
+     * successors in a zone the set already covers are skipped while instances in other zones
+     * are left.
+     * @param primary The primary returned by the router for a key.
+     * @return The replica instances, primary first.
+     */
+    public List<ServerInstance> getReplicaInstances(ServerInstance primary, int count, boolean zoneAware) {
+        List<ServerInstance> active = getActiveServerInstances();
+        int position = -1; // A primary no longer active is followed by the first instance
+        for (int i = 0; i < active.size(); i++) {
+            if (active.get(i).getServiceId().equals(primary.getServiceId())) {
+                position = i;
+                break;
+            }
+        }
+        List<ServerInstance> successors = new ArrayList<>();
+        for (int i = 1; i < active.size(); i++) {
+            successors.add(active.get(Math.floorMod(position + i, active.size())));
+        }
+        if (zoneAware) {
+            return ZonePlacement.spread(primary, successors, count);
+        }
+        List<ServerInstance> replicas = new ArrayList<>();
+        replicas.add(primary);
+        replicas.addAll(successors.subList(0, Math.max(0, Math.min(count - 1, successors.size()))));
+        return replicas;
     }
 
     /**
-     * Returns an immutable list of the currently known active server instances.
-     * @return A list of active server instances.
+     * Returns every instance reported by service discovery, including suspected ones.
      */
-    public List<ServerInstance> getActiveServerInstances() {
+    public List<ServerInstance> getDiscoveredServerInstances() {
         return Collections.unmodifiableList(this.currentServerInstances);
     }
 
+    /**
+     * Takes the ring membership from the given source instead of polling service discovery,
+     * e.g. from gossip. The source must list instances in the same order on every node.
+     */
+    public void setMembershipSource(Supplier<List<ServerInstance>> source) {
+        this.membershipSource = source;
+    }
+
+    /**
+     * Re-reads the membership and rebuilds the ring now rather than at the next refresh.
+     */
+    public synchronized void refreshMembership() {
+        createOrUpdateServerDictionary(currentServerInstances);
+        buildConsistentHashRing();
+    }
+
+    /**
+     * Excludes an instance that announced its departure from routing, and rebuilds the ring
+     * immediately. The exclusion lasts until discovery no longer reports the instance, or for
+     * at most two discovery intervals, so that a node restarting with the same id can rejoin.
+     */
+    public synchronized void markDeparted(ServerInstance instance) {
+        long until = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(2L * discoveryIntervalSeconds);
+        departedInstances.put(instance, until);
+        buildConsistentHashRing();
+    }
+
+    /**
+     * Excludes instances confirmed dead from routing until the next call clears them, and
+     * rebuilds the ring immediately rather than waiting for the next discovery refresh. The
+     * ring is left alone if the set has not changed.
+     */
+    public synchronized void setSuspectedInstances(Set<ServerInstance> suspected) {
+        if (suspected.equals(suspectedInstances)) {
+            return;
+        }
+        this.suspectedInstances = Set.copyOf(suspected);
+        buildConsistentHashRing();
+    }
+
     // @Override // Uncomment if ServiceRegistration directly implements ServiceDiscoveryOperations
     /* 
     public String getTaskForLocalServer() {
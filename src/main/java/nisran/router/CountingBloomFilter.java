@@ -0,0 +1,98 @@
+package nisran.router;
+
+/**
+ * Bloom filter with a small counter per position, so that keys can be removed as well as added.
+ *
+ * A node keeps one of these over the keys it stores and hands peers the plain {@link BloomFilter}
+ * of its non-zero counters. Counters saturate at 255 and are then never decremented, which can
+ * only leave a false positive behind, never a false negative.
+ */
+public class CountingBloomFilter {
+
+    private static final int SATURATED = 0xff;
+
+    private final byte[] counters;
+    private final int hashCount;
+    private long version; // bumped when a counter changes between zero and non-zero
+
+    public CountingBloomFilter(long expectedKeys, double falsePositiveRate) {
+        long bits = BloomFilter.optimalBits(expectedKeys, falsePositiveRate);
+        bits = (bits + Long.SIZE - 1) / Long.SIZE * Long.SIZE;
+        if (bits > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter of " + bits + " positions is too large");
+        }
+        this.counters = new byte[(int) bits];
+        this.hashCount = BloomFilter.optimalHashCount(expectedKeys, bits);
+    }
+
+    public synchronized void add(String key) {
+        long hash = BloomFilter.hash(key);
+        for (int i = 0; i < hashCount; i++) {
+            int index = (int) BloomFilter.position(hash, i, counters.length);
+            int count = counters[index] & 0xff;
+            if (count == 0) {
+                version++;
+            }
+            if (count < SATURATED) {
+                counters[index] = (byte) (count + 1);
+            }
+        }
+    }
+
+    public synchronized void remove(String key) {
+        long hash = BloomFilter.hash(key);
+        for (int i = 0; i < hashCount; i++) {
+            int index = (int) BloomFilter.position(hash, i, counters.length);
+            int count = counters[index] & 0xff;
+            if (count == 0 || count == SATURATED) {
+                continue;
+            }
+            counters[index] = (byte) (count - 1);
+            if (count == 1) {
+                version++;
+            }
+        }
+    }
+
+    public synchronized boolean mightContain(String key) {
+        long hash = BloomFilter.hash(key);
+        for (int i = 0; i < hashCount; i++) {
+            if (counters[(int) BloomFilter.position(hash, i, counters.length)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a plain Bloom filter with a bit set for every non-zero counter.
+     */
+    public synchronized BloomFilter toBloomFilter() {
+        long[] words = new long[counters.length / Long.SIZE];
+        for (int i = 0; i < counters.length; i++) {
+            if (counters[i] != 0) {
+                words[i >>> 6] |= 1L << i;
+            }
+        }
+        return new BloomFilter(words, hashCount);
+    }
+
+    /**
+     * Returns a number that changes whenever the filter's plain Bloom filter does.
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    public long bitSize() {
+        return counters.length;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public long memoryBytes() {
+        return counters.length;
+    }
+}
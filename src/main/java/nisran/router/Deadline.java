@@ -0,0 +1,91 @@
+package nisran.router;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The point in time after which nobody is waiting for the result of a request any more.
+ *
+ * Deadlines travel between nodes as a remaining budget in milliseconds (the {@link #HEADER}
+ * header over HTTP, the timeout field of a transport frame) rather than as a timestamp, so
+ * clocks need not be synchronised. Every hop derives its own timeouts from what is left and
+ * stops working on a request once its deadline has passed.
+ *
+ * The deadline of the request being served is kept in a thread local, set by the HTTP filter
+ * and by the transport server; code that hands work to other threads must capture it first.
+ */
+public final class Deadline {
+
+    public static final String HEADER = "X-Request-Timeout-Ms";
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Returns the deadline of the request served by this thread, or one {@code defaultMillis}
+     * from now if the thread is not serving a request.
+     */
+    public static Deadline currentOr(long defaultMillis) {
+        Deadline current = CURRENT.get();
+        return current != null ? current : after(defaultMillis);
+    }
+
+    public static void setCurrent(Deadline deadline) {
+        CURRENT.set(deadline);
+    }
+
+    public static void clearCurrent() {
+        CURRENT.remove();
+    }
+
+    public long remainingMillis() {
+        long remainingNanos = expiresAtNanos - System.nanoTime();
+        return remainingNanos <= 0 ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos));
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Returns the timeout for one hop: the hop's own limit, shortened to what is left of the deadline.
+     * Never less than 1 ms, so that it is always a valid timeout; callers check for expiry first.
+     */
+    public long timeoutMillis(long hopLimitMillis) {
+        return Math.max(1, Math.min(hopLimitMillis, remainingMillis()));
+    }
+
+    /**
+     * Returns a future that completes like the given one, or with {@link DeadlineExceededException}
+     * when the deadline passes first. The given future is left running, and the timer is
+     * cancelled as soon as it completes.
+     */
+    public <T> CompletableFuture<T> within(CompletableFuture<T> future, String operation) {
+        if (future.isDone()) {
+            return future;
+        }
+        // Errors of the given future arrive wrapped; only the timeout's own is bare
+        return future.copy().orTimeout(remainingMillis(), TimeUnit.MILLISECONDS).exceptionallyCompose(error ->
+                CompletableFuture.failedFuture(error instanceof TimeoutException
+                        ? new DeadlineExceededException("Deadline exceeded while " + operation) : error));
+    }
+
+    /**
+     * @throws DeadlineExceededException if the deadline has passed.
+     */
+    public void check(String operation) {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Deadline exceeded before " + operation);
+        }
+    }
+}
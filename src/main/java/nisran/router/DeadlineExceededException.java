@@ -0,0 +1,14 @@
+package nisran.router;
+
+/**
+ * Thrown when a request's deadline passes before its work is done. The work is abandoned,
+ * since the caller has already given up on it.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
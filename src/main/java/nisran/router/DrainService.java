@@ -0,0 +1,309 @@
+package nisran.router;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nisran.ServerInstance;
+import nisran.cache.LRUCache;
+import nisran.config.AWS_SDKConfig;
+import nisran.discovery.HeartbeatService;
+import nisran.discovery.ReadinessService;
+import nisran.discovery.ServiceRegistration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Drains this node on shutdown, so that its keys survive it.
+ *
+ * The drain runs when the application context closes, before the web server stops: the node
+ * reports itself not ready, stops heartbeats and deregisters, tells every peer to drop it from
+ * the ring, and then sends the entries it was primary for to their owners on the ring without
+ * it, hottest first, for at most the drain timeout. Receivers keep the values they already have,
+ * since writes may have reached them after the departure was announced. Replicas of the new
+ * owners catch up through anti-entropy.
+ */
+@Service("drainService")
+@Profile("cluster")
+@DependsOn("cacheRouter")
+public class DrainService implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(DrainService.class);
+    public static final String DRAIN_PATH = "/api/cluster/drain";
+
+    /**
+     * Entries sent to one new owner in one request.
+     */
+    static final class HandoffBatch {
+        final ServerInstance owner;
+        final Map<String, Object> entries = new LinkedHashMap<>();
+        final int firstRank; // Position of the hottest key in the batch
+
+        HandoffBatch(ServerInstance owner, int firstRank) {
+            this.owner = owner;
+            this.firstRank = firstRank;
+        }
+    }
+
+    private final CacheRouter cacheRouter;
+    private final ServiceRegistration svcRegistration;
+    private final HeartbeatService heartbeatService;
+    private final ReadinessService readinessService;
+    private final HotKeyManager hotKeyManager;
+    private final LRUCache<String, Object> localCache;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final AWS_SDKConfig awsConfig;
+
+    private volatile boolean running;
+    private final AtomicLong handedOff = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong kept = new AtomicLong();
+
+    public DrainService(CacheRouter cacheRouter, ServiceRegistration svcRegistration, HeartbeatService heartbeatService,
+                        ReadinessService readinessService, HotKeyManager hotKeyManager, LRUCache<String, Object> localCache,
+                        HttpClient httpClient, ObjectMapper objectMapper, AWS_SDKConfig awsConfig) {
+        this.cacheRouter = cacheRouter;
+        this.svcRegistration = svcRegistration;
+        this.heartbeatService = heartbeatService;
+        this.readinessService = readinessService;
+        this.hotKeyManager = hotKeyManager;
+        this.localCache = localCache;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.awsConfig = awsConfig;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            drain();
+        } catch (Exception e) {
+            logger.error("Drain failed; remaining keys are lost with this node.", e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stopped before the web server, which keeps serving peers and clients during the drain.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+
+    public boolean isEnabled() {
+        return awsConfig.isDrainEnabled();
+    }
+
+    private void drain() {
+        ServerInstance self = svcRegistration.getLocalInstance();
+        if (self == null) {
+            return; // Never registered, so nothing routes here
+        }
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + TimeUnit.SECONDS.toNanos(awsConfig.getDrainTimeoutSeconds());
+
+        readinessService.markDraining();
+        heartbeatService.stop();
+        svcRegistration.unregisterService();
+
+        SortedMap<Integer, ServerInstance> oldRing = cacheRouter.getConsistentHashRing();
+        List<ServerInstance> peers = new ArrayList<>(cacheRouter.getActiveServerInstances());
+        peers.remove(self);
+        announceDeparture(self, peers, deadline);
+
+        cacheRouter.markDeparted(self);
+        SortedMap<Integer, ServerInstance> newRing = cacheRouter.getConsistentHashRing();
+        if (newRing.isEmpty()) {
+            logger.warn("No other nodes to hand {} entries to.", localCache.size());
+            return;
+        }
+
+        List<HandoffBatch> batches = planHandoff(localCache.snapshot(), hotKeyManager.getPromotedKeys(),
+                key -> cacheRouter.getServerInstanceForKey(oldRing, key),
+                key -> cacheRouter.getServerInstanceForKey(newRing, key),
+                self, awsConfig.getDrainBatchSize());
+        int total = batches.stream().mapToInt(batch -> batch.entries.size()).sum();
+        logger.info("Handing off {} entries in {} batches to {} nodes.", total, batches.size(), peers.size());
+
+        int sent = 0;
+        for (HandoffBatch batch : batches) {
+            if (System.nanoTime() >= deadline) {
+                logger.warn("Drain timed out after handing off {} of {} entries.", sent, total);
+                return;
+            }
+            if (send(batch, deadline)) {
+                sent += batch.entries.size();
+                handedOff.addAndGet(batch.entries.size());
+            }
+        }
+        logger.info("Drain handed off {} of {} entries in {} ms.", sent, total,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    /**
+     * Groups the entries this node owns on the old ring by their owner on the new ring, hottest
+     * first: promoted hot keys, then the rest from most to least recently used.
+     * @param entries The local entries, most recently used first.
+     * @return Batches ordered by the hottest key they carry.
+     */
+    static List<HandoffBatch> planHandoff(Map<String, Object> entries, Collection<String> hottest,
+                                          Function<String, ServerInstance> oldOwner, Function<String, ServerInstance> newOwner,
+                                          ServerInstance self, int batchSize) {
+        Set<String> order = new LinkedHashSet<>();
+        for (String key : hottest) {
+            if (entries.containsKey(key)) {
+                order.add(key);
+            }
+        }
+        order.addAll(entries.keySet());
+
+        List<HandoffBatch> batches = new ArrayList<>();
+        Map<ServerInstance, HandoffBatch> open = new HashMap<>();
+        int rank = 0;
+        for (String key : order) {
+            rank++;
+            Object value = entries.get(key);
+            ServerInstance owner = newOwner.apply(key);
+            if (value == null || owner == null || owner.equals(self) || !Objects.equals(oldOwner.apply(key), self)) {
+                continue;
+            }
+            HandoffBatch batch = open.get(owner);
+            if (batch == null) {
+                batch = new HandoffBatch(owner, rank);
+                open.put(owner, batch);
+                batches.add(batch);
+            }
+            batch.entries.put(key, value);
+            if (batch.entries.size() >= batchSize) {
+                open.remove(owner);
+            }
+        }
+        batches.sort(Comparator.comparingInt(batch -> batch.firstRank));
+        return batches;
+    }
+
+    private void announceDeparture(ServerInstance self, List<ServerInstance> peers, long deadline) {
+        String path = DRAIN_PATH + "/leaving?id=" + URLEncoder.encode(self.getServiceId(), StandardCharsets.UTF_8);
+        List<CompletableFuture<?>> acks = new ArrayList<>();
+        for (ServerInstance peer : peers) {
+            acks.add(post(peer, path, Map.of(), deadline).exceptionally(e -> {
+                logger.warn("Could not announce departure to {}: {}", peer.getNodeIdentifier(), e.getMessage());
+                return null;
+            }));
+        }
+        try {
+            CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            logger.warn("Not every peer acknowledged the departure: {}", e.getMessage());
+        }
+    }
+
+    private boolean send(HandoffBatch batch, long deadline) {
+        try {
+            post(batch.owner, DRAIN_PATH + "/handoff", batch.entries, deadline)
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (Exception e) {
+            logger.warn("Handoff of {} entries to {} failed: {}", batch.entries.size(), batch.owner.getNodeIdentifier(), e.getMessage());
+            return false;
+        }
+    }
+
+    private CompletableFuture<Void> post(ServerInstance instance, String path, Object body, long deadline) {
+        try {
+            String url = String.format("http://%s:%d%s", instance.getIpAddress(), instance.getPort(), path);
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofNanos(Math.max(1, deadline - System.nanoTime())))
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenAccept(response -> {
+                if (response.statusCode() >= 300) {
+                    throw new IllegalStateException("status " + response.statusCode());
+                }
+            });
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Drops a departing node from the ring without waiting for discovery.
+     * @return false if the node is not known here.
+     */
+    public boolean receiveDeparture(String serviceId) {
+        for (ServerInstance instance : cacheRouter.getDiscoveredServerInstances()) {
+            if (instance.getServiceId().equals(serviceId)) {
+                logger.info("Node {} is leaving; removing it from the ring.", instance.getNodeIdentifier());
+                cacheRouter.markDeparted(instance);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores entries handed off by a departing node, keeping any value already held.
+     */
+    public void receiveHandoff(Map<String, Object> entries) {
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            if (localCache.setIfAbsent(entry.getKey(), entry.getValue())) {
+                received.incrementAndGet();
+            } else {
+                kept.incrementAndGet();
+            }
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", isEnabled());
+        metrics.put("handedOff", handedOff.get());
+        metrics.put("received", received.get());
+        metrics.put("keptExisting", kept.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,83 @@
+package nisran.router;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.cache.LRUCache;
+import nisran.config.AWS_SDKConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes {@link ExpiringValue}s from this node once they have been expired for
+ * {@code service.resp.reclaim-after} seconds, so that deleted and expired keys give their space
+ * back.
+ *
+ * An expired value is kept for that long, rather than removed when it expires, so that a replica
+ * that missed the deletion is repaired by anti-entropy before the primary no longer holds it;
+ * every node removes it on its own after the same time. The cache is copied in chunks, without
+ * holding its lock, and a key is only removed if it still holds the value copied.
+ */
+@Service("expiredValueReaper")
+@Profile("cluster")
+public class ExpiredValueReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpiredValueReaper.class);
+
+    private final LRUCache<String, Object> localCache;
+    private final AWS_SDKConfig awsConfig;
+    private final ScheduledExecutorService reapScheduler;
+
+    public ExpiredValueReaper(LRUCache<String, Object> localCache, AWS_SDKConfig awsConfig) {
+        this.localCache = localCache;
+        this.awsConfig = awsConfig;
+        this.reapScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ExpiredValueReaper-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    void start() {
+        long interval = Math.max(1, awsConfig.getRespReclaimAfterSeconds() / 2);
+        reapScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reap(System.currentTimeMillis());
+            } catch (Exception e) {
+                logger.error("Removing expired values failed.", e);
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reapScheduler.shutdownNow();
+    }
+
+    /**
+     * Removes the values that expired at least {@code service.resp.reclaim-after} seconds before
+     * the given time.
+     * @return The number of keys removed.
+     */
+    int reap(long nowMillis) {
+        long expiredBy = nowMillis - TimeUnit.SECONDS.toMillis(awsConfig.getRespReclaimAfterSeconds());
+        int removed = 0;
+        for (Map.Entry<String, Object> entry : localCache.snapshot().entrySet()) {
+            if (ExpiringValue.expiredBy(entry.getValue(), expiredBy) && localCache.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            logger.debug("Removed {} values expired before {}.", removed, expiredBy);
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,72 @@
+package nisran.router;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A value stored with the time it expires, for keys given a TTL or deleted through the Redis
+ * protocol.
+ *
+ * Stored values are plain maps so that they replicate, persist and are repaired by anti-entropy
+ * like any other value; {@link QuorumReaderWriter} unwraps them on reads, where an expired value
+ * reads as absent. A deletion is a value that expired when it was deleted. Clients cannot write
+ * a map with either reserved key over HTTP, so every wrapper was written through the Redis
+ * protocol. {@link ExpiredValueReaper} removes expired values once replicas have had time to
+ * agree on them.
+ */
+public final class ExpiringValue {
+
+    public static final String VALUE = "@value";
+    public static final String EXPIRES_AT = "@expiresAt";
+
+    private ExpiringValue() {
+    }
+
+    /**
+     * @param expiresAtMillis Wall clock time, in milliseconds since the epoch, at which the value expires.
+     */
+    public static Map<String, Object> of(Object value, long expiresAtMillis) {
+        Map<String, Object> stored = new LinkedHashMap<>();
+        stored.put(VALUE, value);
+        stored.put(EXPIRES_AT, expiresAtMillis);
+        return stored;
+    }
+
+    /**
+     * @param nowMillis Wall clock time of the deletion, from which the tombstone is kept for a while.
+     */
+    public static Map<String, Object> tombstone(long nowMillis) {
+        return of(null, nowMillis);
+    }
+
+    public static boolean isWrapped(Object stored) {
+        return stored instanceof Map<?, ?> map && map.size() == 2 && map.containsKey(VALUE)
+                && map.get(EXPIRES_AT) instanceof Number;
+    }
+
+    /**
+     * @return Whether a value from a client uses a reserved key, and so could be taken for a wrapper.
+     */
+    public static boolean isReserved(Object value) {
+        return value instanceof Map<?, ?> map && (map.containsKey(VALUE) || map.containsKey(EXPIRES_AT));
+    }
+
+    /**
+     * @return Whether a stored value is a wrapper that expired at or before the given time.
+     */
+    public static boolean expiredBy(Object stored, long millis) {
+        return isWrapped(stored) && ((Number) ((Map<?, ?>) stored).get(EXPIRES_AT)).longValue() <= millis;
+    }
+
+    /**
+     * @return The value a stored value reads as at the given time: null once it has expired,
+     *         and the stored value itself if it was not written with an expiry.
+     */
+    public static Object unwrap(Object stored, long nowMillis) {
+        if (!isWrapped(stored)) {
+            return stored;
+        }
+        Map<?, ?> map = (Map<?, ?>) stored;
+        return ((Number) map.get(EXPIRES_AT)).longValue() <= nowMillis ? null : map.get(VALUE);
+    }
+}
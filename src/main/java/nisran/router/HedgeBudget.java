@@ -0,0 +1,33 @@
+package nisran.router;
+
+/**
+ * Caps the extra load hedged reads may add.
+ *
+ * Every read deposits {@code ratio} tokens, up to {@code maxTokens}; every hedge withdraws one.
+ * Over time hedges therefore stay below {@code ratio} times the read rate, with a small burst
+ * allowance, and hedging stops by itself when the whole cluster slows down.
+ */
+public class HedgeBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    public HedgeBudget(double ratio, double maxTokens) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+    }
+
+    public synchronized void onRequest() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,181 @@
+package nisran.router;
+
+import jakarta.annotation.PreDestroy;
+import nisran.ServerInstance;
+import nisran.config.AWS_SDKConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Speculative reads for tail-latency control.
+ *
+ * A read is sent to the first instance of the preference list. If no answer has arrived after
+ * the hedge delay, the same read is sent to the next instance and whichever answer comes first
+ * is used. The delay is a percentile of the first instance's recent latency once enough samples
+ * exist, and the configured fixed delay until then. A {@link HedgeBudget} bounds hedges to a
+ * fraction of reads. If the first instance fails outright, the next one is tried immediately.
+ */
+@Service("hedgedReader")
+@Profile("cluster")
+public class HedgedReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgedReader.class);
+
+    private static final int LATENCY_WINDOW_SIZE = 256;
+    private static final int MIN_SAMPLES_FOR_PERCENTILE = 32;
+    private static final double MAX_BUDGET_TOKENS = 10;
+
+    private final boolean enabled;
+    private final long fixedDelayMillis;
+    private final double delayPercentile;
+    private final HedgeBudget budget;
+    private final Map<ServerInstance, LatencyWindow> latencies;
+    private final ScheduledExecutorService hedgeScheduler;
+
+    private final LongAdder hedgesSent = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+    private final LongAdder hedgesDenied = new LongAdder();
+
+    @Autowired
+    public HedgedReader(AWS_SDKConfig awsConfig) {
+        this(awsConfig.isHedgeEnabled(), awsConfig.getHedgeDelayMillis(), awsConfig.getHedgeDelayPercentile(),
+                awsConfig.getHedgeBudgetPercent() / 100.0);
+    }
+
+    HedgedReader(boolean enabled, long fixedDelayMillis, double delayPercentile, double budgetRatio) {
+        this.enabled = enabled;
+        this.fixedDelayMillis = fixedDelayMillis;
+        this.delayPercentile = delayPercentile;
+        this.budget = new HedgeBudget(budgetRatio, MAX_BUDGET_TOKENS);
+        this.latencies = new ConcurrentHashMap<>();
+        this.hedgeScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "HedgedReader-Thread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeScheduler.shutdownNow();
+    }
+
+    /**
+     * Reads from the preference list, hedging to the second instance if the first is slow.
+     * @param preference Instances able to answer the read, most preferred first.
+     * @param reader Issues the read to one instance.
+     * @return The first successful answer; fails only if every instance tried failed.
+     */
+    public <T> CompletableFuture<T> read(List<ServerInstance> preference, Function<ServerInstance, CompletableFuture<T>> reader) {
+        ServerInstance first = preference.get(0);
+        if (!enabled || preference.size() < 2) {
+            return timed(first, reader);
+        }
+        budget.onRequest();
+
+        ServerInstance second = preference.get(1);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // 1 until the second instance is read from, 2 once it is, or while the hedge claims it
+        AtomicInteger launched = new AtomicInteger(1);
+        AtomicInteger failed = new AtomicInteger();
+
+        Runnable launchSecond = () -> timed(second, reader).whenComplete((value, error) -> {
+            if (error == null && result.complete(value)) {
+                hedgesWon.increment();
+            } else if (error != null && failed.incrementAndGet() == 2) {
+                result.completeExceptionally(error);
+            }
+        });
+
+        long delay = hedgeDelayMillis(first);
+        ScheduledFuture<?> hedge = hedgeScheduler.schedule(() -> {
+            // Claimed before a token is spent, so that a failover already under way costs none
+            if (result.isDone() || !launched.compareAndSet(1, 2)) {
+                return;
+            }
+            if (budget.tryAcquire()) {
+                hedgesSent.increment();
+                logger.debug("Hedging read to {} after {} ms without an answer from {}",
+                        second.getNodeIdentifier(), delay, first.getNodeIdentifier());
+                launchSecond.run();
+            } else {
+                hedgesDenied.increment();
+                launched.set(1);
+                // The first instance may have failed while the hedge held the claim
+                if (failed.get() > 0 && launched.compareAndSet(1, 2)) {
+                    launchSecond.run();
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+
+        timed(first, reader).whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            int failures = failed.incrementAndGet();
+            if (launched.compareAndSet(1, 2)) {
+                // No hedge in flight: fail over to the next instance right away
+                hedge.cancel(false);
+                launchSecond.run();
+            } else if (failures == 2) {
+                result.completeExceptionally(error);
+            }
+        });
+        result.whenComplete((value, error) -> hedge.cancel(false));
+        return result;
+    }
+
+    private <T> CompletableFuture<T> timed(ServerInstance instance, Function<ServerInstance, CompletableFuture<T>> reader) {
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = reader.apply(instance);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((value, error) -> {
+            if (error == null) {
+                latencyWindow(instance).record((System.nanoTime() - start) / 1_000);
+            }
+        });
+    }
+
+    /**
+     * Returns how long to wait for the given instance before hedging.
+     */
+    long hedgeDelayMillis(ServerInstance instance) {
+        LatencyWindow window = latencies.get(instance);
+        if (delayPercentile <= 0 || window == null || window.count() < MIN_SAMPLES_FOR_PERCENTILE) {
+            return fixedDelayMillis;
+        }
+        return Math.max(1, TimeUnit.MICROSECONDS.toMillis(window.percentile(delayPercentile)));
+    }
+
+    private LatencyWindow latencyWindow(ServerInstance instance) {
+        return latencies.computeIfAbsent(instance, i -> new LatencyWindow(LATENCY_WINDOW_SIZE));
+    }
+
+    public Map<String, Long> getMetrics() {
+        return Map.of(
+                "hedgesSent", hedgesSent.sum(),
+                "hedgesWon", hedgesWon.sum(),
+                "hedgesDeniedByBudget", hedgesDenied.sum());
+    }
+}
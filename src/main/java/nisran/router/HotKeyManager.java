@@ -0,0 +1,356 @@
+package nisran.router;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.ServerInstance;
+import nisran.cache.LRUCache;
+import nisran.config.AWS_SDKConfig;
+import nisran.discovery.ServiceRegistration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects hot keys and replicates them to every node.
+ *
+ * Every node counts the reads it coordinates in a {@link SpaceSavingSketch}. At the end of each
+ * window it reports its busiest keys to their primaries. A primary adds up the reports for the
+ * keys it owns; keys whose cluster-wide read rate is above the threshold are promoted, and the
+ * primary sends their values to all other nodes, which then answer reads of those keys from
+ * their copy instead of forwarding them. Promoted keys stay hot until their rate drops below
+ * half the threshold, so that keys near the threshold do not flap.
+ *
+ * Copies are kept current by the primary: every write it applies to a hot key is pushed to all
+ * nodes, and the full hot set is resent every window, which also drops keys that cooled down
+ * and reaches nodes that joined or missed an update. A node that forwards a write drops its own
+ * copy at once, so that its clients read their writes. Copies are dropped when their primary
+ * changes or has not resent them for a few windows.
+ */
+@Service("hotKeyManager")
+@Profile("cluster")
+@DependsOn("cacheRouter")
+public class HotKeyManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotKeyManager.class);
+    public static final String HOT_KEYS_PATH = "/api/cluster/hot-keys";
+
+    private static final int COPY_EXPIRY_WINDOWS = 3;
+
+    private static final class HotCopy {
+        final String source;
+        final Object value;
+        final long receivedAt;
+
+        HotCopy(String source, Object value, long receivedAt) {
+            this.source = source;
+            this.value = value;
+            this.receivedAt = receivedAt;
+        }
+    }
+
+    private final CacheRouter cacheRouter;
+    private final ServiceRegistration svcRegistration;
+    private final LRUCache<String, Object> localCache;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final AWS_SDKConfig awsConfig;
+
+    private final SpaceSavingSketch<String> sketch;
+    private final Map<String, HotCopy> copies;  // key -> value replicated from its primary
+    private volatile Map<String, Long> reported; // key -> reads reported this window, for keys owned here
+    private volatile Map<String, Double> promoted = Map.of(); // owned hot keys -> cluster-wide reads per second
+    private volatile List<SpaceSavingSketch.Counter<String>> lastWindow = List.of();
+    private final ScheduledExecutorService windowScheduler;
+
+    public HotKeyManager(CacheRouter cacheRouter, ServiceRegistration svcRegistration, LRUCache<String, Object> localCache,
+                         HttpClient httpClient, ObjectMapper objectMapper, AWS_SDKConfig awsConfig) {
+        this.cacheRouter = cacheRouter;
+        this.svcRegistration = svcRegistration;
+        this.localCache = localCache;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.awsConfig = awsConfig;
+        this.sketch = new SpaceSavingSketch<>(awsConfig.getHotKeysSketchCapacity());
+        this.copies = new ConcurrentHashMap<>();
+        this.reported = new ConcurrentHashMap<>();
+        this.windowScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "HotKeys-WindowThread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    private void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        int window = awsConfig.getHotKeysWindowSeconds();
+        windowScheduler.scheduleWithFixedDelay(this::closeWindow, window, window, TimeUnit.SECONDS);
+        logger.info("Hot key replication enabled: window {} s, threshold {} reads/s, at most {} keys.",
+                window, awsConfig.getHotKeysThresholdPerSecond(), awsConfig.getHotKeysMaxKeys());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        windowScheduler.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return awsConfig.isHotKeysEnabled();
+    }
+
+    /**
+     * Counts a read coordinated by this node.
+     */
+    public void recordRead(String key) {
+        if (isEnabled()) {
+            sketch.offer(key);
+        }
+    }
+
+    /**
+     * Returns this node's copy of a hot key, or null if it has none.
+     */
+    public Object getCopy(String key) {
+        HotCopy copy = copies.get(key);
+        return copy == null ? null : copy.value;
+    }
+
+    /**
+     * Drops the local copy of a key that is being written through this node.
+     */
+    public void invalidate(String key) {
+        copies.remove(key);
+    }
+
+    /**
+     * Pushes a write applied by this node as primary to all nodes, if the key is hot.
+     */
+    public void onPrimaryWrite(String key, Object value) {
+        if (isEnabled() && promoted.containsKey(key)) {
+            Map<String, Object> update = new HashMap<>();
+            update.put(key, value);
+            broadcast(update, false);
+        }
+    }
+
+    // ---- Peer side, called through HotKeyController ----
+
+    /**
+     * Adds read counts reported by another node for keys this node is primary for.
+     */
+    public void receiveReport(Map<String, Long> counts) {
+        Map<String, Long> window = reported;
+        counts.forEach((key, count) -> {
+            if (isLocal(cacheRouter.getServerInstanceForKey(key))) {
+                window.merge(key, count, Long::sum);
+            }
+        });
+    }
+
+    /**
+     * Stores copies of hot keys sent by their primary.
+     * @param full Whether the entries are the primary's complete hot set, replacing earlier copies from it.
+     */
+    public void receiveCopies(String source, Map<String, Object> entries, boolean full) {
+        long now = now();
+        if (full) {
+            copies.entrySet().removeIf(e -> e.getValue().source.equals(source) && !entries.containsKey(e.getKey()));
+        }
+        entries.forEach((key, value) -> {
+            if (value != null) {
+                copies.put(key, new HotCopy(source, value, now));
+            }
+        });
+    }
+
+    // ---- Window processing ----
+
+    void closeWindow() {
+        try {
+            reportCounts();
+            promote();
+            expireCopies();
+        } catch (Exception e) {
+            logger.error("Error while closing hot key window", e);
+        }
+    }
+
+    private void reportCounts() {
+        double window = awsConfig.getHotKeysWindowSeconds();
+        // A key can only reach the threshold if some node sees its share of it
+        double floor = awsConfig.getHotKeysThresholdPerSecond() / Math.max(1, cacheRouter.getActiveServerCount());
+        List<SpaceSavingSketch.Counter<String>> top = sketch.top(awsConfig.getHotKeysSketchCapacity());
+        sketch.reset();
+        lastWindow = top.subList(0, Math.min(top.size(), awsConfig.getHotKeysMaxKeys()));
+
+        Map<ServerInstance, Map<String, Long>> byPrimary = new HashMap<>();
+        for (SpaceSavingSketch.Counter<String> counter : top) {
+            if (counter.getCount() / window < floor) {
+                break;
+            }
+            ServerInstance primary = cacheRouter.getServerInstanceForKey(counter.getKey());
+            if (primary == null) {
+                continue;
+            }
+            if (isLocal(primary)) {
+                reported.merge(counter.getKey(), counter.getCount(), Long::sum);
+            } else {
+                byPrimary.computeIfAbsent(primary, p -> new HashMap<>()).put(counter.getKey(), counter.getCount());
+            }
+        }
+        byPrimary.forEach((primary, counts) -> post(primary, HOT_KEYS_PATH + "/report", counts));
+    }
+
+    private void promote() {
+        double window = awsConfig.getHotKeysWindowSeconds();
+        double threshold = awsConfig.getHotKeysThresholdPerSecond();
+        Map<String, Long> counts = reported;
+        reported = new ConcurrentHashMap<>();
+
+        List<Map.Entry<String, Long>> candidates = new ArrayList<>(counts.entrySet());
+        candidates.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        Map<String, Double> hot = new LinkedHashMap<>();
+        Map<String, Object> values = new HashMap<>();
+        for (Map.Entry<String, Long> candidate : candidates) {
+            if (hot.size() >= awsConfig.getHotKeysMaxKeys()) {
+                break;
+            }
+            String key = candidate.getKey();
+            double rate = candidate.getValue() / window;
+            boolean wasHot = promoted.containsKey(key);
+            if (rate < threshold && !(wasHot && rate >= threshold / 2)) {
+                continue;
+            }
+            Object value = localCache.get(key);
+            if (value == null || !isLocal(cacheRouter.getServerInstanceForKey(key))) {
+                continue;
+            }
+            hot.put(key, rate);
+            values.put(key, value);
+        }
+        if (!hot.keySet().equals(promoted.keySet())) {
+            logger.info("Hot keys owned by this node changed to {}", hot);
+        }
+        promoted = hot;
+        // Sent even when empty, so that nodes drop keys that cooled down
+        broadcast(values, true);
+    }
+
+    private void expireCopies() {
+        long maxAge = TimeUnit.SECONDS.toMillis((long) awsConfig.getHotKeysWindowSeconds() * COPY_EXPIRY_WINDOWS);
+        long now = now();
+        copies.entrySet().removeIf(e -> {
+            ServerInstance primary = cacheRouter.getServerInstanceForKey(e.getKey());
+            return primary == null || !primary.getServiceId().equalsIgnoreCase(e.getValue().source)
+                    || now - e.getValue().receivedAt > maxAge;
+        });
+    }
+
+    private void broadcast(Map<String, Object> entries, boolean full) {
+        if (!svcRegistration.isRegistered()) {
+            return;
+        }
+        String path = String.format("%s/replicate?source=%s&full=%s", HOT_KEYS_PATH,
+                URLEncoder.encode(localSource(), StandardCharsets.UTF_8), full);
+        for (ServerInstance instance : cacheRouter.getActiveServerInstances()) {
+            if (!isLocal(instance)) {
+                post(instance, path, entries);
+            }
+        }
+    }
+
+    private void post(ServerInstance instance, String path, Object body) {
+        try {
+            String url = String.format("http://%s:%d%s", instance.getIpAddress(), instance.getPort(), path);
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofMillis(awsConfig.getWriteTimeoutMillis()))
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                if (error != null || response.statusCode() >= 300) {
+                    logger.debug("Hot key message {} to {} failed: {}", path, instance.getNodeIdentifier(),
+                            error != null ? error.getMessage() : "status " + response.statusCode());
+                }
+            });
+        } catch (Exception e) {
+            logger.warn("Could not send hot key message {} to {}: {}", path, instance.getNodeIdentifier(), e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the hot keys this node owns, hottest first.
+     */
+    public List<String> getPromotedKeys() {
+        List<Map.Entry<String, Double>> entries = new ArrayList<>(promoted.entrySet());
+        entries.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+        List<String> keys = new ArrayList<>();
+        entries.forEach(entry -> keys.add(entry.getKey()));
+        return keys;
+    }
+
+    /**
+     * Returns the busiest keys seen here in the last window, the keys this node promoted and the
+     * copies it holds.
+     */
+    public Map<String, Object> getHotKeys() {
+        double window = awsConfig.getHotKeysWindowSeconds();
+        List<Map<String, Object>> top = new ArrayList<>();
+        for (SpaceSavingSketch.Counter<String> counter : lastWindow) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("key", counter.getKey());
+            entry.put("readsPerSecond", counter.getCount() / window);
+            entry.put("maxErrorPerSecond", counter.getError() / window);
+            top.add(entry);
+        }
+        Map<String, String> held = new LinkedHashMap<>();
+        copies.forEach((key, copy) -> held.put(key, copy.source));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", isEnabled());
+        result.put("windowSeconds", awsConfig.getHotKeysWindowSeconds());
+        result.put("localTopKeys", top);
+        result.put("promoted", promoted);
+        result.put("copies", held);
+        return result;
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    private String localSource() {
+        return svcRegistration.getAwsTaskId();
+    }
+
+    private boolean isLocal(ServerInstance instance) {
+        return instance != null
+                && instance.getServiceId().equalsIgnoreCase(svcRegistration.getAwsTaskId())
+                && instance.getIpAddress().equalsIgnoreCase(svcRegistration.getIp());
+    }
+}
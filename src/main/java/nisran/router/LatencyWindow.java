@@ -0,0 +1,48 @@
+package nisran.router;
+
+import java.util.Arrays;
+
+/**
+ * A sliding window of the most recent latency samples of one peer, used to derive percentiles.
+ */
+public class LatencyWindow {
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    public LatencyWindow(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Latency window size must be positive, was " + size);
+        }
+        this.samples = new long[size];
+    }
+
+    public synchronized void record(long latencyMicros) {
+        samples[next] = latencyMicros;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    /**
+     * Returns the given percentile (0-100] of the samples in the window, or -1 if it is empty.
+     */
+    public long percentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count == 0) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.min(sorted.length, Math.max(1, rank)) - 1];
+    }
+}
@@ -0,0 +1,59 @@
+package nisran.router;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Decides which entries of a differing leaf a replica adopts from the primary of its range.
+ *
+ * Entries are not versioned, so a difference alone does not tell which side is newer: a leased
+ * write reaches the replicas before the primary, and a key the primary evicted or moved to its
+ * disk tier is still held by the cluster. A replica therefore adopts the primary's value of a
+ * key, whether it lacks the key or holds another value, only once the same difference has been
+ * seen in two consecutive rounds, which outlasts any write in flight. A key the primary lacks is
+ * never deleted.
+ */
+final class LeafRepair {
+
+    // token -> key -> fingerprint of the difference seen in the last round that compared the key
+    private final Map<Integer, Map<String, Long>> differences = new HashMap<>();
+
+    /**
+     * Records the differences between the local and remote entries of the leaves compared in
+     * this round, replacing those of the previous round for the range.
+     * @return The remote entries to write locally: those that differed the same way last round.
+     */
+    synchronized Map<String, Object> toWrite(int token, Map<String, Object> localEntries, Map<String, Object> remoteEntries) {
+        Map<String, Long> previous = differences.getOrDefault(token, Map.of());
+        Map<String, Long> current = new HashMap<>();
+        Map<String, Object> adopted = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> remote : remoteEntries.entrySet()) {
+            String key = remote.getKey();
+            boolean held = localEntries.containsKey(key);
+            if (held && Objects.equals(localEntries.get(key), remote.getValue())) {
+                continue;
+            }
+            long difference = 31 * (held ? MerkleTree.digest(key, localEntries.get(key)) : 0) + MerkleTree.digest(key, remote.getValue());
+            if (Long.valueOf(difference).equals(previous.get(key))) {
+                adopted.put(key, remote.getValue());
+            } else {
+                current.put(key, difference);
+            }
+        }
+        if (current.isEmpty()) {
+            differences.remove(token);
+        } else {
+            differences.put(token, current);
+        }
+        return adopted;
+    }
+
+    /**
+     * @return The number of differences waiting for the next round to be confirmed.
+     */
+    synchronized int pending() {
+        return differences.values().stream().mapToInt(Map::size).sum();
+    }
+}
@@ -0,0 +1,278 @@
+package nisran.router;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.ServerInstance;
+import nisran.config.AWS_SDKConfig;
+import nisran.discovery.ServiceRegistration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Partition leases for single-hop linearizable reads.
+ *
+ * The primary of a token range acquires a time-bounded lease from a majority of the range's
+ * replicas. While the lease is valid no other node can obtain it, so all writes for the range
+ * are sequenced through the holder and the holder can answer reads from its local cache
+ * without contacting the replicas.
+ *
+ * Leases are acquired lazily on the first leased operation and renewed in the background while
+ * held. Grants are requested from all replicas at once without blocking the caller, and
+ * concurrent operations on a range wait for the same acquisition. When the ring changes, all held leases are dropped and their grants released, so that
+ * the new primaries can take over without waiting for the old leases to run out. If the old
+ * holder is gone and cannot release, the new primary waits for the grants to expire.
+ */
+@Service("leaseManager")
+@Profile("cluster")
+public class LeaseManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeaseManager.class);
+    public static final String LEASE_PATH = "/api/cluster/lease";
+
+    private final CacheRouter cacheRouter;
+    private final ServiceRegistration svcRegistration;
+    private final HttpClient httpClient;
+    private final AWS_SDKConfig awsConfig;
+
+    private final LeaseTable leaseTable;
+    private final Map<Integer, List<ServerInstance>> leaseReplicas; // token -> grantors of the held lease
+    private final Map<Integer, CompletableFuture<Boolean>> acquisitions; // token -> acquisition in flight
+    private final ScheduledExecutorService renewScheduler;
+    private volatile long leaseEpoch;
+
+    public LeaseManager(CacheRouter cacheRouter, ServiceRegistration svcRegistration,
+                        HttpClient httpClient, AWS_SDKConfig awsConfig) {
+        this.cacheRouter = cacheRouter;
+        this.svcRegistration = svcRegistration;
+        this.httpClient = httpClient;
+        this.awsConfig = awsConfig;
+        this.leaseTable = new LeaseTable();
+        this.leaseReplicas = new ConcurrentHashMap<>();
+        this.acquisitions = new ConcurrentHashMap<>();
+        this.renewScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "LeaseManager-RenewThread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    private void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        leaseEpoch = cacheRouter.getRingEpoch();
+        long interval = Math.max(1, awsConfig.getLeaseDurationMillis() / 3);
+        renewScheduler.scheduleWithFixedDelay(this::renewOrTransfer, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("Partition leases enabled: duration {} ms, drift margin {} ms.",
+                awsConfig.getLeaseDurationMillis(), awsConfig.getLeaseDriftMarginMillis());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewScheduler.shutdownNow();
+        releaseAll();
+    }
+
+    public boolean isEnabled() {
+        return awsConfig.isLeaseEnabled();
+    }
+
+    /**
+     * Makes sure this node holds the lease on a token range, acquiring it if needed.
+     * @param replicas The replica set of the range, primary (this node) first.
+     * @return A future completed with true once the lease is held, or with false if it could
+     *         not be acquired. It never completes exceptionally.
+     */
+    public CompletableFuture<Boolean> ensureLease(int token, List<ServerInstance> replicas) {
+        if (leaseTable.isHeld(token)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        CompletableFuture<Boolean> acquisition = new CompletableFuture<>();
+        CompletableFuture<Boolean> inFlight = acquisitions.putIfAbsent(token, acquisition);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        if (leaseTable.isHeld(token)) {
+            // Acquired by an acquisition that completed in between
+            acquisitions.remove(token, acquisition);
+            acquisition.complete(true);
+            return acquisition;
+        }
+        acquire(token, replicas).whenComplete((held, error) -> {
+            acquisitions.remove(token, acquisition);
+            acquisition.complete(error == null && held);
+        });
+        return acquisition;
+    }
+
+    /**
+     * Collects grants from the replicas and records the lease if a majority granted it.
+     * Used both for first acquisition and for renewal. A lease acquired across a ring change
+     * is given back, as it was granted for the previous ring.
+     */
+    private CompletableFuture<Boolean> acquire(int token, List<ServerInstance> replicas) {
+        long duration = awsConfig.getLeaseDurationMillis();
+        long requestedAt = leaseTable.now();
+        long epoch = leaseEpoch;
+        List<CompletableFuture<Boolean>> grants = new ArrayList<>(replicas.size());
+        for (ServerInstance replica : replicas) {
+            grants.add(requestGrant(replica, token, duration));
+        }
+        return CompletableFuture.allOf(grants.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> recordIfGranted(token, replicas, grants, requestedAt, duration, epoch));
+    }
+
+    private boolean recordIfGranted(int token, List<ServerInstance> replicas, List<CompletableFuture<Boolean>> grants,
+                                    long requestedAt, long duration, long epoch) {
+        int granted = (int) grants.stream().filter(CompletableFuture::join).count();
+        int majority = replicas.size() / 2 + 1;
+        if (granted >= majority && epoch == leaseEpoch
+                && leaseTable.recordHeld(token, requestedAt, duration, awsConfig.getLeaseDriftMarginMillis())) {
+            leaseReplicas.put(token, replicas);
+            logger.debug("Holding lease on token {} ({} of {} grants)", token, granted, replicas.size());
+            return true;
+        }
+
+        logger.warn("Could not acquire lease on token {}: {} of {} replicas granted, {} needed",
+                token, granted, replicas.size(), majority);
+        leaseTable.revoke(token);
+        leaseReplicas.remove(token);
+        // Give back partial grants so that we do not block a legitimate holder
+        releaseGrants(token, replicas);
+        return false;
+    }
+
+    private void renewOrTransfer() {
+        try {
+            long epoch = cacheRouter.getRingEpoch();
+            if (epoch != leaseEpoch) {
+                logger.info("Ring changed (epoch {} -> {}). Releasing {} held leases for transfer.",
+                        leaseEpoch, epoch, leaseTable.heldTokens().size());
+                leaseEpoch = epoch;
+                releaseAll();
+                return;
+            }
+            List<CompletableFuture<Boolean>> renewals = new ArrayList<>();
+            for (Integer token : leaseTable.heldTokens()) {
+                List<ServerInstance> replicas = leaseReplicas.get(token);
+                if (replicas != null) {
+                    renewals.add(acquire(token, replicas));
+                }
+            }
+            // Renewed in parallel; the next round starts once all are answered
+            CompletableFuture.allOf(renewals.toArray(new CompletableFuture<?>[0])).join();
+        } catch (Exception e) {
+            logger.error("Error while renewing leases", e);
+        }
+    }
+
+    private void releaseAll() {
+        for (Integer token : leaseTable.heldTokens()) {
+            leaseTable.revoke(token);
+            List<ServerInstance> replicas = leaseReplicas.remove(token);
+            if (replicas != null) {
+                releaseGrants(token, replicas);
+            }
+        }
+    }
+
+    private void releaseGrants(int token, List<ServerInstance> replicas) {
+        for (ServerInstance replica : replicas) {
+            if (isLocal(replica)) {
+                leaseTable.release(token, localHolderId());
+                continue;
+            }
+            send(replica, token, "release", Map.of("holder", localHolderId())).whenComplete((response, error) -> {
+                if (error != null) {
+                    logger.debug("Could not release lease on token {} at {}: {}", token, replica.getNodeIdentifier(), error.getMessage());
+                }
+            });
+        }
+    }
+
+    private CompletableFuture<Boolean> requestGrant(ServerInstance replica, int token, long duration) {
+        if (isLocal(replica)) {
+            return CompletableFuture.completedFuture(grant(token, localHolderId(), duration));
+        }
+        Map<String, Object> params = Map.of("holder", localHolderId(), "durationMillis", duration);
+        return send(replica, token, "grant", params).handle((response, error) -> {
+            if (error != null) {
+                logger.debug("Lease grant request for token {} to {} failed: {}", token, replica.getNodeIdentifier(), error.getMessage());
+                return false;
+            }
+            return response.statusCode() == 200;
+        });
+    }
+
+    private CompletableFuture<HttpResponse<Void>> send(ServerInstance replica, int token, String action, Map<String, Object> params) {
+        StringBuilder query = new StringBuilder();
+        params.forEach((name, value) -> query.append(query.length() == 0 ? '?' : '&')
+                .append(name).append('=').append(URLEncoder.encode(String.valueOf(value), StandardCharsets.UTF_8)));
+        String url = String.format("http://%s:%d%s/%d/%s%s",
+                replica.getIpAddress(), replica.getPort(), LEASE_PATH, token, action, query);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                // A late grant is useless: the lease is counted from before the request was sent
+                .timeout(Duration.ofMillis(Math.max(1, awsConfig.getLeaseDurationMillis() / 4)))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    // ---- Grantor side, called by peers through LeaseController ----
+
+    /**
+     * Grants a lease to a holder if this node's ring also sees it as the primary of the range
+     * and no other holder has an unexpired grant.
+     */
+    public boolean grant(int token, String holder, long durationMillis) {
+        ServerInstance primary = cacheRouter.getConsistentHashRing().get(token);
+        if (primary == null || !primary.getServiceId().equalsIgnoreCase(holder)) {
+            logger.debug("Refusing lease on token {} to {}: primary in local ring is {}", token, holder,
+                    primary == null ? "none" : primary.getServiceId());
+            return false;
+        }
+        boolean granted = leaseTable.grant(token, holder, durationMillis);
+        if (!granted) {
+            logger.debug("Refusing lease on token {} to {}: granted to another holder", token, holder);
+        }
+        return granted;
+    }
+
+    public boolean release(int token, String holder) {
+        return leaseTable.release(token, holder);
+    }
+
+    public Map<String, Object> getLeases() {
+        return leaseTable.snapshot();
+    }
+
+    private String localHolderId() {
+        return svcRegistration.getAwsTaskId();
+    }
+
+    private boolean isLocal(ServerInstance instance) {
+        return instance.getServiceId().equalsIgnoreCase(svcRegistration.getAwsTaskId())
+                && instance.getIpAddress().equalsIgnoreCase(svcRegistration.getIp());
+    }
+}
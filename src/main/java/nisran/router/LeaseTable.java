@@ -0,0 +1,143 @@
+package nisran.router;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Bookkeeping for partition leases on one node.
+ *
+ * A node plays two roles. As a replica it grants leases: it promises a holder not to grant the
+ * same token range to anybody else until the grant expires or the holder releases it. As a
+ * primary it holds leases it has collected from a majority of the range's replicas.
+ *
+ * Only durations are exchanged, never timestamps, so clocks need not be synchronised. A grantor
+ * starts the expiry countdown when it receives the request, while the holder starts it before
+ * sending the request and subtracts a drift margin. The holder therefore always considers its
+ * lease expired before any grantor does, provided clocks run at roughly the same rate.
+ */
+public class LeaseTable {
+
+    private static final class Grant {
+        final String holder;
+        final long expiresAt;
+
+        Grant(String holder, long expiresAt) {
+            this.holder = holder;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final LongSupplier clock;
+    private final Map<Integer, Grant> grants;   // token -> promise given to a holder
+    private final Map<Integer, Long> held;      // token -> local time until which this node holds the lease
+
+    public LeaseTable() {
+        this(() -> System.nanoTime() / 1_000_000);
+    }
+
+    /**
+     * @param clock A monotonic clock in milliseconds.
+     */
+    public LeaseTable(LongSupplier clock) {
+        this.clock = clock;
+        this.grants = new ConcurrentHashMap<>();
+        this.held = new ConcurrentHashMap<>();
+    }
+
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    // ---- Grantor side ----
+
+    /**
+     * Grants or renews a lease on a token range.
+     * @return true if granted; false if an unexpired grant to another holder exists.
+     */
+    public synchronized boolean grant(int token, String holder, long durationMillis) {
+        long now = now();
+        Grant current = grants.get(token);
+        if (current != null && current.expiresAt > now && !current.holder.equals(holder)) {
+            return false;
+        }
+        grants.put(token, new Grant(holder, now + durationMillis));
+        return true;
+    }
+
+    /**
+     * Drops a grant early so that another holder can acquire the range without waiting for expiry.
+     * @return true if the holder owned the grant.
+     */
+    public synchronized boolean release(int token, String holder) {
+        Grant current = grants.get(token);
+        if (current != null && current.holder.equals(holder)) {
+            grants.remove(token);
+            return true;
+        }
+        return false;
+    }
+
+    // ---- Holder side ----
+
+    /**
+     * Records a lease acquired from a majority of replicas.
+     * @param requestedAt Local time read before the first grant request was sent.
+     * @param durationMillis Lease duration requested from the grantors.
+     * @param driftMarginMillis Safety margin subtracted to cover clock rate differences.
+     * @return true if the lease is still valid at the time it is recorded.
+     */
+    public boolean recordHeld(int token, long requestedAt, long durationMillis, long driftMarginMillis) {
+        long validUntil = requestedAt + durationMillis - driftMarginMillis;
+        if (validUntil <= now()) {
+            return false;
+        }
+        held.put(token, validUntil);
+        return true;
+    }
+
+    public boolean isHeld(int token) {
+        return remainingMillis(token) > 0;
+    }
+
+    /**
+     * Returns how long the held lease on a token stays valid, or 0 if it is not held.
+     */
+    public long remainingMillis(int token) {
+        Long validUntil = held.get(token);
+        return validUntil == null ? 0 : Math.max(0, validUntil - now());
+    }
+
+    public void revoke(int token) {
+        held.remove(token);
+    }
+
+    public Set<Integer> heldTokens() {
+        return Set.copyOf(held.keySet());
+    }
+
+    /**
+     * Returns held and granted leases with their remaining time, for diagnostics.
+     */
+    public Map<String, Object> snapshot() {
+        long now = now();
+        Map<Integer, Long> heldView = new LinkedHashMap<>();
+        held.forEach((token, validUntil) -> {
+            if (validUntil > now) {
+                heldView.put(token, validUntil - now);
+            }
+        });
+        Map<Integer, Map<String, Object>> grantedView = new LinkedHashMap<>();
+        grants.forEach((token, grant) -> {
+            if (grant.expiresAt > now) {
+                grantedView.put(token, Map.of("holder", grant.holder, "remainingMillis", grant.expiresAt - now));
+            }
+        });
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("held", heldView);
+        result.put("granted", grantedView);
+        return result;
+    }
+}
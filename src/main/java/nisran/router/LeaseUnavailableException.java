@@ -0,0 +1,14 @@
+package nisran.router;
+
+/**
+ * Thrown when a linearizable operation cannot be served because this node does not hold, and
+ * could not acquire, the lease on the key's token range. Callers should retry shortly.
+ */
+public class LeaseUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LeaseUnavailableException(String message) {
+        super(message);
+    }
+}
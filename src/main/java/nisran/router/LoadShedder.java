@@ -0,0 +1,90 @@
+package nisran.router;
+
+import nisran.config.AWS_SDKConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Admission control for the cache endpoints.
+ *
+ * Client requests and internal requests (replica reads and writes, writes forwarded by other
+ * routers, replication batches) are admitted by separate {@link AdaptiveConcurrencyLimiter}s.
+ * A burst of client traffic is therefore shed at the edge, with 503 and Retry-After, before it
+ * can take the request threads that peers need to finish the requests they already accepted.
+ * Without that separation two overloaded nodes end up waiting on each other's forwarded writes.
+ */
+@Service("loadShedder")
+@Profile("cluster")
+public class LoadShedder {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadShedder.class);
+
+    /** Marks requests sent by another router of the cluster. */
+    public static final String PEER_HEADER = "X-Cache-Peer";
+
+    private final boolean enabled;
+    private final int retryAfterSeconds;
+    private final AdaptiveConcurrencyLimiter clientLimiter;
+    private final AdaptiveConcurrencyLimiter internalLimiter;
+
+    @Autowired
+    public LoadShedder(AWS_SDKConfig awsConfig) {
+        this(awsConfig.isLimiterEnabled(), awsConfig.getLimiterInitialLimit(), awsConfig.getLimiterMinLimit(),
+                awsConfig.getLimiterMaxLimit(), awsConfig.getLimiterInternalMaxLimit(), awsConfig.getLimiterRetryAfterSeconds());
+    }
+
+    LoadShedder(boolean enabled, int initialLimit, int minLimit, int maxLimit, int internalMaxLimit, int retryAfterSeconds) {
+        this.enabled = enabled;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.clientLimiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit);
+        // Internal requests are bounded by the client requests that caused them, so they start at their maximum
+        this.internalLimiter = new AdaptiveConcurrencyLimiter(internalMaxLimit, minLimit, internalMaxLimit);
+        if (enabled) {
+            logger.info("Load shedding enabled: client limit {} ({}..{}), internal limit up to {}.",
+                    initialLimit, minLimit, maxLimit, internalMaxLimit);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Admits a request under the limit of its class.
+     * @return The permit to release when the request ends, or null if the request must be shed.
+     */
+    public AdaptiveConcurrencyLimiter.Permit tryAcquire(boolean internal) {
+        return (internal ? internalLimiter : clientLimiter).tryAcquire();
+    }
+
+    /**
+     * Returns limit, in-flight count and admitted and rejected totals per request class.
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("client", metrics(clientLimiter));
+        metrics.put("internal", metrics(internalLimiter));
+        return metrics;
+    }
+
+    private static Map<String, Object> metrics(AdaptiveConcurrencyLimiter limiter) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("limit", limiter.getLimit());
+        entry.put("inFlight", limiter.getInFlight());
+        entry.put("admitted", limiter.getAdmitted());
+        entry.put("rejected", limiter.getRejected());
+        return entry;
+    }
+}
@@ -0,0 +1,166 @@
+package nisran.router;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A fixed-depth Merkle tree over the keys of a single token range.
+ *
+ * Keys are assigned to one of 2^depth leaves by their hash code. A leaf hash is the
+ * XOR of the digests of the entries it holds, so adding, replacing or removing an entry
+ * only touches one leaf and the nodes on its path to the root. Two replicas holding the
+ * same entries always compute the same tree, regardless of insertion order. Each leaf also
+ * keeps the set of its keys, toggled like its hash, so that the entries of a differing leaf
+ * can be listed without scanning the cache.
+ *
+ * Nodes are stored in a heap layout: index 1 is the root, the children of node i are
+ * 2i and 2i+1, and leaves occupy indices [leafCount, 2 * leafCount).
+ */
+public class MerkleTree {
+
+    private final int depth;
+    private final int leafCount;
+    private final long[] nodes;
+    private final Set<String>[] leafKeys; // Allocated on first use
+
+    @SuppressWarnings("unchecked")
+    public MerkleTree(int depth) {
+        if (depth < 1 || depth > 20) {
+            throw new IllegalArgumentException("Merkle tree depth must be between 1 and 20, was " + depth);
+        }
+        this.depth = depth;
+        this.leafCount = 1 << depth;
+        this.nodes = new long[2 * leafCount];
+        this.leafKeys = (Set<String>[]) new Set<?>[leafCount];
+    }
+
+    /**
+     * Adds an entry to the tree.
+     */
+    public synchronized void add(String key, Object value) {
+        toggle(key, value);
+        toggleKey(key);
+    }
+
+    /**
+     * Removes a previously added entry from the tree.
+     */
+    public synchronized void remove(String key, Object value) {
+        toggle(key, value);
+        toggleKey(key);
+    }
+
+    /**
+     * Replaces an entry, equivalent to removing the old value and adding the new one.
+     */
+    public synchronized void update(String key, Object oldValue, Object newValue) {
+        toggle(key, oldValue);
+        toggle(key, newValue);
+    }
+
+    public synchronized long getRoot() {
+        return nodes[1];
+    }
+
+    public synchronized long getNode(int index) {
+        if (index < 1 || index >= nodes.length) {
+            throw new IllegalArgumentException("Node index out of range: " + index);
+        }
+        return nodes[index];
+    }
+
+    /**
+     * Returns the keys held by a leaf.
+     * @param leafOffset Zero-based leaf offset.
+     */
+    public synchronized List<String> getLeafKeys(int leafOffset) {
+        if (leafOffset < 0 || leafOffset >= leafCount) {
+            throw new IllegalArgumentException("Leaf offset out of range: " + leafOffset);
+        }
+        Set<String> keys = leafKeys[leafOffset];
+        return keys == null ? List.of() : new ArrayList<>(keys);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public boolean isLeaf(int index) {
+        return index >= leafCount;
+    }
+
+    /**
+     * Returns the heap index of the leaf that holds the given key.
+     */
+    public int getLeafIndex(String key) {
+        return leafCount + leafOffset(key, leafCount);
+    }
+
+    /**
+     * Returns the zero-based leaf offset of a key for a tree with the given number of leaves.
+     */
+    public static int leafOffset(String key, int leafCount) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & (leafCount - 1);
+    }
+
+    /**
+     * Computes the digest of an entry. Values are compared by their hash code, which is
+     * content based for the JSON types (maps, lists, strings, numbers) stored in the cache,
+     * so replicas holding equal values agree on the digest.
+     */
+    public static long digest(String key, Object value) {
+        long h = ((long) key.hashCode() << 32) ^ (Objects.hashCode(value) & 0xFFFFFFFFL);
+        h = mix(h);
+        // Never return 0 so that an entry is always visible in its leaf
+        return h == 0 ? 1 : h;
+    }
+
+    private void toggle(String key, Object value) {
+        int index = getLeafIndex(key);
+        nodes[index] ^= digest(key, value);
+        for (index >>>= 1; index >= 1; index >>>= 1) {
+            nodes[index] = combine(nodes[2 * index], nodes[2 * index + 1]);
+        }
+    }
+
+    /**
+     * Adds the key to its leaf, or drops it if it is there: like the leaf hash, the result does
+     * not depend on the order in which a key is added and removed.
+     */
+    private void toggleKey(String key) {
+        int offset = leafOffset(key, leafCount);
+        Set<String> keys = leafKeys[offset];
+        if (keys == null) {
+            keys = leafKeys[offset] = new HashSet<>();
+        }
+        if (!keys.remove(key)) {
+            keys.add(key);
+        }
+    }
+
+    private static long combine(long left, long right) {
+        if (left == 0 && right == 0) {
+            return 0; // Empty subtrees hash to 0 so an absent tree matches an empty one
+        }
+        return mix(left * 0x9E3779B97F4A7C15L + right);
+    }
+
+    // Finalizer from MurmurHash3, spreads bits across the full 64-bit word
+    private static long mix(long h) {
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return h;
+    }
+}
@@ -0,0 +1,121 @@
+package nisran.router;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Small, time-bounded cache of values this node fetched from other nodes.
+ *
+ * Entries expire after the maximum staleness no matter what, so a value served from here is
+ * never older than that. An invalidation of a key with a read in flight leaves a tombstone
+ * carrying a generation number: a read that started before the invalidation cannot store its
+ * (possibly older) result afterwards. Invalidations of other keys only drop their entry, if any,
+ * so that the stream of invalidations for keys never read here does not displace live entries.
+ * Tombstones are evicted like entries; if one has been evicted, the staleness bound still holds.
+ */
+public class NearCache {
+
+    private static final class Entry {
+        final Object value; // null for a tombstone
+        final long generation;
+        final long expiresAt;
+
+        Entry(Object value, long generation, long expiresAt) {
+            this.value = value;
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final long maxStalenessMillis;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+    private final Map<String, Integer> reading = new HashMap<>(); // Reads in flight per key
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public NearCache(int maxEntries, long maxStalenessMillis) {
+        this(maxEntries, maxStalenessMillis, () -> System.nanoTime() / 1_000_000);
+    }
+
+    /**
+     * @param clock A monotonic clock in milliseconds.
+     */
+    public NearCache(int maxEntries, long maxStalenessMillis, LongSupplier clock) {
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Registers a read of the key from another node, which must end with {@link #put}.
+     * @return The current generation, to be passed to {@link #put}.
+     */
+    public synchronized long beginRead(String key) {
+        reading.merge(key, 1, Integer::sum);
+        return generation.get();
+    }
+
+    /**
+     * Returns a cached value, or null on a miss.
+     */
+    public synchronized Object get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.value == null || entry.expiresAt <= clock.getAsLong()) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Ends a read and caches the value it read from another node.
+     * @param value The value read, or null if the read failed or found nothing.
+     * @param readGeneration The generation returned by {@link #beginRead}.
+     * @return false if nothing was read or the key was invalidated since the read started, in
+     *         which case nothing is cached.
+     */
+    public synchronized boolean put(String key, Object value, long readGeneration) {
+        reading.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+        if (value == null) {
+            return false;
+        }
+        Entry current = entries.get(key);
+        if (current != null && current.value == null && current.generation > readGeneration) {
+            return false;
+        }
+        entries.put(key, new Entry(value, readGeneration, clock.getAsLong() + maxStalenessMillis));
+        return true;
+    }
+
+    public synchronized void invalidate(String key) {
+        if (!reading.containsKey(key)) {
+            entries.remove(key);
+            return;
+        }
+        entries.put(key, new Entry(null, generation.incrementAndGet(), clock.getAsLong() + maxStalenessMillis));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,197 @@
+package nisran.router;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.ServerInstance;
+import nisran.config.AWS_SDKConfig;
+import nisran.discovery.ServiceRegistration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinator-side L1 cache for keys this node does not store.
+ *
+ * Values this node reads from other nodes are kept in a {@link NearCache} for at most the
+ * configured staleness, so repeated reads of the same key skip the remote hop. When a primary
+ * applies a write, it queues an invalidation of the key, and the queue is broadcast to all
+ * other nodes every invalidation interval. Delivery is best effort; the staleness bound is
+ * what readers can rely on.
+ */
+@Service("nearCacheManager")
+@Profile("cluster")
+@DependsOn("cacheRouter")
+public class NearCacheManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearCacheManager.class);
+    public static final String INVALIDATE_PATH = "/api/cluster/near-cache/invalidate";
+
+    private final CacheRouter cacheRouter;
+    private final ServiceRegistration svcRegistration;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final AWS_SDKConfig awsConfig;
+
+    private final NearCache nearCache;
+    private final Set<String> pendingInvalidations;
+    private final ScheduledExecutorService invalidationScheduler;
+
+    public NearCacheManager(CacheRouter cacheRouter, ServiceRegistration svcRegistration, HttpClient httpClient,
+                            ObjectMapper objectMapper, AWS_SDKConfig awsConfig) {
+        this.cacheRouter = cacheRouter;
+        this.svcRegistration = svcRegistration;
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.awsConfig = awsConfig;
+        this.nearCache = new NearCache(awsConfig.getNearCacheMaxEntries(), awsConfig.getNearCacheMaxStalenessMillis());
+        this.pendingInvalidations = ConcurrentHashMap.newKeySet();
+        this.invalidationScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "NearCache-InvalidationThread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    private void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        int interval = awsConfig.getNearCacheInvalidationIntervalMillis();
+        invalidationScheduler.scheduleWithFixedDelay(this::flushInvalidations, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("Near cache enabled: {} entries, max staleness {} ms.",
+                awsConfig.getNearCacheMaxEntries(), awsConfig.getNearCacheMaxStalenessMillis());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        invalidationScheduler.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return awsConfig.isNearCacheEnabled();
+    }
+
+    /**
+     * Returns the cached value of a key, or null on a miss.
+     */
+    public Object get(String key) {
+        return isEnabled() ? nearCache.get(key) : null;
+    }
+
+    /**
+     * @see NearCache#beginRead(String)
+     */
+    public long beginRead(String key) {
+        return isEnabled() ? nearCache.beginRead(key) : 0;
+    }
+
+    /**
+     * Ends a read started with {@link #beginRead} and caches its value, if any, unless the key was
+     * invalidated since the read started.
+     */
+    public void put(String key, Object value, long readGeneration) {
+        if (isEnabled()) {
+            nearCache.put(key, value, readGeneration);
+        }
+    }
+
+    /**
+     * Drops the local entry of a key that is being written through this node.
+     */
+    public void invalidate(String key) {
+        if (isEnabled()) {
+            nearCache.invalidate(key);
+        }
+    }
+
+    /**
+     * Queues the invalidation of a key this node applied a write to as primary.
+     */
+    public void onPrimaryWrite(String key) {
+        if (isEnabled()) {
+            pendingInvalidations.add(key);
+        }
+    }
+
+    /**
+     * Applies invalidations broadcast by a primary.
+     */
+    public void receiveInvalidations(Collection<String> keys) {
+        if (!isEnabled()) {
+            return;
+        }
+        keys.forEach(nearCache::invalidate);
+    }
+
+    private void flushInvalidations() {
+        if (pendingInvalidations.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        for (String key : pendingInvalidations) {
+            if (pendingInvalidations.remove(key)) {
+                keys.add(key);
+            }
+        }
+        try {
+            String body = objectMapper.writeValueAsString(keys);
+            for (ServerInstance instance : cacheRouter.getActiveServerInstances()) {
+                if (isLocal(instance)) {
+                    continue;
+                }
+                String url = String.format("http://%s:%d%s", instance.getIpAddress(), instance.getPort(), INVALIDATE_PATH);
+                HttpRequest request = HttpRequest.newBuilder()
+                        .uri(URI.create(url))
+                        .header("Content-Type", "application/json")
+                        .timeout(Duration.ofMillis(awsConfig.getNearCacheMaxStalenessMillis()))
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+                httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                    if (error != null || response.statusCode() >= 300) {
+                        logger.debug("Near cache invalidation of {} keys to {} failed: {}", keys.size(), instance.getNodeIdentifier(),
+                                error != null ? error.getMessage() : "status " + response.statusCode());
+                    }
+                });
+            }
+        } catch (Exception e) {
+            logger.warn("Could not broadcast near cache invalidations: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", isEnabled());
+        metrics.put("entries", nearCache.size());
+        metrics.put("hits", nearCache.getHits());
+        metrics.put("misses", nearCache.getMisses());
+        metrics.put("maxStalenessMillis", awsConfig.getNearCacheMaxStalenessMillis());
+        return metrics;
+    }
+
+    private boolean isLocal(ServerInstance instance) {
+        return instance.getServiceId().equalsIgnoreCase(svcRegistration.getAwsTaskId())
+                && instance.getIpAddress().equalsIgnoreCase(svcRegistration.getIp());
+    }
+}
@@ -1,6 +1,7 @@
 package nisran.router;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 //This interface is used to define the quorum read/write service
@@ -26,4 +27,24 @@ public interface QuorumRWService {
      */
     List<String> quorumWrite(String key, Object value);
 
+    /**
+     * Performs a quorum read without blocking the calling thread on remote nodes.
+     *
+     * @param key The key to be read.
+     * @return A future completed with the value, or with null if not found.
+     */
+    default CompletableFuture<Object> quorumReadAsync(String key) {
+        return CompletableFuture.completedFuture(quorumRead(key));
+    }
+
+    /**
+     * Performs a quorum write without blocking the calling thread on remote nodes.
+     *
+     * @param key The key to be written.
+     * @param value The value to be written.
+     */
+    default CompletableFuture<List<String>> quorumWriteAsync(String key, Object value) {
+        return CompletableFuture.completedFuture(quorumWrite(key, value));
+    }
+
 }
@@ -1,10 +1,14 @@
 package nisran.router;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import nisran.Futures;
 import nisran.ServerInstance;
 import nisran.cache.LRUCache;
 import nisran.config.AWS_SDKConfig;
+import nisran.discovery.PeerHealthMonitor;
 import nisran.discovery.ServiceRegistration;
+import nisran.transport.Frame;
+import nisran.transport.InterNodeClient;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.DependsOn;
@@ -13,12 +17,21 @@ import org.springframework.stereotype.Service;
 
 import ch.qos.logback.classic.Logger;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service("quorumReaderWriter")
 @Profile("cluster") // This service is only active when the 'cluster' profile is active
@@ -45,79 +58,304 @@ public class QuorumReaderWriter implements QuorumRWService {
     @Autowired
     private AWS_SDKConfig awsConfig;
 
+    @Autowired
+    private AsyncReplicator asyncReplicator;
+
+    @Autowired
+    private InterNodeClient interNodeClient;
+
+    @Autowired
+    private LeaseManager leaseManager;
+
+    @Autowired
+    private HedgedReader hedgedReader;
+
+    @Autowired
+    private ReplicaSelector replicaSelector;
+
+    @Autowired
+    private PeerHealthMonitor peerHealthMonitor;
+
+    @Autowired
+    private HotKeyManager hotKeyManager;
+
+    @Autowired
+    private NearCacheManager nearCacheManager;
+
+    @Autowired
+    private BloomFilterManager bloomFilterManager;
+
     private ServerInstance localInstance;
 
+    private final SingleFlight<String, Object> readFlights = new SingleFlight<>();
+
+    private final Map<String, CompletableFuture<List<String>>> leasedWrites = new ConcurrentHashMap<>(); // key -> last leased write
+
     @Override
     public Object quorumRead(String key) {
+        return Futures.await(quorumReadAsync(key));
+    }
 
-        Object response = null;
+    @Override
+    public CompletableFuture<Object> quorumReadAsync(String key) {
+        // Values written with an expiry are stored wrapped, and read as absent once expired
+        return readAsync(key).thenApply(stored -> ExpiringValue.unwrap(stored, System.currentTimeMillis()));
+    }
 
-        int port = awsConfig.getPort(); //TODO : optimize this code
+    private CompletableFuture<Object> readAsync(String key) {
+
+        Deadline deadline = Deadline.currentOr(awsConfig.getDefaultDeadlineMillis());
+        if (deadline.isExpired()) {
+            return CompletableFuture.failedFuture(new DeadlineExceededException("Deadline exceeded before reading key " + key));
+        }
         ServerInstance primaryInstance = cacheRouter.getServerInstanceForKey(key);
+        hotKeyManager.recordRead(key);
 
-        if (isLocalInstance(primaryInstance)) {
-            // Read from local cache
-            response = remoteReadOnce(primaryInstance, key, port);
-        } else {
-            // Send a single remote read request 
-            // Method is a blocking method
-            response = remoteReadOnce(primaryInstance, key, port);
+        if (leaseManager.isEnabled()) {
+            // Linearizable read, answered by the lease holder of the key's range. Never coalesced:
+            // joining a read that started earlier could miss a write that completed in between.
+            if (!isLocalInstance(primaryInstance)) {
+                return remoteLeasedRead(primaryInstance, key, deadline);
+            }
+            return leasedLocalRead(key);
+        }
+
+        Object hotCopy = hotKeyManager.getCopy(key);
+        if (hotCopy != null) {
+            // Hot keys are replicated to every node by their primary
+            return CompletableFuture.completedFuture(hotCopy);
+        }
+        Object nearCopy = nearCacheManager.get(key);
+        if (nearCopy != null) {
+            return CompletableFuture.completedFuture(nearCopy);
         }
 
-        return response;
+        // Read from the best ranked replica (normally the primary, or a replica in this node's
+        // zone when reads prefer the local zone); if it is slow or failing,
+        // the next one answers instead. Concurrent reads of the key share one remote read, which
+        // runs under the deadline of the read that started it; each caller waits within its own.
+        // Values of keys this node does not store are kept in the near cache for a short while.
+        List<ServerInstance> ranked = replicaSelector.rank(getReplicaInstances(primaryInstance));
+        List<ServerInstance> preference = awsConfig.isZonePreferLocalReads()
+                ? ZonePlacement.preferZone(ranked, svcRegistration.getAvailabilityZone()) : ranked;
+        if (bloomFilterManager.isDefiniteMiss(key, preference)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        boolean owned = preference.stream().anyMatch(this::isLocalInstance);
+        Supplier<CompletableFuture<Object>> remoteRead = () -> {
+            long generation = owned ? 0 : nearCacheManager.beginRead(key);
+            // This node's own copy is read in place rather than over a loopback request
+            CompletableFuture<Object> value = hedgedReader.read(preference, instance -> isLocalInstance(instance)
+                    ? CompletableFuture.completedFuture(localRead(key))
+                    : guarded(instance, () -> replicaSelector.track(instance, () -> remoteReadOnce(instance, key, deadline))));
+            return owned ? value : value.whenComplete((result, error) ->
+                    nearCacheManager.put(key, error == null ? result : null, generation));
+        };
+        CompletableFuture<Object> read = awsConfig.isReadCoalescingEnabled() ? readFlights.execute(key, remoteRead) : remoteRead.get();
+        return deadline.within(read, "reading key " + key).exceptionally(error -> {
+            Throwable cause = unwrap(error);
+            if (cause instanceof DeadlineExceededException) {
+                throw (DeadlineExceededException) cause;
+            }
+            logger.error("Exception while reading key {} from replicas {}", key, preference, cause);
+            return null;
+        });
     }
 
     @Override
     public List<String> quorumWrite(String key, Object value) {
+        return Futures.await(quorumWriteAsync(key, value));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> quorumWriteAsync(String key, Object value) {
+        // Reads that started before the write completed must not be joined by reads after it
+        return writeAsync(key, value).whenComplete((response, error) -> readFlights.forget(key));
+    }
+
+    private CompletableFuture<List<String>> writeAsync(String key, Object value) {
+        hotKeyManager.invalidate(key);
+        nearCacheManager.invalidate(key);
+        bloomFilterManager.onWrite(key);
 
         List<String> response = new ArrayList<String>();
         
         int quorumWrite = awsConfig.getQuorumWrite();
-        int port = awsConfig.getPort();
         logger.debug("Quorum write for key: {}, value: {}, quorumWrite: {}", key, value, quorumWrite);
+        Deadline deadline = Deadline.currentOr(awsConfig.getDefaultDeadlineMillis());
+        if (deadline.isExpired()) {
+            return CompletableFuture.failedFuture(new DeadlineExceededException("Deadline exceeded before writing key " + key));
+        }
 
         ServerInstance primaryInstance = cacheRouter.getServerInstanceForKey(key);
 
         if (primaryInstance == null) {
             response.add("Failure: No server instance found for key " + key);
             logger.error("Could not find a server instance for key: {}", key);
-            return response;
+            return CompletableFuture.completedFuture(response);
         }
         logger.debug("Primary instance is {} for key {}",primaryInstance.getServiceId(),key);
 
         
 
-        if (isLocalInstance(primaryInstance)) {
+        if (isLocalInstance(primaryInstance) && leaseManager.isEnabled()) {
+            // Writes are sequenced through the lease holder, one at a time per key. Every replica
+            // must acknowledge a write before the local copy is written, so any value the holder
+            // serves is already on the replicas a successor would take the range over from.
+            return sequenced(key, () -> requireLease(key)
+                    .thenCompose(held -> writeReplicasAcknowledged(primaryInstance, key, value, deadline))
+                    .thenApply(replicaResponses -> {
+                        localWrite(key, value);
+                        hotKeyManager.onPrimaryWrite(key, value);
+                        nearCacheManager.onPrimaryWrite(key);
+
+                        response.add(String.format("Success: Wrote to primary %s (local, leased)", primaryInstance.getNodeIdentifier()));
+                        response.addAll(replicaResponses);
+                        return response;
+                    }));
+        } else if (isLocalInstance(primaryInstance)) {
             //This node is the primary
             // Write first copy to local cache, the replicate
             localWrite(key, value);
+            hotKeyManager.onPrimaryWrite(key, value);
+            nearCacheManager.onPrimaryWrite(key);
 
             response.add(String.format("Success: Wrote to primary %s (local)", primaryInstance.getNodeIdentifier()));
 
             // Write to next (quorumWrite - 1) nodes
+            return writeReplicas(primaryInstance, key, value, asyncReplicator.isEnabled(), deadline).thenApply(replicaResponses -> {
+                response.addAll(replicaResponses);
+                return response;
+            });
+        } else {
+            // Forward quorumWrite to relevant node (not including local)
+            logger.debug("Forwarding Write to instance {} for key {}",primaryInstance.getServiceId(),key);
             ServerInstance current = primaryInstance;
-            int activeSvr = cacheRouter.getActiveServerCount();
+            return remoteWrite(primaryInstance, key, value, true, deadline).thenApply(status -> {
+                if (status < 0 || status == 504) {
+                    deadline.check("primary " + current.getNodeIdentifier() + " answered the write of key " + key);
+                }
+                response.add(String.format("Response to server{%s} is {%d}",current.getNodeIdentifier(),status));
+                return response;
+            });
+        }
+    }
 
-            for (int i = 1; i < quorumWrite && i < activeSvr; i++) {
-                current = nextServerInstance(current);
+    /**
+     * Writes a key to the replicas following the primary. The replicas are written in parallel.
+     * @param allowAsync Whether replica writes may be queued for asynchronous replication.
+     * @return A future completed with one response line per replica, or with
+     *         {@link DeadlineExceededException} if the deadline passed before the writes were sent.
+     */
+    private CompletableFuture<List<String>> writeReplicas(ServerInstance primaryInstance, String key, Object value,
+                                                          boolean allowAsync, Deadline deadline) {
+        List<CompletableFuture<String>> writes = new ArrayList<>();
+        List<ServerInstance> replicas = getReplicaInstances(primaryInstance);
 
-                if (isLocalInstance(current)) {
-                    continue; // Skip writing to self again if cluster is small
-                }
+        for (int i = 1; i < replicas.size(); i++) {
+            ServerInstance current = replicas.get(i);
 
-                HttpResponse<String> res = remoteWrite(current, key, value, port, false);
-                response.add(String.format("Response to server{%s} is {%d}",current.getNodeIdentifier(),res.statusCode()));
+            if (isLocalInstance(current)) {
+                continue; // Skip writing to self again if cluster is small
             }
-        } else {
-            // Forward quorumWrite to relevant node (not including local)
-            logger.debug("Forwarding Write to instance {} for key {}",primaryInstance.getServiceId(),key);
-            ServerInstance current = primaryInstance;
-            HttpResponse<String> res = remoteWrite(primaryInstance, key, value, port, true);
-            response.add(String.format("Response to server{%s} is {%d}",current.getNodeIdentifier(),res.statusCode()));
-           
+
+            if (allowAsync && asyncReplicator.enqueue(current, key, value)) {
+                writes.add(CompletableFuture.completedFuture(String.format("Queued for server{%s}", current.getNodeIdentifier())));
+                continue;
+            }
+
+            if (deadline.isExpired()) {
+                return CompletableFuture.failedFuture(new DeadlineExceededException(
+                        "Deadline exceeded before writing key " + key + " to " + current.getNodeIdentifier()));
+            }
+            asyncReplicator.supersede(current, key);
+            writes.add(remoteWrite(current, key, value, false, deadline)
+                    .thenApply(status -> String.format("Response to server{%s} is {%d}",current.getNodeIdentifier(),status)));
+        }
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> writes.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
+    /**
+     * Writes a key to every replica following the primary.
+     * @return A future completed with one response line per replica, or failed unless every
+     *         replica acknowledged the write.
+     */
+    private CompletableFuture<List<String>> writeReplicasAcknowledged(ServerInstance primaryInstance, String key, Object value,
+                                                                      Deadline deadline) {
+        List<ServerInstance> targets = new ArrayList<>();
+        List<CompletableFuture<Integer>> writes = new ArrayList<>();
+        List<ServerInstance> replicas = getReplicaInstances(primaryInstance);
+        for (int i = 1; i < replicas.size(); i++) {
+            ServerInstance current = replicas.get(i);
+            if (isLocalInstance(current)) {
+                continue;
+            }
+            if (deadline.isExpired()) {
+                return CompletableFuture.failedFuture(new DeadlineExceededException(
+                        "Deadline exceeded before writing key " + key + " to " + current.getNodeIdentifier()));
+            }
+            targets.add(current);
+            asyncReplicator.supersede(current, key);
+            writes.add(remoteWrite(current, key, value, false, deadline));
         }
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<String> responses = new ArrayList<>(writes.size());
+            for (int i = 0; i < writes.size(); i++) {
+                String replica = targets.get(i).getNodeIdentifier();
+                int status = writes.get(i).join();
+                if (status < 200 || status >= 300) {
+                    deadline.check("replica " + replica + " answered the write of key " + key);
+                    throw new IllegalStateException(String.format("Replica %s did not acknowledge the write of key %s (status %d)",
+                            replica, key, status));
+                }
+                responses.add(String.format("Response to server{%s} is {%d}", replica, status));
+            }
+            return responses;
+        });
+    }
+
+    /**
+     * Runs the leased writes of a key one after another, in the order they were started, so the
+     * replicas and the holder apply them in the same order. A write runs whether or not the one
+     * before it succeeded.
+     */
+    private CompletableFuture<List<String>> sequenced(String key, Supplier<CompletableFuture<List<String>>> write) {
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+        CompletableFuture<List<String>> previous = leasedWrites.put(key, result);
+        CompletableFuture<?> turn = previous == null ? CompletableFuture.completedFuture(null)
+                                                     : previous.handle((value, error) -> null);
+        turn.thenCompose(ignored -> write.get()).whenComplete((value, error) -> {
+            leasedWrites.remove(key, result);
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Reads a key from the local cache provided this node holds the lease on the key's range.
+     * @return A future failed with {@link LeaseUnavailableException} if this node is not the
+     *         primary or cannot acquire the lease.
+     */
+    public CompletableFuture<Object> leasedLocalRead(String key) {
+        return requireLease(key).thenApply(held -> localRead(key));
+    }
 
-        return response;
+    private CompletableFuture<Void> requireLease(String key) {
+        Integer token = cacheRouter.getTokenForKey(key);
+        ServerInstance primary = token == null ? null : cacheRouter.getConsistentHashRing().get(token);
+        if (primary == null || !isLocalInstance(primary)) {
+            return CompletableFuture.failedFuture(new LeaseUnavailableException("This node is not the primary for key " + key));
+        }
+        return leaseManager.ensureLease(token, getReplicaInstances(primary)).thenAccept(held -> {
+            if (!held) {
+                throw new LeaseUnavailableException("Lease on token " + token + " is not available");
+            }
+        });
     }
 
     public Object localRead(String key) {
@@ -130,58 +368,208 @@ public class QuorumReaderWriter implements QuorumRWService {
         localCache.set(key, value);
     }
 
-    private Object remoteReadOnce(ServerInstance instance, String key, int port) {
+    /**
+     * Applies a batch of replica mutations received from a primary.
+     */
+    public void localWriteBatch(Map<String, Object> entries) {
+        logger.debug("Writing batch of {} keys to local instance", entries.size());
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            localCache.set(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Reads a key from one instance without blocking the caller.
+     * @return A future completed with the value, with null if the instance does not have the key,
+     *         or exceptionally if the instance failed or did not answer within the read timeout.
+     */
+    private CompletableFuture<Object> remoteReadOnce(ServerInstance instance, String key, Deadline deadline) {
         logger.debug("Reading key{} from nodeIdentifier{}",
                             key,instance.getNodeIdentifier());    
-        // Read from remote server via HTTP
-        try {
-            // Corrected URL to use path variable instead of query param
-            String url = String.format("http://%s:%d/api/cache/local/%s", instance.getIpAddress(), port, key);
+        long timeout = deadline.timeoutMillis(awsConfig.getReadTimeoutMillis());
+        if (interNodeClient.isEnabled()) {
+            return transportReadOnce(instance, key, timeout);
+        }
+        // Corrected URL to use path variable instead of query param
+        String url = String.format("http://%s:%d/api/cache/local/%s", instance.getIpAddress(), instance.getPort(), key);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Accept", "application/json")
+                .header(Deadline.HEADER, String.valueOf(timeout))
+                .header(LoadShedder.PEER_HEADER, peerId())
+                .timeout(Duration.ofMillis(timeout))
+                .GET()
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                // Deserialize the JSON response body back to an Object
+                return readJson(response.body());
+            }
+            if (response.statusCode() == 404) {
+                return null;
+            }
+            logger.warn("Failed to read key {} from remote server {}:{}. Status: {}", key, instance.getIpAddress(), instance.getPort(), response.statusCode());
+            throw new IllegalStateException("Read from " + instance.getNodeIdentifier() + " failed with status " + response.statusCode());
+        });
+    }
+
+    /**
+     * Reads a key from the lease holder of its range. Failures surface as
+     * {@link LeaseUnavailableException} rather than as a miss, so that callers can retry.
+     */
+    private CompletableFuture<Object> remoteLeasedRead(ServerInstance instance, String key, Deadline deadline) {
+        logger.debug("Leased read of key{} from nodeIdentifier{}", key, instance.getNodeIdentifier());
+        if (!peerHealthMonitor.allowRequest(instance)) {
+            return CompletableFuture.failedFuture(
+                    new LeaseUnavailableException("Lease holder " + instance.getNodeIdentifier() + " is suspected"));
+        }
+        long timeout = deadline.timeoutMillis(awsConfig.getReadTimeoutMillis());
+        CompletableFuture<Object> read;
+        if (interNodeClient.isEnabled()) {
+            read = interNodeClient.leasedGet(instance, key, timeout).thenApply(reply -> {
+                recordOutcome(instance, true);
+                if (reply.isOk()) {
+                    return decodeValue(reply);
+                }
+                if (reply.getStatus() == Frame.STATUS_NOT_FOUND) {
+                    return null;
+                }
+                throw new LeaseUnavailableException("Lease holder " + instance.getNodeIdentifier() + " answered status " + reply.toHttpStatus());
+            });
+        } else {
+            String url = String.format("http://%s:%d/api/cache/leased/%s", instance.getIpAddress(), instance.getPort(), key);
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(URI.create(url))
                     .header("Accept", "application/json")
+                    .header(Deadline.HEADER, String.valueOf(timeout))
+                    .header(LoadShedder.PEER_HEADER, peerId())
+                    .timeout(Duration.ofMillis(timeout))
                     .GET()
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                // Deserialize the JSON response body back to an Object
-                return objectMapper.readValue(response.body(), Object.class);
-            } else {
-                logger.warn("Failed to read key {} from remote server {}:{}. Status: {}", key, instance.getIpAddress(), port, response.statusCode());
+            read = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+                recordOutcome(instance, response.statusCode() < 500 || response.statusCode() == 503);
+                if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                    return readJson(response.body());
+                }
+                if (response.statusCode() == 404) {
+                    return null;
+                }
+                throw new LeaseUnavailableException("Lease holder " + instance.getNodeIdentifier() + " answered status " + response.statusCode());
+            });
+        }
+        return read.exceptionally(error -> {
+            Throwable cause = unwrap(error);
+            if (cause instanceof LeaseUnavailableException) {
+                throw (LeaseUnavailableException) cause;
+            }
+            recordOutcome(instance, false);
+            logger.warn("Exception during leased read of key {} from {}: {}", key, instance.getNodeIdentifier(), cause.getMessage());
+            throw new LeaseUnavailableException("Lease holder " + instance.getNodeIdentifier() + " is unreachable");
+        });
+    }
+
+    /**
+     * Issues a peer request unless the peer's circuit breaker is open, and reports the outcome
+     * to the failure detector.
+     */
+    private <T> CompletableFuture<T> guarded(ServerInstance instance, Supplier<CompletableFuture<T>> request) {
+        if (!peerHealthMonitor.allowRequest(instance)) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Peer " + instance.getNodeIdentifier() + " is suspected"));
+        }
+        return request.get().whenComplete((value, error) -> recordOutcome(instance, error == null));
+    }
+
+    /**
+     * Returns how many remote reads were started and how many reads joined one already in flight.
+     */
+    public Map<String, Long> getReadCoalescingMetrics() {
+        return Map.of(
+                "remoteReads", readFlights.getLoads(),
+                "coalescedReads", readFlights.getJoined());
+    }
+
+    private void recordOutcome(ServerInstance instance, boolean success) {
+        if (success) {
+            peerHealthMonitor.recordSuccess(instance);
+        } else {
+            peerHealthMonitor.recordFailure(instance);
+        }
+    }
+
+    private CompletableFuture<Object> transportReadOnce(ServerInstance instance, String key, long timeoutMillis) {
+        return interNodeClient.get(instance, key, timeoutMillis).thenApply(reply -> {
+            if (reply.isOk()) {
+                return decodeValue(reply);
+            }
+            if (reply.getStatus() == Frame.STATUS_NOT_FOUND) {
                 return null;
             }
-        } catch (Exception e) {
-            logger.error("Exception while reading key {} from remote server {}:{}", key, instance.getIpAddress(), port, e);
-            return null;
+            logger.warn("Failed to read key {} from remote server {} over transport. Status: {}", key, instance.getNodeIdentifier(), reply.getStatus());
+            throw new IllegalStateException("Read from " + instance.getNodeIdentifier() + " failed with status " + reply.getStatus());
+        });
+    }
+
+    /**
+     * Writes a key to a remote instance, either as a replica write or as a forwarded quorum write.
+     * A forwarded write gets all that is left of the deadline, since the primary still has to
+     * write the replicas; a replica write is also bounded by the write timeout.
+     * @return A future completed with the HTTP status code of the remote write, or with -1 if the
+     *         request could not be sent or got no answer. It never completes exceptionally.
+     */
+    private CompletableFuture<Integer> remoteWrite(ServerInstance instance, String key, Object value, boolean isForward,
+                                                   Deadline deadline) {
+        if (!peerHealthMonitor.allowRequest(instance)) {
+            logger.warn("Not writing key {} to instance {}: peer is suspected", key, instance.getNodeIdentifier());
+            return CompletableFuture.completedFuture(-1);
         }
+        long timeout = deadline.timeoutMillis(isForward ? Long.MAX_VALUE : awsConfig.getWriteTimeoutMillis());
+        CompletableFuture<Integer> write = interNodeClient.isEnabled() ? transportWrite(instance, key, value, isForward, timeout)
+                                                                       : httpWrite(instance, key, value, isForward, timeout);
+        return write.thenApply(status -> {
+            // A 504 means the peer gave up on our deadline, not that it is unhealthy
+            recordOutcome(instance, status > 0 && (status < 500 || status == 504));
+            return status;
+        });
     }
 
-    private HttpResponse<String> remoteWrite(ServerInstance instance, String key, Object value, int port, boolean isForward) {
-        
-        HttpResponse<String> response = null;
+    private CompletableFuture<Integer> httpWrite(ServerInstance instance, String key, Object value, boolean isForward,
+                                                 long timeoutMillis) {
         logger.debug("Writing key {} to instance {}",key,instance.getNodeIdentifier());
+        HttpRequest request;
         try {
             String url = null;
             if(!isForward){
                 // Corrected URL to use path variable instead of query param
-                url = String.format("http://%s:%d/api/cache/local/%s", instance.getIpAddress(), port, key);
+                url = String.format("http://%s:%d/api/cache/local/%s", instance.getIpAddress(), instance.getPort(), key);
             }else{
-                url = String.format("http://%s:%d/api/cache/%s", instance.getIpAddress(), port, key);
+                url = String.format("http://%s:%d/api/cache/%s", instance.getIpAddress(), instance.getPort(), key);
             }
             
 
             // Serialize the value object to a JSON string using ObjectMapper
             String jsonBody = objectMapper.writeValueAsString(value);
 
-            HttpRequest request = HttpRequest.newBuilder()
+            request = HttpRequest.newBuilder()
                     .uri(URI.create(url))
                     .header("Content-Type", "application/json")
+                    .header(Deadline.HEADER, String.valueOf(timeoutMillis))
+                    .header(LoadShedder.PEER_HEADER, peerId())
+                    .timeout(Duration.ofMillis(timeoutMillis))
                     .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
                     .build();
+        } catch (Exception e) {
+            logger.error("Exception while building write request for key {} to instance {}", key, instance.getNodeIdentifier(), e);
+            return CompletableFuture.completedFuture(-1);
+        }
 
-            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).handle((response, error) -> {
+            if (error != null) {
+                logger.error("Exception while sending write request for key {} to instance {}", key, instance.getNodeIdentifier(), unwrap(error));
+                return -1;
+            }
             // Check for successful status codes (e.g., 2xx)
             if (response.statusCode() >= 200 && response.statusCode() < 300) {
                 logger.debug("Successfully wrote key {} to instance {}", key, instance.getNodeIdentifier());
@@ -189,14 +577,54 @@ public class QuorumReaderWriter implements QuorumRWService {
                 logger.warn("Failed to write key {} to instance {}. Status: {}, Body: {}",
                         key, instance.getNodeIdentifier(), response.statusCode(), response.body());
             }
-        } catch (Exception e) {
-            logger.error("Exception while sending write request for key {} to instance {}", key, instance.getNodeIdentifier(), e);
+            return response.statusCode();
+        });
+    }
+
+    private CompletableFuture<Integer> transportWrite(ServerInstance instance, String key, Object value, boolean isForward,
+                                                      long timeoutMillis) {
+        logger.debug("Writing key {} to instance {} over transport", key, instance.getNodeIdentifier());
+        CompletableFuture<Frame> write;
+        try {
+            write = isForward ? interNodeClient.forwardSet(instance, key, value, timeoutMillis)
+                              : interNodeClient.set(instance, key, value, timeoutMillis);
+        } catch (RuntimeException e) {
+            write = CompletableFuture.failedFuture(e);
         }
+        return write.handle((reply, error) -> {
+            if (error != null) {
+                logger.error("Exception while sending write request for key {} to instance {} over transport", key, instance.getNodeIdentifier(), unwrap(error));
+                return -1;
+            }
+            if (!reply.isOk()) {
+                logger.warn("Failed to write key {} to instance {} over transport. Status: {}", key, instance.getNodeIdentifier(), reply.getStatus());
+            }
+            return reply.toHttpStatus();
+        });
+    }
+
+    private Object readJson(String body) {
+        try {
+            return objectMapper.readValue(body, Object.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Object decodeValue(Frame reply) {
+        try {
+            return interNodeClient.decodeValue(reply.getValue());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        return response;
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
     }
 
 
+
     /**
      * Returns the next server instance in the ring using a virtual node key.
      * @param instance The current server instance.
@@ -229,7 +657,27 @@ public class QuorumReaderWriter implements QuorumRWService {
         return nextInstance;
     }
 
-    private boolean isLocalInstance(ServerInstance instance) {
+    /**
+     * Returns the replica set for a token range: the primary followed by the
+     * next (quorumWrite - 1) server instances, placed as configured
+     * (see {@link CacheRouter#getReplicaInstances(ServerInstance, int, boolean)}).
+     * @param primaryInstance The primary returned by the router for a key.
+     * @return The replica instances, primary first.
+     */
+    public List<ServerInstance> getReplicaInstances(ServerInstance primaryInstance) {
+        return cacheRouter.getReplicaInstances(primaryInstance, awsConfig.getQuorumWrite(), awsConfig.isZoneAwarePlacement());
+    }
+
+    /**
+     * Identifies this node in {@link LoadShedder#PEER_HEADER}. Peers only check that the header is
+     * there, and a header cannot be null, so a node not registered yet sends a placeholder.
+     */
+    private String peerId() {
+        String taskId = svcRegistration.getAwsTaskId();
+        return taskId != null ? taskId : "unregistered";
+    }
+
+    public boolean isLocalInstance(ServerInstance instance) {
 
         logger.debug("Instance instance id {} and IP {}",
                 instance.getServiceId(),instance.getIpAddress());
@@ -0,0 +1,184 @@
+package nisran.router;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.ServerInstance;
+import nisran.config.AWS_SDKConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Latency-aware replica selection, in the spirit of Cassandra's dynamic snitch.
+ *
+ * For every peer it tracks an exponentially weighted moving average of read latency and the
+ * number of reads currently in flight. A peer's score is its average latency multiplied by
+ * its queue (in-flight + 1), so a node that is slow or already busy ranks behind an idle one.
+ *
+ * The primary keeps its place unless its score is worse than the best replica's by more than
+ * the badness threshold; this keeps reads on the primary, and its warm cache, when replicas
+ * perform about the same. Averages are cleared periodically so that a node that was slow once
+ * gets another chance.
+ */
+@Service("replicaSelector")
+@Profile("cluster")
+public class ReplicaSelector {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaSelector.class);
+
+    static final class PeerStats {
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile double ewmaMicros = -1; // -1 until the first sample
+
+        synchronized void record(long latencyMicros, double alpha) {
+            ewmaMicros = ewmaMicros < 0 ? latencyMicros : alpha * latencyMicros + (1 - alpha) * ewmaMicros;
+        }
+
+        double score() {
+            double latency = ewmaMicros;
+            // Peers without samples score 0 so that they get probed
+            return latency < 0 ? 0 : latency * (inFlight.get() + 1);
+        }
+    }
+
+    private final boolean enabled;
+    private final double alpha;
+    private final double badnessThreshold;
+    private final int resetIntervalSeconds;
+    private final Map<ServerInstance, PeerStats> stats;
+    private final ScheduledExecutorService resetScheduler;
+
+    @Autowired
+    public ReplicaSelector(AWS_SDKConfig awsConfig) {
+        this(awsConfig.isReplicaSelectionEnabled(), awsConfig.getReplicaSelectionAlpha(),
+                awsConfig.getReplicaSelectionBadnessThreshold(), awsConfig.getReplicaSelectionResetIntervalSeconds());
+    }
+
+    ReplicaSelector(boolean enabled, double alpha, double badnessThreshold, int resetIntervalSeconds) {
+        this.enabled = enabled;
+        this.alpha = alpha;
+        this.badnessThreshold = badnessThreshold;
+        this.resetIntervalSeconds = resetIntervalSeconds;
+        this.stats = new ConcurrentHashMap<>();
+        this.resetScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ReplicaSelector-ResetThread");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    private void start() {
+        if (!enabled || resetIntervalSeconds <= 0) {
+            return;
+        }
+        resetScheduler.scheduleWithFixedDelay(this::reset, resetIntervalSeconds, resetIntervalSeconds, TimeUnit.SECONDS);
+        logger.info("Adaptive replica selection enabled: alpha {}, badness threshold {}, reset every {} seconds.",
+                alpha, badnessThreshold, resetIntervalSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        resetScheduler.shutdownNow();
+    }
+
+    /**
+     * Orders a replica set for a read.
+     * @param replicas The replica set, primary first.
+     * @return The replicas ordered by score, or the input order if the primary is good enough.
+     */
+    public List<ServerInstance> rank(List<ServerInstance> replicas) {
+        if (!enabled || replicas.size() < 2) {
+            return replicas;
+        }
+        // Scores move while reads complete, so take them once before sorting
+        Map<ServerInstance, Double> scores = new HashMap<>();
+        for (ServerInstance replica : replicas) {
+            scores.put(replica, score(replica));
+        }
+        List<ServerInstance> ranked = new ArrayList<>(replicas);
+        ranked.sort(Comparator.comparingDouble(scores::get));
+
+        double primaryScore = scores.get(replicas.get(0));
+        double bestScore = scores.get(ranked.get(0));
+        if (primaryScore <= bestScore * (1 + badnessThreshold)) {
+            // Keep the primary first, the rest by score
+            ranked.remove(replicas.get(0));
+            ranked.add(0, replicas.get(0));
+        } else {
+            logger.debug("Reading from {} instead of primary {} (score {} vs {})",
+                    ranked.get(0).getNodeIdentifier(), replicas.get(0).getNodeIdentifier(), bestScore, primaryScore);
+        }
+        return ranked;
+    }
+
+    /**
+     * Issues a read to a peer, counting it as in flight and recording its latency when it ends.
+     * Failed reads are recorded too, so that a peer timing out is penalised by its timeout.
+     */
+    public <T> CompletableFuture<T> track(ServerInstance instance, Supplier<CompletableFuture<T>> read) {
+        PeerStats peer = stats(instance);
+        peer.inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = read.get();
+        } catch (RuntimeException e) {
+            peer.inFlight.decrementAndGet();
+            throw e;
+        }
+        return future.whenComplete((value, error) -> {
+            peer.inFlight.decrementAndGet();
+            peer.record((System.nanoTime() - start) / 1_000, alpha);
+        });
+    }
+
+    void recordLatency(ServerInstance instance, long latencyMicros) {
+        stats(instance).record(latencyMicros, alpha);
+    }
+
+    double score(ServerInstance instance) {
+        PeerStats peer = stats.get(instance);
+        return peer == null ? 0 : peer.score();
+    }
+
+    void reset() {
+        stats.values().forEach(peer -> peer.ewmaMicros = -1);
+    }
+
+    private PeerStats stats(ServerInstance instance) {
+        return stats.computeIfAbsent(instance, i -> new PeerStats());
+    }
+
+    /**
+     * Returns latency average, in-flight count and score per peer, keyed by node identifier.
+     */
+    public Map<String, Map<String, Object>> getMetrics() {
+        Map<String, Map<String, Object>> metrics = new LinkedHashMap<>();
+        stats.forEach((instance, peer) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("ewmaMillis", peer.ewmaMicros < 0 ? null : peer.ewmaMicros / 1_000);
+            entry.put("inFlight", peer.inFlight.get());
+            entry.put("score", peer.score());
+            metrics.put(instance.getNodeIdentifier(), entry);
+        });
+        return metrics;
+    }
+}
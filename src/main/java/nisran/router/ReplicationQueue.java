@@ -0,0 +1,247 @@
+package nisran.router;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded queue of pending replica mutations for a single peer.
+ *
+ * Repeated writes to the same key are coalesced: only the latest value is kept and it
+ * occupies a single slot (last write wins). The bound applies to distinct keys, so a
+ * producer only waits when the queue holds {@code capacity} different keys.
+ *
+ * Each mutation gets a version from a per-queue sequence. An entry of a failed batch is only
+ * put back if it is still the newest version of its key: a key written again, or replicated
+ * synchronously past the queue (see {@link #supersede}), while the batch was in flight would
+ * otherwise have its newer value overwritten by the older one on the peer.
+ */
+public class ReplicationQueue {
+
+    private final int capacity;
+    private final LinkedHashMap<String, Entry> pending;
+    private final Map<String, Long> inFlight = new HashMap<>(); // key -> version in the batch being sent
+    private final Map<String, Long> latest = new HashMap<>(); // key -> newest version, for keys pending or in flight
+    private long sequence;
+    private final ReentrantLock lock;
+    private final Condition notFull;
+    private final AtomicBoolean flushing;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder batchesFlushed = new LongAdder();
+    private final LongAdder entriesFlushed = new LongAdder();
+    private final LongAdder batchesFailed = new LongAdder();
+
+    public ReplicationQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Replication queue capacity must be positive, was " + capacity);
+        }
+        this.capacity = capacity;
+        this.pending = new LinkedHashMap<>();
+        this.lock = new ReentrantLock();
+        this.notFull = lock.newCondition();
+        this.flushing = new AtomicBoolean(false);
+    }
+
+    /**
+     * Enqueues a mutation, waiting up to the given timeout for space if the queue is full.
+     * @return true if the mutation was queued or coalesced, false if the queue stayed full.
+     */
+    public boolean offer(String key, Object value, long timeoutMillis) throws InterruptedException {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            if (pending.containsKey(key)) {
+                pending.put(key, version(key, value));
+                coalesced.increment();
+                return true;
+            }
+            while (pending.size() >= capacity) {
+                if (remainingNanos <= 0) {
+                    rejected.increment();
+                    return false;
+                }
+                remainingNanos = notFull.awaitNanos(remainingNanos);
+            }
+            pending.put(key, version(key, value));
+            enqueued.increment();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry version(String key, Object value) {
+        long version = ++sequence;
+        latest.put(key, version);
+        return new Entry(value, version);
+    }
+
+    /**
+     * Removes and returns up to {@code maxEntries} pending mutations in insertion order. The batch
+     * is in flight until it is {@link #acknowledge acknowledged} or {@link #requeue requeued}.
+     */
+    public Map<String, Object> drain(int maxEntries) {
+        lock.lock();
+        try {
+            Map<String, Object> batch = new LinkedHashMap<>();
+            endFlight();
+            Iterator<Map.Entry<String, Entry>> it = pending.entrySet().iterator();
+            while (it.hasNext() && batch.size() < maxEntries) {
+                Map.Entry<String, Entry> entry = it.next();
+                batch.put(entry.getKey(), entry.getValue().value);
+                inFlight.put(entry.getKey(), entry.getValue().version);
+                it.remove();
+            }
+            if (!batch.isEmpty()) {
+                notFull.signalAll();
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends the flight of the last drained batch, which the peer applied.
+     */
+    public void acknowledge() {
+        lock.lock();
+        try {
+            endFlight();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts back the entries of the last drained batch, which could not be delivered. Entries
+     * whose key has a newer version, queued or replicated synchronously since, are dropped as
+     * stale; entries that no longer fit are dropped.
+     */
+    public void requeue(Map<String, Object> batch) {
+        lock.lock();
+        try {
+            for (Map.Entry<String, Object> entry : batch.entrySet()) {
+                Long version = inFlight.get(entry.getKey());
+                if (version == null || !version.equals(latest.get(entry.getKey()))) {
+                    stale.increment();
+                    continue;
+                }
+                if (pending.size() >= capacity) {
+                    dropped.increment();
+                    continue;
+                }
+                pending.put(entry.getKey(), new Entry(entry.getValue(), version));
+            }
+            endFlight();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that the key is being replicated to the peer synchronously, with a value newer than
+     * any queued for it. A pending entry of the key is discarded, and an entry of the batch in
+     * flight will not be requeued.
+     */
+    public void supersede(String key) {
+        lock.lock();
+        try {
+            boolean wasPending = pending.remove(key) != null;
+            if (inFlight.containsKey(key)) {
+                latest.put(key, ++sequence);
+            } else if (wasPending) {
+                latest.remove(key);
+            }
+            if (wasPending) {
+                stale.increment();
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void endFlight() {
+        for (String key : inFlight.keySet()) {
+            if (!pending.containsKey(key)) {
+                latest.remove(key);
+            }
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * Marks the start of a flush. Only one flush per queue may run at a time so that
+     * batches for the same peer are delivered in order.
+     * @return true if the caller now owns the flush.
+     */
+    boolean tryBeginFlush() {
+        return flushing.compareAndSet(false, true);
+    }
+
+    void endFlush() {
+        flushing.set(false);
+    }
+
+    void recordFlushed(int entries) {
+        batchesFlushed.increment();
+        entriesFlushed.add(entries);
+    }
+
+    void recordFailed() {
+        batchesFailed.increment();
+    }
+
+    public int depth() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the queue metrics as a map suitable for JSON rendering.
+     */
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("depth", (long) depth());
+        metrics.put("capacity", (long) capacity);
+        metrics.put("enqueued", enqueued.sum());
+        metrics.put("coalesced", coalesced.sum());
+        metrics.put("backpressureRejections", rejected.sum());
+        metrics.put("dropped", dropped.sum());
+        metrics.put("stale", stale.sum());
+        metrics.put("batchesFlushed", batchesFlushed.sum());
+        metrics.put("entriesFlushed", entriesFlushed.sum());
+        metrics.put("batchesFailed", batchesFailed.sum());
+        return metrics;
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long version;
+
+        private Entry(Object value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package nisran.router;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent loads of the same key.
+ *
+ * The first caller for a key starts the load; callers arriving while it is in flight get the
+ * same future instead of starting their own. Once the load completes the key is free again,
+ * so results are never cached here. Typical use is a hot key read by many clients at once,
+ * which then costs one request to its owner instead of one per client.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+
+    /**
+     * Returns the in-flight load of a key, or starts one.
+     * @param loader Starts the load; called at most once per flight, on the caller's thread.
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> existing = inFlight.get(key);
+        if (existing != null) {
+            joined.increment();
+            return existing;
+        }
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            joined.increment();
+            return existing;
+        }
+        loads.increment();
+        CompletableFuture<V> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((value, error) -> {
+            // Free the key before completing, so that callers woken by the result start a new flight
+            inFlight.remove(key, flight);
+            if (error == null) {
+                flight.complete(value);
+            } else {
+                flight.completeExceptionally(error);
+            }
+        });
+        return flight;
+    }
+
+    /**
+     * Detaches the in-flight load of a key, if any, so that the next caller starts a fresh one.
+     * Used after the key was written, since a load started earlier may return the old value.
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getJoined() {
+        return joined.sum();
+    }
+}
@@ -0,0 +1,140 @@
+package nisran.router;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Streaming heavy-hitter counts with the Space-Saving algorithm (Metwally et al.).
+ *
+ * At most {@code capacity} keys are counted. A key that is not counted replaces the key with the
+ * lowest count and inherits that count, which is remembered as the new key's maximum error.
+ * Every key whose true count exceeds total / capacity is guaranteed to be counted, and no count
+ * is ever below the true one; with skewed traffic the counts of the top keys are near exact.
+ *
+ * Counters are kept in buckets ordered by count, so that finding the minimum is cheap.
+ */
+public class SpaceSavingSketch<K> {
+
+    /**
+     * A counted key. The true count lies between {@code count - error} and {@code count}.
+     */
+    public static final class Counter<K> {
+        private final K key;
+        private long count;
+        private final long error;
+
+        Counter(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+
+        public long getGuaranteedCount() {
+            return count - error;
+        }
+    }
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters;
+    private final TreeMap<Long, Set<K>> buckets; // count -> keys with that count
+    private long total;
+
+    public SpaceSavingSketch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>();
+        this.buckets = new TreeMap<>();
+    }
+
+    public synchronized void offer(K key) {
+        total++;
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            moveTo(counter, counter.count + 1);
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new Counter<>(key, 1, 0));
+            bucket(1).add(key);
+            return;
+        }
+        // Replace the key with the lowest count
+        Map.Entry<Long, Set<K>> lowest = buckets.firstEntry();
+        Iterator<K> it = lowest.getValue().iterator();
+        K evicted = it.next();
+        it.remove();
+        if (lowest.getValue().isEmpty()) {
+            buckets.remove(lowest.getKey());
+        }
+        counters.remove(evicted);
+
+        long min = lowest.getKey();
+        counter = new Counter<>(key, min + 1, min);
+        counters.put(key, counter);
+        bucket(counter.count).add(key);
+    }
+
+    private void moveTo(Counter<K> counter, long count) {
+        Set<K> keys = buckets.get(counter.count);
+        keys.remove(counter.key);
+        if (keys.isEmpty()) {
+            buckets.remove(counter.count);
+        }
+        counter.count = count;
+        bucket(count).add(counter.key);
+    }
+
+    private Set<K> bucket(long count) {
+        return buckets.computeIfAbsent(count, c -> new LinkedHashSet<>());
+    }
+
+    /**
+     * Returns up to {@code n} counters, highest count first. The counters are copies.
+     */
+    public synchronized List<Counter<K>> top(int n) {
+        List<Counter<K>> result = new ArrayList<>();
+        for (Set<K> keys : buckets.descendingMap().values()) {
+            for (K key : keys) {
+                if (result.size() >= n) {
+                    return result;
+                }
+                Counter<K> counter = counters.get(key);
+                result.add(new Counter<>(key, counter.count, counter.error));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of offers since the last reset.
+     */
+    public synchronized long total() {
+        return total;
+    }
+
+    public synchronized void reset() {
+        counters.clear();
+        buckets.clear();
+        total = 0;
+    }
+}
@@ -0,0 +1,119 @@
+package nisran.router;
+
+import nisran.RingHash;
+import nisran.ServerInstance;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The consistent hash ring as served by {@code /api/cluster/topology}: every node with the
+ * tokens of its virtual nodes. A client holding it places keys exactly as the router does.
+ */
+public class Topology {
+
+    /** Response header carrying the fingerprint of the ring the answering node routes with. */
+    public static final String RING_HEADER = "X-Cache-Ring";
+
+    public static class Node {
+        private String id; // ip:port, as on the ring
+        private String host;
+        private int port;
+        private String zone;
+        private List<Integer> tokens = new ArrayList<>();
+
+        // For JSON
+        public Node() {}
+
+        public Node(String id, String host, int port, String zone) {
+            this.id = id;
+            this.host = host;
+            this.port = port;
+            this.zone = zone;
+        }
+
+        public String getId() { return id; }
+        public String getHost() { return host; }
+        public int getPort() { return port; }
+        public String getZone() { return zone; }
+        public List<Integer> getTokens() { return tokens; }
+
+        public void setId(String id) { this.id = id; }
+        public void setHost(String host) { this.host = host; }
+        public void setPort(int port) { this.port = port; }
+        public void setZone(String zone) { this.zone = zone; }
+        public void setTokens(List<Integer> tokens) { this.tokens = tokens; }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+
+    private long epoch; // Of the node that served it; not comparable across nodes
+    private long fingerprint;
+    private List<Node> nodes = new ArrayList<>();
+
+    private volatile TreeMap<Integer, Node> ring; // Built on first lookup
+
+    // For JSON
+    public Topology() {}
+
+    public Topology(long epoch, long fingerprint, List<Node> nodes) {
+        this.epoch = epoch;
+        this.fingerprint = fingerprint;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Describes a router's ring.
+     */
+    public static Topology of(long epoch, SortedMap<Integer, ServerInstance> ring) {
+        return new Topology(epoch, RingHash.fingerprint(ring), nodesOf(ring));
+    }
+
+    /**
+     * Groups the tokens of a ring by node.
+     */
+    static List<Node> nodesOf(SortedMap<Integer, ServerInstance> ring) {
+        Map<ServerInstance, Node> nodes = new LinkedHashMap<>();
+        ring.forEach((token, instance) -> nodes.computeIfAbsent(instance, i ->
+                new Node(i.getNodeIdentifier(), i.getIpAddress(), i.getPort(), i.getZone())).getTokens().add(token));
+        return new ArrayList<>(nodes.values());
+    }
+
+    public long getEpoch() { return epoch; }
+    public long getFingerprint() { return fingerprint; }
+    public List<Node> getNodes() { return nodes; }
+
+    public void setEpoch(long epoch) { this.epoch = epoch; }
+    public void setFingerprint(long fingerprint) { this.fingerprint = fingerprint; }
+    public void setNodes(List<Node> nodes) { this.nodes = nodes; this.ring = null; }
+
+    /**
+     * Returns the node owning the key: the first token at or after the key's hash, wrapping
+     * around, as in {@code CacheRouter}.
+     * @return null if the ring is empty.
+     */
+    public Node ownerOf(String key) {
+        TreeMap<Integer, Node> current = ring;
+        if (current == null) {
+            current = new TreeMap<>();
+            for (Node node : nodes) {
+                for (Integer token : node.getTokens()) {
+                    current.put(token, node);
+                }
+            }
+            ring = current;
+        }
+        if (current.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Integer, Node> owner = current.ceilingEntry(RingHash.of(key));
+        return owner != null ? owner.getValue() : current.firstEntry().getValue();
+    }
+}
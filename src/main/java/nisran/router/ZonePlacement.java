@@ -0,0 +1,78 @@
+package nisran.router;
+
+import nisran.ServerInstance;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Availability-zone rules for replica placement and read routing.
+ *
+ * Instances whose zone is not known are treated as being in a zone of their own, so with no
+ * zone information at all both rules leave the ring order unchanged.
+ */
+public final class ZonePlacement {
+
+    private ZonePlacement() {
+    }
+
+    /**
+     * Chooses the replicas of a token range so that they span as many zones as possible.
+     * @param primary The primary of the range.
+     * @param successors The other instances in ring order, starting after the primary.
+     * @param count The size of the replica set, including the primary.
+     * @return The replica set, primary first, then successors in ring order, skipping those in a
+     *         zone already used until no instance in a new zone is left.
+     */
+    public static List<ServerInstance> spread(ServerInstance primary, List<ServerInstance> successors, int count) {
+        List<ServerInstance> replicas = new ArrayList<>();
+        replicas.add(primary);
+        Set<String> zones = new HashSet<>();
+        addZone(zones, primary);
+        for (ServerInstance candidate : successors) {
+            if (replicas.size() >= count) {
+                return replicas;
+            }
+            if (candidate.getZone() == null || !zones.contains(candidate.getZone())) {
+                replicas.add(candidate);
+                addZone(zones, candidate);
+            }
+        }
+        for (ServerInstance candidate : successors) {
+            if (replicas.size() >= count) {
+                break;
+            }
+            if (!replicas.contains(candidate)) {
+                replicas.add(candidate);
+            }
+        }
+        return replicas;
+    }
+
+    /**
+     * Moves the replicas in the given zone to the front, keeping the order within both groups.
+     */
+    public static List<ServerInstance> preferZone(List<ServerInstance> ranked, String zone) {
+        if (zone == null || ranked.size() < 2) {
+            return ranked;
+        }
+        List<ServerInstance> sameZone = new ArrayList<>();
+        List<ServerInstance> otherZones = new ArrayList<>();
+        for (ServerInstance instance : ranked) {
+            (zone.equals(instance.getZone()) ? sameZone : otherZones).add(instance);
+        }
+        if (sameZone.isEmpty()) {
+            return ranked;
+        }
+        sameZone.addAll(otherZones);
+        return sameZone;
+    }
+
+    private static void addZone(Set<String> zones, ServerInstance instance) {
+        if (instance.getZone() != null) {
+            zones.add(instance.getZone());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package nisran.transport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A single message of the inter-node binary protocol.
+ *
+ * Every request carries a request id chosen by the sender; the reply echoes the opcode and
+ * the request id, so many requests can be in flight on one connection and replies may come
+ * back in any order. The value is an opaque byte payload that is written to and read from
+ * the socket without being copied into an intermediate buffer.
+ */
+public final class Frame {
+
+    public static final byte OP_PING = 0;
+    public static final byte OP_GET = 1;
+    public static final byte OP_SET = 2;
+    public static final byte OP_BATCH_SET = 3;
+    public static final byte OP_FORWARD_SET = 4;
+    public static final byte OP_LEASED_GET = 5;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_NOT_FOUND = 1;
+    public static final byte STATUS_ERROR = 2;
+    public static final byte STATUS_UNAVAILABLE = 3;
+    public static final byte STATUS_DEADLINE_EXCEEDED = 4;
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final byte opcode;
+    private final byte status;
+    private final long requestId;
+    private final int timeoutMillis;
+    private final String key;
+    private final ByteBuffer value;
+
+    public Frame(byte opcode, byte status, long requestId, int timeoutMillis, String key, ByteBuffer value) {
+        this.opcode = opcode;
+        this.status = status;
+        this.requestId = requestId;
+        this.timeoutMillis = timeoutMillis;
+        this.key = key == null ? "" : key;
+        this.value = value == null ? EMPTY : value;
+    }
+
+    public static Frame request(byte opcode, long requestId, String key, ByteBuffer value) {
+        return request(opcode, requestId, 0, key, value);
+    }
+
+    /**
+     * @param timeoutMillis The sender's remaining deadline for this request; 0 if it has none.
+     */
+    public static Frame request(byte opcode, long requestId, int timeoutMillis, String key, ByteBuffer value) {
+        return new Frame(opcode, STATUS_OK, requestId, timeoutMillis, key, value);
+    }
+
+    /**
+     * Builds the reply to this request with the given status and payload.
+     */
+    public Frame reply(byte status, ByteBuffer value) {
+        return new Frame(opcode, status, requestId, 0, null, value);
+    }
+
+    public Frame error(String message) {
+        return reply(STATUS_ERROR, ByteBuffer.wrap(String.valueOf(message).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public byte getOpcode() {
+        return opcode;
+    }
+
+    public byte getStatus() {
+        return status;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns a view of the payload sharing its bytes; position changes by the caller do not affect the frame.
+     */
+    public ByteBuffer getValue() {
+        return value.duplicate();
+    }
+
+    public boolean isOk() {
+        return status == STATUS_OK;
+    }
+
+    /**
+     * Maps the frame status onto the HTTP status code the equivalent REST call would return.
+     */
+    public int toHttpStatus() {
+        switch (status) {
+            case STATUS_OK: return 200;
+            case STATUS_NOT_FOUND: return 404;
+            case STATUS_UNAVAILABLE: return 503;
+            case STATUS_DEADLINE_EXCEEDED: return 504;
+            default: return 500;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Frame{" + "opcode=" + opcode + ", status=" + status + ", requestId=" + requestId + ", timeoutMillis=" + timeoutMillis
+                + ", key='" + key + '\'' + ", valueBytes=" + value.remaining() + '}';
+    }
+}
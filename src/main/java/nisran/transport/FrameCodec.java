@@ -0,0 +1,148 @@
+package nisran.transport;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encodes and decodes {@link Frame}s.
+ *
+ * Wire layout (big endian):
+ * <pre>
+ *   int   bodyLength      bytes following this field
+ *   byte  opcode
+ *   byte  status
+ *   long  requestId
+ *   int   timeoutMillis   remaining deadline of a request, 0 if none
+ *   int   keyLength
+ *   byte[] key            UTF-8
+ *   int   valueLength
+ *   byte[] value
+ * </pre>
+ * Encoding produces separate buffers for header, key and value so that a gathering write
+ * sends the caller's value buffer as is.
+ */
+public final class FrameCodec {
+
+    public static final int LENGTH_FIELD_BYTES = 4;
+    public static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    private static final int FIXED_BODY_BYTES = 1 + 1 + 8 + 4 + 4 + 4;
+
+    private FrameCodec() {
+    }
+
+    public static ByteBuffer[] encode(Frame frame) {
+        byte[] key = frame.getKey().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer value = frame.getValue();
+        int bodyLength = FIXED_BODY_BYTES + key.length + value.remaining();
+        if (bodyLength > MAX_FRAME_BYTES) {
+            throw new IllegalArgumentException("Frame of " + bodyLength + " bytes exceeds the maximum of " + MAX_FRAME_BYTES);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(LENGTH_FIELD_BYTES + 1 + 1 + 8 + 4 + 4);
+        header.putInt(bodyLength)
+              .put(frame.getOpcode())
+              .put(frame.getStatus())
+              .putLong(frame.getRequestId())
+              .putInt(frame.getTimeoutMillis())
+              .putInt(key.length)
+              .flip();
+        ByteBuffer valueLength = ByteBuffer.allocate(4);
+        valueLength.putInt(value.remaining()).flip();
+
+        return new ByteBuffer[] { header, ByteBuffer.wrap(key), valueLength, value };
+    }
+
+    /**
+     * Decodes a frame body (everything after the length field). The returned frame's value is a
+     * slice of {@code body}, so the buffer must not be reused while the frame is alive.
+     */
+    public static Frame decode(ByteBuffer body) {
+        byte opcode = body.get();
+        byte status = body.get();
+        long requestId = body.getLong();
+        int timeoutMillis = body.getInt();
+        int keyLength = body.getInt();
+        checkLength(keyLength, body);
+        byte[] key = new byte[keyLength];
+        body.get(key);
+        int valueLength = body.getInt();
+        checkLength(valueLength, body);
+        ByteBuffer value = body.slice();
+        value.limit(valueLength);
+        return new Frame(opcode, status, requestId, timeoutMillis, new String(key, StandardCharsets.UTF_8), value);
+    }
+
+    /**
+     * Validates the length field read from the wire before a body buffer is allocated for it.
+     */
+    public static int checkFrameLength(int bodyLength) {
+        if (bodyLength < FIXED_BODY_BYTES || bodyLength > MAX_FRAME_BYTES) {
+            throw new IllegalStateException("Invalid frame length " + bodyLength);
+        }
+        return bodyLength;
+    }
+
+    /**
+     * Returns true while any buffer of an encoded frame still has bytes to write.
+     */
+    public static boolean hasRemaining(ByteBuffer[] buffers) {
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Packs several already serialised entries into a single payload for {@link Frame#OP_BATCH_SET}.
+     */
+    public static ByteBuffer encodeEntries(Map<String, byte[]> entries) {
+        int size = 4;
+        Map<byte[], byte[]> encoded = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            encoded.put(key, entry.getValue());
+            size += 4 + key.length + 4 + entry.getValue().length;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.putInt(encoded.size());
+        for (Map.Entry<byte[], byte[]> entry : encoded.entrySet()) {
+            payload.putInt(entry.getKey().length).put(entry.getKey());
+            payload.putInt(entry.getValue().length).put(entry.getValue());
+        }
+        payload.flip();
+        return payload;
+    }
+
+    /**
+     * Unpacks a {@link Frame#OP_BATCH_SET} payload. Values are slices of the payload.
+     */
+    public static Map<String, ByteBuffer> decodeEntries(ByteBuffer payload) {
+        ByteBuffer buf = payload.duplicate();
+        int count = buf.getInt();
+        Map<String, ByteBuffer> entries = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            int keyLength = buf.getInt();
+            checkLength(keyLength, buf);
+            byte[] key = new byte[keyLength];
+            buf.get(key);
+            int valueLength = buf.getInt();
+            checkLength(valueLength, buf);
+            ByteBuffer value = buf.slice();
+            value.limit(valueLength);
+            buf.position(buf.position() + valueLength);
+            entries.put(new String(key, StandardCharsets.UTF_8), value);
+        }
+        return entries;
+    }
+
+    private static void checkLength(int length, ByteBuffer buf) {
+        if (length < 0 || length > buf.remaining()) {
+            throw new IllegalStateException("Corrupt frame: field length " + length + " exceeds " + buf.remaining() + " remaining bytes");
+        }
+    }
+}
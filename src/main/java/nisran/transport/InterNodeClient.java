@@ -0,0 +1,123 @@
+package nisran.transport;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import nisran.ServerInstance;
+import nisran.config.AWS_SDKConfig;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Cluster-facing wrapper around {@link TransportClient}: addresses peers by {@link ServerInstance}
+ * and converts cache values to and from the JSON bytes carried in frame payloads.
+ */
+@Service("interNodeClient")
+@Profile("cluster")
+public class InterNodeClient {
+
+    private final AWS_SDKConfig awsConfig;
+    private final ObjectMapper objectMapper;
+    private final TransportClient transportClient;
+
+    public InterNodeClient(AWS_SDKConfig awsConfig, ObjectMapper objectMapper) {
+        this.awsConfig = awsConfig;
+        this.objectMapper = objectMapper;
+        this.transportClient = new TransportClient(awsConfig.getTransportConnectTimeoutMillis());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        transportClient.close();
+    }
+
+    public boolean isEnabled() {
+        return awsConfig.isTransportEnabled();
+    }
+
+    public CompletableFuture<Frame> ping(ServerInstance peer) {
+        return send(peer, Frame.OP_PING, null, null);
+    }
+
+    /**
+     * @param timeoutMillis Time the caller is prepared to wait, which the peer also receives as its deadline.
+     */
+    public CompletableFuture<Frame> get(ServerInstance peer, String key, long timeoutMillis) {
+        return send(peer, Frame.OP_GET, key, null, timeoutMillis);
+    }
+
+    /**
+     * Reads a key from its lease holder, which answers only while it holds the range's lease.
+     */
+    public CompletableFuture<Frame> leasedGet(ServerInstance peer, String key, long timeoutMillis) {
+        return send(peer, Frame.OP_LEASED_GET, key, null, timeoutMillis);
+    }
+
+    public CompletableFuture<Frame> set(ServerInstance peer, String key, Object value, long timeoutMillis) {
+        return send(peer, Frame.OP_SET, key, encodeValue(value), timeoutMillis);
+    }
+
+    /**
+     * Sends a write to the primary, which runs the full quorum write on behalf of this node.
+     */
+    public CompletableFuture<Frame> forwardSet(ServerInstance peer, String key, Object value, long timeoutMillis) {
+        return send(peer, Frame.OP_FORWARD_SET, key, encodeValue(value), timeoutMillis);
+    }
+
+    public CompletableFuture<Frame> setBatch(ServerInstance peer, Map<String, Object> entries) {
+        Map<String, byte[]> encoded = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            encoded.put(entry.getKey(), toBytes(entry.getValue()));
+        }
+        return send(peer, Frame.OP_BATCH_SET, null, FrameCodec.encodeEntries(encoded));
+    }
+
+    /**
+     * Decodes the JSON payload of a frame into a cache value.
+     */
+    public Object decodeValue(ByteBuffer payload) throws IOException {
+        if (payload.hasArray()) {
+            return objectMapper.readValue(payload.array(), payload.arrayOffset() + payload.position(),
+                    payload.remaining(), Object.class);
+        }
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return objectMapper.readValue(bytes, Object.class);
+    }
+
+    public ByteBuffer encodeValue(Object value) {
+        return ByteBuffer.wrap(toBytes(value));
+    }
+
+    private byte[] toBytes(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Value cannot be serialised for inter-node transfer", e);
+        }
+    }
+
+    private CompletableFuture<Frame> send(ServerInstance peer, byte opcode, String key, ByteBuffer value) {
+        return send(peer, opcode, key, value, awsConfig.getTransportRequestTimeoutMillis());
+    }
+
+    private CompletableFuture<Frame> send(ServerInstance peer, byte opcode, String key, ByteBuffer value, long timeoutMillis) {
+        return transportClient.send(peer.getIpAddress(), transportPort(peer), opcode, key, value, timeoutMillis);
+    }
+
+    /**
+     * Every node listens for the transport at the same offset from its HTTP port, which on ECS,
+     * where all nodes use the same ports, is simply the configured transport port.
+     */
+    private int transportPort(ServerInstance peer) {
+        return peer.getPort() + awsConfig.getTransportPort() - awsConfig.getPort();
+    }
+}
@@ -0,0 +1,218 @@
+package nisran.transport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.config.AWS_SDKConfig;
+import nisran.router.Deadline;
+import nisran.router.DeadlineExceededException;
+import nisran.router.AdaptiveConcurrencyLimiter;
+import nisran.router.LeaseUnavailableException;
+import nisran.router.LoadShedder;
+import nisran.router.QuorumReaderWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the inter-node binary protocol alongside the HTTP API, which stays in place for
+ * external clients. Only pings are answered on the event loop; every request that touches the
+ * cache runs on a fixed worker pool with a bounded queue, so that miss loaders, listeners and
+ * the disk tier never block the loop, and a request that finds the queue full is answered as
+ * unavailable. A forwarded write runs under the deadline carried in the request frame and is
+ * dropped without being started if that deadline passed while it was queued. When load shedding is
+ * enabled, requests other than pings count against the internal concurrency limit.
+ */
+@Service("interNodeServer")
+@Profile("cluster")
+@DependsOn("quorumReaderWriter")
+public class InterNodeServer implements TransportServer.FrameHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(InterNodeServer.class);
+
+    private final QuorumReaderWriter quorumReaderWriter;
+    private final InterNodeClient interNodeClient;
+    private final ObjectMapper objectMapper;
+    private final LoadShedder loadShedder;
+    private final AWS_SDKConfig awsConfig;
+
+    private TransportServer server;
+    private ExecutorService workers;
+
+    public InterNodeServer(QuorumReaderWriter quorumReaderWriter, InterNodeClient interNodeClient,
+                           ObjectMapper objectMapper, LoadShedder loadShedder, AWS_SDKConfig awsConfig) {
+        this.quorumReaderWriter = quorumReaderWriter;
+        this.interNodeClient = interNodeClient;
+        this.objectMapper = objectMapper;
+        this.loadShedder = loadShedder;
+        this.awsConfig = awsConfig;
+    }
+
+    @PostConstruct
+    private void start() throws IOException {
+        if (!awsConfig.isTransportEnabled()) {
+            logger.info("Inter-node transport disabled; peers communicate over HTTP.");
+            return;
+        }
+        int threads = awsConfig.getTransportWorkerThreads();
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(awsConfig.getTransportWorkerQueueCapacity()), r -> {
+            Thread t = new Thread(r, "Transport-Worker");
+            t.setDaemon(true);
+            return t;
+        });
+        server = new TransportServer(awsConfig.getTransportPort(), this);
+        server.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (server != null) {
+            server.stop();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Frame> handle(Frame request) {
+        if (!loadShedder.isEnabled() || request.getOpcode() == Frame.OP_PING) {
+            return dispatch(request);
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = loadShedder.tryAcquire(true);
+        if (permit == null) {
+            return CompletableFuture.completedFuture(request.reply(Frame.STATUS_UNAVAILABLE, utf8("Overloaded")));
+        }
+        return dispatch(request).whenComplete((reply, error) -> {
+            if (reply != null && reply.getStatus() == Frame.STATUS_DEADLINE_EXCEEDED) {
+                permit.releaseDropped();
+            } else {
+                permit.release();
+            }
+        });
+    }
+
+    private CompletableFuture<Frame> dispatch(Frame request) {
+        if (request.getOpcode() == Frame.OP_PING) {
+            return CompletableFuture.completedFuture(request.reply(Frame.STATUS_OK, null));
+        }
+        // Everything that touches the cache runs on a worker: a miss may load from disk or a
+        // snapshot, and listeners append to the mutation log. A full pool sheds the request.
+        try {
+            return CompletableFuture.supplyAsync(() -> serve(request), workers).thenCompose(reply -> reply);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(request.reply(Frame.STATUS_UNAVAILABLE, utf8("Overloaded")));
+        }
+    }
+
+    private CompletableFuture<Frame> serve(Frame request) {
+        try {
+            switch (request.getOpcode()) {
+                case Frame.OP_GET: {
+                    Object value = quorumReaderWriter.localRead(request.getKey());
+                    if (value == null) {
+                        return CompletableFuture.completedFuture(request.reply(Frame.STATUS_NOT_FOUND, null));
+                    }
+                    return CompletableFuture.completedFuture(request.reply(Frame.STATUS_OK, interNodeClient.encodeValue(value)));
+                }
+                case Frame.OP_LEASED_GET:
+                    return quorumReaderWriter.leasedLocalRead(request.getKey()).handle((value, error) -> {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        if (cause instanceof LeaseUnavailableException) {
+                            return unavailable(request, (LeaseUnavailableException) cause);
+                        }
+                        if (cause != null) {
+                            return request.error(String.valueOf(cause.getMessage()));
+                        }
+                        if (value == null) {
+                            return request.reply(Frame.STATUS_NOT_FOUND, null);
+                        }
+                        return request.reply(Frame.STATUS_OK, interNodeClient.encodeValue(value));
+                    });
+                case Frame.OP_SET:
+                    quorumReaderWriter.localWrite(request.getKey(), interNodeClient.decodeValue(request.getValue()));
+                    return CompletableFuture.completedFuture(request.reply(Frame.STATUS_OK, null));
+                case Frame.OP_BATCH_SET: {
+                    Map<String, Object> entries = new LinkedHashMap<>();
+                    for (Map.Entry<String, ByteBuffer> entry : FrameCodec.decodeEntries(request.getValue()).entrySet()) {
+                        entries.put(entry.getKey(), interNodeClient.decodeValue(entry.getValue()));
+                    }
+                    quorumReaderWriter.localWriteBatch(entries);
+                    return CompletableFuture.completedFuture(request.reply(Frame.STATUS_OK, null));
+                }
+                case Frame.OP_FORWARD_SET: {
+                    Object value = interNodeClient.decodeValue(request.getValue());
+                    Deadline deadline = Deadline.after(request.getTimeoutMillis() > 0
+                            ? Math.min(request.getTimeoutMillis(), awsConfig.getMaxDeadlineMillis())
+                            : awsConfig.getDefaultDeadlineMillis());
+                    // Dropped if the deadline passed while the write was queued for a worker. The
+                    // worker is free again as soon as the write waits on the lease or the replicas.
+                    if (deadline.isExpired()) {
+                        return CompletableFuture.completedFuture(request.reply(Frame.STATUS_DEADLINE_EXCEEDED,
+                                utf8("Deadline exceeded before starting the forwarded write of key " + request.getKey())));
+                    }
+                    CompletableFuture<List<String>> write;
+                    Deadline.setCurrent(deadline);
+                    try {
+                        write = quorumReaderWriter.quorumWriteAsync(request.getKey(), value);
+                    } catch (RuntimeException e) {
+                        write = CompletableFuture.failedFuture(e);
+                    } finally {
+                        Deadline.clearCurrent();
+                    }
+                    return write.handle((result, error) -> {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        if (cause instanceof LeaseUnavailableException) {
+                            return unavailable(request, (LeaseUnavailableException) cause);
+                        }
+                        if (cause instanceof DeadlineExceededException) {
+                            return request.reply(Frame.STATUS_DEADLINE_EXCEEDED, utf8(cause.getMessage()));
+                        }
+                        if (cause != null) {
+                            return request.error(String.valueOf(cause.getMessage()));
+                        }
+                        try {
+                            return request.reply(Frame.STATUS_OK, ByteBuffer.wrap(objectMapper.writeValueAsBytes(result)));
+                        } catch (IOException e) {
+                            return request.error(e.getMessage());
+                        }
+                    });
+                }
+                default:
+                    return CompletableFuture.completedFuture(request.error("Unknown opcode " + request.getOpcode()));
+            }
+        } catch (LeaseUnavailableException e) {
+            return CompletableFuture.completedFuture(unavailable(request, e));
+        } catch (IOException e) {
+            logger.warn("Failed to handle inter-node request {}: {}", request, e.getMessage());
+            return CompletableFuture.completedFuture(request.error(e.getMessage()));
+        }
+    }
+
+    private static Frame unavailable(Frame request, LeaseUnavailableException e) {
+        return request.reply(Frame.STATUS_UNAVAILABLE, utf8(e.getMessage()));
+    }
+
+    private static ByteBuffer utf8(String message) {
+        return ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,198 @@
+package nisran.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoding and decoding of the Redis serialization protocol, RESP2 and RESP3.
+ *
+ * Requests are arrays of bulk strings, {@code *2\r\n$3\r\nGET\r\n$1\r\nk\r\n}, or inline
+ * commands separated by spaces, {@code PING\r\n}, as typed into a terminal. Replies are encoded
+ * as byte arrays, ready to be written; the few types that differ between the protocol versions,
+ * null and map, take the version negotiated by the connection.
+ */
+public final class RespCodec {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final int MAX_INLINE_BYTES = 64 * 1024;
+    private static final int MAX_ARGUMENTS = 1024 * 1024;
+
+    private RespCodec() {
+    }
+
+    /**
+     * Decodes one command from the buffer.
+     * @return The arguments of the command, or null if the buffer does not hold a whole command
+     *         yet, in which case its position is left unchanged.
+     * @throws IllegalArgumentException if the input is not a valid command.
+     */
+    public static List<byte[]> decode(ByteBuffer in, int maxBulkBytes) {
+        if (!in.hasRemaining()) {
+            return null;
+        }
+        int start = in.position();
+        List<byte[]> command = in.get(start) == '*' ? decodeArray(in, maxBulkBytes) : decodeInline(in);
+        if (command == null) {
+            in.position(start);
+        }
+        return command;
+    }
+
+    private static List<byte[]> decodeArray(ByteBuffer in, int maxBulkBytes) {
+        in.get(); // '*'
+        Long count = readLong(in);
+        if (count == null) {
+            return null;
+        }
+        if (count < 1 || count > MAX_ARGUMENTS) {
+            throw new IllegalArgumentException("Invalid multibulk length " + count);
+        }
+        List<byte[]> arguments = new ArrayList<>(count.intValue());
+        for (int i = 0; i < count; i++) {
+            if (!in.hasRemaining()) {
+                return null;
+            }
+            if (in.get() != '$') {
+                throw new IllegalArgumentException("Expected '$' at argument " + i);
+            }
+            Long length = readLong(in);
+            if (length == null) {
+                return null;
+            }
+            if (length < 0 || length > maxBulkBytes) {
+                throw new IllegalArgumentException("Invalid bulk length " + length);
+            }
+            if (in.remaining() < length + CRLF.length) {
+                return null;
+            }
+            byte[] argument = new byte[length.intValue()];
+            in.get(argument);
+            if (in.get() != '\r' || in.get() != '\n') {
+                throw new IllegalArgumentException("Bulk string of argument " + i + " is not terminated by CRLF");
+            }
+            arguments.add(argument);
+        }
+        return arguments;
+    }
+
+    private static List<byte[]> decodeInline(ByteBuffer in) {
+        int end = indexOfLineEnd(in);
+        if (end < 0) {
+            if (in.remaining() > MAX_INLINE_BYTES) {
+                throw new IllegalArgumentException("Inline command too long");
+            }
+            return null;
+        }
+        byte[] line = new byte[end - in.position()];
+        in.get(line);
+        in.position(end + 1);
+        List<byte[]> arguments = new ArrayList<>();
+        for (String argument : new String(line, StandardCharsets.UTF_8).trim().split("\\s+")) {
+            if (!argument.isEmpty()) {
+                arguments.add(argument.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        // An empty line decodes to no arguments, which is skipped rather than answered
+        return arguments;
+    }
+
+    /**
+     * Reads a decimal number terminated by CRLF.
+     * @return null if the terminator has not arrived yet.
+     */
+    private static Long readLong(ByteBuffer in) {
+        int end = indexOfLineEnd(in);
+        if (end < 0) {
+            if (in.remaining() > 32) {
+                throw new IllegalArgumentException("Length line too long");
+            }
+            return null;
+        }
+        int lineEnd = end > in.position() && in.get(end - 1) == '\r' ? end - 1 : end;
+        byte[] digits = new byte[lineEnd - in.position()];
+        in.get(digits);
+        in.position(end + 1);
+        try {
+            return Long.parseLong(new String(digits, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid length " + new String(digits, StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * @return The index of the next '\n', or -1.
+     */
+    private static int indexOfLineEnd(ByteBuffer in) {
+        for (int i = in.position(); i < in.limit(); i++) {
+            if (in.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // ---- Replies ----
+
+    public static byte[] simple(String value) {
+        return line('+', value);
+    }
+
+    public static byte[] error(String message) {
+        // Error lines cannot span lines
+        return line('-', message.replace('\r', ' ').replace('\n', ' '));
+    }
+
+    public static byte[] integer(long value) {
+        return line(':', Long.toString(value));
+    }
+
+    public static byte[] bulk(byte[] value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(value.length + 16);
+        out.writeBytes(line('$', Integer.toString(value.length)));
+        out.writeBytes(value);
+        out.writeBytes(CRLF);
+        return out.toByteArray();
+    }
+
+    public static byte[] bulk(String value) {
+        return bulk(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static byte[] nullValue(int protocol) {
+        return protocol >= 3 ? line('_', "") : line('$', "-1");
+    }
+
+    public static byte[] array(List<byte[]> elements) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(line('*', Integer.toString(elements.size())));
+        elements.forEach(out::writeBytes);
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a map, which RESP2 represents as an array of alternating keys and values.
+     */
+    public static byte[] map(int protocol, Map<String, byte[]> entries) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(protocol >= 3 ? line('%', Integer.toString(entries.size())) : line('*', Integer.toString(entries.size() * 2)));
+        entries.forEach((key, value) -> {
+            out.writeBytes(bulk(key));
+            out.writeBytes(value);
+        });
+        return out.toByteArray();
+    }
+
+    private static byte[] line(char type, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        byte[] line = new byte[1 + bytes.length + CRLF.length];
+        line[0] = (byte) type;
+        System.arraycopy(bytes, 0, line, 1, bytes.length);
+        line[line.length - 2] = '\r';
+        line[line.length - 1] = '\n';
+        return line;
+    }
+}
@@ -0,0 +1,397 @@
+package nisran.transport;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nisran.config.AWS_SDKConfig;
+import nisran.discovery.ReadinessService;
+import nisran.router.AdaptiveConcurrencyLimiter;
+import nisran.router.DeadlineExceededException;
+import nisran.router.ExpiringValue;
+import nisran.router.LeaseUnavailableException;
+import nisran.router.LoadShedder;
+import nisran.router.QuorumRWService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves cache clients speaking RESP2 or RESP3, such as redis-cli and Redis client libraries,
+ * alongside the HTTP API.
+ *
+ * GET, SET, MGET, MSET, DEL and EXPIRE take the same quorum path as the HTTP endpoints, and are
+ * subject to the same readiness gate and client load shedding; they run on worker threads, off
+ * the event loop. Keys and values are binary-safe: keys are read as ISO-8859-1, and values are
+ * stored as strings when they are valid UTF-8 and as Base64 otherwise. A value written over HTTP
+ * that is not a string is read back as its JSON. Deletes and expiry are stored as
+ * {@link ExpiringValue}s, so that they replicate like any write. HELLO switches a connection to
+ * RESP3.
+ */
+@Service("respFrontEnd")
+@Profile("cluster")
+@DependsOn("quorumReaderWriter")
+public class RespFrontEnd implements RespServer.CommandHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RespFrontEnd.class);
+    private static final byte[] OK = RespCodec.simple("OK");
+    /** Key of the map a value that is not valid UTF-8 is stored as. */
+    static final String BYTES = "@base64";
+    private static final Pattern STATUS = Pattern.compile("is \\{(-?\\d+)\\}$");
+
+    private final QuorumRWService quorumRWService;
+    private final ReadinessService readinessService;
+    private final LoadShedder loadShedder;
+    private final ObjectMapper objectMapper;
+    private final AWS_SDKConfig awsConfig;
+
+    private RespServer server;
+    private ExecutorService workers;
+
+    public RespFrontEnd(QuorumRWService quorumRWService, ReadinessService readinessService, LoadShedder loadShedder,
+                        ObjectMapper objectMapper, AWS_SDKConfig awsConfig) {
+        this.quorumRWService = quorumRWService;
+        this.readinessService = readinessService;
+        this.loadShedder = loadShedder;
+        this.objectMapper = objectMapper;
+        this.awsConfig = awsConfig;
+    }
+
+    @PostConstruct
+    private void start() throws IOException {
+        if (!awsConfig.isRespEnabled()) {
+            return;
+        }
+        workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "Resp-Worker");
+            t.setDaemon(true);
+            return t;
+        });
+        server = new RespServer(awsConfig.getRespPort(), awsConfig.getRespMaxRequestBytes(), awsConfig.getRespMaxPipeline(), this);
+        server.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (server != null) {
+            server.stop();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    @Override
+    public CompletableFuture<byte[]> handle(RespServer.Session session, List<byte[]> command) {
+        String name = latin1(command.get(0)).toUpperCase(Locale.ROOT);
+        switch (name) {
+            case "PING":
+                return done(command.size() > 1 ? RespCodec.bulk(command.get(1)) : RespCodec.simple("PONG"));
+            case "ECHO":
+                return done(command.size() == 2 ? RespCodec.bulk(command.get(1)) : wrongArguments(name));
+            case "HELLO":
+                return done(hello(session, command));
+            case "QUIT":
+                session.close();
+                return done(OK);
+            case "SELECT":
+                return done(command.size() == 2 && "0".equals(latin1(command.get(1))) ? OK : RespCodec.error("ERR only database 0 exists"));
+            case "COMMAND":
+            case "CLIENT":
+                // Sent by client libraries when they connect; nothing to report or configure
+                return done(name.equals("COMMAND") ? RespCodec.array(List.of()) : OK);
+            case "GET":
+            case "SET":
+            case "MGET":
+            case "MSET":
+            case "DEL":
+            case "EXPIRE":
+                return admit(session, name, command);
+            default:
+                return done(RespCodec.error("ERR unknown command '" + name + "'"));
+        }
+    }
+
+    private byte[] hello(RespServer.Session session, List<byte[]> command) {
+        int protocol = session.getProtocol();
+        if (command.size() > 1) {
+            try {
+                protocol = Integer.parseInt(latin1(command.get(1)));
+            } catch (NumberFormatException e) {
+                return RespCodec.error("ERR Protocol version is not an integer or out of range");
+            }
+            if (protocol != 2 && protocol != 3) {
+                return RespCodec.error("NOPROTO unsupported protocol version");
+            }
+            if (command.size() > 2) {
+                return RespCodec.error("ERR HELLO options are not supported");
+            }
+        }
+        session.setProtocol(protocol);
+        Map<String, byte[]> info = new LinkedHashMap<>();
+        info.put("server", RespCodec.bulk("nisran-cache"));
+        info.put("proto", RespCodec.integer(protocol));
+        info.put("mode", RespCodec.bulk("cluster"));
+        info.put("role", RespCodec.bulk("master"));
+        return RespCodec.map(protocol, info);
+    }
+
+    /**
+     * Runs a data command on a worker thread once the node is started and, with load shedding,
+     * under a client permit. The reply is written by the event loop when it completes.
+     */
+    private CompletableFuture<byte[]> admit(RespServer.Session session, String name, List<byte[]> command) {
+        if (!readinessService.isStarted()) {
+            return done(RespCodec.error("LOADING node is starting"));
+        }
+        readinessService.onRequest();
+        int protocol = session.getProtocol();
+        if (!loadShedder.isEnabled()) {
+            return dispatch(protocol, name, command);
+        }
+        AdaptiveConcurrencyLimiter.Permit permit = loadShedder.tryAcquire(false);
+        if (permit == null) {
+            return done(RespCodec.error("TRYAGAIN overloaded"));
+        }
+        try {
+            return dispatch(protocol, name, command).whenComplete((reply, error) -> permit.release());
+        } catch (RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+    }
+
+    private CompletableFuture<byte[]> dispatch(int protocol, String name, List<byte[]> command) {
+        return answer(CompletableFuture.supplyAsync(() -> execute(protocol, name, command), workers).thenCompose(reply -> reply));
+    }
+
+    private CompletableFuture<byte[]> execute(int protocol, String name, List<byte[]> command) {
+        switch (name) {
+            case "GET":
+                if (command.size() != 2) {
+                    return done(wrongArguments(name));
+                }
+                return quorumRWService.quorumReadAsync(latin1(command.get(1))).thenApply(value -> encode(value, protocol));
+            case "SET": {
+                if (command.size() < 3) {
+                    return done(wrongArguments(name));
+                }
+                long ttlMillis = 0;
+                for (int i = 3; i < command.size(); i++) {
+                    String option = latin1(command.get(i)).toUpperCase(Locale.ROOT);
+                    if (!(option.equals("EX") || option.equals("PX")) || ttlMillis > 0 || i + 1 == command.size()) {
+                        return done(RespCodec.error("ERR SET option " + option + " is not supported"));
+                    }
+                    Long time = parseLong(command.get(++i));
+                    if (time == null) {
+                        return done(RespCodec.error("ERR value is not an integer or out of range"));
+                    }
+                    ttlMillis = option.equals("EX") ? millis(time) : time;
+                    if (ttlMillis <= 0) {
+                        return done(RespCodec.error("ERR invalid expire time in 'set' command"));
+                    }
+                }
+                Object value = decodeValue(command.get(2));
+                return write(latin1(command.get(1)), ttlMillis > 0 ? ExpiringValue.of(value, expiresAt(ttlMillis)) : value)
+                        .thenApply(written -> OK);
+            }
+            case "MGET": {
+                if (command.size() < 2) {
+                    return done(wrongArguments(name));
+                }
+                List<CompletableFuture<byte[]>> reads = new ArrayList<>(command.size() - 1);
+                for (int i = 1; i < command.size(); i++) {
+                    reads.add(quorumRWService.quorumReadAsync(latin1(command.get(i))).thenApply(value -> encode(value, protocol)));
+                }
+                return CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+                    List<byte[]> values = new ArrayList<>(reads.size());
+                    reads.forEach(read -> values.add(read.join()));
+                    return RespCodec.array(values);
+                });
+            }
+            case "MSET": {
+                if (command.size() < 3 || command.size() % 2 == 0) {
+                    return done(wrongArguments(name));
+                }
+                List<CompletableFuture<Void>> writes = new ArrayList<>(command.size() / 2);
+                for (int i = 1; i < command.size(); i += 2) {
+                    writes.add(write(latin1(command.get(i)), decodeValue(command.get(i + 1))));
+                }
+                return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).thenApply(done -> OK);
+            }
+            case "DEL": {
+                if (command.size() < 2) {
+                    return done(wrongArguments(name));
+                }
+                // The tombstone is written even if the read finds nothing, since a replica the read
+                // did not reach may still hold the key; only the count depends on the read
+                List<CompletableFuture<Boolean>> deletes = new ArrayList<>(command.size() - 1);
+                for (int i = 1; i < command.size(); i++) {
+                    String key = latin1(command.get(i));
+                    deletes.add(quorumRWService.quorumReadAsync(key).thenCompose(value ->
+                            write(key, ExpiringValue.tombstone(System.currentTimeMillis())).thenApply(written -> value != null)));
+                }
+                return CompletableFuture.allOf(deletes.toArray(new CompletableFuture<?>[0]))
+                        .thenApply(done -> RespCodec.integer(deletes.stream().filter(CompletableFuture::join).count()));
+            }
+            case "EXPIRE": {
+                if (command.size() != 3) {
+                    return done(wrongArguments(name));
+                }
+                Long seconds = parseLong(command.get(2));
+                if (seconds == null) {
+                    return done(RespCodec.error("ERR value is not an integer or out of range"));
+                }
+                String key = latin1(command.get(1));
+                // Not atomic with writes of the key made in between the read and the write
+                return quorumRWService.quorumReadAsync(key).thenCompose(value -> {
+                    if (value == null) {
+                        return done(RespCodec.integer(0));
+                    }
+                    Object stored = seconds <= 0 ? ExpiringValue.tombstone(System.currentTimeMillis())
+                            : ExpiringValue.of(value, expiresAt(millis(seconds)));
+                    return write(key, stored).thenApply(written -> RespCodec.integer(1));
+                });
+            }
+            default:
+                throw new IllegalStateException("Not a data command: " + name);
+        }
+    }
+
+    /**
+     * @return A future failed with {@link IllegalStateException} unless every response of the
+     *         quorum write reports success.
+     */
+    private CompletableFuture<Void> write(String key, Object value) {
+        return quorumRWService.quorumWriteAsync(key, value).thenAccept(responses -> {
+            String failure = failure(responses);
+            if (failure != null) {
+                throw new IllegalStateException("write of key " + key + " failed: " + failure);
+            }
+        });
+    }
+
+    /**
+     * @return The first response of a quorum write that does not report success, or null. The
+     *         local write reports "Success", an asynchronous replica "Queued", and a synchronous
+     *         or forwarded write its HTTP status.
+     */
+    static String failure(List<String> responses) {
+        for (String response : responses) {
+            if (response.startsWith("Success") || response.startsWith("Queued")) {
+                continue;
+            }
+            Matcher status = STATUS.matcher(response);
+            if (status.find()) {
+                int code = Integer.parseInt(status.group(1));
+                if (code >= 200 && code < 300) {
+                    continue;
+                }
+            }
+            return response;
+        }
+        return null;
+    }
+
+    /**
+     * Turns the exceptions of the quorum path into error replies.
+     */
+    private CompletableFuture<byte[]> answer(CompletableFuture<byte[]> reply) {
+        return reply.exceptionally(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof LeaseUnavailableException) {
+                return RespCodec.error("TRYAGAIN " + cause.getMessage());
+            }
+            if (cause instanceof DeadlineExceededException) {
+                return RespCodec.error("ERR deadline exceeded: " + cause.getMessage());
+            }
+            logger.warn("RESP command failed: {}", String.valueOf(cause.getMessage()));
+            return RespCodec.error("ERR " + cause.getMessage());
+        });
+    }
+
+    private byte[] encode(Object value, int protocol) {
+        if (value == null) {
+            return RespCodec.nullValue(protocol);
+        }
+        if (value instanceof String) {
+            return RespCodec.bulk((String) value);
+        }
+        if (value instanceof Map<?, ?> map && map.size() == 1 && map.get(BYTES) instanceof String encoded) {
+            try {
+                return RespCodec.bulk(Base64.getDecoder().decode(encoded));
+            } catch (IllegalArgumentException e) {
+                // Not written by this front end; read back as its JSON
+            }
+        }
+        try {
+            return RespCodec.bulk(objectMapper.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            return RespCodec.error("ERR value cannot be encoded: " + e.getMessage());
+        }
+    }
+
+    private static byte[] wrongArguments(String name) {
+        return RespCodec.error("ERR wrong number of arguments for '" + name.toLowerCase(Locale.ROOT) + "' command");
+    }
+
+    private static CompletableFuture<byte[]> done(byte[] reply) {
+        return CompletableFuture.completedFuture(reply);
+    }
+
+    /**
+     * @return The value a bulk string is stored as: a string if it is valid UTF-8, otherwise a
+     *         map holding it as Base64.
+     */
+    static Object decodeValue(byte[] bytes) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+        } catch (CharacterCodingException e) {
+            return Map.of(BYTES, Base64.getEncoder().encodeToString(bytes));
+        }
+    }
+
+    private static Long parseLong(byte[] bytes) {
+        try {
+            return Long.parseLong(latin1(bytes));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long millis(long seconds) {
+        return seconds > Long.MAX_VALUE / 1000 ? Long.MAX_VALUE : seconds * 1000;
+    }
+
+    private static long expiresAt(long ttlMillis) {
+        return System.currentTimeMillis() + Math.min(ttlMillis, Long.MAX_VALUE / 2);
+    }
+
+    /**
+     * Keys and command names are read one char per byte, which is lossless.
+     */
+    private static String latin1(byte[] bytes) {
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,338 @@
+package nisran.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking server for clients speaking RESP, the Redis protocol.
+ *
+ * Like {@link TransportServer}, a single event-loop thread accepts connections, reads and writes,
+ * and replies may complete on any thread. Clients may pipeline: every command in a read is
+ * dispatched at once, and replies are written in the order of the commands, each as soon as it
+ * and all before it are complete, so a pipeline of local reads is answered with one write. A
+ * connection stops being read while {@code maxPipeline} replies are outstanding.
+ */
+public class RespServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RespServer.class);
+    private static final int INITIAL_BUFFER_BYTES = 16 * 1024;
+
+    /**
+     * Executes one command and produces its encoded reply.
+     */
+    public interface CommandHandler {
+        CompletableFuture<byte[]> handle(Session session, List<byte[]> command);
+    }
+
+    /**
+     * Per-connection state visible to the handler. Only the event loop calls the handler.
+     */
+    public static final class Session {
+        private int protocol = 2;
+        private boolean closing;
+
+        public int getProtocol() {
+            return protocol;
+        }
+
+        public void setProtocol(int protocol) {
+            this.protocol = protocol;
+        }
+
+        /**
+         * Closes the connection once the replies so far are written.
+         */
+        public void close() {
+            closing = true;
+        }
+    }
+
+    private final int port;
+    private final int maxRequestBytes;
+    private final int maxPipeline;
+    private final CommandHandler handler;
+    private final Queue<Connection> pendingWrites;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread eventLoop;
+    private volatile boolean running;
+
+    public RespServer(int port, int maxRequestBytes, int maxPipeline, CommandHandler handler) {
+        this.port = port;
+        this.maxRequestBytes = maxRequestBytes;
+        this.maxPipeline = maxPipeline;
+        this.handler = handler;
+        this.pendingWrites = new ConcurrentLinkedQueue<>();
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+
+        eventLoop = new Thread(this::runEventLoop, "Resp-EventLoop");
+        eventLoop.setDaemon(true);
+        eventLoop.start();
+        logger.info("RESP listener on port {}", getLocalPort());
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (eventLoop != null) {
+            try {
+                eventLoop.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("RESP listener stopped.");
+    }
+
+    /**
+     * Returns the bound port, which differs from the configured one when that was 0.
+     */
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void runEventLoop() {
+        try {
+            while (running) {
+                selector.select();
+
+                Connection pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    pending.flush();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            logger.error("RESP event loop failed", e);
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+        logger.debug("Accepted RESP connection from {}", channel.getRemoteAddress());
+    }
+
+    private void closeQuietly() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            logger.debug("Error while closing RESP listener", e);
+        }
+    }
+
+    /**
+     * Per-connection state. Only the event loop calls read() and flush().
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final Session session = new Session();
+        private final Deque<CompletableFuture<byte[]>> replies = new ArrayDeque<>(); // In command order
+        private final Deque<ByteBuffer> outbound = new ArrayDeque<>();
+        private ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() {
+            try {
+                while (replies.size() < maxPipeline && !session.closing) {
+                    if (!in.hasRemaining() && !grow()) {
+                        fail("Request exceeds " + maxRequestBytes + " bytes");
+                        return;
+                    }
+                    int read = channel.read(in);
+                    if (read < 0) {
+                        close();
+                        return;
+                    }
+                    dispatchBuffered();
+                    if (read == 0) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("Closing RESP connection after read failure: {}", e.getMessage());
+                close();
+                return;
+            } catch (IllegalArgumentException e) {
+                fail("Protocol error: " + e.getMessage());
+                return;
+            }
+            flush();
+        }
+
+        /**
+         * Dispatches the complete commands in the input buffer, up to the pipeline limit.
+         */
+        private void dispatchBuffered() {
+            in.flip();
+            try {
+                List<byte[]> command;
+                while (replies.size() < maxPipeline && !session.closing
+                        && (command = RespCodec.decode(in, maxRequestBytes)) != null) {
+                    if (!command.isEmpty()) {
+                        dispatch(command);
+                    }
+                }
+            } finally {
+                in.compact();
+            }
+        }
+
+        private void dispatch(List<byte[]> command) {
+            CompletableFuture<byte[]> reply;
+            try {
+                reply = handler.handle(session, command);
+            } catch (RuntimeException e) {
+                reply = CompletableFuture.completedFuture(RespCodec.error("ERR " + e.getMessage()));
+            }
+            replies.add(reply);
+            if (!reply.isDone()) {
+                reply.whenComplete((result, error) -> {
+                    pendingWrites.add(this);
+                    selector.wakeup();
+                });
+            }
+        }
+
+        private boolean grow() {
+            if (in.capacity() >= maxRequestBytes) {
+                return false;
+            }
+            ByteBuffer larger = ByteBuffer.allocate((int) Math.min((long) in.capacity() * 2, maxRequestBytes));
+            in.flip();
+            larger.put(in);
+            in = larger;
+            return true;
+        }
+
+        void flush() {
+            if (!channel.isOpen() || !key.isValid()) {
+                return;
+            }
+            try {
+                CompletableFuture<byte[]> head;
+                while ((head = replies.peek()) != null && head.isDone()) {
+                    replies.poll();
+                    byte[] reply;
+                    try {
+                        reply = head.join();
+                    } catch (RuntimeException e) {
+                        Throwable cause = e.getCause() != null ? e.getCause() : e;
+                        reply = RespCodec.error("ERR " + cause.getMessage());
+                    }
+                    outbound.add(ByteBuffer.wrap(reply));
+                }
+                while (!outbound.isEmpty()) {
+                    channel.write(outbound.toArray(new ByteBuffer[0]));
+                    while (!outbound.isEmpty() && !outbound.peek().hasRemaining()) {
+                        outbound.poll();
+                    }
+                    if (!outbound.isEmpty()) {
+                        key.interestOps(SelectionKey.OP_WRITE);
+                        return; // Socket buffer full, continue when writable
+                    }
+                }
+                if (session.closing && replies.isEmpty()) {
+                    close();
+                    return;
+                }
+                key.interestOps(replies.size() < maxPipeline ? SelectionKey.OP_READ : 0);
+                if (replies.size() < maxPipeline && in.position() > 0 && !session.closing) {
+                    // Commands left in the buffer when the pipeline was full
+                    dispatchBuffered();
+                    if (replies.peek() != null && replies.peek().isDone()) {
+                        flush();
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                fail("Protocol error: " + e.getMessage());
+            } catch (IOException e) {
+                logger.debug("Closing RESP connection after write failure: {}", e.getMessage());
+                close();
+            }
+        }
+
+        /**
+         * Answers with an error and closes, as the rest of the input cannot be framed.
+         */
+        private void fail(String message) {
+            replies.add(CompletableFuture.completedFuture(RespCodec.error("ERR " + message)));
+            session.close();
+            flush();
+        }
+
+        private void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Error while closing RESP connection", e);
+            }
+        }
+    }
+}
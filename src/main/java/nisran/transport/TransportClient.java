@@ -0,0 +1,225 @@
+package nisran.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side of the inter-node transport.
+ *
+ * Keeps one persistent connection per peer. Requests are written as soon as they are issued
+ * and matched to replies by request id, so any number of requests can be pipelined on the
+ * connection. A dedicated reader thread per connection completes the waiting futures.
+ *
+ * Connections are opened on a connector thread, never by the caller, and each peer has its own
+ * pending connection that its requests wait on, so an unreachable peer delays only its own
+ * requests. After a failed attempt, requests to the peer fail at once until a retry time that
+ * doubles with every consecutive failure.
+ */
+public class TransportClient implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransportClient.class);
+
+    private static final long MIN_RETRY_MILLIS = 100;
+    private static final long MAX_RETRY_MILLIS = 5000;
+
+    private static final class Backoff {
+        final int failures;
+        final long retryAt; // System.nanoTime() before which the peer is not dialled again
+
+        Backoff(int failures, long retryAt) {
+            this.failures = failures;
+            this.retryAt = retryAt;
+        }
+    }
+
+    private final int connectTimeoutMillis;
+    private final Map<String, CompletableFuture<PeerConnection>> connections;
+    private final Map<String, Backoff> backoffs;
+    private final ExecutorService connector;
+    private final AtomicLong requestIds;
+
+    public TransportClient(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.connections = new ConcurrentHashMap<>();
+        this.backoffs = new ConcurrentHashMap<>();
+        this.connector = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "Transport-Connector");
+            t.setDaemon(true);
+            return t;
+        });
+        this.requestIds = new AtomicLong();
+    }
+
+    /**
+     * Sends a request to a peer.
+     * @param timeoutMillis Time after which the returned future fails with a TimeoutException.
+     *                      It is also sent to the peer as the request's deadline.
+     * @return A future completed with the reply frame.
+     */
+    public CompletableFuture<Frame> send(String host, int port, byte opcode, String key, ByteBuffer value, long timeoutMillis) {
+        long requestId = requestIds.incrementAndGet();
+        Frame request = Frame.request(opcode, requestId, (int) Math.min(Integer.MAX_VALUE, timeoutMillis), key, value);
+        return connectionTo(host, port).thenCompose(connection -> connection.send(request))
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the peer's open or pending connection, or starts a new one unless the last attempt
+     * failed less than its backoff ago. Only the peer's own map entry is locked meanwhile.
+     */
+    private CompletableFuture<PeerConnection> connectionTo(String host, int port) {
+        String address = host + ":" + port;
+        return connections.compute(address, (a, current) -> {
+            if (current != null && !current.isDone()) {
+                return current;
+            }
+            if (current != null && !current.isCompletedExceptionally() && current.join().isOpen()) {
+                return current;
+            }
+            Backoff backoff = backoffs.get(address);
+            if (current != null && backoff != null && System.nanoTime() < backoff.retryAt) {
+                return current;
+            }
+            return CompletableFuture.supplyAsync(() -> connect(address, host, port), connector);
+        });
+    }
+
+    private PeerConnection connect(String address, String host, int port) {
+        try {
+            PeerConnection connection = new PeerConnection(address, new InetSocketAddress(host, port));
+            backoffs.remove(address);
+            return connection;
+        } catch (IOException e) {
+            // Recorded before the future fails, so no request sees the failure without the backoff
+            Backoff backoff = backoffs.compute(address, (a, previous) -> {
+                int failures = previous == null ? 1 : previous.failures + 1;
+                return new Backoff(failures, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryMillis(failures)));
+            });
+            logger.warn("Could not connect to {}, retrying in {} ms: {}", address, retryMillis(backoff.failures), e.getMessage());
+            throw new CompletionException(e);
+        }
+    }
+
+    static long retryMillis(int failures) {
+        return Math.min(MAX_RETRY_MILLIS, MIN_RETRY_MILLIS << Math.min(failures - 1, 16));
+    }
+
+    @Override
+    public void close() {
+        connector.shutdownNow();
+        connections.values().forEach(connection -> connection.thenAccept(PeerConnection::close));
+        connections.clear();
+    }
+
+    private final class PeerConnection {
+        private final String address;
+        private final SocketChannel channel;
+        private final Map<Long, CompletableFuture<Frame>> pending = new ConcurrentHashMap<>();
+        private volatile boolean open = true;
+
+        PeerConnection(String address, InetSocketAddress remote) throws IOException {
+            this.address = address;
+            this.channel = SocketChannel.open();
+            try {
+                channel.socket().connect(remote, connectTimeoutMillis);
+                channel.socket().setTcpNoDelay(true);
+                channel.socket().setKeepAlive(true);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            Thread reader = new Thread(this::readLoop, "Transport-Reader-" + address);
+            reader.setDaemon(true);
+            reader.start();
+            logger.info("Opened inter-node connection to {}", address);
+        }
+
+        boolean isOpen() {
+            return open;
+        }
+
+        CompletableFuture<Frame> send(Frame request) {
+            CompletableFuture<Frame> future = new CompletableFuture<>();
+            pending.put(request.getRequestId(), future);
+            // A timed out or cancelled request must not leave its slot behind
+            future.whenComplete((reply, error) -> pending.remove(request.getRequestId()));
+            try {
+                ByteBuffer[] buffers = FrameCodec.encode(request);
+                synchronized (channel) {
+                    while (FrameCodec.hasRemaining(buffers)) {
+                        channel.write(buffers);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+                if (e instanceof IOException) {
+                    close();
+                }
+            }
+            return future;
+        }
+
+        private void readLoop() {
+            ByteBuffer lengthBuffer = ByteBuffer.allocate(FrameCodec.LENGTH_FIELD_BYTES);
+            try {
+                while (open) {
+                    readFully(lengthBuffer);
+                    lengthBuffer.flip();
+                    ByteBuffer body = ByteBuffer.allocate(FrameCodec.checkFrameLength(lengthBuffer.getInt()));
+                    lengthBuffer.clear();
+                    readFully(body);
+                    body.flip();
+
+                    Frame reply = FrameCodec.decode(body);
+                    CompletableFuture<Frame> future = pending.remove(reply.getRequestId());
+                    if (future != null) {
+                        future.complete(reply);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (open) {
+                    logger.warn("Inter-node connection to {} failed: {}", address, e.getMessage());
+                }
+            } finally {
+                close();
+            }
+        }
+
+        private void readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Connection closed by peer");
+                }
+            }
+        }
+
+        void close() {
+            if (!open) {
+                return;
+            }
+            open = false;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Error while closing inter-node connection to {}", address, e);
+            }
+            IOException failure = new IOException("Inter-node connection to " + address + " closed");
+            pending.values().forEach(future -> future.completeExceptionally(failure));
+            pending.clear();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package nisran.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Non-blocking server side of the inter-node transport.
+ *
+ * A single event-loop thread accepts connections, reads length-prefixed frames and writes
+ * replies. Requests are passed to a {@link FrameHandler}; replies may complete on any thread
+ * and are handed back to the event loop, which is the only thread touching the sockets.
+ */
+public class TransportServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransportServer.class);
+
+    /**
+     * Processes one request frame and produces its reply.
+     */
+    public interface FrameHandler {
+        CompletableFuture<Frame> handle(Frame request);
+    }
+
+    private final int port;
+    private final FrameHandler handler;
+    private final Queue<Connection> pendingWrites;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread eventLoop;
+    private volatile boolean running;
+
+    public TransportServer(int port, FrameHandler handler) {
+        this.port = port;
+        this.handler = handler;
+        this.pendingWrites = new ConcurrentLinkedQueue<>();
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+
+        eventLoop = new Thread(this::runEventLoop, "Transport-EventLoop");
+        eventLoop.setDaemon(true);
+        eventLoop.start();
+        logger.info("Inter-node transport listening on port {}", getLocalPort());
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (eventLoop != null) {
+            try {
+                eventLoop.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("Inter-node transport stopped.");
+    }
+
+    /**
+     * Returns the bound port, which differs from the configured one when that was 0.
+     */
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void runEventLoop() {
+        try {
+            while (running) {
+                selector.select();
+
+                Connection pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    pending.flush();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            logger.error("Inter-node transport event loop failed", e);
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+        logger.debug("Accepted inter-node connection from {}", channel.getRemoteAddress());
+    }
+
+    private void closeQuietly() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            logger.debug("Error while closing inter-node transport", e);
+        }
+    }
+
+    /**
+     * Per-connection read and write state. Only the event loop calls read() and flush().
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ByteBuffer lengthBuffer = ByteBuffer.allocate(FrameCodec.LENGTH_FIELD_BYTES);
+        private final Queue<ByteBuffer[]> outbound = new ConcurrentLinkedQueue<>();
+        private ByteBuffer body;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() {
+            try {
+                while (true) {
+                    if (body == null) {
+                        if (channel.read(lengthBuffer) < 0) {
+                            close();
+                            return;
+                        }
+                        if (lengthBuffer.hasRemaining()) {
+                            return;
+                        }
+                        lengthBuffer.flip();
+                        // Each frame gets its own buffer so decoded values can be sliced without copying
+                        body = ByteBuffer.allocate(FrameCodec.checkFrameLength(lengthBuffer.getInt()));
+                        lengthBuffer.clear();
+                    }
+                    if (channel.read(body) < 0) {
+                        close();
+                        return;
+                    }
+                    if (body.hasRemaining()) {
+                        return;
+                    }
+                    body.flip();
+                    dispatch(FrameCodec.decode(body));
+                    body = null;
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Closing inter-node connection after read failure: {}", e.getMessage());
+                close();
+            }
+        }
+
+        private void dispatch(Frame request) {
+            CompletableFuture<Frame> reply;
+            try {
+                reply = handler.handle(request);
+            } catch (RuntimeException e) {
+                reply = CompletableFuture.completedFuture(request.error(e.getMessage()));
+            }
+            reply.whenComplete((response, error) -> {
+                Frame frame = error == null ? response : request.error(error.getMessage());
+                outbound.add(FrameCodec.encode(frame));
+                pendingWrites.add(this);
+                selector.wakeup();
+            });
+        }
+
+        void flush() {
+            if (!channel.isOpen() || !key.isValid()) {
+                return;
+            }
+            try {
+                ByteBuffer[] buffers;
+                while ((buffers = outbound.peek()) != null) {
+                    channel.write(buffers);
+                    if (FrameCodec.hasRemaining(buffers)) {
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return; // Socket buffer full, continue when writable
+                    }
+                    outbound.poll();
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            } catch (IOException e) {
+                logger.warn("Closing inter-node connection after write failure: {}", e.getMessage());
+                close();
+            }
+        }
+
+        private void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Error while closing inter-node connection", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package nisran;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddedCacheNodeTest {
+
+    @Test
+    public void testTwoNodesReadEachOthersWrites() throws IOException {
+        int portA = freePort();
+        int portB = freePort();
+        String members = "127.0.0.1:" + portA + ",127.0.0.1:" + portB;
+        try (EmbeddedCacheNode a = EmbeddedCacheNode.start(settings(portA, members));
+             EmbeddedCacheNode b = EmbeddedCacheNode.start(settings(portB, members))) {
+            // With a single replica, half of the keys are only reachable over the transport
+            String remoteKey = null;
+            for (int i = 0; remoteKey == null; i++) {
+                if (b.owns("key-" + i)) {
+                    remoteKey = "key-" + i;
+                }
+            }
+            assertFalse(a.owns(remoteKey));
+
+            List<String> responses = a.set(remoteKey, Map.of("n", 1));
+            assertTrue(responses.get(0).startsWith("Success"), responses.toString());
+            assertEquals(Map.of("n", 1), b.get(remoteKey));
+            assertEquals(Map.of("n", 1), a.get(remoteKey));
+
+            b.set("in-process", "value");
+            assertEquals("value", a.get("in-process"));
+            assertNull(a.get("missing"));
+        }
+    }
+
+    @Test
+    public void testRejectsUnsupportedProperties() {
+        assertThrows(IllegalArgumentException.class, () -> EmbeddedCacheNode.start(Map.of("server.port", 8080)));
+    }
+
+    private static Map<String, Object> settings(int port, String members) {
+        return Map.of(
+                "service.transport.port", port,
+                "service.discovery.static.members", members,
+                "server.virtual-nodes", 16,
+                "service.replication.factor", 1);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -4,6 +4,12 @@ import org.junit.jupiter.api.Test;
 
 //import nisran.cache.LRUCache;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class LRUCacheTest {
@@ -104,4 +110,143 @@ public class LRUCacheTest {
         assertEquals(1, cache.get("one"));
         assertEquals(2, cache.get("two"));
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testRemove() {
+        LRUCache<Integer, String> cache = new LRUCache<>(2);
+
+        cache.set(1, "One");
+        assertEquals("One", cache.remove(1));
+        assertNull(cache.get(1));
+        assertNull(cache.remove(1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testListenerSeesInsertUpdateAndEvict() {
+        LRUCache<Integer, String> cache = new LRUCache<>(1);
+        StringBuilder events = new StringBuilder();
+        cache.addListener(new CacheListener<Integer, String>() {
+            @Override
+            public void onInsert(Integer key, String value) { events.append("I").append(key); }
+            @Override
+            public void onUpdate(Integer key, String oldValue, String newValue) { events.append("U").append(key); }
+            @Override
+            public void onEvict(Integer key, String value) { events.append("E").append(key); }
+        });
+
+        cache.set(1, "One");
+        cache.set(1, "One Updated");
+        cache.set(2, "Two"); // Should evict key 1
+
+        assertEquals("I1U1E1I2", events.toString());
+    }
+
+    @Test
+    public void testSnapshotIsInRecencyOrder() {
+        LRUCache<Integer, String> cache = new LRUCache<>(3);
+        cache.set(1, "One");
+        cache.set(2, "Two");
+        cache.set(3, "Three");
+        cache.get(1);
+
+        assertEquals(List.of(1, 3, 2), new ArrayList<>(cache.snapshot().keySet()));
+    }
+
+    @Test
+    public void testSnapshotKeepsEntriesAsTheyWereWhenItStarted() {
+        LRUCache<Integer, String> cache = new LRUCache<>(5000);
+        for (int i = 0; i < 3000; i++) {
+            cache.set(i, "V" + i);
+        }
+        // Changes made after the snapshot's instant, before any entry is copied
+        Map<Integer, String> snapshot = cache.snapshot(() -> {
+            cache.set(1, "Changed");
+            cache.remove(2);
+            cache.set(3000, "New");
+            cache.get(0);
+        });
+
+        assertEquals(3000, snapshot.size());
+        assertEquals("V1", snapshot.get(1));
+        assertEquals("V2", snapshot.get(2));
+        assertFalse(snapshot.containsKey(3000));
+        assertEquals(List.of(1, 2, 0, 2999), new ArrayList<>(snapshot.keySet()).subList(0, 4));
+        assertEquals("Changed", cache.snapshot().get(1));
+    }
+
+    @Test
+    public void testRestoreFillsFromTheLeastRecentlyUsedEnd() {
+        LRUCache<Integer, String> cache = new LRUCache<>(3);
+        cache.set(1, "One");
+        Map<Integer, String> batch = new LinkedHashMap<>();
+        batch.put(2, "Two");
+        batch.put(1, "Stale"); // Keys already present win
+        batch.put(5, "Refused");
+        assertEquals(1, cache.restoreAll(batch, key -> key != 5));
+        batch.clear();
+        batch.put(3, "Three");
+        batch.put(4, "Four");
+        assertEquals(-1, cache.restoreAll(batch, key -> true)); // Full after the first
+
+        assertEquals("One", cache.get(1));
+        assertEquals(List.of(1, 2, 3), new ArrayList<>(cache.snapshot().keySet()));
+    }
+
+    @Test
+    public void testMissLoaderFillsAbsentKeys() {
+        LRUCache<Integer, String> cache = new LRUCache<>(3);
+        Function<Integer, String> first = key -> key == 1 ? "Loaded" : null;
+        cache.addMissLoader(first);
+        cache.addMissLoader(key -> key <= 2 ? "Fallback" : null);
+
+        assertEquals("Loaded", cache.get(1));
+        assertNull(cache.get(3));
+        assertEquals(1, cache.size());
+        cache.removeMissLoader(first);
+        cache.remove(1);
+        assertEquals("Fallback", cache.get(1));
+    }
+
+    @Test
+    public void testRemoveOfAbsentKeyDoesNotLoad() {
+        LRUCache<Integer, String> cache = new LRUCache<>(3);
+        List<Integer> removedAbsent = new ArrayList<>();
+        cache.addMissLoader(key -> { throw new AssertionError("Loaded " + key); });
+        cache.addListener(new CacheListener<>() {
+            @Override
+            public void onRemoveAbsent(Integer key) {
+                removedAbsent.add(key);
+            }
+        });
+
+        assertNull(cache.remove(2));
+        assertEquals(List.of(2), removedAbsent);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLoadedValueDoesNotOverwriteConcurrentWrite() {
+        LRUCache<Integer, String> cache = new LRUCache<>(3);
+        cache.addMissLoader(key -> {
+            cache.set(key, "Written"); // Lands while the key is being loaded
+            return "Loaded";
+        });
+
+        assertEquals("Written", cache.get(1));
+        assertEquals("Written", cache.get(1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testConditionalRemoveKeepsALaterWrite() {
+        LRUCache<String, Object> cache = new LRUCache<>(10);
+        Object first = new String("v");
+        cache.set("k", first);
+        cache.set("k", new String("v")); // Equal, but a later write
+
+        assertFalse(cache.remove("k", first));
+        assertTrue(cache.remove("k", cache.peek(List.of("k")).get("k")));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,160 @@
+package nisran.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import nisran.RingHash;
+import nisran.ServerInstance;
+import nisran.router.Topology;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SmartClientTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final Map<String, String> servedBy = new ConcurrentHashMap<>(); // key -> node
+    private volatile SortedMap<Integer, ServerInstance> ring = new TreeMap<>();
+
+    @AfterEach
+    public void stopServers() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    /**
+     * Builds a ring the way CacheRouter does.
+     */
+    private static SortedMap<Integer, ServerInstance> ringOf(List<ServerInstance> instances, int virtualNodes) {
+        SortedMap<Integer, ServerInstance> ring = new TreeMap<>();
+        for (ServerInstance instance : instances) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(RingHash.of(RingHash.virtualNodeName(instance.getNodeIdentifier(), i)), instance);
+            }
+        }
+        return ring;
+    }
+
+    private static ServerInstance ownerOn(SortedMap<Integer, ServerInstance> ring, String key) {
+        SortedMap<Integer, ServerInstance> tailMap = ring.tailMap(RingHash.of(key));
+        return tailMap.isEmpty() ? ring.get(ring.firstKey()) : tailMap.get(tailMap.firstKey());
+    }
+
+    /**
+     * Starts a node serving the topology and answering every cache request with "v".
+     */
+    private ServerInstance startNode() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ServerInstance instance = new ServerInstance("task-" + servers.size(), "127.0.0.1", server.getAddress().getPort());
+        server.createContext("/api/cluster/topology", exchange -> {
+            byte[] body = objectMapper.writeValueAsBytes(Topology.of(1, ring));
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/api/cache/", exchange -> {
+            String key = URLDecoder.decode(exchange.getRequestURI().getRawPath().substring("/api/cache/".length()),
+                    StandardCharsets.UTF_8);
+            servedBy.put(key, instance.getNodeIdentifier());
+            exchange.getResponseHeaders().add(Topology.RING_HEADER, Long.toString(RingHash.fingerprint(ring)));
+            byte[] body = "\"v\"".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        servers.add(server);
+        return instance;
+    }
+
+    @Test
+    public void testTopologyPlacesKeysLikeTheRouter() throws IOException {
+        List<ServerInstance> instances = List.of(new ServerInstance("task-1", "10.0.0.1", 8080),
+                new ServerInstance("task-2", "10.0.0.2", 8080), new ServerInstance("task-3", "10.0.0.3", 8080));
+        SortedMap<Integer, ServerInstance> routerRing = ringOf(instances, 16);
+        // As a client receives it
+        Topology topology = objectMapper.readValue(objectMapper.writeValueAsBytes(Topology.of(7, routerRing)), Topology.class);
+
+        assertEquals(3, topology.getNodes().size());
+        assertEquals(RingHash.fingerprint(routerRing), topology.getFingerprint());
+        for (int i = 0; i < 1000; i++) {
+            String key = "key-" + i;
+            assertEquals(ownerOn(routerRing, key).getNodeIdentifier(), topology.ownerOf(key).getId(), key);
+        }
+        assertNull(new Topology().ownerOf("key"));
+    }
+
+    @Test
+    public void testFingerprintIdentifiesTheRing() {
+        List<ServerInstance> two = List.of(new ServerInstance("task-1", "10.0.0.1", 8080),
+                new ServerInstance("task-2", "10.0.0.2", 8080));
+        List<ServerInstance> three = new ArrayList<>(two);
+        three.add(new ServerInstance("task-3", "10.0.0.3", 8080));
+
+        assertEquals(RingHash.fingerprint(ringOf(two, 8)), RingHash.fingerprint(ringOf(List.of(two.get(1), two.get(0)), 8)));
+        assertNotEquals(RingHash.fingerprint(ringOf(two, 8)), RingHash.fingerprint(ringOf(three, 8)));
+        assertNotEquals(RingHash.fingerprint(ringOf(two, 8)), RingHash.fingerprint(ringOf(two, 4)));
+    }
+
+    @Test
+    public void testRequestsGoToTheOwnerAndFollowRingChanges() throws Exception {
+        ServerInstance first = startNode();
+        ServerInstance second = startNode();
+        ring = ringOf(List.of(first), 8);
+
+        try (SmartClient client = new SmartClient(List.of(first.getNodeIdentifier()))) {
+            assertEquals("v", client.get("warm-up"));
+            assertEquals(RingHash.fingerprint(ring), client.getTopology().getFingerprint());
+
+            // The second node joins; the next response reports the new ring
+            ring = ringOf(List.of(first, second), 8);
+            client.get("warm-up");
+            for (int attempt = 0; attempt < 100 && client.getTopology().getFingerprint() != RingHash.fingerprint(ring); attempt++) {
+                Thread.sleep(20);
+            }
+            assertEquals(RingHash.fingerprint(ring), client.getTopology().getFingerprint());
+
+            for (int i = 0; i < 200; i++) {
+                String key = "key " + i;
+                assertEquals("v", client.get(key));
+                assertEquals(ownerOn(ring, key).getNodeIdentifier(), servedBy.get(key), key);
+            }
+        }
+    }
+
+    @Test
+    public void testUnreachableOwnerIsRetriedThroughAnotherNode() throws IOException {
+        ServerInstance first = startNode();
+        ServerInstance second = startNode();
+        ring = ringOf(List.of(first, second), 8);
+        String key = "key-0";
+        for (int i = 1; ownerOn(ring, key).equals(first); i++) {
+            key = "key-" + i;
+        }
+
+        try (SmartClient client = new SmartClient(List.of(first.getNodeIdentifier()))) {
+            client.getTopology();
+            servers.get(1).stop(0); // The owner of the key
+
+            assertEquals("v", client.get(key));
+            assertEquals(first.getNodeIdentifier(), servedBy.get(key));
+            assertEquals(1L, client.getMetrics().get("retries"));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package nisran.discovery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import nisran.ServerInstance;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class DiscoveryProviderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testParseMembers() {
+        List<ServerInstance> members = StaticDiscoveryProvider.parseMembers(
+                List.of("127.0.0.1:8081", " 127.0.0.1:8082@us-east-1b ", "", "node-3:9000@"));
+
+        assertEquals(3, members.size());
+        assertEquals("127.0.0.1:8081", members.get(0).getServiceId());
+        assertEquals(8081, members.get(0).getPort());
+        assertNull(members.get(0).getZone());
+        assertEquals("127.0.0.1", members.get(1).getIpAddress());
+        assertEquals("us-east-1b", members.get(1).getZone());
+        assertEquals("node-3", members.get(2).getIpAddress());
+        assertNull(members.get(2).getZone());
+    }
+
+    @Test
+    public void testParseMembersRejectsMissingPort() {
+        assertThrows(IllegalArgumentException.class, () -> StaticDiscoveryProvider.parseMembers(List.of("127.0.0.1")));
+        assertThrows(IllegalArgumentException.class, () -> StaticDiscoveryProvider.parseMembers(List.of("127.0.0.1:http")));
+    }
+
+    @Test
+    public void testStaticProvider() {
+        ServerInstance self = new ServerInstance("127.0.0.1:8081", "127.0.0.1", 8081, null);
+        StaticDiscoveryProvider provider = new StaticDiscoveryProvider(self,
+                StaticDiscoveryProvider.parseMembers(List.of("127.0.0.1:8081", "127.0.0.1:8082")));
+
+        assertEquals(self, provider.register());
+        assertEquals(2, provider.discoverInstances().size());
+    }
+
+    @Test
+    public void testFileProviderRereadsAndKeepsLastGoodList() throws Exception {
+        Path file = dir.resolve("members.txt");
+        Files.writeString(file, "# cluster\n127.0.0.1:8081\n127.0.0.1:8082\n");
+        FileDiscoveryProvider provider = new FileDiscoveryProvider(
+                new ServerInstance("127.0.0.1:8081", "127.0.0.1", 8081, null), file);
+
+        assertEquals(2, provider.discoverInstances().size());
+
+        Files.writeString(file, "127.0.0.1:8081\n127.0.0.1:8082\n127.0.0.1:8083\n");
+        assertEquals(3, provider.discoverInstances().size());
+
+        Files.writeString(file, "127.0.0.1:808x\n");
+        assertEquals(3, provider.discoverInstances().size());
+
+        Files.delete(file);
+        assertEquals(3, provider.discoverInstances().size());
+    }
+}
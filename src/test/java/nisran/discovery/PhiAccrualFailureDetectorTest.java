@@ -0,0 +1,90 @@
+package nisran.discovery;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhiAccrualFailureDetectorTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testPhiGrowsWithSilence() {
+        PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(100, 0, 100, 0, clock::get);
+        assertEquals(0.0, detector.phi());
+
+        for (int i = 0; i < 20; i++) {
+            detector.heartbeat();
+            clock.addAndGet(1_000);
+        }
+        // One interval of silence is normal
+        assertTrue(detector.phi() < 1, "phi " + detector.phi());
+
+        clock.addAndGet(1_000);
+        double afterTwo = detector.phi();
+        clock.addAndGet(2_000);
+        double afterFour = detector.phi();
+        assertTrue(afterTwo > 1, "phi " + afterTwo);
+        assertTrue(afterFour > afterTwo);
+        assertTrue(afterFour > 8, "phi " + afterFour);
+
+        detector.heartbeat();
+        assertTrue(detector.phi() < 1);
+    }
+
+    @Test
+    public void testAcceptablePauseDelaysSuspicion() {
+        PhiAccrualFailureDetector strict = new PhiAccrualFailureDetector(100, 0, 100, 0, clock::get);
+        PhiAccrualFailureDetector lenient = new PhiAccrualFailureDetector(100, 0, 100, 2_000, clock::get);
+        for (int i = 0; i < 10; i++) {
+            strict.heartbeat();
+            lenient.heartbeat();
+            clock.addAndGet(1_000);
+        }
+        clock.addAndGet(1_500);
+        assertTrue(strict.phi() > 8);
+        assertTrue(lenient.phi() < 1);
+    }
+
+    @Test
+    public void testBurstsBelowMinIntervalAreIgnored() {
+        PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(100, 500, 100, 0, clock::get);
+        detector.heartbeat();
+        for (int i = 0; i < 10; i++) {
+            clock.addAndGet(10);
+            detector.heartbeat();
+        }
+        // No interval has been recorded yet, so there is nothing to be suspicious about
+        assertEquals(0.0, detector.phi());
+        assertEquals(100, detector.millisSinceLastHeartbeat());
+    }
+
+    @Test
+    public void testCircuitBreakerLifecycle() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 1_000, clock::get);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertTrue(breaker.allowRequest());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        clock.addAndGet(1_000);
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // Only one probe at a time
+        assertFalse(breaker.allowRequest());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        clock.addAndGet(1_000);
+        assertTrue(breaker.allowRequest());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.trip();
+        assertFalse(breaker.allowRequest());
+    }
+}
@@ -0,0 +1,77 @@
+package nisran.discovery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import nisran.ServerInstance;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ServiceRegistrationTest {
+
+    private final ServerInstance self = new ServerInstance("task-1", "10.0.0.1", 8080);
+
+    private class FailingProvider implements DiscoveryProvider {
+        private final int failures;
+        final AtomicInteger attempts = new AtomicInteger();
+        final AtomicInteger deregistrations = new AtomicInteger();
+
+        FailingProvider(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public ServerInstance register() {
+            if (attempts.incrementAndGet() <= failures) {
+                throw new IllegalStateException("Namespace not found");
+            }
+            return self;
+        }
+
+        @Override
+        public List<ServerInstance> discoverInstances() {
+            return List.of(self);
+        }
+
+        @Override
+        public void deregister() {
+            deregistrations.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testFailedRegistrationIsRetried() throws Exception {
+        FailingProvider provider = new FailingProvider(1);
+        ServiceRegistration registration = new ServiceRegistration(provider);
+        registration.registerService();
+
+        assertSame(self, registration.getRegistration().get(5, TimeUnit.SECONDS));
+        assertEquals(1, registration.getFailedAttempts());
+        assertEquals(2, provider.attempts.get());
+
+        registration.unregisterService();
+        registration.unregisterService();
+        assertEquals(1, provider.deregistrations.get());
+    }
+
+    @Test
+    public void testShutdownStopsTheRetries() throws Exception {
+        FailingProvider provider = new FailingProvider(Integer.MAX_VALUE);
+        ServiceRegistration registration = new ServiceRegistration(provider);
+        registration.registerService();
+        for (int i = 0; i < 500 && registration.getFailedAttempts() == 0; i++) {
+            Thread.sleep(10);
+        }
+
+        registration.unregisterService();
+        assertThrows(ExecutionException.class, () -> registration.getRegistration().get(5, TimeUnit.SECONDS));
+        assertEquals(1, provider.attempts.get());
+        assertEquals(0, provider.deregistrations.get()); // Never registered
+    }
+}
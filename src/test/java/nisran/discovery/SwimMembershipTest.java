@@ -0,0 +1,126 @@
+package nisran.discovery;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SwimMembershipTest {
+
+    private static final long SUSPECT_TIMEOUT = 1000;
+
+    /** Delivers messages in-process; members in {@code down} do not answer. */
+    private final Map<String, SwimMembership> network = new HashMap<>();
+    private final Set<String> down = new HashSet<>();
+    private final AtomicLong now = new AtomicLong();
+
+    private final SwimMembership.Transport transport = (target, message, timeoutMillis) -> {
+        SwimMembership receiver = network.get(target.getAddress());
+        if (receiver == null || down.contains(target.getAddress())) {
+            return CompletableFuture.failedFuture(new RuntimeException("unreachable"));
+        }
+        return receiver.handle(message);
+    };
+
+    private SwimMembership start(String id, int port) {
+        GossipMember self = new GossipMember(id, "127.0.0.1", port, null, GossipMember.State.ALIVE, 1);
+        SwimMembership member = new SwimMembership(self, transport, live -> { }, now::get,
+                100, SUSPECT_TIMEOUT, 2, 8, new Random(port));
+        network.put(self.getAddress(), member);
+        return member;
+    }
+
+    private static Set<String> liveIds(SwimMembership member) {
+        return member.getLiveMembers().stream().map(GossipMember::getId).collect(Collectors.toSet());
+    }
+
+    private void rounds(int count, List<SwimMembership> members) {
+        for (int i = 0; i < count; i++) {
+            for (SwimMembership member : members) {
+                if (!down.contains(member.getSelf().getAddress())) {
+                    member.probe().join();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMembersJoinThroughStaticSeed() {
+        SwimMembership a = start("a", 7001);
+        SwimMembership b = start("b", 7002);
+        SwimMembership c = start("c", 7003);
+        GossipMember seed = GossipMember.seed("127.0.0.1", 7001);
+        b.sync(seed).join();
+        c.sync(seed).join();
+
+        rounds(5, List.of(a, b, c));
+
+        Set<String> all = Set.of("a", "b", "c");
+        assertEquals(all, liveIds(a));
+        assertEquals(all, liveIds(b));
+        assertEquals(all, liveIds(c));
+    }
+
+    @Test
+    public void testUnresponsiveMemberIsSuspectedThenRemoved() {
+        SwimMembership a = start("a", 7001);
+        SwimMembership b = start("b", 7002);
+        SwimMembership c = start("c", 7003);
+        GossipMember seed = GossipMember.seed("127.0.0.1", 7001);
+        b.sync(seed).join();
+        c.sync(seed).join();
+        rounds(3, List.of(a, b, c));
+
+        down.add("127.0.0.1:7003");
+        rounds(3, List.of(a, b));
+        assertTrue(a.getMembers().stream().anyMatch(m -> m.getId().equals("c") && m.getState() == GossipMember.State.SUSPECT));
+        assertTrue(liveIds(a).contains("c"), "suspects are still members");
+
+        now.addAndGet(SUSPECT_TIMEOUT);
+        rounds(3, List.of(a, b));
+        assertEquals(Set.of("a", "b"), liveIds(a));
+        assertEquals(Set.of("a", "b"), liveIds(b));
+    }
+
+    @Test
+    public void testSuspectedMemberRefutes() {
+        SwimMembership a = start("a", 7001);
+        SwimMembership b = start("b", 7002);
+        SwimMembership c = start("c", 7003);
+        GossipMember seed = GossipMember.seed("127.0.0.1", 7001);
+        b.sync(seed).join();
+        c.sync(seed).join();
+        rounds(3, List.of(a, b, c));
+
+        // c is briefly unreachable, then comes back before the suspicion expires
+        down.add("127.0.0.1:7003");
+        rounds(3, List.of(a, b));
+        down.remove("127.0.0.1:7003");
+        rounds(5, List.of(a, b, c));
+        now.addAndGet(SUSPECT_TIMEOUT);
+        rounds(3, List.of(a, b, c));
+
+        assertTrue(c.getSelf().getIncarnation() > 1);
+        assertEquals(Set.of("a", "b", "c"), liveIds(a));
+        assertEquals(Set.of("a", "b", "c"), liveIds(b));
+    }
+
+    @Test
+    public void testPrecedenceOfUpdates() {
+        GossipMember alive = new GossipMember("x", "h", 1, null, GossipMember.State.ALIVE, 5);
+        assertTrue(SwimMembership.supersedes(alive.with(GossipMember.State.SUSPECT, 5), alive));
+        assertFalse(SwimMembership.supersedes(alive.with(GossipMember.State.ALIVE, 5), alive.with(GossipMember.State.SUSPECT, 5)));
+        assertTrue(SwimMembership.supersedes(alive.with(GossipMember.State.ALIVE, 6), alive.with(GossipMember.State.SUSPECT, 5)));
+        assertTrue(SwimMembership.supersedes(alive.with(GossipMember.State.DEAD, 5), alive.with(GossipMember.State.SUSPECT, 5)));
+        assertFalse(SwimMembership.supersedes(alive.with(GossipMember.State.SUSPECT, 4), alive));
+    }
+}
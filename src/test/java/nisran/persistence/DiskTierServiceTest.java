@@ -0,0 +1,119 @@
+package nisran.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nisran.cache.LRUCache;
+import nisran.config.AWS_SDKConfig;
+import nisran.router.BloomFilterManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiskTierServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private LRUCache<String, Object> cache;
+    private DiskTierService diskTier;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        AWS_SDKConfig config = new AWS_SDKConfig() {
+            @Override
+            public boolean isDiskTierEnabled() {
+                return true;
+            }
+
+            @Override
+            public String getDiskTierDir() {
+                return dir.toString();
+            }
+
+            @Override
+            public long getDiskTierMaxBytes() {
+                return 1 << 20;
+            }
+
+            @Override
+            public int getDiskTierSegmentBytes() {
+                return 1 << 16;
+            }
+
+            @Override
+            public double getDiskTierCompactionThreshold() {
+                return 0.5;
+            }
+
+            @Override
+            public int getDiskTierQueueCapacity() {
+                return 16;
+            }
+
+            @Override
+            public long getBloomExpectedKeys() {
+                return 1000;
+            }
+
+            @Override
+            public double getBloomFalsePositiveRate() {
+                return 0.01;
+            }
+        };
+        cache = new LRUCache<>(2);
+        BloomFilterManager bloomFilterManager = new BloomFilterManager(null, null, cache, null, config);
+        diskTier = new DiskTierService(cache, bloomFilterManager, new ObjectMapper(), config);
+        diskTier.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        diskTier.shutdown();
+    }
+
+    private void awaitDemotions(long count) throws InterruptedException {
+        for (int i = 0; i < 500 && ((Number) diskTier.getMetrics().get("demotions")).longValue() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, ((Number) diskTier.getMetrics().get("demotions")).longValue());
+    }
+
+    @Test
+    public void testEvictedEntryIsPromotedOnMiss() throws Exception {
+        cache.set("a", "1");
+        cache.set("b", "2");
+        cache.set("c", "3"); // Evicts a
+        awaitDemotions(1);
+
+        assertEquals("1", cache.get("a")); // Evicts b in turn
+        assertEquals(1L, diskTier.getMetrics().get("hits"));
+        assertEquals(2, cache.size());
+        awaitDemotions(2);
+        assertEquals("2", cache.get("b"));
+    }
+
+    @Test
+    public void testWritingOrRemovingAKeyDropsItsDiskCopy() throws Exception {
+        cache.set("a", "1");
+        cache.set("b", "2");
+        cache.set("c", "3"); // Evicts a
+        awaitDemotions(1);
+
+        cache.remove("a"); // Only on disk: dropped without being promoted
+        assertNull(cache.get("a"));
+        assertEquals(0L, diskTier.getMetrics().get("hits"));
+
+        cache.set("d", "4"); // Evicts b
+        awaitDemotions(2);
+        cache.set("b", "newer"); // Evicts c; the old copy of b on disk is dropped
+        cache.remove("b");
+        assertNull(cache.get("b"));
+        assertEquals(0L, diskTier.getMetrics().get("hits"));
+    }
+}
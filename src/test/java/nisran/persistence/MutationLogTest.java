@@ -0,0 +1,227 @@
+package nisran.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MutationLogTest {
+
+    @TempDir
+    Path dir;
+
+    private MutationLog open(Path path, long maxBytes) throws IOException {
+        return new MutationLog(path, MutationLog.FsyncPolicy.ALWAYS, 10, maxBytes, 1024,
+                value -> value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> replay(MutationLog log) throws IOException {
+        return replay(log, -1);
+    }
+
+    private static Map<String, String> replay(MutationLog log, long afterMarker) throws IOException {
+        Map<String, String> state = new LinkedHashMap<>();
+        log.replay(new MutationLog.Replayer() {
+            @Override
+            public void set(String key, byte[] value) {
+                state.remove(key);
+                state.put(key, new String(value, StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void remove(String key) {
+                state.remove(key);
+            }
+        }, afterMarker);
+        return state;
+    }
+
+    @Test
+    public void testReplayRestoresMutationsInOrder() throws IOException {
+        Path path = dir.resolve("mutations.log");
+        MutationLog log = open(path, Long.MAX_VALUE);
+        replay(log);
+        log.start(atStart -> Map.of());
+        log.appendSet("a", "1");
+        log.appendSet("b", "2");
+        log.appendSet("a", "3");
+        log.appendRemove("b");
+        log.appendSet("c", "4");
+        log.close();
+
+        MutationLog reopened = open(path, Long.MAX_VALUE);
+        assertEquals(Map.of("a", "3", "c", "4"), replay(reopened));
+        reopened.close();
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws IOException {
+        Path path = dir.resolve("mutations.log");
+        MutationLog log = open(path, Long.MAX_VALUE);
+        replay(log);
+        log.start(atStart -> Map.of());
+        log.appendSet("a", "1");
+        log.appendSet("b", "2");
+        log.close();
+
+        long intact;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            intact = channel.size();
+            // Half of a record, as left by a crash in the middle of a write
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3}), intact);
+        }
+
+        MutationLog reopened = open(path, Long.MAX_VALUE);
+        assertEquals(Map.of("a", "1", "b", "2"), replay(reopened));
+        assertEquals(intact, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    public void testLogIsRewrittenFromTheCacheWhenTooLarge() throws Exception {
+        Path path = dir.resolve("mutations.log");
+        MutationLog log = open(path, 200);
+        replay(log);
+        Map<String, Object> cache = new LinkedHashMap<>();
+        cache.put("recent", "r"); // Most recently used first
+        cache.put("old", "o");
+        log.start(atStart -> {
+            atStart.run();
+            return cache;
+        });
+        for (int i = 0; i < 50; i++) {
+            log.appendSet("k" + (i % 2), "value-" + i);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (((Number) log.getMetrics().get("rewrites")).longValue() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        log.close();
+
+        assertTrue(((Number) log.getMetrics().get("rewrites")).longValue() > 0);
+        MutationLog reopened = open(path, 200);
+        Map<String, String> state = replay(reopened);
+        reopened.close();
+        // The rewrite stores the least recently used entry first, so replay restores recency
+        assertEquals(List.of("old", "recent"), List.copyOf(state.keySet()).subList(0, 2));
+    }
+
+    @Test
+    public void testFullQueueDropsInsteadOfBlockingAndForcesRewrite() throws Exception {
+        Path path = dir.resolve("mutations.log");
+        CountDownLatch slowDisk = new CountDownLatch(1);
+        MutationLog log = new MutationLog(path, MutationLog.FsyncPolicy.ALWAYS, 10, Long.MAX_VALUE, 2, value -> {
+            try {
+                slowDisk.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return value.toString().getBytes(StandardCharsets.UTF_8);
+        });
+        replay(log);
+        Map<String, Object> cache = new LinkedHashMap<>();
+        log.start(atStart -> {
+            atStart.run();
+            return new LinkedHashMap<>(cache);
+        });
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            cache.put("k" + i, "v" + i);
+            log.appendSet("k" + i, "v" + i);
+        }
+        // The writer is stuck on the first record, yet no append waited for it
+        assertTrue(System.nanoTime() - startedAt < TimeUnit.SECONDS.toNanos(1));
+        assertTrue(((Number) log.getMetrics().get("dropped")).longValue() > 0);
+        slowDisk.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (((Number) log.getMetrics().get("rewrites")).longValue() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        log.close();
+
+        MutationLog reopened = open(path, Long.MAX_VALUE);
+        assertEquals(100, replay(reopened).size());
+        reopened.close();
+    }
+
+    @Test
+    public void testForcedRewritesAreRateLimitedAndDrainTheQueue() throws Exception {
+        Path path = dir.resolve("mutations.log");
+        AtomicReference<CountDownLatch> slowDisk = new AtomicReference<>(new CountDownLatch(1));
+        MutationLog log = new MutationLog(path, MutationLog.FsyncPolicy.ALWAYS, 10, Long.MAX_VALUE, 2, value -> {
+            try {
+                slowDisk.get().await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return value.toString().getBytes(StandardCharsets.UTF_8);
+        });
+        replay(log);
+        Map<String, Object> cache = new ConcurrentHashMap<>();
+        log.start(atStart -> {
+            atStart.run();
+            return new LinkedHashMap<>(cache);
+        });
+        for (int i = 0; i < 100; i++) {
+            cache.put("k" + i, "v" + i);
+            log.appendSet("k" + i, "v" + i);
+        }
+        slowDisk.get().countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (((Number) log.getMetrics().get("rewrites")).longValue() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1L, ((Number) log.getMetrics().get("rewrites")).longValue());
+        assertEquals(0, ((Number) log.getMetrics().get("queued")).intValue());
+
+        // Dropping again so soon does not rewrite the log again until it is closed
+        slowDisk.set(new CountDownLatch(1));
+        for (int i = 100; i < 200; i++) {
+            cache.put("k" + i, "v" + i);
+            log.appendSet("k" + i, "v" + i);
+        }
+        slowDisk.get().countDown();
+        Thread.sleep(200);
+        assertEquals(1L, ((Number) log.getMetrics().get("rewrites")).longValue());
+        log.close();
+
+        assertEquals(2L, ((Number) log.getMetrics().get("rewrites")).longValue());
+        MutationLog reopened = open(path, Long.MAX_VALUE);
+        assertEquals(200, replay(reopened).size());
+        reopened.close();
+    }
+
+    @Test
+    public void testTruncateThroughMarkerKeepsLaterMutations() throws IOException {
+        Path path = dir.resolve("mutations.log");
+        MutationLog log = open(path, Long.MAX_VALUE);
+        replay(log);
+        log.start(atStart -> Map.of());
+        log.appendSet("a", "1");
+        log.appendMarker(7);
+        log.appendSet("b", "2");
+        log.appendRemove("a");
+        log.truncateThrough(7);
+        log.appendSet("c", "3");
+        log.close();
+
+        MutationLog reopened = open(path, Long.MAX_VALUE);
+        // Only what followed the marker is left, for replay on top of snapshot 7
+        assertEquals(Map.of("b", "2", "c", "3"), replay(reopened, 7));
+        reopened.close();
+    }
+}
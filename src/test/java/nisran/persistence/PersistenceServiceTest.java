@@ -0,0 +1,152 @@
+package nisran.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nisran.cache.LRUCache;
+import nisran.config.AWS_SDKConfig;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistenceServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private AWS_SDKConfig config() {
+        return new AWS_SDKConfig() {
+            @Override
+            public boolean isPersistenceEnabled() {
+                return true;
+            }
+
+            @Override
+            public boolean isPersistenceSnapshotEnabled() {
+                return true;
+            }
+
+            @Override
+            public String getPersistenceDir() {
+                return dir.toString();
+            }
+
+            @Override
+            public String getPersistenceFsync() {
+                return "always";
+            }
+
+            @Override
+            public long getPersistenceMaxLogBytes() {
+                return Long.MAX_VALUE;
+            }
+
+            @Override
+            public int getPersistenceQueueCapacity() {
+                return 1024;
+            }
+
+            @Override
+            public int getPersistenceSnapshotIntervalSeconds() {
+                return 3600;
+            }
+        };
+    }
+
+    private PersistenceService start(LRUCache<String, Object> cache) throws IOException {
+        PersistenceService service = new PersistenceService(cache, new ObjectMapper(), config());
+        service.start();
+        return service;
+    }
+
+    private Map<String, String> logged() throws IOException {
+        MutationLog log = new MutationLog(dir.resolve(PersistenceService.LOG_FILE), MutationLog.FsyncPolicy.NEVER, 10,
+                Long.MAX_VALUE, 16, value -> new byte[0]);
+        Map<String, String> sets = new LinkedHashMap<>();
+        log.replay(new MutationLog.Replayer() {
+            @Override
+            public void set(String key, byte[] value) {
+                sets.put(key, new String(value, StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void remove(String key) {
+                sets.remove(key);
+            }
+        }, -1);
+        log.close();
+        return sets;
+    }
+
+    private static void awaitRestored(PersistenceService service) throws InterruptedException {
+        for (int i = 0; i < 500 && (Boolean) service.getMetrics().get("restoring"); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse((Boolean) service.getMetrics().get("restoring"));
+    }
+
+    @Test
+    public void testSnapshotRestoresRecencyAndTruncatesTheLog() throws Exception {
+        LRUCache<String, Object> cache = new LRUCache<>(10);
+        PersistenceService service = start(cache);
+        cache.set("a", "1");
+        cache.set("b", "2");
+        cache.set("c", "3");
+        cache.get("a");
+        service.shutdown();
+
+        assertEquals(1L, service.getMetrics().get("snapshots"));
+        assertTrue(Files.exists(dir.resolve(PersistenceService.SNAPSHOT_FILE)));
+        assertEquals(Map.of(), logged()); // Everything before the snapshot's marker is gone
+
+        LRUCache<String, Object> restoredCache = new LRUCache<>(10);
+        PersistenceService restarted = start(restoredCache);
+        awaitRestored(restarted);
+        assertEquals(List.of("a", "c", "b"), new ArrayList<>(restoredCache.snapshot().keySet()));
+        assertEquals("2", restoredCache.get("b"));
+        restarted.shutdown();
+    }
+
+    @Test
+    public void testLogIsKeptWhenTheSnapshotCannotBeWritten() throws Exception {
+        // A directory in the way of the temporary file makes the snapshot fail
+        Files.createDirectories(dir.resolve(PersistenceService.SNAPSHOT_FILE + ".tmp"));
+        LRUCache<String, Object> cache = new LRUCache<>(10);
+        PersistenceService service = start(cache);
+        cache.set("a", "1");
+        cache.set("b", "2");
+        service.shutdown();
+
+        assertEquals(1L, service.getMetrics().get("snapshotFailures"));
+        assertFalse(Files.exists(dir.resolve(PersistenceService.SNAPSHOT_FILE)));
+        assertEquals(Map.of("a", "\"1\"", "b", "\"2\""), logged());
+    }
+
+    @Test
+    public void testWritesDuringTheRestoreWin() throws Exception {
+        LRUCache<String, Object> cache = new LRUCache<>(10);
+        PersistenceService service = start(cache);
+        cache.set("a", "1");
+        cache.set("b", "2");
+        service.shutdown();
+
+        LRUCache<String, Object> restoredCache = new LRUCache<>(10);
+        PersistenceService restarted = start(restoredCache);
+        restoredCache.set("a", "Newer");
+        restoredCache.remove("b");
+        awaitRestored(restarted);
+        assertEquals("Newer", restoredCache.get("a"));
+        assertNull(restoredCache.get("b"));
+        restarted.shutdown();
+    }
+}
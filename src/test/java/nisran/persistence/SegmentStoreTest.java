@@ -0,0 +1,82 @@
+package nisran.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static void put(SegmentStore store, String key, String value) {
+        store.ensureRoom(SegmentStore.recordBytes(key, bytes(value)));
+        assertTrue(store.put(key, bytes(value)));
+    }
+
+    @Test
+    public void testEntriesAreTakenOnce() throws IOException {
+        SegmentStore store = new SegmentStore(dir, 4096, 1024, key -> fail("Nothing should be dropped"));
+        put(store, "a", "1");
+        put(store, "b", "2");
+        put(store, "a", "3");
+
+        assertEquals(2, store.size());
+        assertEquals("3", string(store.take("a")));
+        assertNull(store.take("a"));
+        assertTrue(store.remove("b"));
+        assertFalse(store.contains("b"));
+        store.close();
+    }
+
+    @Test
+    public void testOldestSegmentIsDroppedWhenFull() throws IOException {
+        List<String> dropped = new ArrayList<>();
+        // Two segments of three 32 byte records each
+        SegmentStore store = new SegmentStore(dir, 200, 100, dropped::add);
+        String value = "x".repeat(18);
+        for (int i = 0; i < 7; i++) {
+            put(store, "k" + i, value);
+        }
+
+        assertEquals(List.of("k0", "k1", "k2"), dropped);
+        assertNull(store.take("k0"));
+        assertEquals(value, string(store.take("k6")));
+        store.close();
+    }
+
+    @Test
+    public void testCompactionKeepsLiveEntries() throws IOException {
+        SegmentStore store = new SegmentStore(dir, 300, 100, key -> fail("Nothing should be dropped"));
+        String value = "x".repeat(18);
+        for (int i = 0; i < 4; i++) {
+            put(store, "k" + i, value);
+        }
+        store.remove("k0");
+        store.remove("k1");
+
+        // Only k2 is live in the first segment, now sealed
+        assertTrue(store.compact(0.5));
+        assertFalse(store.compact(0.5));
+        assertEquals(2, store.getMetrics().get("freeSegments"));
+        assertEquals(2, store.size());
+        assertEquals(value, string(store.take("k2")));
+        assertEquals(value, string(store.take("k3")));
+        store.close();
+    }
+}
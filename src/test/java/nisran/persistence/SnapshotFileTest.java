@@ -0,0 +1,72 @@
+package nisran.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotFileTest {
+
+    @TempDir
+    Path dir;
+
+    private static Map.Entry<String, byte[]> entry(String key, String value) {
+        return Map.entry(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testEntriesAreTakenOnce() throws IOException {
+        Path path = dir.resolve("snapshot.bin");
+        SnapshotFile.write(path, 42, List.of(entry("hot", "1"), entry("warm", "22"), entry("cold", "333")));
+
+        SnapshotFile snapshot = SnapshotFile.open(path);
+        assertEquals(42, snapshot.getId());
+        assertEquals(List.of("hot", "warm", "cold"), snapshot.getKeys());
+        assertEquals("22", new String(snapshot.take("warm"), StandardCharsets.UTF_8));
+        assertNull(snapshot.take("warm"));
+        snapshot.drop("cold");
+        assertNull(snapshot.take("cold"));
+        assertEquals(1, snapshot.remaining());
+        assertEquals("1", new String(snapshot.take("hot"), StandardCharsets.UTF_8));
+        snapshot.close();
+    }
+
+    @Test
+    public void testCorruptValueIsRejected() throws IOException {
+        Path path = dir.resolve("snapshot.bin");
+        SnapshotFile.write(path, 1, List.of(entry("key", "value")));
+        SnapshotFile snapshot = SnapshotFile.open(path);
+        snapshot.close();
+
+        // Values start right after the header; flip a byte of the first one
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(1);
+            channel.read(header, SnapshotFile.HEADER_BYTES);
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) (header.get(0) ^ 0xFF)}), SnapshotFile.HEADER_BYTES);
+        }
+
+        SnapshotFile reopened = SnapshotFile.open(path);
+        assertThrows(IOException.class, () -> reopened.take("key"));
+        reopened.close();
+    }
+
+    @Test
+    public void testTruncatedFileIsRejected() throws IOException {
+        Path path = dir.resolve("snapshot.bin");
+        SnapshotFile.write(path, 1, List.of(entry("key", "value")));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        assertThrows(IOException.class, () -> SnapshotFile.open(path));
+    }
+}
@@ -0,0 +1,72 @@
+package nisran.router;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void testShedsBeyondLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, clock::get);
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        permits.add(limiter.tryAcquire());
+        permits.add(limiter.tryAcquire());
+        assertNotNull(permits.get(0));
+        assertNotNull(permits.get(1));
+        assertNull(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejected());
+
+        permits.get(0).release();
+        assertNotNull(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLimitGrowsWhileLatencyIsFlat() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, clock::get);
+        for (int i = 0; i < 10; i++) {
+            limiter.onSample(5 * MILLIS, limiter.getLimit(), false);
+        }
+        assertTrue(limiter.getLimit() > 10);
+    }
+
+    @Test
+    public void testLimitShrinksWhenRequestsQueue() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 1, 100, clock::get);
+        limiter.onSample(5 * MILLIS, 50, false);
+        for (int i = 0; i < 10; i++) {
+            // Latency doubled: half the admitted requests are waiting
+            limiter.onSample(10 * MILLIS, limiter.getLimit(), false);
+        }
+        assertTrue(limiter.getLimit() < 50);
+    }
+
+    @Test
+    public void testIdleSamplesDoNotRaiseLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 100, clock::get);
+        for (int i = 0; i < 10; i++) {
+            limiter.onSample(5 * MILLIS, 1, false);
+        }
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    public void testDropsBackOffToMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 100, clock::get);
+        limiter.onSample(5 * MILLIS, 20, true);
+        assertEquals(18, limiter.getLimit());
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(5 * MILLIS, 20, true);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+}
@@ -0,0 +1,64 @@
+package nisran.router;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testAddedKeysAreAlwaysFound() {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("key-" + i);
+        }
+        BloomFilter plain = filter.toBloomFilter();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("key-" + i));
+            assertTrue(plain.mightContain("key-" + i));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRateIsNearTarget() {
+        CountingBloomFilter filter = new CountingBloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("key-" + i);
+        }
+        BloomFilter plain = filter.toBloomFilter();
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (plain.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+        assertEquals(0.01, plain.estimatedFalsePositiveRate(), 0.005);
+    }
+
+    @Test
+    public void testRemovedKeyIsNoLongerFound() {
+        CountingBloomFilter filter = new CountingBloomFilter(100, 0.01);
+        filter.add("a");
+        filter.add("b");
+        long version = filter.version();
+        filter.remove("a");
+
+        assertFalse(filter.mightContain("a"));
+        assertTrue(filter.mightContain("b"));
+        assertNotEquals(version, filter.version());
+    }
+
+    @Test
+    public void testSerializationRoundTrip() {
+        CountingBloomFilter filter = new CountingBloomFilter(100, 0.01);
+        filter.add("a");
+        BloomFilter copy = BloomFilter.fromBytes(filter.toBloomFilter().toBytes());
+
+        assertTrue(copy.mightContain("a"));
+        assertFalse(copy.mightContain("b"));
+        assertEquals(filter.bitSize(), copy.bitSize());
+        assertEquals(filter.getHashCount(), copy.getHashCount());
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.fromBytes(new byte[5]));
+    }
+}
@@ -0,0 +1,65 @@
+package nisran.router;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadlineTest {
+
+    @AfterEach
+    public void tearDown() {
+        Deadline.clearCurrent();
+    }
+
+    @Test
+    public void testHopTimeoutIsBoundedByRemainingTime() {
+        Deadline deadline = Deadline.after(10_000);
+        assertEquals(500, deadline.timeoutMillis(500));
+        assertTrue(deadline.timeoutMillis(60_000) <= 10_000);
+        assertFalse(deadline.isExpired());
+    }
+
+    @Test
+    public void testExpiredDeadline() {
+        Deadline deadline = Deadline.after(0);
+        assertTrue(deadline.isExpired());
+        assertEquals(0, deadline.remainingMillis());
+        // Still a usable timeout value
+        assertEquals(1, deadline.timeoutMillis(500));
+        assertThrows(DeadlineExceededException.class, () -> deadline.check("test"));
+    }
+
+    @Test
+    public void testCurrentDeadlineIsPerThread() {
+        Deadline deadline = Deadline.after(1_000);
+        Deadline.setCurrent(deadline);
+        assertSame(deadline, Deadline.currentOr(5_000));
+
+        Deadline.clearCurrent();
+        assertNotSame(deadline, Deadline.currentOr(5_000));
+        assertTrue(Deadline.currentOr(5_000).remainingMillis() > 1_000);
+    }
+
+    @Test
+    public void testWithinFailsWhenDeadlinePasses() {
+        CompletableFuture<String> neverCompleted = new CompletableFuture<>();
+        CompletableFuture<String> bounded = Deadline.after(20).within(neverCompleted, "test");
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> bounded.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof DeadlineExceededException);
+        assertFalse(neverCompleted.isDone());
+    }
+
+    @Test
+    public void testWithinPassesResultThrough() throws Exception {
+        CompletableFuture<String> read = new CompletableFuture<>();
+        CompletableFuture<String> bounded = Deadline.after(10_000).within(read, "test");
+        read.complete("value");
+        assertEquals("value", bounded.get(1, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,67 @@
+package nisran.router;
+
+import nisran.ServerInstance;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DrainServiceTest {
+
+    private static final ServerInstance SELF = new ServerInstance("self", "10.0.0.1", 8080);
+    private static final ServerInstance B = new ServerInstance("b", "10.0.0.2", 8080);
+    private static final ServerInstance C = new ServerInstance("c", "10.0.0.3", 8080);
+
+    // Keys starting with "o" are owned by this node, the rest by b; on the new ring "ob" keys go to b and the rest to c
+    private static ServerInstance oldOwner(String key) {
+        return key.startsWith("o") ? SELF : B;
+    }
+
+    private static ServerInstance newOwner(String key) {
+        return key.startsWith("ob") ? B : C;
+    }
+
+    private static Map<String, Object> entries(String... keys) {
+        Map<String, Object> entries = new LinkedHashMap<>();
+        for (String key : keys) {
+            entries.put(key, "v-" + key);
+        }
+        return entries;
+    }
+
+    @Test
+    public void testOnlyOwnedEntriesAreHandedOffToTheirNewOwners() {
+        List<DrainService.HandoffBatch> batches = DrainService.planHandoff(entries("oc1", "x", "ob1", "oc2"), List.of(),
+                DrainServiceTest::oldOwner, DrainServiceTest::newOwner, SELF, 10);
+
+        assertEquals(2, batches.size());
+        assertEquals(C, batches.get(0).owner);
+        assertEquals(List.of("oc1", "oc2"), List.copyOf(batches.get(0).entries.keySet()));
+        assertEquals(B, batches.get(1).owner);
+        assertEquals(Map.of("ob1", "v-ob1"), batches.get(1).entries);
+    }
+
+    @Test
+    public void testHotKeysGoFirst() {
+        List<DrainService.HandoffBatch> batches = DrainService.planHandoff(entries("oc1", "oc2", "ob1"), List.of("ob1", "gone"),
+                DrainServiceTest::oldOwner, DrainServiceTest::newOwner, SELF, 10);
+
+        assertEquals(B, batches.get(0).owner);
+        assertEquals(C, batches.get(1).owner);
+    }
+
+    @Test
+    public void testBatchesAreSplitAndOrderedByHottestKey() {
+        List<DrainService.HandoffBatch> batches = DrainService.planHandoff(entries("oc1", "oc2", "oc3", "ob1", "oc4"), List.of(),
+                DrainServiceTest::oldOwner, DrainServiceTest::newOwner, SELF, 2);
+
+        assertEquals(3, batches.size());
+        assertEquals(List.of("oc1", "oc2"), List.copyOf(batches.get(0).entries.keySet()));
+        assertEquals(List.of("oc3", "oc4"), List.copyOf(batches.get(1).entries.keySet()));
+        assertEquals(List.of("ob1"), List.copyOf(batches.get(2).entries.keySet()));
+    }
+}
@@ -0,0 +1,37 @@
+package nisran.router;
+
+import nisran.cache.LRUCache;
+import nisran.config.AWS_SDKConfig;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpiredValueReaperTest {
+
+    @Test
+    public void testValuesAreRemovedOnlyOnceExpiredForTheGracePeriod() {
+        AWS_SDKConfig config = new AWS_SDKConfig() {
+            @Override
+            public int getRespReclaimAfterSeconds() {
+                return 60;
+            }
+        };
+        LRUCache<String, Object> cache = new LRUCache<>(10);
+        ExpiredValueReaper reaper = new ExpiredValueReaper(cache, config);
+        long now = 1_000_000;
+        cache.set("plain", "v");
+        cache.set("deletedLongAgo", ExpiringValue.tombstone(now - 60_000));
+        cache.set("deletedRecently", ExpiringValue.tombstone(now - 1_000));
+        cache.set("expiredLongAgo", ExpiringValue.of("v", now - 120_000));
+        cache.set("live", ExpiringValue.of("v", now + 1_000));
+
+        assertEquals(2, reaper.reap(now));
+        assertEquals(3, cache.size());
+        assertNull(cache.get("deletedLongAgo"));
+        assertNull(cache.get("expiredLongAgo"));
+        assertNotNull(cache.get("deletedRecently"));
+        assertEquals(0, reaper.reap(now));
+        reaper.shutdown();
+    }
+}
@@ -0,0 +1,137 @@
+package nisran.router;
+
+import nisran.ServerInstance;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HedgedReaderTest {
+
+    private final ServerInstance primary = new ServerInstance("task-1", "10.0.0.1", 8080);
+    private final ServerInstance replica = new ServerInstance("task-2", "10.0.0.2", 8080);
+    private HedgedReader reader;
+
+    @AfterEach
+    void tearDown() {
+        if (reader != null) {
+            reader.shutdown();
+        }
+    }
+
+    @Test
+    public void testSlowPrimaryIsHedgedToReplica() throws Exception {
+        reader = new HedgedReader(true, 10, 0, 0.1);
+        CompletableFuture<String> slow = new CompletableFuture<>();
+
+        String value = reader.read(List.of(primary, replica),
+                instance -> instance == primary ? slow : CompletableFuture.completedFuture("from replica"))
+                .get(1, TimeUnit.SECONDS);
+
+        assertEquals("from replica", value);
+        assertEquals(1L, reader.getMetrics().get("hedgesSent"));
+    }
+
+    @Test
+    public void testFastPrimaryIsNotHedged() throws Exception {
+        reader = new HedgedReader(true, 1_000, 0, 0.1);
+        AtomicInteger replicaReads = new AtomicInteger();
+
+        String value = reader.read(List.of(primary, replica), instance -> {
+            if (instance == replica) {
+                replicaReads.incrementAndGet();
+            }
+            return CompletableFuture.completedFuture(instance.getServiceId());
+        }).get(1, TimeUnit.SECONDS);
+
+        assertEquals("task-1", value);
+        assertEquals(0, replicaReads.get());
+    }
+
+    @Test
+    public void testFailedPrimaryFailsOverImmediately() throws Exception {
+        reader = new HedgedReader(true, 10_000, 0, 0);
+
+        String value = reader.read(List.of(primary, replica), instance -> instance == primary
+                ? CompletableFuture.failedFuture(new IllegalStateException("down"))
+                : CompletableFuture.completedFuture("from replica"))
+                .get(1, TimeUnit.SECONDS);
+
+        assertEquals("from replica", value);
+    }
+
+    @Test
+    public void testFailoverIsNotCountedAsAHedge() throws Exception {
+        reader = new HedgedReader(true, 10, 0, 0.1);
+        CompletableFuture<String> slowReplica = new CompletableFuture<>();
+        AtomicInteger replicaReads = new AtomicInteger();
+
+        CompletableFuture<String> result = reader.read(List.of(primary, replica), instance -> {
+            if (instance == primary) {
+                return CompletableFuture.failedFuture(new IllegalStateException("down"));
+            }
+            replicaReads.incrementAndGet();
+            return slowReplica;
+        });
+        Thread.sleep(50); // Past the hedge delay
+        slowReplica.complete("from replica");
+
+        assertEquals("from replica", result.get(1, TimeUnit.SECONDS));
+        assertEquals(1, replicaReads.get());
+        assertEquals(0L, reader.getMetrics().get("hedgesSent"));
+        assertEquals(0L, reader.getMetrics().get("hedgesDeniedByBudget"));
+    }
+
+    @Test
+    public void testBothFailingCompletesExceptionally() {
+        reader = new HedgedReader(true, 10, 0, 0.1);
+
+        CompletableFuture<String> result = reader.read(List.of(primary, replica),
+                instance -> CompletableFuture.failedFuture(new IllegalStateException("down")));
+
+        assertThrows(Exception.class, () -> result.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBudgetCapsHedges() throws Exception {
+        // No refill: only the initial burst allowance can be spent
+        reader = new HedgedReader(true, 1, 0, 0);
+        AtomicInteger replicaReads = new AtomicInteger();
+
+        for (int i = 0; i < 15; i++) {
+            CompletableFuture<String> slow = new CompletableFuture<>();
+            CompletableFuture<String> result = reader.read(List.of(primary, replica), instance -> {
+                if (instance == primary) {
+                    return slow;
+                }
+                replicaReads.incrementAndGet();
+                return CompletableFuture.completedFuture("from replica");
+            });
+            Thread.sleep(20);
+            slow.complete("from primary");
+            result.get(1, TimeUnit.SECONDS);
+        }
+
+        assertEquals(10, replicaReads.get());
+        assertEquals(5L, reader.getMetrics().get("hedgesDeniedByBudget"));
+    }
+
+    @Test
+    public void testPercentileDelay() {
+        LatencyWindow window = new LatencyWindow(4);
+        assertEquals(-1, window.percentile(95));
+        for (long sample : new long[] { 5, 1, 3, 2, 4 }) {
+            window.record(sample);
+        }
+        // The oldest sample has been overwritten
+        assertEquals(4, window.count());
+        assertEquals(4, window.percentile(95));
+        assertEquals(2, window.percentile(50));
+    }
+}
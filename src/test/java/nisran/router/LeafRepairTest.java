@@ -0,0 +1,56 @@
+package nisran.router;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LeafRepairTest {
+
+    @Test
+    public void testMissingEntryIsAddedOnceTheDifferenceLasts() {
+        LeafRepair repair = new LeafRepair();
+        Map<String, Object> remote = Map.of("a", "1");
+
+        assertEquals(Map.of(), repair.toWrite(7, Map.of(), remote));
+        assertEquals(1, repair.pending());
+        assertEquals(remote, repair.toWrite(7, Map.of(), remote));
+        assertEquals(0, repair.pending());
+    }
+
+    @Test
+    public void testDifferingValueIsAdoptedOnlyIfUnchanged() {
+        LeafRepair repair = new LeafRepair();
+
+        // A leased write reached this replica first; by the next round the primary has it too
+        assertEquals(Map.of(), repair.toWrite(7, Map.of("a", "new"), Map.of("a", "old")));
+        assertEquals(Map.of(), repair.toWrite(7, Map.of("a", "new"), Map.of("a", "new")));
+        assertEquals(0, repair.pending());
+
+        // A difference that changes between rounds starts over
+        assertEquals(Map.of(), repair.toWrite(7, Map.of("a", "x"), Map.of("a", "y")));
+        assertEquals(Map.of(), repair.toWrite(7, Map.of("a", "x"), Map.of("a", "z")));
+        assertEquals(Map.of("a", "z"), repair.toWrite(7, Map.of("a", "x"), Map.of("a", "z")));
+    }
+
+    @Test
+    public void testKeysThePrimaryLacksAreNeverWrittenOrDropped() {
+        LeafRepair repair = new LeafRepair();
+        Map<String, Object> local = Map.of("evicted-on-primary", "1");
+
+        assertEquals(Map.of(), repair.toWrite(7, local, Map.of()));
+        assertEquals(Map.of(), repair.toWrite(7, local, Map.of()));
+        assertEquals(0, repair.pending());
+    }
+
+    @Test
+    public void testRangesAreTrackedSeparately() {
+        LeafRepair repair = new LeafRepair();
+        Map<String, Object> remote = Map.of("a", "1");
+
+        repair.toWrite(7, Map.of(), remote);
+        assertEquals(Map.of(), repair.toWrite(8, Map.of(), remote));
+        assertEquals(remote, repair.toWrite(7, Map.of(), remote));
+    }
+}
@@ -0,0 +1,74 @@
+package nisran.router;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LeaseTableTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000);
+    private final LeaseTable table = new LeaseTable(clock::get);
+
+    @Test
+    public void testGrantExcludesOtherHoldersUntilExpiry() {
+        assertTrue(table.grant(7, "a", 100));
+        assertFalse(table.grant(7, "b", 100));
+        // The current holder may renew
+        assertTrue(table.grant(7, "a", 100));
+
+        clock.addAndGet(100);
+        assertTrue(table.grant(7, "b", 100));
+    }
+
+    @Test
+    public void testReleaseAllowsImmediateTransfer() {
+        assertTrue(table.grant(7, "a", 100));
+        assertFalse(table.release(7, "b"));
+        assertFalse(table.grant(7, "b", 100));
+
+        assertTrue(table.release(7, "a"));
+        assertTrue(table.grant(7, "b", 100));
+    }
+
+    @Test
+    public void testHeldLeaseExpiresBeforeGrants() {
+        long requestedAt = table.now();
+        clock.addAndGet(10); // Grant arrives 10 ms after the request was sent
+        assertTrue(table.grant(7, "a", 100));
+        assertTrue(table.recordHeld(7, requestedAt, 100, 20));
+
+        assertTrue(table.isHeld(7));
+        assertEquals(70, table.remainingMillis(7));
+
+        clock.addAndGet(70);
+        assertFalse(table.isHeld(7));
+        // The grantor still protects the range, so nobody else can hold it yet
+        assertFalse(table.grant(7, "b", 100));
+    }
+
+    @Test
+    public void testLateGrantIsNotRecorded() {
+        long requestedAt = table.now();
+        clock.addAndGet(90);
+        assertFalse(table.recordHeld(7, requestedAt, 100, 20));
+        assertFalse(table.isHeld(7));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSnapshotListsOnlyLiveLeases() {
+        table.grant(1, "a", 100);
+        table.grant(2, "a", 10);
+        table.recordHeld(3, table.now(), 100, 0);
+        clock.addAndGet(50);
+
+        Map<String, Object> snapshot = table.snapshot();
+        assertEquals(Map.of(3, 50L), snapshot.get("held"));
+        Map<Integer, Object> granted = (Map<Integer, Object>) snapshot.get("granted");
+        assertEquals(1, granted.size());
+        assertTrue(granted.containsKey(1));
+    }
+}
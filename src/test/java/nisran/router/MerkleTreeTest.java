@@ -0,0 +1,87 @@
+package nisran.router;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MerkleTreeTest {
+
+    @Test
+    public void testEmptyTreesMatch() {
+        MerkleTree tree = new MerkleTree(4);
+        assertEquals(0L, tree.getRoot());
+    }
+
+    @Test
+    public void testInsertionOrderDoesNotMatter() {
+        MerkleTree first = new MerkleTree(4);
+        MerkleTree second = new MerkleTree(4);
+
+        first.add("a", "One");
+        first.add("b", "Two");
+        first.add("c", "Three");
+
+        second.add("c", "Three");
+        second.add("a", "One");
+        second.add("b", "Two");
+
+        assertEquals(first.getRoot(), second.getRoot());
+        assertNotEquals(0L, first.getRoot());
+    }
+
+    @Test
+    public void testRemoveRestoresRoot() {
+        MerkleTree tree = new MerkleTree(4);
+        tree.add("a", "One");
+        long root = tree.getRoot();
+
+        tree.add("b", "Two");
+        assertNotEquals(root, tree.getRoot());
+
+        tree.remove("b", "Two");
+        assertEquals(root, tree.getRoot());
+
+        tree.remove("a", "One");
+        assertEquals(0L, tree.getRoot());
+    }
+
+    @Test
+    public void testUpdateChangesOnlyOneLeafPath() {
+        MerkleTree first = new MerkleTree(4);
+        MerkleTree second = new MerkleTree(4);
+        first.add("a", "One");
+        second.add("a", "One");
+        first.add("b", "Two");
+        second.add("b", "Two");
+
+        second.update("a", "One", "One Updated");
+        assertNotEquals(first.getRoot(), second.getRoot());
+
+        int leaf = first.getLeafIndex("a");
+        assertNotEquals(first.getNode(leaf), second.getNode(leaf));
+        int otherLeaf = first.getLeafIndex("b");
+        if (otherLeaf != leaf) {
+            assertEquals(first.getNode(otherLeaf), second.getNode(otherLeaf));
+        }
+    }
+
+    @Test
+    public void testLeafKeysFollowAddsAndRemovesInAnyOrder() {
+        MerkleTree tree = new MerkleTree(4);
+        int leaf = MerkleTree.leafOffset("a", tree.getLeafCount());
+
+        tree.remove("a", "One"); // Seen before its add, as while trees are rebuilt
+        tree.add("a", "One");
+        assertEquals(java.util.List.of(), tree.getLeafKeys(leaf));
+
+        tree.add("a", "Two");
+        tree.update("a", "Two", "Three");
+        assertEquals(java.util.List.of("a"), tree.getLeafKeys(leaf));
+        assertThrows(IllegalArgumentException.class, () -> tree.getLeafKeys(tree.getLeafCount()));
+    }
+
+    @Test
+    public void testInvalidDepth() {
+        assertThrows(IllegalArgumentException.class, () -> new MerkleTree(0));
+    }
+}
@@ -0,0 +1,72 @@
+package nisran.router;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NearCacheTest {
+
+    @Test
+    public void testEntriesExpireAfterMaxStaleness() {
+        AtomicLong now = new AtomicLong(1000);
+        NearCache cache = new NearCache(16, 500, now::get);
+
+        assertTrue(cache.put("a", "1", cache.beginRead("a")));
+        now.addAndGet(499);
+        assertEquals("1", cache.get("a"));
+        now.addAndGet(1);
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testReadStartedBeforeInvalidationIsNotCached() {
+        NearCache cache = new NearCache(16, 500, () -> 0);
+
+        long before = cache.beginRead("a");
+        cache.invalidate("a");
+        assertFalse(cache.put("a", "old", before));
+        assertNull(cache.get("a"));
+
+        assertTrue(cache.put("a", "new", cache.beginRead("a")));
+        assertEquals("new", cache.get("a"));
+    }
+
+    @Test
+    public void testInvalidateRemovesCachedValue() {
+        NearCache cache = new NearCache(16, 500, () -> 0);
+        cache.put("a", "1", cache.beginRead("a"));
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidationOfUnreadKeyLeavesNoTombstone() {
+        NearCache cache = new NearCache(2, 500, () -> 0);
+        cache.put("a", "1", cache.beginRead("a"));
+        cache.put("b", "2", cache.beginRead("b"));
+        cache.invalidate("c");
+        cache.invalidate("d");
+
+        assertEquals("1", cache.get("a"));
+        assertEquals("2", cache.get("b"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        NearCache cache = new NearCache(2, 500, () -> 0);
+        cache.put("a", "1", cache.beginRead("a"));
+        cache.put("b", "2", cache.beginRead("b"));
+        cache.get("a");
+        cache.put("c", "3", cache.beginRead("c"));
+
+        assertEquals(2, cache.size());
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+    }
+}
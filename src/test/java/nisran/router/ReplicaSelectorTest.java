@@ -0,0 +1,70 @@
+package nisran.router;
+
+import nisran.ServerInstance;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicaSelectorTest {
+
+    private final ServerInstance primary = new ServerInstance("task-1", "10.0.0.1", 8080);
+    private final ServerInstance replica = new ServerInstance("task-2", "10.0.0.2", 8080);
+    private final ReplicaSelector selector = new ReplicaSelector(true, 0.5, 0.2, 0);
+
+    @Test
+    public void testPrimaryStaysFirstWithoutSamples() {
+        assertEquals(List.of(primary, replica), selector.rank(List.of(primary, replica)));
+    }
+
+    @Test
+    public void testSlightlySlowerPrimaryIsKept() {
+        selector.recordLatency(primary, 1_100);
+        selector.recordLatency(replica, 1_000);
+        assertEquals(List.of(primary, replica), selector.rank(List.of(primary, replica)));
+    }
+
+    @Test
+    public void testSlowPrimaryIsBypassed() {
+        selector.recordLatency(primary, 5_000);
+        selector.recordLatency(replica, 1_000);
+        assertEquals(List.of(replica, primary), selector.rank(List.of(primary, replica)));
+    }
+
+    @Test
+    public void testBusyPrimaryIsBypassed() {
+        selector.recordLatency(primary, 1_000);
+        selector.recordLatency(replica, 1_000);
+
+        // Two reads still in flight on the primary triple its score
+        selector.track(primary, CompletableFuture::new);
+        selector.track(primary, CompletableFuture::new);
+        assertEquals(List.of(replica, primary), selector.rank(List.of(primary, replica)));
+    }
+
+    @Test
+    public void testCompletedReadIsNoLongerInFlight() {
+        CompletableFuture<String> read = new CompletableFuture<>();
+        selector.track(primary, () -> read);
+        assertEquals(1, selector.getMetrics().get(primary.getNodeIdentifier()).get("inFlight"));
+
+        read.complete("v");
+        assertEquals(0, selector.getMetrics().get(primary.getNodeIdentifier()).get("inFlight"));
+    }
+
+    @Test
+    public void testEwmaAndReset() {
+        selector.recordLatency(primary, 4_000);
+        selector.recordLatency(primary, 2_000);
+        assertEquals(3_000, selector.score(primary), 0.001);
+
+        selector.recordLatency(replica, 1_000);
+        assertEquals(replica, selector.rank(List.of(primary, replica)).get(0));
+
+        selector.reset();
+        assertEquals(primary, selector.rank(List.of(primary, replica)).get(0));
+    }
+}
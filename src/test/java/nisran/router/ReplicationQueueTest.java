@@ -0,0 +1,86 @@
+package nisran.router;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicationQueueTest {
+
+    @Test
+    public void testRepeatedWritesAreCoalesced() throws InterruptedException {
+        ReplicationQueue queue = new ReplicationQueue(10);
+
+        assertTrue(queue.offer("a", "One", 0));
+        assertTrue(queue.offer("a", "One Updated", 0));
+        assertTrue(queue.offer("b", "Two", 0));
+
+        assertEquals(2, queue.depth());
+        Map<String, Object> batch = queue.drain(10);
+        assertEquals("One Updated", batch.get("a"));
+        assertEquals(1L, queue.getMetrics().get("coalesced"));
+    }
+
+    @Test
+    public void testFullQueueRejectsNewKeys() throws InterruptedException {
+        ReplicationQueue queue = new ReplicationQueue(1);
+
+        assertTrue(queue.offer("a", "One", 0));
+        assertFalse(queue.offer("b", "Two", 10));
+        // A pending key can still be overwritten when the queue is full
+        assertTrue(queue.offer("a", "One Updated", 0));
+        assertEquals(1L, queue.getMetrics().get("backpressureRejections"));
+    }
+
+    @Test
+    public void testDrainRespectsBatchSizeAndOrder() throws InterruptedException {
+        ReplicationQueue queue = new ReplicationQueue(10);
+        queue.offer("a", 1, 0);
+        queue.offer("b", 2, 0);
+        queue.offer("c", 3, 0);
+
+        assertEquals(List.of("a", "b"), List.copyOf(queue.drain(2).keySet()));
+        assertEquals(List.of("c"), List.copyOf(queue.drain(2).keySet()));
+        assertTrue(queue.drain(2).isEmpty());
+    }
+
+    @Test
+    public void testRequeueKeepsNewerValues() throws InterruptedException {
+        ReplicationQueue queue = new ReplicationQueue(10);
+        queue.offer("a", "One", 0);
+        Map<String, Object> batch = queue.drain(10);
+
+        queue.offer("a", "One Updated", 0);
+        queue.requeue(batch);
+
+        assertEquals("One Updated", queue.drain(10).get("a"));
+    }
+
+    @Test
+    public void testRequeueDropsEntriesSupersededInFlight() throws InterruptedException {
+        ReplicationQueue queue = new ReplicationQueue(10);
+        queue.offer("a", "One", 0);
+        queue.offer("b", "Two", 0);
+        Map<String, Object> batch = queue.drain(10);
+
+        // "a" was written to the peer synchronously while the batch was in flight
+        queue.supersede("a");
+        queue.requeue(batch);
+
+        assertEquals(Map.of("b", "Two"), queue.drain(10));
+        assertEquals(1L, queue.getMetrics().get("stale"));
+    }
+
+    @Test
+    public void testSupersedeDiscardsPendingEntry() throws InterruptedException {
+        ReplicationQueue queue = new ReplicationQueue(1);
+        queue.offer("a", "One", 0);
+
+        queue.supersede("a");
+
+        assertEquals(0, queue.depth());
+        assertTrue(queue.offer("b", "Two", 0));
+    }
+}
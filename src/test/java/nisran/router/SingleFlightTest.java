@@ -0,0 +1,68 @@
+package nisran.router;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private final SingleFlight<String, String> flights = new SingleFlight<>();
+
+    @Test
+    public void testConcurrentCallersShareOneLoad() {
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> remote = new CompletableFuture<>();
+
+        CompletableFuture<String> first = flights.execute("key", () -> {
+            loads.incrementAndGet();
+            return remote;
+        });
+        CompletableFuture<String> second = flights.execute("key", () -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        assertEquals(1, loads.get());
+        assertFalse(second.isDone());
+
+        remote.complete("value");
+        assertEquals("value", first.join());
+        assertEquals("value", second.join());
+        assertEquals(1, flights.getJoined());
+        assertEquals(0, flights.inFlightCount());
+    }
+
+    @Test
+    public void testCompletedLoadIsNotReused() {
+        assertEquals("a", flights.execute("key", () -> CompletableFuture.completedFuture("a")).join());
+        assertEquals("b", flights.execute("key", () -> CompletableFuture.completedFuture("b")).join());
+        assertEquals(2, flights.getLoads());
+    }
+
+    @Test
+    public void testFailureIsSharedAndFreesKey() {
+        CompletableFuture<String> remote = new CompletableFuture<>();
+        CompletableFuture<String> first = flights.execute("key", () -> remote);
+        CompletableFuture<String> second = flights.execute("key", CompletableFuture::new);
+
+        remote.completeExceptionally(new IllegalStateException("down"));
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        assertEquals("up", flights.execute("key", () -> CompletableFuture.completedFuture("up")).join());
+    }
+
+    @Test
+    public void testForgetStartsFreshLoad() {
+        CompletableFuture<String> stale = new CompletableFuture<>();
+        flights.execute("key", () -> stale);
+        flights.forget("key");
+
+        CompletableFuture<String> fresh = flights.execute("key", () -> CompletableFuture.completedFuture("new"));
+        assertEquals("new", fresh.join());
+        // The old load completing later must not detach anything
+        stale.complete("old");
+        assertEquals(0, flights.inFlightCount());
+    }
+}
@@ -0,0 +1,75 @@
+package nisran.router;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpaceSavingSketchTest {
+
+    @Test
+    public void testCountsExactlyWhileBelowCapacity() {
+        SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(4);
+        for (int i = 0; i < 5; i++) {
+            sketch.offer("a");
+        }
+        sketch.offer("b");
+        sketch.offer("b");
+
+        List<SpaceSavingSketch.Counter<String>> top = sketch.top(10);
+        assertEquals(2, top.size());
+        assertEquals("a", top.get(0).getKey());
+        assertEquals(5, top.get(0).getCount());
+        assertEquals(0, top.get(0).getError());
+        assertEquals(7, sketch.total());
+    }
+
+    @Test
+    public void testNewKeyReplacesMinimumAndInheritsItsCount() {
+        SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(2);
+        sketch.offer("a");
+        sketch.offer("a");
+        sketch.offer("b");
+        sketch.offer("c"); // evicts b (count 1)
+
+        List<SpaceSavingSketch.Counter<String>> top = sketch.top(2);
+        assertEquals("a", top.get(0).getKey());
+        SpaceSavingSketch.Counter<String> c = top.get(1);
+        assertEquals("c", c.getKey());
+        assertEquals(2, c.getCount());
+        assertEquals(1, c.getError());
+        assertEquals(1, c.getGuaranteedCount());
+    }
+
+    @Test
+    public void testFindsHeavyHittersInSkewedStream() {
+        SpaceSavingSketch<Integer> sketch = new SpaceSavingSketch<>(32);
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            int r = random.nextInt(100);
+            // Keys 0..2 take 60% of the traffic, the rest is spread over 10,000 keys
+            int key = r < 30 ? 0 : r < 50 ? 1 : r < 60 ? 2 : 3 + random.nextInt(10_000);
+            sketch.offer(key);
+        }
+
+        List<SpaceSavingSketch.Counter<Integer>> top = sketch.top(3);
+        assertEquals(0, top.get(0).getKey());
+        assertEquals(1, top.get(1).getKey());
+        assertEquals(2, top.get(2).getKey());
+        for (SpaceSavingSketch.Counter<Integer> counter : top) {
+            // The true count is within the error bound of the reported count
+            assertTrue(counter.getGuaranteedCount() > 0);
+        }
+    }
+
+    @Test
+    public void testReset() {
+        SpaceSavingSketch<String> sketch = new SpaceSavingSketch<>(2);
+        sketch.offer("a");
+        sketch.reset();
+        assertTrue(sketch.top(5).isEmpty());
+        assertEquals(0, sketch.total());
+    }
+}
@@ -0,0 +1,73 @@
+package nisran.router;
+
+import nisran.ServerInstance;
+import nisran.discovery.StaticDiscoveryProvider;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZonePlacementTest {
+
+    private static ServerInstance node(String id, String zone) {
+        return new ServerInstance(id, "10.0.0." + id.length(), 8080, zone);
+    }
+
+    @Test
+    public void testReplicasSkipZonesAlreadyUsed() {
+        ServerInstance a = node("a", "az1");
+        ServerInstance b = node("b", "az1");
+        ServerInstance c = node("c", "az2");
+        ServerInstance d = node("d", "az3");
+
+        assertEquals(List.of(a, c, d), ZonePlacement.spread(a, List.of(b, c, d), 3));
+        assertEquals(List.of(a, c), ZonePlacement.spread(a, List.of(b, c, d), 2));
+    }
+
+    @Test
+    public void testFallsBackToRingOrderWhenZonesRunOut() {
+        ServerInstance a = node("a", "az1");
+        ServerInstance b = node("b", "az1");
+        ServerInstance c = node("c", "az2");
+        ServerInstance d = node("d", "az2");
+
+        assertEquals(List.of(a, c, b), ZonePlacement.spread(a, List.of(b, c, d), 3));
+    }
+
+    @Test
+    public void testUnknownZonesKeepRingOrder() {
+        ServerInstance a = node("a", null);
+        ServerInstance b = node("b", null);
+        ServerInstance c = node("c", null);
+
+        assertEquals(List.of(a, b), ZonePlacement.spread(a, List.of(b, c), 2));
+        assertEquals(List.of(a, b, c), ZonePlacement.preferZone(List.of(a, b, c), "az1"));
+    }
+
+    @Test
+    public void testSameZoneReplicasAreReadFirst() {
+        ServerInstance a = node("a", "az1");
+        ServerInstance b = node("b", "az2");
+        ServerInstance c = node("c", "az2");
+
+        assertEquals(List.of(b, c, a), ZonePlacement.preferZone(List.of(a, b, c), "az2"));
+        assertEquals(List.of(a, b, c), ZonePlacement.preferZone(List.of(a, b, c), "az3"));
+        assertEquals(List.of(a, b, c), ZonePlacement.preferZone(List.of(a, b, c), null));
+    }
+
+    @Test
+    public void testRouterPlacesReplicasAfterThePrimary() {
+        ServerInstance a = node("a", "az1");
+        ServerInstance b = node("bb", "az1");
+        ServerInstance c = node("ccc", "az2");
+        CacheRouter router = new CacheRouter(new StaticDiscoveryProvider(a, List.of(a, b, c)), 1, 0);
+        router.refreshMembership();
+
+        assertEquals(List.of(b, c), router.getReplicaInstances(b, 2, false));
+        assertEquals(List.of(c, a), router.getReplicaInstances(c, 2, false));
+        assertEquals(List.of(a, c), router.getReplicaInstances(a, 2, true));
+        assertEquals(List.of(a, b, c), router.getReplicaInstances(a, 5, false));
+    }
+}
@@ -0,0 +1,52 @@
+package nisran.transport;
+
+import nisran.router.ExpiringValue;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RespFrontEndTest {
+
+    @Test
+    public void testOnlySuccessfulWriteResponsesPass() {
+        assertNull(RespFrontEnd.failure(List.of("Success: Wrote to primary n1 (local)", "Queued for server{n2}")));
+        assertNull(RespFrontEnd.failure(List.of("Response to server{n1} is {200}")));
+        assertEquals("Response to server{n1} is {503}", RespFrontEnd.failure(List.of("Response to server{n1} is {503}")));
+        assertEquals("Response to server{n2} is {-1}",
+                RespFrontEnd.failure(List.of("Success: Wrote to primary n1 (local)", "Response to server{n2} is {-1}")));
+        assertEquals("Failure: no replicas", RespFrontEnd.failure(List.of("Failure: no replicas")));
+    }
+
+    @Test
+    public void testValuesThatAreNotUtf8AreStoredAsBase64() {
+        assertEquals("h\u00e9llo", RespFrontEnd.decodeValue("h\u00e9llo".getBytes(StandardCharsets.UTF_8)));
+        byte[] binary = {(byte) 0xff, 0, (byte) 0xc3, 0x28};
+        assertEquals(Map.of(RespFrontEnd.BYTES, "/wDDKA=="), RespFrontEnd.decodeValue(binary));
+    }
+
+    @Test
+    public void testExpiredValuesReadAsAbsent() {
+        assertEquals("v", ExpiringValue.unwrap("v", 100));
+        assertEquals("v", ExpiringValue.unwrap(ExpiringValue.of("v", 200), 100));
+        assertNull(ExpiringValue.unwrap(ExpiringValue.of("v", 200), 200));
+        assertNull(ExpiringValue.unwrap(ExpiringValue.tombstone(100), 100));
+        // As read back from another node's JSON
+        assertNull(ExpiringValue.unwrap(Map.of(ExpiringValue.VALUE, "v", ExpiringValue.EXPIRES_AT, 5), 100));
+    }
+
+    @Test
+    public void testClientValuesCannotPassForWrappers() {
+        assertTrue(ExpiringValue.isReserved(Map.of(ExpiringValue.VALUE, "v", ExpiringValue.EXPIRES_AT, 5)));
+        assertTrue(ExpiringValue.isReserved(Map.of(ExpiringValue.EXPIRES_AT, 5)));
+        assertFalse(ExpiringValue.isReserved(Map.of("value", "v")));
+        assertFalse(ExpiringValue.isReserved("@value"));
+        // Not a wrapper, so read back as written
+        Map<String, Object> other = Map.of(ExpiringValue.VALUE, "v", ExpiringValue.EXPIRES_AT, "soon");
+        assertEquals(other, ExpiringValue.unwrap(other, 100));
+    }
+}
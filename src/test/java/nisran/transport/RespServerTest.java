@@ -0,0 +1,124 @@
+package nisran.transport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RespServerTest {
+
+    private final Map<String, byte[]> store = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService delays = Executors.newSingleThreadScheduledExecutor();
+    private RespServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new RespServer(0, 1024, 4, (session, command) -> {
+            String name = string(command.get(0)).toUpperCase();
+            switch (name) {
+                case "SET":
+                    store.put(string(command.get(1)), command.get(2));
+                    return CompletableFuture.completedFuture(RespCodec.simple("OK"));
+                case "GET": {
+                    byte[] value = store.get(string(command.get(1)));
+                    return CompletableFuture.completedFuture(value == null ? RespCodec.nullValue(session.getProtocol()) : RespCodec.bulk(value));
+                }
+                case "SLOW": {
+                    // Completes after the commands pipelined behind it
+                    CompletableFuture<byte[]> reply = new CompletableFuture<>();
+                    delays.schedule(() -> reply.complete(RespCodec.simple("SLOW")), 50, TimeUnit.MILLISECONDS);
+                    return reply;
+                }
+                case "HELLO":
+                    session.setProtocol(3);
+                    return CompletableFuture.completedFuture(RespCodec.simple("OK"));
+                case "QUIT":
+                    session.close();
+                    return CompletableFuture.completedFuture(RespCodec.simple("OK"));
+                default:
+                    return CompletableFuture.completedFuture(RespCodec.error("ERR unknown command"));
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        delays.shutdownNow();
+    }
+
+    @Test
+    public void testDecodesArraysAndInlineCommands() {
+        ByteBuffer in = ByteBuffer.wrap(bytes("*2\r\n$3\r\nGET\r\n$1\r\nk\r\nPING\r\n*1\r\n$4\r\nPI"));
+        assertEquals(List.of("GET", "k"), strings(RespCodec.decode(in, 1024)));
+        assertEquals(List.of("PING"), strings(RespCodec.decode(in, 1024)));
+        int partial = in.position();
+        assertNull(RespCodec.decode(in, 1024));
+        assertEquals(partial, in.position());
+
+        assertThrows(IllegalArgumentException.class, () -> RespCodec.decode(ByteBuffer.wrap(bytes("*1\r\n$9999\r\n")), 1024));
+    }
+
+    @Test
+    public void testPipelinedRepliesKeepCommandOrder() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            // More commands than the pipeline limit of 4, in one write
+            out.write(bytes("SET a 1\r\nSLOW\r\n*2\r\n$3\r\nGET\r\n$1\r\na\r\nGET missing\r\nSET b 2\r\nGET b\r\nHELLO\r\nGET missing\r\nQUIT\r\n"));
+            out.flush();
+
+            String expected = "+OK\r\n+SLOW\r\n$1\r\n1\r\n$-1\r\n+OK\r\n$1\r\n2\r\n+OK\r\n_\r\n+OK\r\n";
+            assertEquals(expected, readUntilClosed(socket.getInputStream()));
+        }
+    }
+
+    @Test
+    public void testMalformedInputIsAnsweredAndClosed() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.getLocalPort())) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(bytes("*1\r\n#oops\r\n"));
+
+            assertTrue(readUntilClosed(socket.getInputStream()).startsWith("-ERR Protocol error"));
+        }
+    }
+
+    private static String readUntilClosed(InputStream in) throws Exception {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1024];
+        int read;
+        while ((read = in.read(chunk)) >= 0) {
+            received.write(chunk, 0, read);
+        }
+        return received.toString(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(List<byte[]> command) {
+        return command.stream().map(RespServerTest::string).collect(Collectors.toList());
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] b) {
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,142 @@
+package nisran.transport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransportTest {
+
+    private final Map<String, ByteBuffer> store = new ConcurrentHashMap<>();
+    private TransportServer server;
+    private TransportClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new TransportServer(0, request -> {
+            switch (request.getOpcode()) {
+                case Frame.OP_SET:
+                    store.put(request.getKey(), request.getValue());
+                    return CompletableFuture.completedFuture(request.reply(Frame.STATUS_OK, null));
+                case Frame.OP_GET:
+                    ByteBuffer value = store.get(request.getKey());
+                    return CompletableFuture.completedFuture(value == null
+                            ? request.reply(Frame.STATUS_NOT_FOUND, null)
+                            : request.reply(Frame.STATUS_OK, value.duplicate()));
+                default:
+                    return CompletableFuture.completedFuture(request.error("unsupported"));
+            }
+        });
+        server.start();
+        client = new TransportClient(1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void testCodecRoundTrip() {
+        Frame frame = Frame.request(Frame.OP_SET, 42L, 1500, "key", ByteBuffer.wrap(bytes("value")));
+        ByteBuffer[] encoded = FrameCodec.encode(frame);
+
+        int total = 0;
+        for (ByteBuffer b : encoded) {
+            total += b.remaining();
+        }
+        ByteBuffer wire = ByteBuffer.allocate(total);
+        for (ByteBuffer b : encoded) {
+            wire.put(b);
+        }
+        wire.flip();
+        assertEquals(total - FrameCodec.LENGTH_FIELD_BYTES, wire.getInt());
+
+        Frame decoded = FrameCodec.decode(wire.slice());
+        assertEquals(Frame.OP_SET, decoded.getOpcode());
+        assertEquals(42L, decoded.getRequestId());
+        assertEquals(1500, decoded.getTimeoutMillis());
+        assertEquals("key", decoded.getKey());
+        assertEquals("value", string(decoded.getValue()));
+    }
+
+    @Test
+    public void testBatchEntriesRoundTrip() {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("a", bytes("1"));
+        entries.put("b", bytes(""));
+        Map<String, ByteBuffer> decoded = FrameCodec.decodeEntries(FrameCodec.encodeEntries(entries));
+
+        assertEquals(List.of("a", "b"), List.copyOf(decoded.keySet()));
+        assertEquals("1", string(decoded.get("a")));
+        assertEquals("", string(decoded.get("b")));
+    }
+
+    @Test
+    public void testPipelinedRequestsOverOneConnection() {
+        int port = server.getLocalPort();
+        List<CompletableFuture<Frame>> writes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            writes.add(client.send("127.0.0.1", port, Frame.OP_SET, "k" + i, ByteBuffer.wrap(bytes("v" + i)), 5000));
+        }
+        writes.forEach(f -> assertTrue(f.join().isOk()));
+
+        List<CompletableFuture<Frame>> reads = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            reads.add(client.send("127.0.0.1", port, Frame.OP_GET, "k" + i, null, 5000));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals("v" + i, string(reads.get(i).join().getValue()));
+        }
+
+        Frame miss = client.send("127.0.0.1", port, Frame.OP_GET, "missing", null, 5000).join();
+        assertEquals(Frame.STATUS_NOT_FOUND, miss.getStatus());
+        assertEquals(404, miss.toHttpStatus());
+    }
+
+    @Test
+    public void testUnreachablePeerBacksOffWithoutDelayingOthers() throws IOException {
+        int deadPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            deadPort = socket.getLocalPort();
+        }
+        CompletableFuture<Frame> first = client.send("127.0.0.1", deadPort, Frame.OP_GET, "k", null, 5000);
+        CompletionException failure = assertThrows(CompletionException.class, first::join);
+        assertInstanceOf(IOException.class, failure.getCause());
+
+        // Within the backoff the same failure is returned without dialling again
+        CompletableFuture<Frame> second = client.send("127.0.0.1", deadPort, Frame.OP_GET, "k", null, 5000);
+        assertSame(failure.getCause(), assertThrows(CompletionException.class, second::join).getCause());
+
+        Frame miss = client.send("127.0.0.1", server.getLocalPort(), Frame.OP_GET, "missing", null, 5000).join();
+        assertEquals(Frame.STATUS_NOT_FOUND, miss.getStatus());
+
+        assertEquals(100, TransportClient.retryMillis(1));
+        assertEquals(400, TransportClient.retryMillis(3));
+        assertEquals(5000, TransportClient.retryMillis(40));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] b = new byte[buffer.remaining()];
+        buffer.duplicate().get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}